@@ -24,8 +24,10 @@ DROP TABLE IF EXISTS `ik_ext_stop`;
 CREATE TABLE `ik_ext_stop`  (
   `id` int(11) NOT NULL AUTO_INCREMENT COMMENT '自增id',
   `word` varchar(20) CHARACTER SET utf8 COLLATE utf8_general_ci DEFAULT NULL COMMENT '扩展词',
-  `updatetime` datetime(0) DEFAULT CURRENT_TIMESTAMP,
-  PRIMARY KEY (`id`) USING BTREE
+  `updatetime` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  `is_deleted` tinyint(1) NOT NULL DEFAULT 0 COMMENT '删除标记，1表示已删除',
+  PRIMARY KEY (`id`) USING BTREE,
+  INDEX `idx_updatetime_id` (`updatetime`, `id`) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 16 CHARACTER SET = utf8 COLLATE = utf8_general_ci ROW_FORMAT = Compact;
 
 SET FOREIGN_KEY_CHECKS = 1;
@@ -1,19 +1,54 @@
 package org.elasticsearch.plugin.analysis.ik;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.IndexScopedSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.index.analysis.AnalyzerProvider;
 import org.elasticsearch.index.analysis.IkAnalyzerProvider;
 import org.elasticsearch.index.analysis.IkTokenizerFactory;
 import org.elasticsearch.index.analysis.TokenizerFactory;
 import org.elasticsearch.indices.analysis.AnalysisModule;
+import org.elasticsearch.plugin.analysis.ik.action.IkDictPublishAction;
+import org.elasticsearch.plugin.analysis.ik.action.IkDictUpdateAction;
+import org.elasticsearch.plugin.analysis.ik.action.IkStatsAction;
+import org.elasticsearch.plugin.analysis.ik.action.TransportIkDictPublishAction;
+import org.elasticsearch.plugin.analysis.ik.action.TransportIkDictUpdateAction;
+import org.elasticsearch.plugin.analysis.ik.rest.RestIkDictUpdateAction;
+import org.elasticsearch.plugin.analysis.ik.action.TransportIkStatsAction;
+import org.elasticsearch.plugin.analysis.ik.rest.RestIkExplainAction;
+import org.elasticsearch.plugin.analysis.ik.rest.RestIkStatsAction;
+import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.AnalysisPlugin;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.ResourceWatcherService;
+import org.wltea.analyzer.dic.Dictionary;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 
-public class AnalysisIkPlugin extends Plugin implements AnalysisPlugin {
+public class AnalysisIkPlugin extends Plugin implements AnalysisPlugin, ActionPlugin {
 
 	public static String PLUGIN_NAME = "analysis-ik";
 
@@ -38,4 +73,37 @@ public class AnalysisIkPlugin extends Plugin implements AnalysisPlugin {
         return extra;
     }
 
+    @Override
+    public Collection<Object> createComponents(Client client, ClusterService clusterService, ThreadPool threadPool,
+                                               ResourceWatcherService resourceWatcherService, ScriptService scriptService,
+                                               NamedXContentRegistry xContentRegistry, Environment environment,
+                                               NodeEnvironment nodeEnvironment, NamedWriteableRegistry namedWriteableRegistry) {
+        // only used when dict_distribution is set to cluster in IKAnalyzer.cfg.xml
+        Dictionary.setPublisher(new ClusterDictPublisher(clusterService, client));
+        // words pushed through _ik/dictionary/_update are journaled in the node data path, the config dir is read-only
+        if (nodeEnvironment.hasNodeFile()) {
+            Dictionary.setPushJournalFile(nodeEnvironment.nodeDataPaths()[0].resolve(PLUGIN_NAME).resolve("pushed_words.journal"));
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<ActionHandler<? extends ActionRequest, ? extends ActionResponse>> getActions() {
+        return Arrays.asList(
+                new ActionHandler<>(IkStatsAction.INSTANCE, TransportIkStatsAction.class),
+                new ActionHandler<>(IkDictPublishAction.INSTANCE, TransportIkDictPublishAction.class),
+                new ActionHandler<>(IkDictUpdateAction.INSTANCE, TransportIkDictUpdateAction.class));
+    }
+
+    @Override
+    public List<RestHandler> getRestHandlers(Settings settings, RestController restController, ClusterSettings clusterSettings,
+                                             IndexScopedSettings indexScopedSettings, SettingsFilter settingsFilter,
+                                             IndexNameExpressionResolver indexNameExpressionResolver,
+                                             Supplier<DiscoveryNodes> nodesInCluster) {
+        return Arrays.asList(
+                new RestIkExplainAction(settings, restController),
+                new RestIkStatsAction(settings, restController),
+                new RestIkDictUpdateAction(settings, restController));
+    }
+
 }
@@ -0,0 +1,113 @@
+package org.elasticsearch.plugin.analysis.ik;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+import org.elasticsearch.plugin.analysis.ik.action.IkDictPublishAction;
+import org.elasticsearch.plugin.analysis.ik.action.IkDictPublishNodeResponse;
+import org.elasticsearch.plugin.analysis.ik.action.IkDictPublishRequest;
+import org.elasticsearch.plugin.analysis.ik.action.IkDictPublishResponse;
+import org.wltea.analyzer.dic.DictDelta;
+import org.wltea.analyzer.dic.DictPublisher;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Makes the elected master the only node that fetches dictionary changes, and sends each delta it
+ * produces to every other node. Deltas are sent one at a time, so nodes receive them in version order.
+ */
+public class ClusterDictPublisher implements DictPublisher {
+
+    private static final Logger logger = ESLoggerFactory.getLogger(ClusterDictPublisher.class.getName());
+
+    private final ClusterService clusterService;
+    private final Client client;
+
+    private final Queue<DictDelta> pending = new ArrayDeque<>();
+    private boolean sending;
+
+    public ClusterDictPublisher(ClusterService clusterService, Client client) {
+        this.clusterService = clusterService;
+        this.client = client;
+    }
+
+    @Override
+    public boolean isFetcher() {
+        return clusterService.state().nodes().isLocalNodeElectedMaster();
+    }
+
+    @Override
+    public void publish(DictDelta delta) {
+        synchronized (pending) {
+            pending.add(delta);
+            if (sending) {
+                return;
+            }
+            sending = true;
+        }
+        sendNext();
+    }
+
+    private void sendNext() {
+        DictDelta delta;
+        synchronized (pending) {
+            delta = pending.poll();
+            if (delta == null) {
+                sending = false;
+                return;
+            }
+        }
+        DiscoveryNodes nodes = clusterService.state().nodes();
+        List<String> targets = new ArrayList<>(nodes.getSize());
+        for (DiscoveryNode node : nodes) {
+            if (node.getId().equals(nodes.getLocalNodeId()) == false) {
+                targets.add(node.getId());
+            }
+        }
+        if (targets.isEmpty()) {
+            sendNext();
+            return;
+        }
+        final byte[] bytes;
+        try {
+            bytes = delta.toBytes();
+        } catch (IOException e) {
+            logger.error("failed to serialize dictionary delta {}", delta, e);
+            sendNext();
+            return;
+        }
+        IkDictPublishRequest request = new IkDictPublishRequest(bytes, targets.toArray(new String[0]));
+        client.execute(IkDictPublishAction.INSTANCE, request, new ActionListener<IkDictPublishResponse>() {
+            @Override
+            public void onResponse(IkDictPublishResponse response) {
+                int resync = 0;
+                for (IkDictPublishNodeResponse node : response.getNodes()) {
+                    if ("resync".equals(node.getStatus())) {
+                        resync++;
+                    }
+                }
+                for (FailedNodeException failure : response.failures()) {
+                    logger.warn("failed to send dictionary delta {} to node [{}]", delta, failure.nodeId(), failure);
+                }
+                logger.info("sent dictionary delta {} ({} words, {} bytes) to {} nodes, {} acknowledged, {} resyncing",
+                        delta, delta.size(), bytes.length, targets.size(), response.getNodes().size(), resync);
+                sendNext();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                logger.error("failed to send dictionary delta {}", delta, e);
+                sendNext();
+            }
+        });
+    }
+}
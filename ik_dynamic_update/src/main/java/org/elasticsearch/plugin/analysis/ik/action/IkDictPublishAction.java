@@ -0,0 +1,27 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.client.ElasticsearchClient;
+
+/**
+ * Sends a dictionary delta from the fetching node to the other nodes of the cluster.
+ */
+public class IkDictPublishAction extends Action<IkDictPublishRequest, IkDictPublishResponse, IkDictPublishRequestBuilder> {
+
+    public static final IkDictPublishAction INSTANCE = new IkDictPublishAction();
+    public static final String NAME = "cluster:admin/ik/dictionary/publish";
+
+    private IkDictPublishAction() {
+        super(NAME);
+    }
+
+    @Override
+    public IkDictPublishResponse newResponse() {
+        return new IkDictPublishResponse();
+    }
+
+    @Override
+    public IkDictPublishRequestBuilder newRequestBuilder(ElasticsearchClient client) {
+        return new IkDictPublishRequestBuilder(client, this);
+    }
+}
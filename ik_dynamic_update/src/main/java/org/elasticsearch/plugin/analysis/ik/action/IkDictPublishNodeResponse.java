@@ -0,0 +1,59 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+/**
+ * The acknowledgement of a node: what it did with the delta and the version it has applied since.
+ */
+public class IkDictPublishNodeResponse extends BaseNodeResponse {
+
+    /**
+     * The node has not created an ik analyzer yet, it will load the dictionaries itself when it does.
+     */
+    public static final String NOT_INITIALIZED = "not_initialized";
+
+    private String status;
+    private String appliedVersion;
+
+    IkDictPublishNodeResponse() {
+    }
+
+    public IkDictPublishNodeResponse(DiscoveryNode node, String status, String appliedVersion) {
+        super(node);
+        this.status = status;
+        this.appliedVersion = appliedVersion;
+    }
+
+    public static IkDictPublishNodeResponse readNodeResponse(StreamInput in) throws IOException {
+        IkDictPublishNodeResponse response = new IkDictPublishNodeResponse();
+        response.readFrom(in);
+        return response;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getAppliedVersion() {
+        return appliedVersion;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        status = in.readString();
+        appliedVersion = in.readOptionalString();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeString(status);
+        out.writeOptionalString(appliedVersion);
+    }
+}
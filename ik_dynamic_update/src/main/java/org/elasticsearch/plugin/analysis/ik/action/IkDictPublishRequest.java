@@ -0,0 +1,39 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+/**
+ * A serialized {@link org.wltea.analyzer.dic.DictDelta} addressed to the given nodes.
+ */
+public class IkDictPublishRequest extends BaseNodesRequest<IkDictPublishRequest> {
+
+    private byte[] delta;
+
+    public IkDictPublishRequest() {
+    }
+
+    public IkDictPublishRequest(byte[] delta, String... nodesIds) {
+        super(nodesIds);
+        this.delta = delta;
+    }
+
+    public byte[] getDelta() {
+        return delta;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        delta = in.readByteArray();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeByteArray(delta);
+    }
+}
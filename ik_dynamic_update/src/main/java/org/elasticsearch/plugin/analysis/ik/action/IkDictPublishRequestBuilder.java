@@ -0,0 +1,12 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.support.nodes.NodesOperationRequestBuilder;
+import org.elasticsearch.client.ElasticsearchClient;
+
+public class IkDictPublishRequestBuilder extends NodesOperationRequestBuilder<IkDictPublishRequest, IkDictPublishResponse,
+        IkDictPublishRequestBuilder> {
+
+    public IkDictPublishRequestBuilder(ElasticsearchClient client, IkDictPublishAction action) {
+        super(client, action, new IkDictPublishRequest());
+    }
+}
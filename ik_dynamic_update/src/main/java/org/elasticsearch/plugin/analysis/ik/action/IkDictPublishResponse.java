@@ -0,0 +1,31 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.List;
+
+public class IkDictPublishResponse extends BaseNodesResponse<IkDictPublishNodeResponse> {
+
+    IkDictPublishResponse() {
+    }
+
+    public IkDictPublishResponse(ClusterName clusterName, List<IkDictPublishNodeResponse> nodes,
+                                 List<FailedNodeException> failures) {
+        super(clusterName, nodes, failures);
+    }
+
+    @Override
+    protected List<IkDictPublishNodeResponse> readNodesFrom(StreamInput in) throws IOException {
+        return in.readList(IkDictPublishNodeResponse::readNodeResponse);
+    }
+
+    @Override
+    protected void writeNodesTo(StreamOutput out, List<IkDictPublishNodeResponse> nodes) throws IOException {
+        out.writeStreamableList(nodes);
+    }
+}
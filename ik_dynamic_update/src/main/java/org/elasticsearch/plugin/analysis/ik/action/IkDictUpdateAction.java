@@ -0,0 +1,27 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.client.ElasticsearchClient;
+
+/**
+ * Adds or disables words in the live main or stopword dictionary of every node.
+ */
+public class IkDictUpdateAction extends Action<IkDictUpdateRequest, IkDictUpdateResponse, IkDictUpdateRequestBuilder> {
+
+    public static final IkDictUpdateAction INSTANCE = new IkDictUpdateAction();
+    public static final String NAME = "cluster:admin/ik/dictionary/update";
+
+    private IkDictUpdateAction() {
+        super(NAME);
+    }
+
+    @Override
+    public IkDictUpdateResponse newResponse() {
+        return new IkDictUpdateResponse();
+    }
+
+    @Override
+    public IkDictUpdateRequestBuilder newRequestBuilder(ElasticsearchClient client) {
+        return new IkDictUpdateRequestBuilder(client, this);
+    }
+}
@@ -0,0 +1,65 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+
+/**
+ * How many of the pushed words changed the dictionary of a node; words already present
+ * (or already absent) are persisted but not counted.
+ */
+public class IkDictUpdateNodeResponse extends BaseNodeResponse implements ToXContentFragment {
+
+    private int added;
+    private int disabled;
+
+    IkDictUpdateNodeResponse() {
+    }
+
+    public IkDictUpdateNodeResponse(DiscoveryNode node, int added, int disabled) {
+        super(node);
+        this.added = added;
+        this.disabled = disabled;
+    }
+
+    public static IkDictUpdateNodeResponse readNodeResponse(StreamInput in) throws IOException {
+        IkDictUpdateNodeResponse response = new IkDictUpdateNodeResponse();
+        response.readFrom(in);
+        return response;
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getDisabled() {
+        return disabled;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        added = in.readVInt();
+        disabled = in.readVInt();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(added);
+        out.writeVInt(disabled);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.field("name", getNode().getName());
+        builder.field("added", added);
+        builder.field("disabled", disabled);
+        return builder;
+    }
+}
@@ -0,0 +1,88 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.elasticsearch.action.ValidateActions.addValidationError;
+
+/**
+ * Words to add to or disable in the main ({@code stopWords == false}) or stopword dictionary.
+ */
+public class IkDictUpdateRequest extends BaseNodesRequest<IkDictUpdateRequest> {
+
+    private boolean stopWords;
+    private List<String> add = new ArrayList<>();
+    private List<String> disable = new ArrayList<>();
+
+    public IkDictUpdateRequest() {
+    }
+
+    public IkDictUpdateRequest(String... nodesIds) {
+        super(nodesIds);
+    }
+
+    public boolean stopWords() {
+        return stopWords;
+    }
+
+    public IkDictUpdateRequest stopWords(boolean stopWords) {
+        this.stopWords = stopWords;
+        return this;
+    }
+
+    public List<String> add() {
+        return add;
+    }
+
+    public IkDictUpdateRequest add(List<String> words) {
+        this.add.addAll(words);
+        return this;
+    }
+
+    public List<String> disable() {
+        return disable;
+    }
+
+    public IkDictUpdateRequest disable(List<String> words) {
+        this.disable.addAll(words);
+        return this;
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        ActionRequestValidationException validationException = null;
+        if (add.isEmpty() && disable.isEmpty()) {
+            validationException = addValidationError("at least one of [add] or [disable] is required", validationException);
+        }
+        List<String> words = new ArrayList<>(add);
+        words.addAll(disable);
+        for (String word : words) {
+            if (word == null || word.trim().isEmpty() || word.indexOf('\n') >= 0 || word.indexOf('\r') >= 0) {
+                validationException = addValidationError("invalid word [" + word + "]", validationException);
+            }
+        }
+        return validationException;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        stopWords = in.readBoolean();
+        add = in.readList(StreamInput::readString);
+        disable = in.readList(StreamInput::readString);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeBoolean(stopWords);
+        out.writeStringList(add);
+        out.writeStringList(disable);
+    }
+}
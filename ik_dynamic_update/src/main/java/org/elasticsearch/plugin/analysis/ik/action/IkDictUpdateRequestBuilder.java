@@ -0,0 +1,29 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.support.nodes.NodesOperationRequestBuilder;
+import org.elasticsearch.client.ElasticsearchClient;
+
+import java.util.Arrays;
+
+public class IkDictUpdateRequestBuilder extends NodesOperationRequestBuilder<IkDictUpdateRequest, IkDictUpdateResponse,
+        IkDictUpdateRequestBuilder> {
+
+    public IkDictUpdateRequestBuilder(ElasticsearchClient client, IkDictUpdateAction action) {
+        super(client, action, new IkDictUpdateRequest());
+    }
+
+    public IkDictUpdateRequestBuilder setStopWords(boolean stopWords) {
+        request.stopWords(stopWords);
+        return this;
+    }
+
+    public IkDictUpdateRequestBuilder addWords(String... words) {
+        request.add(Arrays.asList(words));
+        return this;
+    }
+
+    public IkDictUpdateRequestBuilder disableWords(String... words) {
+        request.disable(Arrays.asList(words));
+        return this;
+    }
+}
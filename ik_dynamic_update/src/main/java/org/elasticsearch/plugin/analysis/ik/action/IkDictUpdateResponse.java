@@ -0,0 +1,45 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+public class IkDictUpdateResponse extends BaseNodesResponse<IkDictUpdateNodeResponse> implements ToXContentFragment {
+
+    IkDictUpdateResponse() {
+    }
+
+    public IkDictUpdateResponse(ClusterName clusterName, List<IkDictUpdateNodeResponse> nodes,
+                                List<FailedNodeException> failures) {
+        super(clusterName, nodes, failures);
+    }
+
+    @Override
+    protected List<IkDictUpdateNodeResponse> readNodesFrom(StreamInput in) throws IOException {
+        return in.readList(IkDictUpdateNodeResponse::readNodeResponse);
+    }
+
+    @Override
+    protected void writeNodesTo(StreamOutput out, List<IkDictUpdateNodeResponse> nodes) throws IOException {
+        out.writeStreamableList(nodes);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject("nodes");
+        for (IkDictUpdateNodeResponse node : getNodes()) {
+            builder.startObject(node.getNode().getId());
+            node.toXContent(builder, params);
+            builder.endObject();
+        }
+        builder.endObject();
+        return builder;
+    }
+}
@@ -0,0 +1,290 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.wltea.analyzer.core.AnalysisStats;
+import org.wltea.analyzer.dic.SourceHealth;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * IK analysis counters of a single node, one {@link AnalysisModeStats} per segmentation mode,
+ * plus the refresh health of every dictionary source.
+ */
+public class IkNodeStats extends BaseNodeResponse implements ToXContentFragment {
+
+    private AnalysisModeStats smart;
+    private AnalysisModeStats maxWord;
+    private List<DictionarySourceStats> sources;
+
+    IkNodeStats() {
+    }
+
+    public IkNodeStats(DiscoveryNode node, AnalysisStats stats, List<SourceHealth> sources) {
+        super(node);
+        this.smart = new AnalysisModeStats(stats.getModeStats(true));
+        this.maxWord = new AnalysisModeStats(stats.getModeStats(false));
+        this.sources = new ArrayList<>(sources.size());
+        for (SourceHealth health : sources) {
+            this.sources.add(new DictionarySourceStats(health));
+        }
+    }
+
+    public static IkNodeStats readNodeStats(StreamInput in) throws IOException {
+        IkNodeStats stats = new IkNodeStats();
+        stats.readFrom(in);
+        return stats;
+    }
+
+    public AnalysisModeStats getSmart() {
+        return smart;
+    }
+
+    public AnalysisModeStats getMaxWord() {
+        return maxWord;
+    }
+
+    public List<DictionarySourceStats> getSources() {
+        return sources;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        smart = new AnalysisModeStats(in);
+        maxWord = new AnalysisModeStats(in);
+        sources = in.readList(DictionarySourceStats::new);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        smart.writeTo(out);
+        maxWord.writeTo(out);
+        out.writeList(sources);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.field("name", getNode().getName());
+        builder.field("transport_address", getNode().getAddress().toString());
+        builder.startObject("ik_smart");
+        smart.toXContent(builder, params);
+        builder.endObject();
+        builder.startObject("ik_max_word");
+        maxWord.toXContent(builder, params);
+        builder.endObject();
+        builder.startArray("dictionary_sources");
+        for (DictionarySourceStats source : sources) {
+            builder.startObject();
+            source.toXContent(builder, params);
+            builder.endObject();
+        }
+        builder.endArray();
+        return builder;
+    }
+
+    /**
+     * Point-in-time copy of {@link AnalysisStats.ModeStats}.
+     */
+    public static class AnalysisModeStats implements Writeable, ToXContentFragment {
+
+        private final long tokenizersCreated;
+        private final long documents;
+        private final long charsProcessed;
+        private final long analysisNanos;
+        private final long stopWordsDropped;
+        private final long arbitrations;
+        private final long ambiguities;
+        private final String[] tokenTypes;
+        private final long[] tokens;
+
+        AnalysisModeStats(AnalysisStats.ModeStats stats) {
+            this.tokenizersCreated = stats.getTokenizersCreated();
+            this.documents = stats.getDocuments();
+            this.charsProcessed = stats.getCharsProcessed();
+            this.analysisNanos = stats.getAnalysisNanos();
+            this.stopWordsDropped = stats.getStopWordsDropped();
+            this.arbitrations = stats.getArbitrations();
+            this.ambiguities = stats.getAmbiguities();
+            int types = AnalysisStats.typeCount();
+            this.tokenTypes = new String[types];
+            this.tokens = new long[types];
+            for (int i = 0; i < types; i++) {
+                this.tokenTypes[i] = AnalysisStats.typeName(i);
+                this.tokens[i] = stats.getTokens(i);
+            }
+        }
+
+        AnalysisModeStats(StreamInput in) throws IOException {
+            this.tokenizersCreated = in.readVLong();
+            this.documents = in.readVLong();
+            this.charsProcessed = in.readVLong();
+            this.analysisNanos = in.readVLong();
+            this.stopWordsDropped = in.readVLong();
+            this.arbitrations = in.readVLong();
+            this.ambiguities = in.readVLong();
+            this.tokenTypes = in.readStringArray();
+            this.tokens = in.readVLongArray();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeVLong(tokenizersCreated);
+            out.writeVLong(documents);
+            out.writeVLong(charsProcessed);
+            out.writeVLong(analysisNanos);
+            out.writeVLong(stopWordsDropped);
+            out.writeVLong(arbitrations);
+            out.writeVLong(ambiguities);
+            out.writeStringArray(tokenTypes);
+            out.writeVLongArray(tokens);
+        }
+
+        public long getTokenizersCreated() {
+            return tokenizersCreated;
+        }
+
+        public long getDocuments() {
+            return documents;
+        }
+
+        public long getCharsProcessed() {
+            return charsProcessed;
+        }
+
+        public long getAnalysisNanos() {
+            return analysisNanos;
+        }
+
+        public long getStopWordsDropped() {
+            return stopWordsDropped;
+        }
+
+        public long getArbitrations() {
+            return arbitrations;
+        }
+
+        public long getAmbiguities() {
+            return ambiguities;
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.field("tokenizers_created", tokenizersCreated);
+            builder.field("documents", documents);
+            builder.field("chars_processed", charsProcessed);
+            builder.field("analysis_time_in_nanos", analysisNanos);
+            builder.field("stopwords_dropped", stopWordsDropped);
+            builder.field("arbitrations", arbitrations);
+            builder.field("ambiguous_paths", ambiguities);
+            long total = 0;
+            builder.startObject("tokens");
+            for (int i = 0; i < tokens.length; i++) {
+                builder.field(tokenTypes[i], tokens[i]);
+                total += tokens[i];
+            }
+            builder.field("total", total);
+            builder.endObject();
+            return builder;
+        }
+    }
+
+    /**
+     * Point-in-time copy of the refresh health of one dictionary source.
+     */
+    public static class DictionarySourceStats implements Writeable, ToXContentFragment {
+
+        private final String type;
+        private final String name;
+        private final long successCount;
+        private final long failureCount;
+        private final int consecutiveFailures;
+        private final long lastSuccess;
+        private final long lastFailure;
+        private final String lastError;
+        private final long lastDurationMillis;
+        private final long nextRefresh;
+
+        DictionarySourceStats(SourceHealth health) {
+            this.type = health.getType();
+            this.name = health.getName();
+            this.successCount = health.getSuccessCount();
+            this.failureCount = health.getFailureCount();
+            this.consecutiveFailures = health.getConsecutiveFailures();
+            this.lastSuccess = health.getLastSuccess();
+            this.lastFailure = health.getLastFailure();
+            this.lastError = health.getLastError();
+            this.lastDurationMillis = health.getLastDurationMillis();
+            this.nextRefresh = health.getNextRefresh();
+        }
+
+        DictionarySourceStats(StreamInput in) throws IOException {
+            this.type = in.readString();
+            this.name = in.readString();
+            this.successCount = in.readVLong();
+            this.failureCount = in.readVLong();
+            this.consecutiveFailures = in.readVInt();
+            this.lastSuccess = in.readLong();
+            this.lastFailure = in.readLong();
+            this.lastError = in.readOptionalString();
+            this.lastDurationMillis = in.readLong();
+            this.nextRefresh = in.readLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(type);
+            out.writeString(name);
+            out.writeVLong(successCount);
+            out.writeVLong(failureCount);
+            out.writeVInt(consecutiveFailures);
+            out.writeLong(lastSuccess);
+            out.writeLong(lastFailure);
+            out.writeOptionalString(lastError);
+            out.writeLong(lastDurationMillis);
+            out.writeLong(nextRefresh);
+        }
+
+        /**
+         * green when the last refresh succeeded, red when it failed, unknown before the first refresh.
+         */
+        public String getStatus() {
+            if (consecutiveFailures > 0) {
+                return "red";
+            }
+            return successCount > 0 ? "green" : "unknown";
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.field("type", type);
+            builder.field("name", name);
+            builder.field("status", getStatus());
+            builder.field("success_count", successCount);
+            builder.field("failure_count", failureCount);
+            builder.field("consecutive_failures", consecutiveFailures);
+            if (lastSuccess >= 0) {
+                builder.field("last_success_in_millis", lastSuccess);
+            }
+            if (lastFailure >= 0) {
+                builder.field("last_failure_in_millis", lastFailure);
+                builder.field("last_error", lastError);
+            }
+            if (lastDurationMillis >= 0) {
+                builder.field("last_duration_in_millis", lastDurationMillis);
+            }
+            if (nextRefresh >= 0) {
+                builder.field("next_refresh_in_millis", nextRefresh);
+            }
+            return builder;
+        }
+    }
+}
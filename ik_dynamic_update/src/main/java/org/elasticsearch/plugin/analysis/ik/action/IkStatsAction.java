@@ -0,0 +1,24 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.client.ElasticsearchClient;
+
+public class IkStatsAction extends Action<IkStatsRequest, IkStatsResponse, IkStatsRequestBuilder> {
+
+    public static final IkStatsAction INSTANCE = new IkStatsAction();
+    public static final String NAME = "cluster:monitor/ik/stats";
+
+    private IkStatsAction() {
+        super(NAME);
+    }
+
+    @Override
+    public IkStatsResponse newResponse() {
+        return new IkStatsResponse();
+    }
+
+    @Override
+    public IkStatsRequestBuilder newRequestBuilder(ElasticsearchClient client) {
+        return new IkStatsRequestBuilder(client, this);
+    }
+}
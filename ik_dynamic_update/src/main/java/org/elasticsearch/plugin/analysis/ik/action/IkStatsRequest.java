@@ -0,0 +1,13 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+
+public class IkStatsRequest extends BaseNodesRequest<IkStatsRequest> {
+
+    public IkStatsRequest() {
+    }
+
+    public IkStatsRequest(String... nodesIds) {
+        super(nodesIds);
+    }
+}
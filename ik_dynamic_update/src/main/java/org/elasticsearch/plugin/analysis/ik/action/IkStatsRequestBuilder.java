@@ -0,0 +1,11 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.support.nodes.NodesOperationRequestBuilder;
+import org.elasticsearch.client.ElasticsearchClient;
+
+public class IkStatsRequestBuilder extends NodesOperationRequestBuilder<IkStatsRequest, IkStatsResponse, IkStatsRequestBuilder> {
+
+    public IkStatsRequestBuilder(ElasticsearchClient client, IkStatsAction action) {
+        super(client, action, new IkStatsRequest());
+    }
+}
@@ -0,0 +1,44 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+public class IkStatsResponse extends BaseNodesResponse<IkNodeStats> implements ToXContentFragment {
+
+    IkStatsResponse() {
+    }
+
+    public IkStatsResponse(ClusterName clusterName, List<IkNodeStats> nodes, List<FailedNodeException> failures) {
+        super(clusterName, nodes, failures);
+    }
+
+    @Override
+    protected List<IkNodeStats> readNodesFrom(StreamInput in) throws IOException {
+        return in.readList(IkNodeStats::readNodeStats);
+    }
+
+    @Override
+    protected void writeNodesTo(StreamOutput out, List<IkNodeStats> nodes) throws IOException {
+        out.writeStreamableList(nodes);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject("nodes");
+        for (IkNodeStats node : getNodes()) {
+            builder.startObject(node.getNode().getId());
+            node.toXContent(builder, params);
+            builder.endObject();
+        }
+        builder.endObject();
+        return builder;
+    }
+}
@@ -0,0 +1,92 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+import org.wltea.analyzer.dic.DictDelta;
+import org.wltea.analyzer.dic.Dictionary;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+
+public class TransportIkDictPublishAction extends TransportNodesAction<IkDictPublishRequest, IkDictPublishResponse,
+        TransportIkDictPublishAction.NodeRequest, IkDictPublishNodeResponse> {
+
+    @Inject
+    public TransportIkDictPublishAction(Settings settings, ThreadPool threadPool, ClusterService clusterService,
+                                        TransportService transportService, ActionFilters actionFilters,
+                                        IndexNameExpressionResolver indexNameExpressionResolver) {
+        super(settings, IkDictPublishAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                indexNameExpressionResolver, IkDictPublishRequest::new, NodeRequest::new, ThreadPool.Names.GENERIC,
+                IkDictPublishNodeResponse.class);
+    }
+
+    @Override
+    protected IkDictPublishResponse newResponse(IkDictPublishRequest request, List<IkDictPublishNodeResponse> responses,
+                                                List<FailedNodeException> failures) {
+        return new IkDictPublishResponse(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected NodeRequest newNodeRequest(String nodeId, IkDictPublishRequest request) {
+        return new NodeRequest(nodeId, request.getDelta());
+    }
+
+    @Override
+    protected IkDictPublishNodeResponse newNodeResponse() {
+        return new IkDictPublishNodeResponse();
+    }
+
+    @Override
+    protected IkDictPublishNodeResponse nodeOperation(NodeRequest request) {
+        if (Dictionary.isInitialized() == false) {
+            return new IkDictPublishNodeResponse(clusterService.localNode(), IkDictPublishNodeResponse.NOT_INITIALIZED, null);
+        }
+        DictDelta delta;
+        try {
+            delta = DictDelta.fromBytes(request.delta);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Dictionary dictionary = Dictionary.getSingleton();
+        DictDelta.Status status = dictionary.applyDelta(delta);
+        return new IkDictPublishNodeResponse(clusterService.localNode(), status.name().toLowerCase(Locale.ROOT),
+                dictionary.getAppliedVersion());
+    }
+
+    public static class NodeRequest extends BaseNodeRequest {
+
+        private byte[] delta;
+
+        public NodeRequest() {
+        }
+
+        NodeRequest(String nodeId, byte[] delta) {
+            super(nodeId);
+            this.delta = delta;
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            super.readFrom(in);
+            delta = in.readByteArray();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeByteArray(delta);
+        }
+    }
+}
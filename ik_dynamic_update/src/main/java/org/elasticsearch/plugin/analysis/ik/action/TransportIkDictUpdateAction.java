@@ -0,0 +1,87 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+import org.wltea.analyzer.dic.Dictionary;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+public class TransportIkDictUpdateAction extends TransportNodesAction<IkDictUpdateRequest, IkDictUpdateResponse,
+        TransportIkDictUpdateAction.NodeRequest, IkDictUpdateNodeResponse> {
+
+    @Inject
+    public TransportIkDictUpdateAction(Settings settings, ThreadPool threadPool, ClusterService clusterService,
+                                       TransportService transportService, ActionFilters actionFilters,
+                                       IndexNameExpressionResolver indexNameExpressionResolver) {
+        super(settings, IkDictUpdateAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                indexNameExpressionResolver, IkDictUpdateRequest::new, NodeRequest::new, ThreadPool.Names.MANAGEMENT,
+                IkDictUpdateNodeResponse.class);
+    }
+
+    @Override
+    protected IkDictUpdateResponse newResponse(IkDictUpdateRequest request, List<IkDictUpdateNodeResponse> responses,
+                                               List<FailedNodeException> failures) {
+        return new IkDictUpdateResponse(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected NodeRequest newNodeRequest(String nodeId, IkDictUpdateRequest request) {
+        return new NodeRequest(nodeId, request);
+    }
+
+    @Override
+    protected IkDictUpdateNodeResponse newNodeResponse() {
+        return new IkDictUpdateNodeResponse();
+    }
+
+    @Override
+    protected IkDictUpdateNodeResponse nodeOperation(NodeRequest nodeRequest) {
+        IkDictUpdateRequest request = nodeRequest.request;
+        Dictionary.ApplyResult result;
+        try {
+            // journaled only if no ik analyzer was created on this node yet, replayed when the dictionary loads
+            result = Dictionary.push(request.stopWords(), request.add(), request.disable());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new IkDictUpdateNodeResponse(clusterService.localNode(), result.getAdded(), result.getRemoved());
+    }
+
+    public static class NodeRequest extends BaseNodeRequest {
+
+        private IkDictUpdateRequest request;
+
+        public NodeRequest() {
+        }
+
+        NodeRequest(String nodeId, IkDictUpdateRequest request) {
+            super(nodeId);
+            this.request = request;
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            super.readFrom(in);
+            request = new IkDictUpdateRequest();
+            request.readFrom(in);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            request.writeTo(out);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.elasticsearch.plugin.analysis.ik.action;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+import org.wltea.analyzer.core.AnalysisStats;
+import org.wltea.analyzer.dic.Dictionary;
+
+import java.util.List;
+
+public class TransportIkStatsAction extends TransportNodesAction<IkStatsRequest, IkStatsResponse,
+        TransportIkStatsAction.NodeRequest, IkNodeStats> {
+
+    @Inject
+    public TransportIkStatsAction(Settings settings, ThreadPool threadPool, ClusterService clusterService,
+                                  TransportService transportService, ActionFilters actionFilters,
+                                  IndexNameExpressionResolver indexNameExpressionResolver) {
+        super(settings, IkStatsAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                indexNameExpressionResolver, IkStatsRequest::new, NodeRequest::new, ThreadPool.Names.MANAGEMENT,
+                IkNodeStats.class);
+    }
+
+    @Override
+    protected IkStatsResponse newResponse(IkStatsRequest request, List<IkNodeStats> responses,
+                                          List<FailedNodeException> failures) {
+        return new IkStatsResponse(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected NodeRequest newNodeRequest(String nodeId, IkStatsRequest request) {
+        return new NodeRequest(nodeId);
+    }
+
+    @Override
+    protected IkNodeStats newNodeResponse() {
+        return new IkNodeStats();
+    }
+
+    @Override
+    protected IkNodeStats nodeOperation(NodeRequest request) {
+        return new IkNodeStats(clusterService.localNode(), AnalysisStats.getInstance(), Dictionary.getRefreshHealth());
+    }
+
+    public static class NodeRequest extends BaseNodeRequest {
+
+        public NodeRequest() {
+        }
+
+        NodeRequest(String nodeId) {
+            super(nodeId);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.elasticsearch.plugin.analysis.ik.rest;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.plugin.analysis.ik.action.IkDictUpdateAction;
+import org.elasticsearch.plugin.analysis.ik.action.IkDictUpdateRequest;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestActions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+/**
+ * Adds or disables words on every node right away and persists them, without waiting for the
+ * next dictionary refresh.
+ *
+ * <pre>
+ * POST /_ik/dictionary/_update
+ * {
+ *   "dictionary": "main",
+ *   "add": ["新词"],
+ *   "disable": ["旧词"]
+ * }
+ * </pre>
+ */
+public class RestIkDictUpdateAction extends BaseRestHandler {
+
+    public RestIkDictUpdateAction(Settings settings, RestController controller) {
+        super(settings);
+        controller.registerHandler(POST, "/_ik/dictionary/_update", this);
+    }
+
+    @Override
+    public String getName() {
+        return "ik_dictionary_update_action";
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) throws IOException {
+        IkDictUpdateRequest updateRequest = new IkDictUpdateRequest();
+        try (XContentParser parser = request.contentParser()) {
+            Map<String, Object> body = parser.map();
+            for (String key : body.keySet()) {
+                if ("dictionary".equals(key) == false && "add".equals(key) == false && "disable".equals(key) == false) {
+                    throw new IllegalArgumentException("unknown field [" + key + "]");
+                }
+            }
+            Object dictionary = body.getOrDefault("dictionary", "main");
+            if ("stopwords".equals(dictionary)) {
+                updateRequest.stopWords(true);
+            } else if ("main".equals(dictionary) == false) {
+                throw new IllegalArgumentException("[dictionary] must be one of [main, stopwords], got [" + dictionary + "]");
+            }
+            updateRequest.add(words(body, "add"));
+            updateRequest.disable(words(body, "disable"));
+        }
+        updateRequest.timeout(request.param("timeout"));
+        return channel -> client.executeLocally(IkDictUpdateAction.INSTANCE, updateRequest,
+                new RestActions.NodesResponseRestListener<>(channel));
+    }
+
+    private static List<String> words(Map<String, Object> body, String field) {
+        Object value = body.get(field);
+        List<String> words = new ArrayList<>();
+        if (value == null) {
+            return words;
+        }
+        if (value instanceof List == false) {
+            throw new IllegalArgumentException("[" + field + "] must be an array of words");
+        }
+        for (Object word : (List<?>) value) {
+            words.add(word == null ? null : word.toString());
+        }
+        return words;
+    }
+}
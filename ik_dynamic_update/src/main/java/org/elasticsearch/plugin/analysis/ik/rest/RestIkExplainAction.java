@@ -0,0 +1,191 @@
+package org.elasticsearch.plugin.analysis.ik.rest;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.wltea.analyzer.cfg.Configuration;
+import org.wltea.analyzer.core.AnalyzeProfile;
+import org.wltea.analyzer.core.IKSegmenter;
+import org.wltea.analyzer.core.Lexeme;
+import org.wltea.analyzer.dic.Dictionary;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+/**
+ * Segments a text with ik_smart or ik_max_word and reports the tokens together with
+ * per-stage timings and counts, to find inputs that make the segmenter slow.
+ *
+ * <pre>
+ * GET /_ik/explain
+ * {
+ *   "text": "中华人民共和国国歌",
+ *   "mode": "ik_smart"
+ * }
+ * </pre>
+ */
+public class RestIkExplainAction extends BaseRestHandler {
+
+    public RestIkExplainAction(Settings settings, RestController controller) {
+        super(settings);
+        controller.registerHandler(GET, "/_ik/explain", this);
+        controller.registerHandler(POST, "/_ik/explain", this);
+    }
+
+    @Override
+    public String getName() {
+        return "ik_explain_action";
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) throws IOException {
+        String text = request.param("text");
+        String mode = request.param("mode", "ik_max_word");
+        boolean lowercase = request.paramAsBoolean("enable_lowercase", true);
+        if (request.hasContentOrSourceParam()) {
+            try (XContentParser parser = request.contentOrSourceParamParser()) {
+                Map<String, Object> body = parser.map();
+                if (body.get("text") != null) {
+                    text = body.get("text").toString();
+                }
+                if (body.get("mode") != null) {
+                    mode = body.get("mode").toString();
+                }
+                if (body.get("enable_lowercase") != null) {
+                    lowercase = Boolean.parseBoolean(body.get("enable_lowercase").toString());
+                }
+            }
+        }
+        if (text == null) {
+            throw new IllegalArgumentException("[text] is required");
+        }
+        final boolean useSmart;
+        if ("ik_smart".equals(mode)) {
+            useSmart = true;
+        } else if ("ik_max_word".equals(mode)) {
+            useSmart = false;
+        } else {
+            throw new IllegalArgumentException("[mode] must be one of [ik_smart, ik_max_word], got [" + mode + "]");
+        }
+
+        if (!Dictionary.isInitialized()) {
+            // explain must not load the dictionaries (and start remote refreshes) on its own
+            throw new IllegalStateException("the ik dictionary is not loaded on this node yet, create an index using ik first");
+        }
+
+        final String source = text;
+        final String analyzer = mode;
+        final boolean enableLowercase = lowercase;
+        return channel -> client.threadPool().executor(ThreadPool.Names.ANALYZE).execute(() -> {
+            try {
+                Configuration configuration = Dictionary.getSingleton().getConfiguration().withAnalysis(useSmart, enableLowercase);
+                IKSegmenter segmenter = new IKSegmenter(new StringReader(source), configuration, true);
+                AnalyzeProfile profile = segmenter.getProfile();
+
+                List<Lexeme> lexemes = new ArrayList<>();
+                long start = System.nanoTime();
+                Lexeme lexeme;
+                while ((lexeme = segmenter.next()) != null) {
+                    lexemes.add(lexeme);
+                }
+                long took = System.nanoTime() - start;
+
+                XContentBuilder builder = channel.newBuilder();
+                builder.startObject();
+                builder.field("mode", analyzer);
+                builder.field("text_length", source.length());
+                builder.field("took_in_nanos", took);
+                buildTokens(builder, lexemes);
+                buildProfile(builder, profile);
+                builder.endObject();
+                channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+            } catch (Exception e) {
+                try {
+                    channel.sendResponse(new BytesRestResponse(channel, e));
+                } catch (IOException inner) {
+                    inner.addSuppressed(e);
+                    logger.error("failed to send ik explain failure response", inner);
+                }
+            }
+        });
+    }
+
+    private static void buildTokens(XContentBuilder builder, List<Lexeme> lexemes) throws IOException {
+        builder.startArray("tokens");
+        int position = 0;
+        for (Lexeme lexeme : lexemes) {
+            builder.startObject();
+            builder.field("token", lexeme.getLexemeText());
+            builder.field("start_offset", lexeme.getBeginPosition());
+            builder.field("end_offset", lexeme.getEndPosition());
+            builder.field("type", lexeme.getLexemeTypeString());
+            builder.field("position", position++);
+            builder.endObject();
+        }
+        builder.endArray();
+    }
+
+    private static void buildProfile(XContentBuilder builder, AnalyzeProfile profile) throws IOException {
+        builder.startObject("profile");
+
+        builder.startObject("fill_buffer");
+        builder.field("time_in_nanos", profile.getFillBufferNanos());
+        builder.field("count", profile.getFillBufferCalls());
+        builder.field("chars", profile.getCharsBuffered());
+        builder.endObject();
+
+        builder.startArray("segmenters");
+        for (int i = 0; i < profile.getSegmenterCount(); i++) {
+            builder.startObject();
+            builder.field("name", profile.getSegmenterName(i));
+            builder.field("time_in_nanos", profile.getSegmenterNanos(i));
+            builder.field("lexemes", profile.getSegmenterLexemes(i));
+            builder.endObject();
+        }
+        builder.endArray();
+
+        builder.startObject("arbitrator");
+        builder.field("time_in_nanos", profile.getArbitratorNanos());
+        builder.field("count", profile.getArbitratorCalls());
+        builder.field("cross_paths", profile.getCrossPaths());
+        builder.field("ambiguous_paths", profile.getAmbiguousPaths());
+        builder.field("candidates", profile.getCandidatesEvaluated());
+        builder.startArray("paths");
+        for (AnalyzeProfile.PathDetail path : profile.getPathDetails()) {
+            builder.startObject();
+            builder.field("start_offset", path.getBegin());
+            builder.field("end_offset", path.getEnd());
+            builder.field("lexemes", path.getLexemes());
+            builder.field("candidates", path.getCandidates());
+            builder.endObject();
+        }
+        builder.endArray();
+        builder.endObject();
+
+        builder.startObject("output");
+        builder.field("time_in_nanos", profile.getOutputNanos());
+        builder.field("count", profile.getOutputCalls());
+        builder.endObject();
+
+        builder.startObject("stopword_filter");
+        builder.field("time_in_nanos", profile.getStopWordNanos());
+        builder.field("checked", profile.getStopWordChecked());
+        builder.field("dropped", profile.getStopWordDropped());
+        builder.endObject();
+
+        builder.endObject();
+    }
+}
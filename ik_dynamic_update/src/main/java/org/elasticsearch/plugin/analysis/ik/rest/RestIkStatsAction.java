@@ -0,0 +1,47 @@
+package org.elasticsearch.plugin.analysis.ik.rest;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.plugin.analysis.ik.action.IkStatsAction;
+import org.elasticsearch.plugin.analysis.ik.action.IkStatsRequest;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestActions;
+
+import java.io.IOException;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+
+/**
+ * Reports the node-level IK analysis counters: tokenizers created, chars processed,
+ * tokens emitted by type, stopwords dropped, arbitrations and analysis time, per mode.
+ *
+ * <pre>
+ * GET /_ik/stats
+ * GET /_ik/stats/{nodeId}
+ * </pre>
+ */
+public class RestIkStatsAction extends BaseRestHandler {
+
+    public RestIkStatsAction(Settings settings, RestController controller) {
+        super(settings);
+        controller.registerHandler(GET, "/_ik/stats", this);
+        controller.registerHandler(GET, "/_ik/stats/{nodeId}", this);
+    }
+
+    @Override
+    public String getName() {
+        return "ik_stats_action";
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) throws IOException {
+        String[] nodesIds = Strings.splitStringByCommaToArray(request.param("nodeId"));
+        IkStatsRequest statsRequest = new IkStatsRequest(nodesIds);
+        statsRequest.timeout(request.param("timeout"));
+        return channel -> client.executeLocally(IkStatsAction.INSTANCE, statsRequest,
+                new RestActions.NodesResponseRestListener<>(channel));
+    }
+}
@@ -41,6 +41,21 @@ public class Configuration {
 
 	}
 
+	private Configuration(Configuration other , boolean useSmart , boolean enableLowercase) {
+		this.environment = other.environment;
+		this.settings = other.settings;
+		this.enableRemoteDict = other.enableRemoteDict;
+		this.useSmart = useSmart;
+		this.enableLowercase = enableLowercase;
+	}
+
+	/**
+	 * 复制一份分词参数不同的配置，共用已加载的词典，不会再次初始化词典
+	 */
+	public Configuration withAnalysis(boolean useSmart , boolean enableLowercase) {
+		return new Configuration(this, useSmart, enableLowercase);
+	}
+
 	public Path getConfigInPluginDir() {
 		return PathUtils
 				.get(new File(AnalysisIkPlugin.class.getProtectionDomain().getCodeSource().getLocation().getPath())
@@ -0,0 +1,181 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wltea.analyzer.core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 节点级分词统计，单例
+ * 各计数器使用LongAdder分段累加，分词线程只在每篇文档结束时汇总一次
+ */
+public final class AnalysisStats {
+
+	//词元类型，与Lexeme中的类型常量一一对应
+	private static final int[] LEXEME_TYPES = {
+			Lexeme.TYPE_UNKNOWN, Lexeme.TYPE_ENGLISH, Lexeme.TYPE_ARABIC, Lexeme.TYPE_LETTER,
+			Lexeme.TYPE_CNWORD, Lexeme.TYPE_CNCHAR, Lexeme.TYPE_OTHER_CJK, Lexeme.TYPE_CNUM,
+			Lexeme.TYPE_COUNT, Lexeme.TYPE_CQUAN};
+
+	//须在LEXEME_TYPES之后初始化，ModeStats按其长度建计数数组
+	private static final AnalysisStats INSTANCE = new AnalysisStats();
+
+	private final ModeStats smart = new ModeStats();
+
+	private final ModeStats maxWord = new ModeStats();
+
+	private AnalysisStats(){
+	}
+
+	public static AnalysisStats getInstance(){
+		return INSTANCE;
+	}
+
+	/**
+	 * 获取指定模式的统计
+	 * @param useSmart true为ik_smart，false为ik_max_word
+	 * @return ModeStats
+	 */
+	public ModeStats getModeStats(boolean useSmart){
+		return useSmart ? smart : maxWord;
+	}
+
+	/**
+	 * 词元类型数
+	 */
+	public static int typeCount(){
+		return LEXEME_TYPES.length;
+	}
+
+	/**
+	 * 第index个词元类型的标示字符串
+	 */
+	public static String typeName(int index){
+		Lexeme l = new Lexeme(0 , 0 , 0 , LEXEME_TYPES[index]);
+		return l.getLexemeTypeString();
+	}
+
+	/**
+	 * 词元类型到计数下标的映射
+	 */
+	static int typeIndex(int lexemeType){
+		switch(lexemeType){
+		case Lexeme.TYPE_ENGLISH :
+			return 1;
+		case Lexeme.TYPE_ARABIC :
+			return 2;
+		case Lexeme.TYPE_LETTER :
+			return 3;
+		case Lexeme.TYPE_CNWORD :
+			return 4;
+		case Lexeme.TYPE_CNCHAR :
+			return 5;
+		case Lexeme.TYPE_OTHER_CJK :
+			return 6;
+		case Lexeme.TYPE_CNUM :
+			return 7;
+		case Lexeme.TYPE_COUNT :
+			return 8;
+		case Lexeme.TYPE_CQUAN :
+			return 9;
+		default :
+			return 0;
+		}
+	}
+
+	/**
+	 * 单个分词模式的统计
+	 */
+	public static final class ModeStats {
+
+		private final LongAdder tokenizersCreated = new LongAdder();
+		private final LongAdder documents = new LongAdder();
+		private final LongAdder charsProcessed = new LongAdder();
+		private final LongAdder analysisNanos = new LongAdder();
+		private final LongAdder stopWordsDropped = new LongAdder();
+		private final LongAdder arbitrations = new LongAdder();
+		private final LongAdder ambiguities = new LongAdder();
+		private final LongAdder[] tokens = new LongAdder[LEXEME_TYPES.length];
+
+		private ModeStats(){
+			for(int i = 0 ; i < tokens.length ; i++){
+				tokens[i] = new LongAdder();
+			}
+		}
+
+		void onTokenizerCreated(){
+			tokenizersCreated.increment();
+		}
+
+		/**
+		 * 汇总一篇文档的分词计数
+		 */
+		void add(long chars , long nanos , long[] tokenCounts , long stopWords , long arbitrated , long ambiguous){
+			documents.increment();
+			charsProcessed.add(chars);
+			analysisNanos.add(nanos);
+			for(int i = 0 ; i < tokenCounts.length ; i++){
+				if(tokenCounts[i] > 0){
+					tokens[i].add(tokenCounts[i]);
+				}
+			}
+			if(stopWords > 0){
+				stopWordsDropped.add(stopWords);
+			}
+			if(arbitrated > 0){
+				arbitrations.add(arbitrated);
+			}
+			if(ambiguous > 0){
+				ambiguities.add(ambiguous);
+			}
+		}
+
+		public long getTokenizersCreated() {
+			return tokenizersCreated.sum();
+		}
+
+		public long getDocuments() {
+			return documents.sum();
+		}
+
+		public long getCharsProcessed() {
+			return charsProcessed.sum();
+		}
+
+		public long getAnalysisNanos() {
+			return analysisNanos.sum();
+		}
+
+		public long getStopWordsDropped() {
+			return stopWordsDropped.sum();
+		}
+
+		public long getArbitrations() {
+			return arbitrations.sum();
+		}
+
+		public long getAmbiguities() {
+			return ambiguities.sum();
+		}
+
+		public long getTokens(int typeIndex) {
+			return tokens[typeIndex].sum();
+		}
+	}
+}
@@ -75,6 +75,10 @@ class AnalyzeContext {
     private LinkedList<Lexeme> results;
 	//分词器配置项
 	private Configuration cfg;
+	//分词剖析记录，仅explain时非空
+	private AnalyzeProfile profile;
+	//本地分词计数
+	private final AnalyzeCounter counter = new AnalyzeCounter();
 
     public AnalyzeContext(Configuration configuration){
         this.cfg = configuration;
@@ -105,6 +109,18 @@ class AnalyzeContext {
     int getBufferOffset(){
     	return this.buffOffset;
     }
+
+    AnalyzeProfile getProfile(){
+    	return this.profile;
+    }
+
+    void setProfile(AnalyzeProfile profile){
+    	this.profile = profile;
+    }
+
+    AnalyzeCounter getCounter(){
+    	return this.counter;
+    }
 	
     /**
      * 根据context的上下文情况，填充segmentBuff 
@@ -117,6 +133,9 @@ class AnalyzeContext {
     	if(this.buffOffset == 0){
     		//首次读取reader
     		readCount = reader.read(segmentBuff);
+    		if(readCount > 0){
+    			this.counter.chars += readCount;
+    		}
     	}else{
     		int offset = this.available - this.cursor;
     		if(offset > 0){
@@ -125,7 +144,11 @@ class AnalyzeContext {
     			readCount = offset;
     		}
     		//继续读取reader ，以onceReadIn - onceAnalyzed为起始位置，继续填充segmentBuff剩余的部分
-    		readCount += reader.read(this.segmentBuff , offset , BUFF_SIZE - offset);
+    		int read = reader.read(this.segmentBuff , offset , BUFF_SIZE - offset);
+    		if(read > 0){
+    			this.counter.chars += read;
+    		}
+    		readCount += read;
     	}            	
     	//记录最后一次从Reader中读入的可用字符长度
     	this.available = readCount;
@@ -313,10 +336,12 @@ class AnalyzeContext {
 		while(result != null){
     		//数量词合并
     		this.compound(result);
-    		if(Dictionary.getSingleton().isStopWord(this.segmentBuff ,  result.getBegin() , result.getLength())){
+    		if(this.isStopWord(result)){
        			//是停止词继续取列表的下一个
+    			this.counter.stopWords++;
     			result = this.results.pollFirst(); 				
     		}else{
+    			this.counter.countToken(result);
 	 			//不是停止词, 生成lexeme的词元文本,输出
 	    		result.setLexemeText(String.valueOf(segmentBuff , result.getBegin() , result.getLength()));
 	    		break;
@@ -325,6 +350,21 @@ class AnalyzeContext {
 		return result;
 	}
 	
+	/**
+	 * 判断词元是否为停止词
+	 * @param lexeme
+	 * @return
+	 */
+	private boolean isStopWord(Lexeme lexeme){
+		if(this.profile == null){
+			return Dictionary.getSingleton().isStopWord(this.segmentBuff , lexeme.getBegin() , lexeme.getLength());
+		}
+		long start = System.nanoTime();
+		boolean stopWord = Dictionary.getSingleton().isStopWord(this.segmentBuff , lexeme.getBegin() , lexeme.getLength());
+		this.profile.recordStopWord(System.nanoTime() - start, stopWord);
+		return stopWord;
+	}
+
 	/**
 	 * 重置分词上下文状态
 	 */
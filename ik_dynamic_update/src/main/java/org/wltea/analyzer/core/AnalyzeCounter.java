@@ -0,0 +1,69 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wltea.analyzer.core;
+
+/**
+ * 单个分词器的本地计数
+ * 分词过程中只做普通的long累加，文档结束时一次性汇总到AnalysisStats
+ */
+final class AnalyzeCounter {
+
+	long chars;
+	long nanos;
+	long stopWords;
+	long arbitrations;
+	long ambiguities;
+	final long[] tokens = new long[AnalysisStats.typeCount()];
+
+	void countToken(Lexeme lexeme){
+		this.tokens[AnalysisStats.typeIndex(lexeme.getLexemeType())]++;
+	}
+
+	long tokenCount(){
+		long total = 0;
+		for(long count : this.tokens){
+			total += count;
+		}
+		return total;
+	}
+
+	boolean isEmpty(){
+		return this.chars == 0 && this.nanos == 0;
+	}
+
+	/**
+	 * 汇总到节点统计并清零
+	 */
+	void flushTo(AnalysisStats.ModeStats stats){
+		stats.add(this.chars , this.nanos , this.tokens , this.stopWords , this.arbitrations , this.ambiguities);
+		this.clear();
+	}
+
+	void clear(){
+		this.chars = 0;
+		this.nanos = 0;
+		this.stopWords = 0;
+		this.arbitrations = 0;
+		this.ambiguities = 0;
+		for(int i = 0 ; i < this.tokens.length ; i++){
+			this.tokens[i] = 0;
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wltea.analyzer.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分词过程剖析记录
+ * 仅在explain/profile时挂到IKSegmenter上，正常分词时为null，不产生额外开销
+ */
+public final class AnalyzeProfile {
+
+	//单次剖析最多记录的歧义路径明细数，避免超长文本撑爆响应
+	private static final int MAX_PATH_DETAILS = 1000;
+
+	//填充缓冲区
+	private long fillBufferNanos;
+	private long fillBufferCalls;
+	private long charsBuffered;
+
+	//子分词器
+	private final String[] segmenterNames;
+	private final long[] segmenterNanos;
+	private final long[] segmenterLexemes;
+
+	//歧义裁决
+	private long arbitratorNanos;
+	private long arbitratorCalls;
+	private long crossPaths;
+	private long ambiguousPaths;
+	private long candidatesEvaluated;
+	private final List<PathDetail> pathDetails = new ArrayList<PathDetail>();
+
+	//结果输出
+	private long outputNanos;
+	private long outputCalls;
+
+	//停止词过滤
+	private long stopWordNanos;
+	private long stopWordChecked;
+	private long stopWordDropped;
+
+	AnalyzeProfile(List<ISegmenter> segmenters){
+		int size = segmenters.size();
+		this.segmenterNames = new String[size];
+		this.segmenterNanos = new long[size];
+		this.segmenterLexemes = new long[size];
+		for(int i = 0 ; i < size ; i++){
+			this.segmenterNames[i] = segmenters.get(i).getClass().getSimpleName();
+		}
+	}
+
+	/**
+	 * @param readCount 本次从reader新读入的字符数
+	 */
+	void recordFillBuffer(long nanos , int readCount){
+		this.fillBufferNanos += nanos;
+		this.fillBufferCalls++;
+		if(readCount > 0){
+			this.charsBuffered += readCount;
+		}
+	}
+
+	void recordSegmenter(int index , long nanos , int lexemes){
+		this.segmenterNanos[index] += nanos;
+		this.segmenterLexemes[index] += lexemes;
+	}
+
+	void recordArbitrator(long nanos){
+		this.arbitratorNanos += nanos;
+		this.arbitratorCalls++;
+	}
+
+	/**
+	 * 记录一条交叉路径
+	 * @param bufferOffset 当前缓冲区相对于文本起始的位移
+	 * @param path 交叉路径
+	 * @param candidates 裁决时生成并评估的候选方案数（去重前），未做歧义处理时为0
+	 */
+	void recordCrossPath(int bufferOffset , LexemePath path , int candidates){
+		if(path.isEmpty()){
+			return;
+		}
+		this.crossPaths++;
+		if(candidates > 0){
+			this.ambiguousPaths++;
+			this.candidatesEvaluated += candidates;
+		}
+		if(this.pathDetails.size() < MAX_PATH_DETAILS){
+			this.pathDetails.add(new PathDetail(bufferOffset + path.getPathBegin() , bufferOffset + path.getPathEnd() , path.size() , candidates));
+		}
+	}
+
+	void recordOutput(long nanos){
+		this.outputNanos += nanos;
+		this.outputCalls++;
+	}
+
+	void recordStopWord(long nanos , boolean dropped){
+		this.stopWordNanos += nanos;
+		this.stopWordChecked++;
+		if(dropped){
+			this.stopWordDropped++;
+		}
+	}
+
+	public long getFillBufferNanos() {
+		return fillBufferNanos;
+	}
+
+	public long getFillBufferCalls() {
+		return fillBufferCalls;
+	}
+
+	public long getCharsBuffered() {
+		return charsBuffered;
+	}
+
+	public int getSegmenterCount() {
+		return segmenterNames.length;
+	}
+
+	public String getSegmenterName(int index) {
+		return segmenterNames[index];
+	}
+
+	public long getSegmenterNanos(int index) {
+		return segmenterNanos[index];
+	}
+
+	public long getSegmenterLexemes(int index) {
+		return segmenterLexemes[index];
+	}
+
+	public long getArbitratorNanos() {
+		return arbitratorNanos;
+	}
+
+	public long getArbitratorCalls() {
+		return arbitratorCalls;
+	}
+
+	public long getCrossPaths() {
+		return crossPaths;
+	}
+
+	public long getAmbiguousPaths() {
+		return ambiguousPaths;
+	}
+
+	public long getCandidatesEvaluated() {
+		return candidatesEvaluated;
+	}
+
+	public List<PathDetail> getPathDetails() {
+		return Collections.unmodifiableList(pathDetails);
+	}
+
+	public long getOutputNanos() {
+		return outputNanos;
+	}
+
+	public long getOutputCalls() {
+		return outputCalls;
+	}
+
+	public long getStopWordNanos() {
+		return stopWordNanos;
+	}
+
+	public long getStopWordChecked() {
+		return stopWordChecked;
+	}
+
+	public long getStopWordDropped() {
+		return stopWordDropped;
+	}
+
+	/**
+	 * 交叉路径明细
+	 */
+	public static final class PathDetail {
+		//路径在文本中的起止位置
+		private final int begin;
+		private final int end;
+		//路径内词元数
+		private final int lexemes;
+		//歧义裁决评估的候选方案数
+		private final int candidates;
+
+		PathDetail(int begin , int end , int lexemes , int candidates){
+			this.begin = begin;
+			this.end = end;
+			this.lexemes = lexemes;
+			this.candidates = candidates;
+		}
+
+		public int getBegin() {
+			return begin;
+		}
+
+		public int getEnd() {
+			return end;
+		}
+
+		public int getLexemes() {
+			return lexemes;
+		}
+
+		public int getCandidates() {
+			return candidates;
+		}
+	}
+}
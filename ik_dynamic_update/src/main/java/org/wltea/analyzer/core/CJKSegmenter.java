@@ -62,6 +62,7 @@ class CJKSegmenter implements ISegmenter {
 					if(hit.isMatch()){
 						//输出当前的词
 						Lexeme newLexeme = new Lexeme(context.getBufferOffset() , hit.getBegin() , context.getCursor() - hit.getBegin() + 1 , Lexeme.TYPE_CNWORD);
+						newLexeme.setSynonymTerm(hit.isSynonymTerm());
 						context.addLexeme(newLexeme);
 						
 						if(!hit.isPrefix()){//不是词前缀，hit不需要继续匹配，移除
@@ -81,6 +82,7 @@ class CJKSegmenter implements ISegmenter {
 			if(singleCharHit.isMatch()){//首字成词
 				//输出当前的词
 				Lexeme newLexeme = new Lexeme(context.getBufferOffset() , context.getCursor() , 1 , Lexeme.TYPE_CNWORD);
+				newLexeme.setSynonymTerm(singleCharHit.isSynonymTerm());
 				context.addLexeme(newLexeme);
 
 				//同时也是词前缀
@@ -32,6 +32,9 @@ import java.util.TreeSet;
  */
 class IKArbitrator {
 
+	//最近一次歧义识别生成的候选方案数（含去重前的重复方案）
+	private int candidates;
+
 	IKArbitrator(){
 		
 	}
@@ -42,6 +45,7 @@ class IKArbitrator {
 	 * @param useSmart
 	 */
 	void process(AnalyzeContext context , boolean useSmart){
+		context.getCounter().arbitrations++;
 		QuickSortSet orgLexemes = context.getOrgLexemes();
 		Lexeme orgLexeme = orgLexemes.pollFirst();
 		
@@ -49,17 +53,7 @@ class IKArbitrator {
 		while(orgLexeme != null){
 			if(!crossPath.addCrossLexeme(orgLexeme)){
 				//找到与crossPath不相交的下一个crossPath	
-				if(crossPath.size() == 1 || !useSmart){
-					//crossPath没有歧义 或者 不做歧义处理
-					//直接输出当前crossPath
-					context.addLexemePath(crossPath);
-				}else{
-					//对当前的crossPath进行歧义处理
-					QuickSortSet.Cell headCell = crossPath.getHead();
-					LexemePath judgeResult = this.judge(headCell, crossPath.getPathLength());
-					//输出歧义处理结果judgeResult
-					context.addLexemePath(judgeResult);
-				}
+				this.outputCrossPath(context, crossPath, useSmart);
 				
 				//把orgLexeme加入新的crossPath中
 				crossPath = new LexemePath();
@@ -70,16 +64,36 @@ class IKArbitrator {
 		
 		
 		//处理最后的path
+		this.outputCrossPath(context, crossPath, useSmart);
+	}
+
+	/**
+	 * 输出一条交叉路径，必要时先做歧义处理
+	 * @param context
+	 * @param crossPath
+	 * @param useSmart
+	 */
+	private void outputCrossPath(AnalyzeContext context , LexemePath crossPath , boolean useSmart){
+		AnalyzeProfile profile = context.getProfile();
 		if(crossPath.size() == 1 || !useSmart){
 			//crossPath没有歧义 或者 不做歧义处理
 			//直接输出当前crossPath
+			if(profile != null){
+				profile.recordCrossPath(context.getBufferOffset(), crossPath, 0);
+			}
 			context.addLexemePath(crossPath);
 		}else{
 			//对当前的crossPath进行歧义处理
 			QuickSortSet.Cell headCell = crossPath.getHead();
-			LexemePath judgeResult = this.judge(headCell, crossPath.getPathLength());
+			TreeSet<LexemePath> pathOptions = this.judge(headCell, crossPath.getPathLength());
+			if(pathOptions.size() > 1){
+				context.getCounter().ambiguities++;
+			}
+			if(profile != null){
+				profile.recordCrossPath(context.getBufferOffset(), crossPath, this.candidates);
+			}
 			//输出歧义处理结果judgeResult
-			context.addLexemePath(judgeResult);
+			context.addLexemePath(pathOptions.first());
 		}
 	}
 	
@@ -87,9 +101,9 @@ class IKArbitrator {
 	 * 歧义识别
 	 * @param lexemeCell 歧义路径链表头
 	 * @param fullTextLength 歧义路径文本长度
-	 * @return
+	 * @return 候选路径集合，first()为最优方案
 	 */
-	private LexemePath judge(QuickSortSet.Cell lexemeCell , int fullTextLength){
+	private TreeSet<LexemePath> judge(QuickSortSet.Cell lexemeCell , int fullTextLength){
 		//候选路径集合
 		TreeSet<LexemePath> pathOptions = new TreeSet<LexemePath>();
 		//候选结果路径
@@ -100,6 +114,7 @@ class IKArbitrator {
 		
 		//当前词元链并非最理想的，加入候选路径集合
 		pathOptions.add(option.copy());
+		this.candidates = 1;
 		
 		//存在歧义词，处理
 		QuickSortSet.Cell c = null;
@@ -110,10 +125,10 @@ class IKArbitrator {
 			//从歧义词位置开始，递归，生成可选方案
 			this.forwardPath(c , option);
 			pathOptions.add(option.copy());
+			this.candidates++;
 		}
 		
-		//返回集合中的最优方案
-		return pathOptions.first();
+		return pathOptions;
 
 	}
 	
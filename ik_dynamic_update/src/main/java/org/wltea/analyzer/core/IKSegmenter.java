@@ -24,6 +24,7 @@
 package org.wltea.analyzer.core;
 
 import org.wltea.analyzer.cfg.Configuration;
+import org.wltea.analyzer.jfr.IkEvents;
 
 import java.io.IOException;
 import java.io.Reader;
@@ -45,6 +46,8 @@ public final class IKSegmenter {
 	//分词歧义裁决器
 	private IKArbitrator arbitrator;
     private  Configuration configuration;
+	//分词剖析记录，仅explain时非空
+	private AnalyzeProfile profile;
 	
 
 	/**
@@ -52,22 +55,38 @@ public final class IKSegmenter {
 	 * @param input
      */
 	public IKSegmenter(Reader input ,Configuration configuration){
+		this(input, configuration, false);
+	}
+
+	/**
+	 * IK分词器构造函数
+	 * @param input
+	 * @param profile 是否开启分词剖析，记录各阶段耗时及计数
+	 * 仅用于explain，开启后分词速度会明显下降，且不计入节点的分词统计
+     */
+	public IKSegmenter(Reader input ,Configuration configuration , boolean profile){
 		this.input = input;
         this.configuration = configuration;
-        this.init();
+        this.init(profile);
 	}
 
 	
 	/**
 	 * 初始化
 	 */
-	private void init(){
+	private void init(boolean profile){
 		//初始化分词上下文
 		this.context = new AnalyzeContext(configuration);
 		//加载子分词器
 		this.segmenters = this.loadSegmenters();
 		//加载歧义裁决器
 		this.arbitrator = new IKArbitrator();
+		if(profile){
+			this.profile = new AnalyzeProfile(this.segmenters);
+			this.context.setProfile(this.profile);
+		}else{
+			AnalysisStats.getInstance().getModeStats(configuration.isUseSmart()).onTokenizerCreated();
+		}
 	}
 	
 	/**
@@ -85,6 +104,13 @@ public final class IKSegmenter {
 		return segmenters;
 	}
 	
+	/**
+	 * @return AnalyzeProfile 剖析记录，未开启分词剖析时为null
+	 */
+	public AnalyzeProfile getProfile(){
+		return this.profile;
+	}
+
 	/**
 	 * 分词，获取下一个词元
 	 * @return Lexeme 词元对象
@@ -98,9 +124,11 @@ public final class IKSegmenter {
 			 * 如果reader是分次读入buffer的，那么buffer要  进行移位处理
 			 * 移位处理上次读入的但未处理的数据
 			 */
-			int available = context.fillBuffer(this.input);
+			long bufferStart = System.nanoTime();
+			int available = this.fillBuffer();
 			if(available <= 0){
 				//reader已经读完
+				this.flushCounter();
 				context.reset();
 				return null;
 				
@@ -109,8 +137,12 @@ public final class IKSegmenter {
 				context.initCursor();
 				do{
         			//遍历子分词器
-        			for(ISegmenter segmenter : segmenters){
-        				segmenter.analyze(context);
+        			if(profile == null){
+        				for(ISegmenter segmenter : segmenters){
+        					segmenter.analyze(context);
+        				}
+        			}else{
+        				this.profileSegmenters();
         			}
         			//字符缓冲区接近读完，需要读入新的字符
         			if(context.needRefillBuffer()){
@@ -123,22 +155,78 @@ public final class IKSegmenter {
 					segmenter.reset();
 				}
 			}
-			//对分词进行歧义处理
-			this.arbitrator.process(context, configuration.isUseSmart());
-			//将分词结果输出到结果集，并处理未切分的单个CJK字符
-			context.outputToResult();
+			if(profile == null){
+				//对分词进行歧义处理
+				this.arbitrator.process(context, configuration.isUseSmart());
+				//将分词结果输出到结果集，并处理未切分的单个CJK字符
+				context.outputToResult();
+			}else{
+				long start = System.nanoTime();
+				this.arbitrator.process(context, configuration.isUseSmart());
+				long arbitrated = System.nanoTime();
+				context.outputToResult();
+				profile.recordArbitrator(arbitrated - start);
+				profile.recordOutput(System.nanoTime() - arbitrated);
+			}
 			//记录本次分词的缓冲区位移
 			context.markBufferOffset();			
+			context.getCounter().nanos += System.nanoTime() - bufferStart;
 		}
 		return l;
 	}
 
+	/**
+	 * 将本文档的计数汇总到节点统计
+	 * explain剖析的分词不计入
+	 */
+	private void flushCounter(){
+		AnalyzeCounter counter = context.getCounter();
+		if(profile != null || counter.isEmpty()){
+			counter.clear();
+			return;
+		}
+		boolean useSmart = configuration.isUseSmart();
+		IkEvents.segmentation(useSmart ? "ik_smart" : "ik_max_word" , counter.chars , counter.tokenCount() , counter.nanos);
+		counter.flushTo(AnalysisStats.getInstance().getModeStats(useSmart));
+	}
+
+	/**
+	 * 填充缓冲区
+	 * @return 可处理的字串长度
+	 * @throws java.io.IOException
+	 */
+	private int fillBuffer() throws IOException{
+		if(profile == null){
+			return context.fillBuffer(this.input);
+		}
+		//只统计本次从reader新读入的字符，上次未处理完而搬到缓冲区头部的字符不重复计数
+		long charsBefore = context.getCounter().chars;
+		long start = System.nanoTime();
+		int available = context.fillBuffer(this.input);
+		profile.recordFillBuffer(System.nanoTime() - start, (int) (context.getCounter().chars - charsBefore));
+		return available;
+	}
+
+	/**
+	 * 逐个子分词器处理当前字符，并记录耗时及新增词元数
+	 */
+	private void profileSegmenters(){
+		for(int i = 0 ; i < segmenters.size() ; i++){
+			int before = context.getOrgLexemes().size();
+			long start = System.nanoTime();
+			segmenters.get(i).analyze(context);
+			profile.recordSegmenter(i, System.nanoTime() - start, context.getOrgLexemes().size() - before);
+		}
+	}
+
 	/**
      * 重置分词器到初始状态
      * @param input
      */
 	public synchronized void reset(Reader input) {
 		this.input = input;
+		//上一篇文档未读完即被重置时，也汇总其计数
+		this.flushCounter();
 		context.reset();
 		for(ISegmenter segmenter : segmenters){
 			segmenter.reset();
@@ -60,6 +60,8 @@ public class Lexeme implements Comparable<Lexeme>{
     private String lexemeText;
     //词元类型
     private int lexemeType;
+    //是否是同义词规则中的词，只有词典匹配出的词会标记
+    private boolean synonymTerm;
     
     
 	public Lexeme(int offset , int begin , int length , int lexemeType){
@@ -252,6 +254,14 @@ public class Lexeme implements Comparable<Lexeme>{
 		this.lexemeType = lexemeType;
 	}
 	
+	public boolean isSynonymTerm() {
+		return synonymTerm;
+	}
+
+	public void setSynonymTerm(boolean synonymTerm) {
+		this.synonymTerm = synonymTerm;
+	}
+	
 	/**
 	 * 合并两个相邻的词元
 	 * @param l
@@ -262,6 +272,8 @@ public class Lexeme implements Comparable<Lexeme>{
 		if(l != null && this.getEndPosition() == l.getBeginPosition()){
 			this.length += l.getLength();
 			this.lexemeType = lexemeType;
+			//合并后的词不在词典中
+			this.synonymTerm = false;
 			return true;
 		}else {
 			return false;
@@ -0,0 +1,233 @@
+package org.wltea.analyzer.dic;
+
+import org.wltea.analyzer.dic.db.WordSync;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 集群分发模式下由取词节点发给其他节点的词库增量
+ * term标识一次取词任期（取词节点变化时更换），version在任期内连续递增，
+ * 接收节点只在baseVersion等于自己已应用的版本时直接应用，否则说明漏收了增量，需要重新全量同步。
+ * 除了增删的词，还带上来源的同步位置（远程词库的Last-Modified/ETag/版本号、数据库的水位），
+ * 取词节点切换后新节点可以从同一位置继续增量拉取。
+ */
+public final class DictDelta {
+
+	// 二进制格式版本
+	private static final byte FORMAT = 1;
+
+	private final String term;
+
+	private final long version;
+
+	private final long baseVersion;
+
+	private final List<Change> changes;
+
+	DictDelta(String term, long version, long baseVersion, List<Change> changes) {
+		this.term = term;
+		this.version = version;
+		this.baseVersion = baseVersion;
+		this.changes = changes;
+	}
+
+	public String getTerm() {
+		return term;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public long getBaseVersion() {
+		return baseVersion;
+	}
+
+	List<Change> getChanges() {
+		return changes;
+	}
+
+	/**
+	 * 增删的词总数
+	 */
+	public int size() {
+		int size = 0;
+		for (Change change : changes) {
+			size += change.added.size() + change.removed.size();
+		}
+		return size;
+	}
+
+	public byte[] toBytes() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(FORMAT);
+			out.writeUTF(term);
+			out.writeLong(version);
+			out.writeLong(baseVersion);
+			out.writeInt(changes.size());
+			for (Change change : changes) {
+				change.writeTo(out);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	public static DictDelta fromBytes(byte[] data) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+			byte format = in.readByte();
+			if (format != FORMAT) {
+				throw new IOException("unsupported dictionary delta format [" + format + "]");
+			}
+			String term = in.readUTF();
+			long version = in.readLong();
+			long baseVersion = in.readLong();
+			int size = in.readInt();
+			List<Change> changes = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				changes.add(Change.readFrom(in));
+			}
+			return new DictDelta(term, version, baseVersion, changes);
+		}
+	}
+
+	/**
+	 * 接收节点应用增量的结果
+	 */
+	public enum Status {
+		// 已应用
+		APPLIED,
+		// 已应用过的版本，忽略
+		DUPLICATE,
+		// 漏收了之前的版本，已安排全量同步
+		RESYNC
+	}
+
+	@Override
+	public String toString() {
+		return "[" + term + "/" + version + "]";
+	}
+
+	/**
+	 * 一个来源的一次变化
+	 */
+	static final class Change {
+
+		static final byte REMOTE = 0;
+		static final byte MYSQL = 1;
+
+		final byte type;
+
+		// 远程词库地址或数据库表名
+		final String name;
+
+		final boolean stopWords;
+
+		final List<String> added;
+
+		final List<String> removed;
+
+		// 远程词库的条件请求头及增量协议版本号
+		final String lastModified;
+		final String eTag;
+		final String remoteVersion;
+
+		// 数据库同步水位
+		final WordSync.Watermark watermark;
+
+		private Change(byte type, String name, boolean stopWords, List<String> added, List<String> removed,
+					   String lastModified, String eTag, String remoteVersion, WordSync.Watermark watermark) {
+			this.type = type;
+			this.name = name;
+			this.stopWords = stopWords;
+			this.added = added;
+			this.removed = removed;
+			this.lastModified = lastModified;
+			this.eTag = eTag;
+			this.remoteVersion = remoteVersion;
+			this.watermark = watermark;
+		}
+
+		static Change remote(String location, boolean stopWords, List<String> added, List<String> removed,
+							 String lastModified, String eTag, String version) {
+			return new Change(REMOTE, location, stopWords, added, removed, lastModified, eTag, version, null);
+		}
+
+		static Change mysql(String table, boolean stopWords, List<String> added, List<String> removed,
+							WordSync.Watermark watermark) {
+			return new Change(MYSQL, table, stopWords, added, removed, null, null, null, watermark);
+		}
+
+		private void writeTo(DataOutputStream out) throws IOException {
+			out.writeByte(type);
+			out.writeUTF(name);
+			out.writeBoolean(stopWords);
+			writeWords(out, added);
+			writeWords(out, removed);
+			if (type == REMOTE) {
+				writeOptional(out, lastModified);
+				writeOptional(out, eTag);
+				writeOptional(out, remoteVersion);
+			} else {
+				out.writeLong(watermark.getUpdateTime().getTime());
+				out.writeInt(watermark.getUpdateTime().getNanos());
+				out.writeLong(watermark.getId());
+			}
+		}
+
+		private static Change readFrom(DataInputStream in) throws IOException {
+			byte type = in.readByte();
+			String name = in.readUTF();
+			boolean stopWords = in.readBoolean();
+			List<String> added = readWords(in);
+			List<String> removed = readWords(in);
+			if (type == REMOTE) {
+				return remote(name, stopWords, added, removed, readOptional(in), readOptional(in), readOptional(in));
+			}
+			if (type != MYSQL) {
+				throw new IOException("unknown dictionary change type [" + type + "]");
+			}
+			Timestamp updateTime = new Timestamp(in.readLong());
+			updateTime.setNanos(in.readInt());
+			return mysql(name, stopWords, added, removed, new WordSync.Watermark(updateTime, in.readLong()));
+		}
+
+		private static void writeWords(DataOutputStream out, List<String> words) throws IOException {
+			out.writeInt(words.size());
+			for (String word : words) {
+				out.writeUTF(word);
+			}
+		}
+
+		private static List<String> readWords(DataInputStream in) throws IOException {
+			int size = in.readInt();
+			if (size == 0) {
+				return Collections.emptyList();
+			}
+			List<String> words = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				words.add(in.readUTF());
+			}
+			return words;
+		}
+
+		private static void writeOptional(DataOutputStream out, String value) throws IOException {
+			out.writeBoolean(value != null);
+			if (value != null) {
+				out.writeUTF(value);
+			}
+		}
+
+		private static String readOptional(DataInputStream in) throws IOException {
+			return in.readBoolean() ? in.readUTF() : null;
+		}
+	}
+}
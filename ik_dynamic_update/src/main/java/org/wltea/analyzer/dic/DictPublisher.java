@@ -0,0 +1,17 @@
+package org.wltea.analyzer.dic;
+
+/**
+ * 集群分发模式下的取词节点判定及增量广播，由插件在节点启动时注入
+ */
+public interface DictPublisher {
+
+	/**
+	 * @return 本节点当前是否负责从数据库和远程词库取词
+	 */
+	boolean isFetcher();
+
+	/**
+	 * 把增量发给集群内其他节点，需按version顺序发送
+	 */
+	void publish(DictDelta delta);
+}
@@ -27,6 +27,7 @@ package org.wltea.analyzer.dic;
 
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -51,9 +52,12 @@ class DictSegment implements Comparable<DictSegment>{
 	//当前节点存储的Segment数目
 	//storeSize <=ARRAY_LENGTH_LIMIT ，使用数组存储， storeSize >ARRAY_LENGTH_LIMIT ,则使用Map存储
 	private int storeSize = 0;
-	//当前DictSegment状态 ,默认 0 , 1表示从根节点到当前节点的路径表示一个词
+	//当前DictSegment状态 ,默认 0 , WORD位表示从根节点到当前节点的路径表示一个词，SYNONYM_TERM位表示这个词是同义词规则中的词
 	private int nodeState = 0;	
 	
+	private static final int WORD = 1;
+	private static final int SYNONYM_TERM = 2;
+	
 	
 	DictSegment(Character nodeChar){
 		if(nodeChar == null){
@@ -144,9 +148,14 @@ class DictSegment implements Comparable<DictSegment>{
 			}else if (length == 1){
 				
 				//搜索最后一个char
-				if(ds.nodeState == 1){
+				int state = ds.nodeState;
+				if((state & WORD) != 0){
 					//添加HIT状态为完全匹配
 					searchHit.setMatch();
+					if((state & SYNONYM_TERM) != 0){
+						//同时是同义词规则中的词
+						searchHit.setSynonymTerm();
+					}
 				}
 				if(ds.hasNextNode()){
 					//添加HIT状态为前缀匹配
@@ -204,13 +213,159 @@ class DictSegment implements Comparable<DictSegment>{
 				ds.fillSegment(charArray, begin + 1, length - 1 , enabled);
 			}else if (length == 1){
 				//已经是词元的最后一个char,设置当前节点状态为enabled，
-				//enabled=1表明一个完整的词，enabled=0表示从词典中屏蔽当前词
-				ds.nodeState = enabled;
+				//enabled=1表明一个完整的词，enabled=0表示从词典中屏蔽当前词，同义词标记不变
+				ds.nodeState = (ds.nodeState & SYNONYM_TERM) | enabled;
 			}
 		}
 
 	}
 	
+	/**
+	 * 设置或清除词的同义词标记，词不在词典树中时忽略
+	 * @param charArray
+	 * @param synonymTerm
+	 */
+	void markSynonymTerm(char[] charArray , boolean synonymTerm){
+		if(charArray.length > 0){
+			this.markSynonymTerm(charArray , 0 , charArray.length , synonymTerm);
+		}
+	}
+	
+	private synchronized void markSynonymTerm(char[] charArray , int begin , int length , boolean synonymTerm){
+		DictSegment ds = lookforSegment(Character.valueOf(charArray[begin]) , 0);
+		if(ds != null){
+			if(length > 1){
+				ds.markSynonymTerm(charArray, begin + 1, length - 1 , synonymTerm);
+			}else if(synonymTerm){
+				ds.nodeState |= SYNONYM_TERM;
+			}else{
+				ds.nodeState &= ~SYNONYM_TERM;
+			}
+		}
+	}
+	
+	/**
+	 * 写时复制地加入或屏蔽一个词：复制从本节点到词末字符路径上的节点并在副本上修改，其余分枝与原词典树共用，原词典树不变
+	 * @param charArray
+	 * @param enabled
+	 * @param fresh 本组修改中已复制或新建、尚未发布的节点，可以直接修改
+	 * @return 修改后的本节点，无需修改时返回本节点
+	 */
+	DictSegment copyOnWrite(char[] charArray , boolean enabled , Set<DictSegment> fresh){
+		return this.copyOnWrite(charArray , 0 , charArray.length , enabled ? WORD : 0 , enabled ? 0 : WORD , fresh);
+	}
+	
+	/**
+	 * 写时复制地设置或清除词的同义词标记，词不在词典树中时忽略
+	 * @param charArray
+	 * @param synonymTerm
+	 * @param fresh 本组修改中已复制或新建、尚未发布的节点，可以直接修改
+	 * @return 修改后的本节点，无需修改时返回本节点
+	 */
+	DictSegment copyOnWriteSynonymTerm(char[] charArray , boolean synonymTerm , Set<DictSegment> fresh){
+		if(charArray.length == 0){
+			return this;
+		}
+		return this.copyOnWrite(charArray , 0 , charArray.length , synonymTerm ? SYNONYM_TERM : 0 , synonymTerm ? 0 : SYNONYM_TERM , fresh);
+	}
+	
+	/**
+	 * @param set 要设置的状态位，包含WORD时词不在词典树中则创建
+	 * @param clear 要清除的状态位
+	 */
+	private DictSegment copyOnWrite(char[] charArray , int begin , int length , int set , int clear , Set<DictSegment> fresh){
+		DictSegment ds = findSegment(Character.valueOf(charArray[begin]));
+		if(ds == null){
+			if((set & WORD) == 0){
+				//词不在词典树中，屏蔽或设置标记都无需修改
+				return this;
+			}
+			//新的分枝只挂在副本上，直接填充
+			DictSegment self = fresh.contains(this) ? this : this.copy(fresh);
+			ds = self.lookforSegment(internChar(charArray[begin]) , 1);
+			fresh.add(ds);
+			if(length > 1){
+				ds.copyOnWrite(charArray, begin + 1, length - 1 , set , clear , fresh);
+			}else{
+				ds.nodeState = (ds.nodeState | set) & ~clear;
+			}
+			return self;
+		}
+		DictSegment child;
+		if(length > 1){
+			child = ds.copyOnWrite(charArray, begin + 1, length - 1 , set , clear , fresh);
+		}else if(((ds.nodeState | set) & ~clear) == ds.nodeState){
+			child = ds;
+		}else{
+			child = fresh.contains(ds) ? ds : ds.copy(fresh);
+			child.nodeState = (child.nodeState | set) & ~clear;
+		}
+		if(child == ds){
+			//已复制的节点一定挂在已复制的父节点上，原处修改即可
+			return this;
+		}
+		DictSegment self = fresh.contains(this) ? this : this.copy(fresh);
+		self.replaceSegment(child);
+		return self;
+	}
+	
+	/**
+	 * 复制本节点，子节点与本节点共用
+	 */
+	private synchronized DictSegment copy(Set<DictSegment> fresh){
+		DictSegment copy = new DictSegment(this.nodeChar);
+		copy.storeSize = this.storeSize;
+		copy.nodeState = this.nodeState;
+		if(this.childrenArray != null){
+			copy.childrenArray = this.childrenArray.clone();
+		}
+		if(this.childrenMap != null){
+			copy.childrenMap = new ConcurrentHashMap<Character , DictSegment>(this.childrenMap);
+		}
+		fresh.add(copy);
+		return copy;
+	}
+	
+	/**
+	 * 用同一字符的新节点替换子节点，只用于尚未发布的副本
+	 */
+	private void replaceSegment(DictSegment segment){
+		if(this.childrenArray != null){
+			int position = Arrays.binarySearch(this.childrenArray, 0 , this.storeSize, segment);
+			this.childrenArray[position] = segment;
+		}else{
+			this.childrenMap.put(segment.nodeChar, segment);
+		}
+	}
+	
+	/**
+	 * 只读地查找本节点下对应keyChar的segment，不创建容器
+	 */
+	private DictSegment findSegment(Character keyChar){
+		DictSegment[] segmentArray = this.childrenArray;
+		Map<Character , DictSegment> segmentMap = this.childrenMap;
+		if(segmentArray != null){
+			int position = Arrays.binarySearch(segmentArray, 0 , this.storeSize, new DictSegment(keyChar));
+			return position >= 0 ? segmentArray[position] : null;
+		}else if(segmentMap != null){
+			return segmentMap.get(keyChar);
+		}
+		return null;
+	}
+	
+	/**
+	 * 获取字典表中的汉字对象，字典中没有该字时将其加入
+	 */
+	private static Character internChar(char c){
+		Character beginChar = Character.valueOf(c);
+		Character keyChar = charMap.get(beginChar);
+		if(keyChar == null){
+			charMap.put(beginChar, beginChar);
+			keyChar = beginChar;
+		}
+		return keyChar;
+	}
+	
 	/**
 	 * 查找本节点下对应的keyChar的segment	 * 
 	 * @param keyChar
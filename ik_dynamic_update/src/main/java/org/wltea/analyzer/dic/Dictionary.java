@@ -23,21 +23,14 @@
  */
 package org.wltea.analyzer.dic;
 
-import com.mysql.cj.core.util.StringUtils;
-import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.logging.log4j.Logger;
-import org.elasticsearch.SpecialPermission;
 import org.elasticsearch.common.io.PathUtils;
 import org.elasticsearch.common.logging.ESLoggerFactory;
 import org.elasticsearch.plugin.analysis.ik.AnalysisIkPlugin;
 import org.wltea.analyzer.cfg.Configuration;
-import org.wltea.analyzer.dic.db.JDBCUtils;
-import org.wltea.analyzer.dic.db.QueryDbDto;
+import org.wltea.analyzer.dic.db.ConnectionPool;
+import org.wltea.analyzer.dic.db.WordSync;
+import org.wltea.analyzer.jfr.IkEvents;
 
 import java.io.*;
 import java.nio.file.FileVisitResult;
@@ -45,13 +38,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.security.AccessController;
-import java.security.PrivilegedAction;
-import java.sql.Timestamp;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * 词典管理类,单子模式
@@ -63,7 +54,8 @@ public class Dictionary {
      */
     private static Dictionary singleton;
 
-    private DictSegment _MainDict;
+    // 主词典和停用词典的修改写时复制，整组修改完成后一次替换根节点
+    private volatile DictSegment _MainDict;
 
     private DictSegment _SurnameDict;
 
@@ -73,7 +65,7 @@ public class Dictionary {
 
     private DictSegment _PrepDict;
 
-    private DictSegment _StopWords;
+    private volatile DictSegment _StopWords;
 
     /**
      * 配置对象
@@ -82,7 +74,17 @@ public class Dictionary {
 
     private static final Logger logger = ESLoggerFactory.getLogger(Monitor.class.getName());
 
-    private static ScheduledExecutorService pool = Executors.newScheduledThreadPool(1);
+    private static final RefreshScheduler scheduler = new RefreshScheduler();
+
+    // 集群分发模式下的取词节点判定及增量广播，未注入时每个节点各自取词
+    private static volatile DictPublisher publisher;
+
+    // 推送词日志文件，由插件设置到节点数据目录下，未设置时推送的词不持久化
+    private static volatile Path pushJournalFile;
+
+    // 远程词库刷新间隔及单次超时
+    private static final long REMOTE_REFRESH_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final long REMOTE_REFRESH_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(45);
 
     public static final String PATH_DIC_MAIN = "main.dic";
     public static final String PATH_DIC_SURNAME = "surname.dic";
@@ -91,36 +93,73 @@ public class Dictionary {
     public static final String PATH_DIC_PREP = "preposition.dic";
     public static final String PATH_DIC_STOP = "stopword.dic";
 
+    // 配置为目录时只加载该扩展名的文件
+    static final String DICT_FILE_EXTENSION = ".dic";
+
     private final static String FILE_NAME = "IKAnalyzer.cfg.xml";
     private final static String JDBC_FILE_NAME = "jdbc.properties";
     private final static String EXT_DICT = "ext_dict";
     private final static String REMOTE_EXT_DICT = "remote_ext_dict";
     private final static String EXT_STOP = "ext_stopwords";
     private final static String REMOTE_EXT_STOP = "remote_ext_stopwords";
+    private final static String EXT_SYNONYM_DICT = "ext_synonym_dict";
+    private final static String REMOTE_DICT_DELTA = "remote_dict_delta";
+    private final static String DICT_DISTRIBUTION = "dict_distribution";
 
     // jdbc.properties配置信息
     private final static String EXT_DICT_TABLE = "ext.dict.table";
     private final static String EXT_STOP_TABLE = "ext.stopwords.table";
-    private final static String EXT_WORD_FIELD_NAME = "ext.word.field.name";
     private final static String ENABLE_EXT_DICT = "enable.ext.dict";
     private final static String ENABLE_STOPWORDS_DICT = "enable.stopwords.dict";
     private final static String REFRESH_TIME_INTERVAL = "refresh.time.interval";
+    private final static String REFRESH_TIMEOUT = "refresh.timeout";
 
     private Path conf_dir;
     private Properties props;
     private Properties jdbcProps;
 
-    // 扩展词库更新时间戳
-    private Date extDicUpdateDate = null;
+    // 数据库连接池，开启数据库词库时才创建
+    private ConnectionPool connectionPool;
 
-    // 扩展停用词更新时间戳
-    private Date stopWordDicUpdateDate = null;
+    // 远程词库，每个地址单独记录已应用的词，更新时只应用差异
+    private final List<RemoteDictSource> remoteSources = new ArrayList<>();
 
-    private Dictionary(Configuration cfg) {
-        // 时间戳初始化，用于增量数据更新
-        extDicUpdateDate = new Date();
-        stopWordDicUpdateDate = new Date();
+    // 本地扩展词典文件，配置的目录下新增文件时由监听线程加入
+    private final List<LocalDictSource> localSources = new CopyOnWriteArrayList<>();
+
+    // 是否配置了同义词规则词表
+    private volatile boolean synonymTermsConfigured;
+
+    // 动态词库来源差异应用的锁，修改当前主词典和停用词典都需持有
+    private final Object sourceLock = new Object();
+
+    // 每张词库表的同步器
+    private final Map<String, WordSync> wordSyncs = new ConcurrentHashMap<>();
+
+    // 扩展词库同步水位
+    private volatile WordSync.Watermark extDictWatermark = WordSync.Watermark.INITIAL;
+
+    // 扩展停用词同步水位
+    private volatile WordSync.Watermark stopWordWatermark = WordSync.Watermark.INITIAL;
 
+    // 集群分发模式：只有取词节点访问数据库和远程词库，变化以增量广播给其他节点
+    private boolean clusterDistribution;
+
+    // 增量发布与应用的锁
+    private final Object distributionLock = new Object();
+
+    // 本节点作为取词节点时发布的任期及版本，不是取词节点时term为null
+    private String publishTerm;
+    private long publishVersion;
+
+    // 本节点已应用的增量任期及版本
+    private String appliedTerm;
+    private long appliedVersion;
+
+    // 通过REST接口推送的词
+    private PushJournal pushJournal;
+
+    private Dictionary(Configuration cfg) {
         this.configuration = cfg;
         this.props = new Properties();
         this.jdbcProps = new Properties();
@@ -194,6 +233,9 @@ public class Dictionary {
                 if (singleton == null) {
 
                     singleton = new Dictionary(cfg);
+                    singleton.clusterDistribution = "cluster".equals(singleton.getProperty(DICT_DISTRIBUTION));
+                    singleton.createLocalSources();
+                    singleton.createRemoteSources();
                     singleton.loadMainDict();
                     singleton.loadSurnameDict();
                     singleton.loadQuantifierDict();
@@ -202,30 +244,35 @@ public class Dictionary {
                     singleton.loadStopWordDict();
 
                     if (cfg.isEnableRemoteDict()) {
-                        // 建立监控线程
-                        for (String location : singleton.getRemoteExtDictionarys()) {
-                            // 10 秒是初始延迟可以修改的 60是间隔时间 单位秒
-                            pool.scheduleAtFixedRate(new Monitor(location), 10, 60, TimeUnit.SECONDS);
-                        }
-
-                        for (String location : singleton.getRemoteExtStopWordDictionarys()) {
-                            pool.scheduleAtFixedRate(new Monitor(location), 10, 60, TimeUnit.SECONDS);
+                        // 每个远程词库单独调度，间隔60秒
+                        for (RemoteDictSource source : singleton.remoteSources) {
+                            scheduler.schedule(source.getSource().isStopWords() ? REMOTE_EXT_STOP : REMOTE_EXT_DICT,
+                                    source.getLocation(), REMOTE_REFRESH_INTERVAL_MILLIS, REMOTE_REFRESH_TIMEOUT_MILLIS,
+                                    new Monitor(source));
                         }
                     }
 
-                    int timeInterval = Integer.valueOf(singleton.jdbcProps.getProperty(
-                            REFRESH_TIME_INTERVAL, "1800"));
+                    long timeInterval = TimeUnit.SECONDS.toMillis(Integer.valueOf(singleton.jdbcProps.getProperty(
+                            REFRESH_TIME_INTERVAL, "1800")));
+                    long timeout = TimeUnit.SECONDS.toMillis(Integer.valueOf(singleton.jdbcProps.getProperty(
+                            REFRESH_TIMEOUT, "300")));
 
                     if (Boolean.valueOf(singleton.jdbcProps.getProperty(ENABLE_EXT_DICT))){
                         // 全量加载自定义扩展词
                         singleton.reloadMysqlExtDict();
-                        pool.scheduleAtFixedRate(() -> singleton.incrementLoadMysqlExtDict(), timeInterval, timeInterval, TimeUnit.SECONDS);
+                        scheduler.schedule("mysql_ext_dict", singleton.jdbcProps.getProperty(EXT_DICT_TABLE),
+                                timeInterval, timeout, singleton::incrementLoadMysqlExtDict);
                     }
                     if (Boolean.valueOf(singleton.jdbcProps.getProperty(ENABLE_STOPWORDS_DICT))){
                         // 全量加载自定义停用词
                         singleton.reloadMysqlStopWordDict();
-                        pool.scheduleAtFixedRate(() -> singleton.incrementLoadMysqlStopWordDict(), timeInterval, timeInterval, TimeUnit.SECONDS);
+                        scheduler.schedule("mysql_ext_stopwords", singleton.jdbcProps.getProperty(EXT_STOP_TABLE),
+                                timeInterval, timeout, singleton::incrementLoadMysqlStopWordDict);
                     }
+                    // 推送的词最后重放，覆盖其他来源
+                    singleton.loadPushJournal();
+                    new LocalDictWatcher(singleton, singleton.configuredPaths(EXT_DICT),
+                            singleton.configuredPaths(EXT_STOP), singleton.configuredPaths(EXT_SYNONYM_DICT)).start();
                     return singleton;
                 }
             }
@@ -240,7 +287,9 @@ public class Dictionary {
             Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
                 @Override
                 public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                    files.add(file.toString());
+                    if (isDictFile(file)) {
+                        files.add(file.toString());
+                    }
                     return FileVisitResult.CONTINUE;
                 }
 
@@ -259,6 +308,14 @@ public class Dictionary {
         return files;
     }
 
+    /**
+     * 配置的目录下是否为词典文件：扩展名为.dic，且不是隐藏文件（编辑器的交换文件、同步工具的临时文件等）
+     */
+    static boolean isDictFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(DICT_FILE_EXTENSION) && !name.startsWith(".");
+    }
+
     private void loadDictFile(DictSegment dict, Path file, boolean critical, String name) {
         try (InputStream is = new FileInputStream(file.toFile())) {
             BufferedReader br = new BufferedReader(
@@ -287,6 +344,24 @@ public class Dictionary {
         }
     }
 
+    /**
+     * 同义词插件导出的同义词规则词表，词加入主词典并标记为同义词规则中的词
+     */
+    public List<String> getExtSynonymDictionarys() {
+        List<String> synonymDictFiles = new ArrayList<String>(2);
+        for (Path path : configuredPaths(EXT_SYNONYM_DICT)) {
+            walkFileTree(synonymDictFiles, path);
+        }
+        return synonymDictFiles;
+    }
+
+    /**
+     * 是否配置了同义词规则词表，配置后词典匹配出的词是否为同义词规则中的词是确定的
+     */
+    public boolean hasSynonymTerms() {
+        return synonymTermsConfigured;
+    }
+
     public List<String> getExtDictionarys() {
         List<String> extDictFiles = new ArrayList<String>(2);
         String extDictCfg = getProperty(EXT_DICT);
@@ -353,6 +428,13 @@ public class Dictionary {
         return remoteExtStopWordDictFiles;
     }
 
+    /**
+     * 各词库来源的刷新状态
+     */
+    public static List<SourceHealth> getRefreshHealth() {
+        return scheduler.health();
+    }
+
     public String getDictRoot() {
         return conf_dir.toAbsolutePath().toString();
     }
@@ -370,6 +452,34 @@ public class Dictionary {
         return singleton;
     }
 
+    /**
+     * @return 初始化词典时的配置，即节点上第一个ik分词器的配置
+     */
+    public Configuration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * 词典是否已初始化，节点上还没有创建过ik分词器时为false
+     */
+    public static boolean isInitialized() {
+        return singleton != null;
+    }
+
+    /**
+     * 注入集群分发模式的取词节点判定及增量广播
+     */
+    public static void setPublisher(DictPublisher dictPublisher) {
+        publisher = dictPublisher;
+    }
+
+    /**
+     * 设置推送词日志文件，需在词典初始化前调用
+     */
+    public static void setPushJournalFile(Path file) {
+        pushJournalFile = file;
+    }
+
 
     /**
      * 批量加载新词条
@@ -378,12 +488,8 @@ public class Dictionary {
      */
     public void addWords(Collection<String> words) {
         if (words != null) {
-            for (String word : words) {
-                if (word != null) {
-                    // 批量加载词条到主内存词典中
-                    singleton._MainDict.fillSegment(word.trim().toCharArray());
-                }
-            }
+            // 批量加载词条到主内存词典中
+            singleton.updateMainWords(words, true);
         }
     }
 
@@ -392,12 +498,20 @@ public class Dictionary {
      */
     public void disableWords(Collection<String> words) {
         if (words != null) {
+            // 批量屏蔽词条
+            singleton.updateMainWords(words, false);
+        }
+    }
+
+    private void updateMainWords(Collection<String> words, boolean enabled) {
+        synchronized (sourceLock) {
+            DictUpdate update = new DictUpdate();
             for (String word : words) {
                 if (word != null) {
-                    // 批量屏蔽词条
-                    singleton._MainDict.disableSegment(word.trim().toCharArray());
+                    update.fill(false, word.trim().toCharArray(), enabled);
                 }
             }
+            update.commit();
         }
     }
 
@@ -468,90 +582,602 @@ public class Dictionary {
      * 加载用户配置的扩展词典到主词库表
      */
     private void loadExtDict() {
-        // 加载扩展词典配置
-        List<String> extDictFiles = getExtDictionarys();
-        if (extDictFiles != null) {
-            for (String extDictName : extDictFiles) {
-                // 读取扩展词典文件
-                logger.info("[Dict Loading] " + extDictName);
-                Path file = PathUtils.get(extDictName);
-                loadDictFile(_MainDict, file, false, "Extra Dict");
+        for (LocalDictSource source : localSources) {
+            if (!source.getSource().isStopWords()) {
+                loadLocalSource(source);
             }
         }
     }
 
+    private void loadLocalSource(LocalDictSource source) {
+        // 读取扩展词典文件
+        logger.info("[Dict Loading] " + source.getFile());
+        try {
+            source.refresh();
+        } catch (IOException e) {
+            logger.error("ik-analyzer: " + source.getFile() + " loading failed", e);
+        }
+    }
+
+    /**
+     * 根据配置创建本地扩展词典来源，词典重建时不再读取文件，而是重放各来源已应用的词，文件的变化由监听线程应用
+     */
+    private void createLocalSources() {
+        for (String file : getExtDictionarys()) {
+            localSources.add(new LocalDictSource(this, PathUtils.get(file), false));
+        }
+        for (String file : getExtStopWordDictionarys()) {
+            localSources.add(new LocalDictSource(this, PathUtils.get(file), true));
+        }
+        for (String file : getExtSynonymDictionarys()) {
+            localSources.add(new LocalDictSource(this, PathUtils.get(file), false, true));
+        }
+        synonymTermsConfigured = !configuredPaths(EXT_SYNONYM_DICT).isEmpty();
+    }
+
+    List<LocalDictSource> getLocalSources() {
+        return localSources;
+    }
+
+    LocalDictSource findLocalSource(Path file) {
+        Path path = file.toAbsolutePath();
+        for (LocalDictSource source : localSources) {
+            if (source.getFile().toAbsolutePath().equals(path)) {
+                return source;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 配置的目录下新增了词典文件
+     */
+    synchronized LocalDictSource addLocalSource(Path file, boolean stopWords, boolean synonymTerms) {
+        LocalDictSource source = findLocalSource(file);
+        if (source == null) {
+            source = new LocalDictSource(this, file, stopWords, synonymTerms);
+            localSources.add(source);
+        }
+        return source;
+    }
+
+    /**
+     * 本地扩展词典文件被删除，撤销其中的词并移除来源
+     */
+    synchronized void removeLocalSource(LocalDictSource source) {
+        ApplyResult applied = replaceSourceWords(source.getSource(), Collections.emptyList());
+        localSources.remove(source);
+        logger.info("[Dict Update] {} deleted, {} removed", source.getFile(), applied.getRemoved());
+    }
+
+    /**
+     * 配置项中的本地路径，文件或目录
+     */
+    private List<Path> configuredPaths(String key) {
+        List<Path> paths = new ArrayList<>();
+        String cfg = getProperty(key);
+        if (cfg != null) {
+            for (String filePath : cfg.split(";")) {
+                if (!filePath.trim().isEmpty()) {
+                    paths.add(PathUtils.get(getDictRoot(), filePath.trim()));
+                }
+            }
+        }
+        return paths;
+    }
+
     /**
      * 加载远程扩展词典到主词库表
      */
     private void loadRemoteExtDict() {
-        List<String> remoteExtDictFiles = getRemoteExtDictionarys();
-        for (String location : remoteExtDictFiles) {
-            logger.info("[Dict Loading] " + location);
-            List<String> lists = getRemoteWords(location);
+        for (RemoteDictSource source : remoteSources) {
+            if (!source.getSource().isStopWords()) {
+                loadRemoteSource(source);
+            }
+        }
+    }
+
+    private void loadRemoteSource(RemoteDictSource source) {
+        logger.info("[Dict Loading] " + source.getLocation());
+        try {
+            source.refresh();
+        } catch (Exception e) {
             // 如果找不到扩展的字典，则忽略
-            if (lists == null) {
-                logger.error("[Dict Loading] " + location + "加载失败");
+            logger.error("[Dict Loading] " + source.getLocation() + "加载失败", e);
+        }
+    }
+
+    /**
+     * 根据配置创建远程词库来源
+     */
+    private void createRemoteSources() {
+        boolean delta = Boolean.valueOf(getProperty(REMOTE_DICT_DELTA));
+        for (String location : getRemoteExtDictionarys()) {
+            remoteSources.add(new RemoteDictSource(this, location.trim(), false, delta));
+        }
+        for (String location : getRemoteExtStopWordDictionarys()) {
+            remoteSources.add(new RemoteDictSource(this, location.trim(), true, delta));
+        }
+    }
+
+    /**
+     * 用来源的最新全量词表替换其上次应用的词，只把差异应用到词典
+     * @param source 词库来源
+     * @param words 最新全量词表
+     * @return 应用结果
+     */
+    ApplyResult replaceSourceWords(WordSource source, Collection<String> words) {
+        Set<String> latest = new HashSet<>();
+        for (String word : words) {
+            String w = source.normalizeWord(word);
+            if (w != null) {
+                latest.add(w);
+            }
+        }
+        synchronized (sourceLock) {
+            List<String> removed = new ArrayList<>();
+            for (String w : source.words) {
+                if (!latest.contains(w)) {
+                    removed.add(w);
+                }
+            }
+            return applySourceDelta(source, latest, removed);
+        }
+    }
+
+    /**
+     * 把来源的增量应用到词典
+     * @param source 词库来源
+     * @param added 新增的词
+     * @param removed 删除的词
+     * @return 应用结果
+     */
+    ApplyResult applySourceDelta(WordSource source, Collection<String> added, Collection<String> removed) {
+        synchronized (sourceLock) {
+            DictUpdate update = new DictUpdate();
+            ApplyResult result = applySourceDelta(update, source, added, removed);
+            update.commit();
+            return result;
+        }
+    }
+
+    /**
+     * 把来源的增量应用到一组词典修改中，调用方需持有sourceLock
+     */
+    ApplyResult applySourceDelta(DictUpdate update, WordSource source, Collection<String> added,
+                                 Collection<String> removed) {
+        boolean stopWords = source.isStopWords();
+        List<String> addedWords = new ArrayList<>();
+        List<String> removedWords = new ArrayList<>();
+        for (String word : removed) {
+            String w = source.normalizeWord(word);
+            if (w == null || !source.words.remove(w)) {
                 continue;
             }
-            for (String theWord : lists) {
-                if (theWord != null && !"".equals(theWord.trim())) {
-                    // 加载扩展词典数据到主内存词典中
-                    logger.info(theWord);
-                    _MainDict.fillSegment(theWord.trim().toLowerCase().toCharArray());
+            removedWords.add(w);
+            if (source.isSynonymTerms() && findOtherSynonymSource(source, w) == null) {
+                update.markSynonymTerm(stopWords, w.toCharArray(), false);
+            }
+            if (!source.owned.remove(w)) {
+                continue;
+            }
+            // 其他来源也有这个词时转交给它，否则从词典中屏蔽
+            WordSource other = findOtherSource(source, w);
+            if (other != null) {
+                other.owned.add(w);
+            } else {
+                update.fill(stopWords, w.toCharArray(), false);
+            }
+        }
+        for (String word : added) {
+            String w = source.normalizeWord(word);
+            if (w == null || !source.words.add(w)) {
+                continue;
+            }
+            addedWords.add(w);
+            char[] chars = w.toCharArray();
+            if (!update.match(stopWords, chars)) {
+                update.fill(stopWords, chars, true);
+                source.owned.add(w);
+            }
+            if (source.isSynonymTerms()) {
+                update.markSynonymTerm(stopWords, chars, true);
+            }
+        }
+        return new ApplyResult(addedWords, removedWords);
+    }
+
+    private WordSource findOtherSource(WordSource source, String word) {
+        for (WordSource other : dynamicSources()) {
+            if (other != source && other.isStopWords() == source.isStopWords() && other.words.contains(word)) {
+                return other;
+            }
+        }
+        return null;
+    }
+
+    private WordSource findOtherSynonymSource(WordSource source, String word) {
+        for (LocalDictSource local : localSources) {
+            WordSource other = local.getSource();
+            if (other != source && other.isSynonymTerms() && other.words.contains(word)) {
+                return other;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 所有动态来源，按加载顺序：本地扩展词典在前，远程词库在后
+     */
+    private List<WordSource> dynamicSources() {
+        List<WordSource> sources = new ArrayList<>(localSources.size() + remoteSources.size());
+        for (LocalDictSource local : localSources) {
+            sources.add(local.getSource());
+        }
+        for (RemoteDictSource remote : remoteSources) {
+            sources.add(remote.getSource());
+        }
+        return sources;
+    }
+
+    /**
+     * 把所有动态来源已应用的词重新写入新建的词典，用于全量重建词典
+     * 调用方需持有sourceLock，并在同一个锁内替换词典
+     */
+    private void replaySources(DictUpdate update) {
+        for (WordSource source : dynamicSources()) {
+            boolean stopWords = source.isStopWords();
+            source.owned.clear();
+            for (String w : source.words) {
+                char[] chars = w.toCharArray();
+                if (!update.match(stopWords, chars)) {
+                    update.fill(stopWords, chars, true);
+                    source.owned.add(w);
+                }
+                if (source.isSynonymTerms()) {
+                    update.markSynonymTerm(stopWords, chars, true);
                 }
             }
         }
+    }
 
+    /**
+     * @return 来源当前已应用的词数
+     */
+    int sourceSize(WordSource source) {
+        synchronized (sourceLock) {
+            return source.words.size();
+        }
     }
 
-    private static List<String> getRemoteWords(String location) {
-        SpecialPermission.check();
-        return AccessController.doPrivileged((PrivilegedAction<List<String>>) () -> {
-            return getRemoteWordsUnprivileged(location);
-        });
+    /**
+     * 对主词典和停用词典的一组修改，调用方需持有sourceLock
+     * 修改当前生效的词典时写时复制，commit时一次替换根节点，分词线程要么看到整组修改，要么一个也看不到；
+     * 修改重建中尚未生效的词典时直接在原处修改。推送过的词以最后一次推送的操作为准，其他来源不能改变其状态
+     */
+    final class DictUpdate {
+
+        // 本组修改已复制或新建的节点，为null时在原处修改
+        private final Set<DictSegment> fresh;
+
+        private DictSegment mainDict;
+
+        private DictSegment stopWords;
+
+        DictUpdate() {
+            this.fresh = Collections.newSetFromMap(new IdentityHashMap<>());
+            this.mainDict = _MainDict;
+            this.stopWords = _StopWords;
+        }
+
+        DictUpdate(Dictionary building) {
+            this.fresh = null;
+            this.mainDict = building._MainDict;
+            this.stopWords = building._StopWords;
+        }
+
+        boolean match(boolean stop, char[] chars) {
+            return (stop ? stopWords : mainDict).match(chars).isMatch();
+        }
+
+        /**
+         * 其他来源加入或屏蔽词，推送过的词忽略
+         */
+        void fill(boolean stop, char[] chars, boolean enabled) {
+            if (pushJournal != null && pushJournal.get(stop, new String(chars)) != null) {
+                return;
+            }
+            fillPushed(stop, chars, enabled);
+        }
+
+        /**
+         * 应用推送的操作
+         */
+        void fillPushed(boolean stop, char[] chars, boolean enabled) {
+            if (fresh == null) {
+                DictSegment dict = stop ? stopWords : mainDict;
+                if (enabled) {
+                    dict.fillSegment(chars);
+                } else {
+                    dict.disableSegment(chars);
+                }
+            } else if (stop) {
+                stopWords = stopWords.copyOnWrite(chars, enabled, fresh);
+            } else {
+                mainDict = mainDict.copyOnWrite(chars, enabled, fresh);
+            }
+        }
+
+        void markSynonymTerm(boolean stop, char[] chars, boolean synonymTerm) {
+            if (fresh == null) {
+                (stop ? stopWords : mainDict).markSynonymTerm(chars, synonymTerm);
+            } else if (stop) {
+                stopWords = stopWords.copyOnWriteSynonymTerm(chars, synonymTerm, fresh);
+            } else {
+                mainDict = mainDict.copyOnWriteSynonymTerm(chars, synonymTerm, fresh);
+            }
+        }
+
+        void commit() {
+            if (fresh != null) {
+                _MainDict = mainDict;
+                _StopWords = stopWords;
+            }
+        }
+    }
+
+    /**
+     * 动态来源差异应用结果
+     */
+    public static final class ApplyResult {
+
+        // 来源中实际新增、删除的词
+        private final List<String> added;
+
+        private final List<String> removed;
+
+        ApplyResult(List<String> added, List<String> removed) {
+            this.added = added;
+            this.removed = removed;
+        }
+
+        public int getAdded() {
+            return added.size();
+        }
+
+        public int getRemoved() {
+            return removed.size();
+        }
+
+        List<String> getAddedWords() {
+            return added;
+        }
+
+        List<String> getRemovedWords() {
+            return removed;
+        }
     }
 
     /**
-     * 从远程服务器上下载自定义词条
+     * 推送词：先写入日志，再应用到当前词典，立即生效
+     * 推送的操作优先于其他来源，词典重建及节点重启后都会重放；要撤销需推送相反的操作
+     * @param stopWords true为停用词典，false为主词典
+     * @param added 新增的词
+     * @param disabled 屏蔽的词
+     * @return 实际加入词典和从词典屏蔽的词
+     * @throws IOException 写日志失败，此时不会应用到词典
      */
-    private static List<String> getRemoteWordsUnprivileged(String location) {
+    public ApplyResult pushWords(boolean stopWords, Collection<String> added, Collection<String> disabled)
+            throws IOException {
+        List<PushJournal.Entry> batch = pushBatch(stopWords, added, disabled);
+        synchronized (sourceLock) {
+            if (pushJournal != null) {
+                pushJournal.append(batch);
+            }
+            DictUpdate update = new DictUpdate();
+            ApplyResult result = applyPushed(batch, update);
+            update.commit();
+            return result;
+        }
+    }
+
+    /**
+     * 推送词到本节点的词典
+     * 节点上还没有创建过ik分词器、词典未初始化时只写入日志，词典初始化时重放
+     * @see #pushWords(boolean, Collection, Collection)
+     * @throws IllegalStateException 词典未初始化且节点没有数据目录，无法保存推送的词
+     */
+    public static ApplyResult push(boolean stopWords, Collection<String> added, Collection<String> disabled)
+            throws IOException {
+        Dictionary dictionary;
+        // 与initial互斥，初始化完成（推送日志已加载）后才应用到词典
+        synchronized (Dictionary.class) {
+            dictionary = singleton;
+            if (dictionary == null) {
+                if (pushJournalFile == null) {
+                    throw new IllegalStateException("ik dictionary is not loaded on this node and there is no push journal");
+                }
+                new PushJournal(pushJournalFile).append(pushBatch(stopWords, added, disabled));
+                return new ApplyResult(Collections.emptyList(), Collections.emptyList());
+            }
+        }
+        return dictionary.pushWords(stopWords, added, disabled);
+    }
 
-        List<String> buffer = new ArrayList<String>();
-        RequestConfig rc = RequestConfig.custom().setConnectionRequestTimeout(10 * 1000).setConnectTimeout(10 * 1000)
-                .setSocketTimeout(60 * 1000).build();
-        CloseableHttpClient httpclient = HttpClients.createDefault();
-        CloseableHttpResponse response;
-        BufferedReader in;
-        HttpGet get = new HttpGet(location);
-        get.setConfig(rc);
+    private static List<PushJournal.Entry> pushBatch(boolean stopWords, Collection<String> added,
+                                                     Collection<String> disabled) {
+        List<PushJournal.Entry> batch = new ArrayList<>();
+        for (String word : disabled) {
+            String w = WordSource.normalize(word);
+            if (w != null) {
+                batch.add(new PushJournal.Entry(stopWords, false, w));
+            }
+        }
+        for (String word : added) {
+            String w = WordSource.normalize(word);
+            if (w != null) {
+                batch.add(new PushJournal.Entry(stopWords, true, w));
+            }
+        }
+        return batch;
+    }
+
+    private void loadPushJournal() {
+        if (pushJournalFile == null) {
+            return;
+        }
+        PushJournal journal = new PushJournal(pushJournalFile);
         try {
-            response = httpclient.execute(get);
-            if (response.getStatusLine().getStatusCode() == 200) {
-
-                String charset = "UTF-8";
-                // 获取编码，默认为utf-8
-                if (response.getEntity().getContentType().getValue().contains("charset=")) {
-                    String contentType = response.getEntity().getContentType().getValue();
-                    charset = contentType.substring(contentType.lastIndexOf("=") + 1);
+            journal.load();
+        } catch (IOException e) {
+            logger.error("[Push Journal] load " + pushJournalFile + " failed, pushed words are not persisted", e);
+            return;
+        }
+        synchronized (sourceLock) {
+            pushJournal = journal;
+            DictUpdate update = new DictUpdate();
+            applyPushed(journal.entries(), update);
+            update.commit();
+        }
+    }
+
+    private static ApplyResult applyPushed(List<PushJournal.Entry> entries, DictUpdate update) {
+        List<String> added = new ArrayList<>();
+        List<String> disabled = new ArrayList<>();
+        for (PushJournal.Entry entry : entries) {
+            char[] chars = entry.word.toCharArray();
+            boolean matched = update.match(entry.stopWords, chars);
+            if (entry.add && !matched) {
+                update.fillPushed(entry.stopWords, chars, true);
+                added.add(entry.word);
+            } else if (!entry.add && matched) {
+                update.fillPushed(entry.stopWords, chars, false);
+                disabled.add(entry.word);
+            }
+        }
+        return new ApplyResult(added, disabled);
+    }
+
+    /**
+     * 本节点是否需要自己取词：非集群分发模式时总是取词，集群分发模式时只有取词节点取词
+     */
+    boolean isFetching() {
+        DictPublisher p = publisher;
+        if (!clusterDistribution || p == null) {
+            return true;
+        }
+        boolean fetcher = p.isFetcher();
+        synchronized (distributionLock) {
+            if (!fetcher) {
+                publishTerm = null;
+            } else if (publishTerm == null) {
+                // 成为取词节点时开启新任期，版本从0开始
+                publishTerm = UUID.randomUUID().toString();
+                publishVersion = 0;
+                logger.info("[Dict Distribution] this node now fetches dictionary changes, term {}", publishTerm);
+            }
+        }
+        return fetcher;
+    }
+
+    /**
+     * 取词节点把一个来源的变化作为新版本广播给其他节点
+     */
+    void publishChange(DictDelta.Change change) {
+        DictPublisher p = publisher;
+        if (!clusterDistribution || p == null) {
+            return;
+        }
+        DictDelta delta;
+        synchronized (distributionLock) {
+            if (publishTerm == null) {
+                return;
+            }
+            delta = new DictDelta(publishTerm, publishVersion + 1, publishVersion, Collections.singletonList(change));
+            publishVersion = delta.getVersion();
+            // 发布前调用，保证同一任期内按版本顺序发送
+            p.publish(delta);
+        }
+    }
+
+    /**
+     * 应用取词节点广播的增量
+     * 同一任期内版本连续时直接应用；漏收了增量时记下该版本，并在后台从数据库和远程词库重新全量同步一次
+     * @param delta 增量
+     * @return 应用结果
+     */
+    public DictDelta.Status applyDelta(DictDelta delta) {
+        synchronized (distributionLock) {
+            boolean sameTerm = delta.getTerm().equals(appliedTerm);
+            if (sameTerm && delta.getVersion() <= appliedVersion) {
+                return DictDelta.Status.DUPLICATE;
+            }
+            // 同一任期内版本必须连续；新任期以及还未接过增量的节点只能从0开始接，
+            // 刚初始化的节点不知道自己全量加载的词典对应哪个版本，中途接上会漏掉之前的增量
+            boolean contiguous = sameTerm ? delta.getBaseVersion() == appliedVersion : delta.getBaseVersion() == 0;
+            appliedTerm = delta.getTerm();
+            appliedVersion = delta.getVersion();
+            if (!contiguous) {
+                logger.warn("[Dict Distribution] missed dictionary changes before {}, resyncing", delta);
+                scheduler.execute("dict_resync", this::resync);
+                return DictDelta.Status.RESYNC;
+            }
+            // 整个增量在副本上应用后一次替换词典，分词线程不会看到应用了一半的增量
+            synchronized (sourceLock) {
+                DictUpdate update = new DictUpdate();
+                for (DictDelta.Change change : delta.getChanges()) {
+                    applyChange(update, change);
                 }
-                in = new BufferedReader(new InputStreamReader(response.getEntity().getContent(), charset));
-                String line;
-                while ((line = in.readLine()) != null) {
-                    buffer.add(line);
+                update.commit();
+            }
+        }
+        logger.info("[Dict Distribution] applied {}, {} words", delta, delta.size());
+        return DictDelta.Status.APPLIED;
+    }
+
+    private void applyChange(DictUpdate update, DictDelta.Change change) {
+        if (change.type == DictDelta.Change.REMOTE) {
+            for (RemoteDictSource source : remoteSources) {
+                if (source.getLocation().equals(change.name) && source.getSource().isStopWords() == change.stopWords) {
+                    source.applyPublished(update, change);
+                    return;
                 }
-                in.close();
-                response.close();
-                return buffer;
-            }
-            response.close();
-        } catch (ClientProtocolException e) {
-            logger.error("getRemoteWords {} error", e, location);
-        } catch (IllegalStateException e) {
-            logger.error("getRemoteWords {} error", e, location);
-        } catch (IOException e) {
-            logger.error("getRemoteWords {} error", e, location);
+            }
+            logger.warn("[Dict Distribution] remote dict {} is not configured on this node, ignored", change.name);
+            return;
+        }
+        for (String word : change.added) {
+            update.fill(change.stopWords, word.toCharArray(), true);
+        }
+        for (String word : change.removed) {
+            update.fill(change.stopWords, word.toCharArray(), false);
+        }
+        // 记下水位，本节点成为取词节点后从这里继续
+        if (change.stopWords) {
+            stopWordWatermark = change.watermark;
+        } else {
+            extDictWatermark = change.watermark;
+        }
+    }
+
+    /**
+     * 漏收增量后重新全量同步：远程词库不带条件头重新下载，数据库词库随词典重建全量读取
+     */
+    private void resync() {
+        for (RemoteDictSource source : remoteSources) {
+            source.resetValidators();
+            loadRemoteSource(source);
+        }
+        reLoadMainDict();
+    }
+
+    /**
+     * 本节点已应用的增量版本，形如term/version，未收到过增量时为null
+     */
+    public String getAppliedVersion() {
+        synchronized (distributionLock) {
+            return appliedTerm == null ? null : appliedTerm + "/" + appliedVersion;
         }
-        return buffer;
     }
 
     /**
@@ -566,33 +1192,16 @@ public class Dictionary {
         loadDictFile(_StopWords, file, false, "Main Stopwords");
 
         // 加载扩展停止词典
-        List<String> extStopWordDictFiles = getExtStopWordDictionarys();
-        if (extStopWordDictFiles != null) {
-            for (String extStopWordDictName : extStopWordDictFiles) {
-                logger.info("[Dict Loading] " + extStopWordDictName);
-
-                // 读取扩展词典文件
-                file = PathUtils.get(extStopWordDictName);
-                loadDictFile(_StopWords, file, false, "Extra Stopwords");
+        for (LocalDictSource source : localSources) {
+            if (source.getSource().isStopWords()) {
+                loadLocalSource(source);
             }
         }
 
         // 加载远程停用词典
-        List<String> remoteExtStopWordDictFiles = getRemoteExtStopWordDictionarys();
-        for (String location : remoteExtStopWordDictFiles) {
-            logger.info("[Dict Loading] " + location);
-            List<String> lists = getRemoteWords(location);
-            // 如果找不到扩展的字典，则忽略
-            if (lists == null) {
-                logger.error("[Dict Loading] " + location + "加载失败");
-                continue;
-            }
-            for (String theWord : lists) {
-                if (theWord != null && !"".equals(theWord.trim())) {
-                    // 加载远程词典数据到主内存中
-                    logger.info(theWord);
-                    _StopWords.fillSegment(theWord.trim().toLowerCase().toCharArray());
-                }
+        for (RemoteDictSource source : remoteSources) {
+            if (source.getSource().isStopWords()) {
+                loadRemoteSource(source);
             }
         }
     }
@@ -601,96 +1210,117 @@ public class Dictionary {
      * 全量加载自定义扩展词库
      */
     private void reloadMysqlExtDict() {
-        logger.info("## begin reload mysql extDict 扩展词：");
-        loadMysqlExtDict(null);
+        try {
+            extDictWatermark = syncMysqlWords("ext_dict", jdbcProps.getProperty(EXT_DICT_TABLE),
+                    WordSync.Watermark.INITIAL, false, DictUpdate::new, null, null);
+        } catch (Exception e) {
+            // 首次加载失败时保留初始水位，由定时增量同步重试全量加载
+            logger.error("[DB Sync] ext_dict initial load failed, error is ", e);
+        }
     }
 
     /**
      * 增量加载自定义扩展词库
      */
-    private void incrementLoadMysqlExtDict() {
-        logger.info("## begin increment load mysql extDict 扩展词：");
-        Timestamp startTime = new Timestamp(extDicUpdateDate.getTime());
-        Timestamp endTime = new Timestamp(System.currentTimeMillis());
-        String condition = "where updatetime >= \'" + startTime + "\' and updatetime < \'" + endTime + "\'";
-        loadMysqlExtDict(condition);
-    }
-
-    private void loadMysqlExtDict(String condition) {
-        String extDictTable = jdbcProps.getProperty(EXT_DICT_TABLE);
-        String field = jdbcProps.getProperty(EXT_WORD_FIELD_NAME);
-        String sql = String.join(" ", "SELECT", field, "FROM", extDictTable);
-        if (!StringUtils.isNullOrEmpty(condition)) {
-            sql = String.join(" ", sql, condition);
-        }
-
-        QueryDbDto queryDbDto = new QueryDbDto();
-        queryDbDto.setUrl(jdbcProps.getProperty("url"));
-        queryDbDto.setUser(jdbcProps.getProperty("user"));
-        queryDbDto.setPassword(jdbcProps.getProperty("password"));
-        queryDbDto.setSql(sql);
-        List<String> wordList =JDBCUtils.queryWordList(queryDbDto);
-        if(Objects.isNull(wordList)|| wordList.size()==0){
-            logger.info("\"数据库里的扩展词库为空，不用加载到词典中 ");
+    private void incrementLoadMysqlExtDict() throws Exception {
+        if (!isFetching()) {
             return;
         }
-
-        for (String theWord : wordList) {
-            if (theWord != null && !"".equals(theWord.trim())) {
-                logger.info(theWord);
-                _MainDict.fillSegment(theWord.trim().toLowerCase().toCharArray());
-            }
-        }
-        extDicUpdateDate = new Date();
+        extDictWatermark = incrementSyncMysqlWords("ext_dict", jdbcProps.getProperty(EXT_DICT_TABLE),
+                extDictWatermark, false);
     }
 
     /**
      * 全量加载自定义停用词库
      */
     private void reloadMysqlStopWordDict() {
-        logger.info("## begin reload mysql stopWordDict 扩展停用词：");
-        loadMysqlStopWordDict(null);
+        try {
+            stopWordWatermark = syncMysqlWords("ext_stopwords", jdbcProps.getProperty(EXT_STOP_TABLE),
+                    WordSync.Watermark.INITIAL, true, DictUpdate::new, null, null);
+        } catch (Exception e) {
+            logger.error("[DB Sync] ext_stopwords initial load failed, error is ", e);
+        }
     }
 
-
     /**
      * 增量加载自定义停用词库
      */
-    private void incrementLoadMysqlStopWordDict() {
-        logger.info("## begin increment load mysql stopWordDict 扩展停用词：");
-        Timestamp ts = new Timestamp(stopWordDicUpdateDate.getTime());
-        String condition = "where updatetime >=  \'"+ts+"\'";
-        loadMysqlStopWordDict(condition);
-    }
-
-    private void loadMysqlStopWordDict(String condition) {
-        String extStopDictTable = jdbcProps.getProperty(EXT_STOP_TABLE);
-        String field = jdbcProps.getProperty(EXT_WORD_FIELD_NAME);
-        String sql = String.join(" ", "SELECT", field, "FROM", extStopDictTable);
-        if (!StringUtils.isNullOrEmpty(condition)) {
-            sql = String.join(" ", sql, condition);
-        }
-
-        QueryDbDto queryDbDto = new QueryDbDto();
-        queryDbDto.setUrl(jdbcProps.getProperty("url"));
-        queryDbDto.setUser(jdbcProps.getProperty("user"));
-        queryDbDto.setPassword(jdbcProps.getProperty("password"));
-        queryDbDto.setSql(sql);
-        List<String> wordList =JDBCUtils.queryWordList(queryDbDto);
-        if(Objects.isNull(wordList)|| wordList.size()==0){
-            logger.info("\"数据库里的停用词为空，不用加载到词典中 ");
+    private void incrementLoadMysqlStopWordDict() throws Exception {
+        if (!isFetching()) {
             return;
         }
+        stopWordWatermark = incrementSyncMysqlWords("ext_stopwords", jdbcProps.getProperty(EXT_STOP_TABLE),
+                stopWordWatermark, true);
+    }
 
-        logger.info("\"## begin load mysql stopWordDict 扩展停用词：");
-        for (String theWord : wordList) {
-            if (theWord != null && !"".equals(theWord.trim())) {
-                logger.info(theWord);
-                _StopWords.fillSegment(theWord.trim().toLowerCase().toCharArray());
+    /**
+     * 从数据库同步词库到词典，新增的词加入词典，标记删除的词从词典中屏蔽
+     * @param dictionary 词典类型，用于日志
+     * @param table 表名
+     * @param from 起始水位
+     * @param stopWords true为停用词典，false为主词典
+     * @param target 目标词典的修改，每批应用时获取并提交，保证写入的是当前生效的词典
+     * @param addedWords 不为null时收集新增的词
+     * @param disabledWords 不为null时收集屏蔽的词
+     * @return 同步后的水位
+     * @throws Exception 同步失败，已应用的批次保留在词典中，下次仍从起始水位重试
+     */
+    private WordSync.Watermark syncMysqlWords(String dictionary, String table, WordSync.Watermark from,
+                                              boolean stopWords, Supplier<DictUpdate> target,
+                                              List<String> addedWords, List<String> disabledWords) throws Exception {
+        long start = System.nanoTime();
+        WordSync sync = wordSyncs.computeIfAbsent(table, t -> new WordSync(getConnectionPool(), jdbcProps, t));
+        WordSync.Result result = sync.sync(from, (added, disabled) -> {
+            // 每批一次替换词典
+            synchronized (sourceLock) {
+                DictUpdate update = target.get();
+                for (char[] word : added) {
+                    update.fill(stopWords, word, true);
+                    if (addedWords != null) {
+                        addedWords.add(new String(word));
+                    }
+                }
+                for (char[] word : disabled) {
+                    update.fill(stopWords, word, false);
+                    if (disabledWords != null) {
+                        disabledWords.add(new String(word));
+                    }
+                }
+                update.commit();
             }
+        });
+        IkEvents.dictionarySync(dictionary, table, result.getRows(), System.nanoTime() - start);
+        logger.info("[DB Sync] {} from table {}: {} rows, {} added, {} disabled, watermark {}",
+                dictionary, table, result.getRows(), result.getAdded(), result.getDisabled(), result.getWatermark());
+        return result.getWatermark();
+    }
+
+    /**
+     * 增量同步数据库词库，集群分发模式下把变化广播给其他节点
+     */
+    private WordSync.Watermark incrementSyncMysqlWords(String dictionary, String table, WordSync.Watermark from,
+                                                       boolean stopWords) throws Exception {
+        if (!clusterDistribution || publisher == null) {
+            return syncMysqlWords(dictionary, table, from, stopWords, DictUpdate::new, null, null);
+        }
+        List<String> added = new ArrayList<>();
+        List<String> disabled = new ArrayList<>();
+        WordSync.Watermark watermark = syncMysqlWords(dictionary, table, from, stopWords, DictUpdate::new,
+                added, disabled);
+        if (!added.isEmpty() || !disabled.isEmpty()) {
+            publishChange(DictDelta.Change.mysql(table, stopWords, added, disabled, watermark));
         }
-        // 更新完之后当前的时间 对时间戳进行更新
-        stopWordDicUpdateDate = new Date();
+        return watermark;
+    }
+
+    /**
+     * 数据库连接池，首次同步时创建，所有词库表共用
+     */
+    private synchronized ConnectionPool getConnectionPool() {
+        if (connectionPool == null) {
+            connectionPool = ConnectionPool.fromProperties(jdbcProps);
+        }
+        return connectionPool;
     }
 
     /**
@@ -724,13 +1354,43 @@ public class Dictionary {
 
     public void reLoadMainDict() {
         logger.info("重新加载词典...");
+        long start = System.nanoTime();
         // 新开一个实例加载词典，减少加载过程对当前词典使用的影响
         Dictionary tmpDict = new Dictionary(configuration);
         tmpDict.configuration = getSingleton().configuration;
         tmpDict.loadMainDict();
         tmpDict.loadStopWordDict();
-        _MainDict = tmpDict._MainDict;
-        _StopWords = tmpDict._StopWords;
+        // 数据库词库也一并加载到新词典中，否则替换后数据库里的词会丢失
+        WordSync.Watermark extWatermark = extDictWatermark;
+        WordSync.Watermark stopWatermark = stopWordWatermark;
+        try {
+            if (Boolean.valueOf(jdbcProps.getProperty(ENABLE_EXT_DICT))) {
+                extWatermark = syncMysqlWords("ext_dict", jdbcProps.getProperty(EXT_DICT_TABLE),
+                        WordSync.Watermark.INITIAL, false, () -> new DictUpdate(tmpDict), null, null);
+            }
+            if (Boolean.valueOf(jdbcProps.getProperty(ENABLE_STOPWORDS_DICT))) {
+                stopWatermark = syncMysqlWords("ext_stopwords", jdbcProps.getProperty(EXT_STOP_TABLE),
+                        WordSync.Watermark.INITIAL, true, () -> new DictUpdate(tmpDict), null, null);
+            }
+        } catch (Exception e) {
+            // 数据库不可用时放弃本次重建，保留当前词典
+            logger.error("重新加载词典失败，数据库词库加载出错", e);
+            return;
+        }
+        synchronized (sourceLock) {
+            // 本地扩展词典和远程词库使用各来源已应用的词，不重新读取；
+            // 与推送的词一起在替换词典的同一个锁内重放，重建期间应用到旧词典的来源变化不会丢失
+            DictUpdate update = new DictUpdate(tmpDict);
+            replaySources(update);
+            if (pushJournal != null) {
+                applyPushed(pushJournal.entries(), update);
+            }
+            _MainDict = tmpDict._MainDict;
+            _StopWords = tmpDict._StopWords;
+        }
+        extDictWatermark = extWatermark;
+        stopWordWatermark = stopWatermark;
+        IkEvents.dictionaryReload("main", System.nanoTime() - start);
         logger.info("重新加载词典完毕...");
     }
 }
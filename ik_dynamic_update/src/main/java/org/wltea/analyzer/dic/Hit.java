@@ -35,6 +35,8 @@ public class Hit {
 	private static final int MATCH = 0x00000001;
 	//Hit前缀匹配
 	private static final int PREFIX = 0x00000010;
+	//完全匹配的词是同义词规则中的词
+	private static final int SYNONYM_TERM = 0x00000100;
 	
 	
 	//该HIT当前状态，默认未匹配
@@ -77,6 +79,19 @@ public class Hit {
 	public void setPrefix() {
 		this.hitState = this.hitState | PREFIX;
 	}
+	/**
+	 * 判断完全匹配的词是否是同义词规则中的词
+	 */
+	public boolean isSynonymTerm() {
+		return (this.hitState & SYNONYM_TERM) > 0;
+	}
+	/**
+	 * 
+	 */
+	public void setSynonymTerm() {
+		this.hitState = this.hitState | SYNONYM_TERM;
+	}
+	
 	/**
 	 * 判断是否是不匹配
 	 */
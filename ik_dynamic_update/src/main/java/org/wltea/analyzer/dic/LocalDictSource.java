@@ -0,0 +1,75 @@
+package org.wltea.analyzer.dic;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本地扩展词典文件来源，文件变化时重新读取并只把差异应用到词典，文件被删除时视为空词表，并由监听线程移除来源
+ */
+final class LocalDictSource {
+
+	private static final Logger logger = ESLoggerFactory.getLogger(LocalDictSource.class.getName());
+
+	private final Dictionary dictionary;
+
+	private final Path file;
+
+	private final WordSource source;
+
+	LocalDictSource(Dictionary dictionary, Path file, boolean stopWords) {
+		this(dictionary, file, stopWords, false);
+	}
+
+	LocalDictSource(Dictionary dictionary, Path file, boolean stopWords, boolean synonymTerms) {
+		this.dictionary = dictionary;
+		this.file = file;
+		this.source = new WordSource(file.toString(), stopWords, synonymTerms, false);
+	}
+
+	Path getFile() {
+		return file;
+	}
+
+	WordSource getSource() {
+		return source;
+	}
+
+	/**
+	 * 重新读取文件，有变化时把差异应用到词典
+	 * @return 词库是否有变化
+	 */
+	synchronized boolean refresh() throws IOException {
+		Dictionary.ApplyResult applied = dictionary.replaceSourceWords(source, readWords(file));
+		if (applied.getAdded() > 0 || applied.getRemoved() > 0) {
+			logger.info("[Dict Update] {}: {} added, {} removed, {} words", file, applied.getAdded(),
+					applied.getRemoved(), dictionary.sourceSize(source));
+			return true;
+		}
+		return false;
+	}
+
+	private static List<String> readWords(Path file) throws IOException {
+		List<String> words = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line = reader.readLine();
+			if (line != null && line.startsWith("\uFEFF")) {
+				line = line.substring(1);
+			}
+			for (; line != null; line = reader.readLine()) {
+				words.add(line);
+			}
+		} catch (NoSuchFileException e) {
+			// 文件已被删除
+		}
+		return words;
+	}
+}
@@ -0,0 +1,254 @@
+package org.wltea.analyzer.dic;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * 监听本地扩展词典（ext_dict、ext_stopwords、ext_synonym_dict）所在目录，文件新增、修改、删除后只把差异应用到词典
+ * 配置为文件时监听其所在目录，配置为目录时监听整个目录树，目录下新增的.dic文件作为新的来源加入，隐藏文件及编辑器的交换、备份文件忽略；
+ * 文件被删除时撤销其中的词并移除来源，配置的文件重新创建后再加入。
+ * 编辑器及配置管理工具写文件时会产生一连串事件，等待事件停止一段时间后再统一处理。
+ */
+final class LocalDictWatcher implements Runnable {
+
+	private static final Logger logger = ESLoggerFactory.getLogger(LocalDictWatcher.class.getName());
+
+	// 最后一个事件之后等待的时间
+	private static final long QUIET_MILLIS = 500;
+
+	private final Dictionary dictionary;
+
+	// 配置的目录及其是否为停用词目录
+	private final Map<Path, Boolean> directories = new HashMap<>();
+
+	// 配置的同义词规则词表目录，也在directories中
+	private final Set<Path> synonymDirectories = new HashSet<>();
+
+	// 启动时的来源，配置的文件被删除后重新创建时按原来的类型加入
+	private final Map<Path, LocalDictSource> configuredFiles = new HashMap<>();
+
+	private final Map<WatchKey, Path> keys = new HashMap<>();
+
+	private WatchService watchService;
+
+	LocalDictWatcher(Dictionary dictionary, List<Path> mainPaths, List<Path> stopPaths, List<Path> synonymPaths) {
+		this.dictionary = dictionary;
+		for (Path path : mainPaths) {
+			if (Files.isDirectory(path)) {
+				directories.put(path.toAbsolutePath(), false);
+			}
+		}
+		for (Path path : stopPaths) {
+			if (Files.isDirectory(path)) {
+				directories.put(path.toAbsolutePath(), true);
+			}
+		}
+		for (Path path : synonymPaths) {
+			if (Files.isDirectory(path)) {
+				directories.put(path.toAbsolutePath(), false);
+				synonymDirectories.add(path.toAbsolutePath());
+			}
+		}
+	}
+
+	void start() {
+		Set<Path> watched = new LinkedHashSet<>();
+		for (LocalDictSource source : dictionary.getLocalSources()) {
+			configuredFiles.put(source.getFile().toAbsolutePath(), source);
+			Path parent = source.getFile().toAbsolutePath().getParent();
+			if (parent != null) {
+				watched.add(parent);
+			}
+		}
+		watched.addAll(directories.keySet());
+		if (watched.isEmpty()) {
+			return;
+		}
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			for (Path dir : watched) {
+				registerTree(dir);
+			}
+		} catch (IOException e) {
+			logger.error("[Dict Watch] failed to watch local dictionaries, changes need a restart to take effect", e);
+			return;
+		}
+		Thread thread = new Thread(this, "ik-local-dict-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void registerTree(Path dir) throws IOException {
+		if (!Files.isDirectory(dir)) {
+			return;
+		}
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+				if (!keys.containsValue(d)) {
+					keys.put(d.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), d);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			Set<Path> changed = new LinkedHashSet<>();
+			boolean overflow;
+			try {
+				overflow = collect(watchService.take(), changed);
+				WatchKey key;
+				while ((key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+					overflow |= collect(key, changed);
+				}
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				return;
+			}
+			if (overflow) {
+				// 丢失了事件，全部重新读取
+				for (LocalDictSource source : dictionary.getLocalSources()) {
+					if (Files.exists(source.getFile())) {
+						refresh(source);
+					} else {
+						dictionary.removeLocalSource(source);
+					}
+				}
+				for (Map.Entry<Path, Boolean> dir : directories.entrySet()) {
+					addNewFiles(dir.getKey(), dir.getValue());
+				}
+				continue;
+			}
+			for (Path path : changed) {
+				onChanged(path);
+			}
+		}
+	}
+
+	private boolean collect(WatchKey key, Set<Path> changed) {
+		boolean overflow = false;
+		Path dir = keys.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				overflow = true;
+			} else if (dir != null) {
+				changed.add(dir.resolve((Path) event.context()));
+			}
+		}
+		if (!key.reset()) {
+			keys.remove(key);
+		}
+		return overflow;
+	}
+
+	private void onChanged(Path path) {
+		if (!Files.exists(path)) {
+			// 文件或目录被删除，移除其下的来源
+			for (LocalDictSource source : dictionary.getLocalSources()) {
+				Path file = source.getFile().toAbsolutePath();
+				if (file.startsWith(path) && !Files.exists(file)) {
+					dictionary.removeLocalSource(source);
+				}
+			}
+			return;
+		}
+		LocalDictSource source = dictionary.findLocalSource(path);
+		if (source != null) {
+			refresh(source);
+			return;
+		}
+		LocalDictSource configured = configuredFiles.get(path);
+		if (configured != null) {
+			// 配置的文件被删除后重新创建
+			refresh(dictionary.addLocalSource(path, configured.getSource().isStopWords(),
+					configured.getSource().isSynonymTerms()));
+			return;
+		}
+		Boolean stopWords = configuredDirectory(path);
+		if (stopWords == null) {
+			// 同一目录下与词典无关的文件
+			return;
+		}
+		if (Files.isDirectory(path)) {
+			try {
+				registerTree(path);
+			} catch (IOException e) {
+				logger.error("[Dict Watch] failed to watch {}", path, e);
+			}
+			addNewFiles(path, stopWords);
+		} else if (Files.isRegularFile(path) && Dictionary.isDictFile(path)) {
+			refresh(dictionary.addLocalSource(path, stopWords, isSynonymDirectory(path)));
+		}
+	}
+
+	private void addNewFiles(Path dir, boolean stopWords) {
+		try {
+			Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+					if (Dictionary.isDictFile(file) && dictionary.findLocalSource(file) == null) {
+						refresh(dictionary.addLocalSource(file, stopWords, isSynonymDirectory(file)));
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			logger.error("[Dict Watch] failed to list {}", dir, e);
+		}
+	}
+
+	/**
+	 * @return 路径位于配置的目录下时返回该目录是否为停用词目录，否则返回null
+	 */
+	private Boolean configuredDirectory(Path path) {
+		for (Map.Entry<Path, Boolean> dir : directories.entrySet()) {
+			if (path.startsWith(dir.getKey())) {
+				return dir.getValue();
+			}
+		}
+		return null;
+	}
+
+	private boolean isSynonymDirectory(Path path) {
+		for (Path dir : synonymDirectories) {
+			if (path.startsWith(dir)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void refresh(LocalDictSource source) {
+		try {
+			source.refresh();
+		} catch (Exception e) {
+			logger.error("[Dict Update] {} reload failed", source.getFile(), e);
+		}
+	}
+}
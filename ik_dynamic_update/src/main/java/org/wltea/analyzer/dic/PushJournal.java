@@ -0,0 +1,192 @@
+package org.wltea.analyzer.dic;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 通过REST接口推送的词的本地日志，每行一条：+/-、main/stop、词，以制表符分隔
+ * 追加写入并刷盘后才应用到词典，节点重启或词典重建时重放；
+ * 同一个词只有最后一次操作有效，加载时以及文件行数超过有效操作数的两倍（且不少于COMPACT_MIN_LINES）时按此压缩后重写文件。
+ */
+final class PushJournal {
+
+	private static final Logger logger = ESLoggerFactory.getLogger(PushJournal.class.getName());
+
+	// 行数低于此值时不压缩，避免推送少量词时频繁重写
+	private static final int COMPACT_MIN_LINES = 1024;
+
+	private final Path file;
+
+	// 文件中的行数，包括被后来的操作覆盖的行
+	private int lines;
+
+	// 每个词最后一次的操作，key为类型+词
+	private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+	PushJournal(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * 读取并压缩日志
+	 */
+	synchronized void load() throws IOException {
+		entries.clear();
+		lines = 0;
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				Entry entry = Entry.parse(line);
+				if (entry == null) {
+					// 写到一半的最后一行
+					logger.warn("[Push Journal] skip broken line in {}: {}", file, line);
+					continue;
+				}
+				lines++;
+				put(entry);
+			}
+		} catch (NoSuchFileException e) {
+			return;
+		}
+		compact();
+		logger.info("[Push Journal] loaded {} pushed words from {}", entries.size(), file);
+	}
+
+	/**
+	 * 追加并刷盘
+	 */
+	synchronized void append(List<Entry> batch) throws IOException {
+		if (batch.isEmpty()) {
+			return;
+		}
+		StringBuilder sb = new StringBuilder();
+		for (Entry entry : batch) {
+			sb.append(entry.toLine());
+		}
+		Files.createDirectories(file.getParent());
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND)) {
+			ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+		}
+		lines += batch.size();
+		for (Entry entry : batch) {
+			put(entry);
+		}
+		if (lines >= COMPACT_MIN_LINES && lines > entries.size() * 2) {
+			try {
+				compact();
+			} catch (IOException e) {
+				// 追加的内容已刷盘，压缩失败不影响推送，下次追加时重试
+				logger.warn("[Push Journal] compact {} failed", file, e);
+			}
+		}
+	}
+
+	/**
+	 * 每个词只保留最后一次操作，写入临时文件后原子替换
+	 */
+	private void compact() throws IOException {
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+			 Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1)) {
+			for (Entry entry : entries.values()) {
+				writer.write(entry.toLine());
+			}
+			writer.flush();
+			channel.force(false);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		lines = entries.size();
+	}
+
+	synchronized List<Entry> entries() {
+		return new ArrayList<>(entries.values());
+	}
+
+	/**
+	 * @return 该词最后一次推送的操作，没有推送过时为null
+	 */
+	synchronized Entry get(boolean stopWords, String word) {
+		return entries.get(key(stopWords, word));
+	}
+
+	private static String key(boolean stopWords, String word) {
+		return (stopWords ? "stop\t" : "main\t") + word;
+	}
+
+	private void put(Entry entry) {
+		String key = key(entry.stopWords, entry.word);
+		// 先删除再放入，保持最后一次操作的顺序
+		entries.remove(key);
+		entries.put(key, entry);
+	}
+
+	/**
+	 * 一次推送的一个词
+	 */
+	static final class Entry {
+
+		final boolean stopWords;
+
+		// true为新增，false为屏蔽
+		final boolean add;
+
+		final String word;
+
+		Entry(boolean stopWords, boolean add, String word) {
+			this.stopWords = stopWords;
+			this.add = add;
+			this.word = word;
+		}
+
+		String toLine() {
+			return (add ? "+" : "-") + "\t" + (stopWords ? "stop" : "main") + "\t" + word + "\n";
+		}
+
+		static Entry parse(String line) {
+			String[] parts = line.split("\t", 3);
+			if (parts.length != 3 || parts[2].isEmpty()) {
+				return null;
+			}
+			boolean add;
+			if ("+".equals(parts[0])) {
+				add = true;
+			} else if ("-".equals(parts[0])) {
+				add = false;
+			} else {
+				return null;
+			}
+			boolean stopWords;
+			if ("stop".equals(parts[1])) {
+				stopWords = true;
+			} else if ("main".equals(parts[1])) {
+				stopWords = false;
+			} else {
+				return null;
+			}
+			return new Entry(stopWords, add, parts[2]);
+		}
+	}
+}
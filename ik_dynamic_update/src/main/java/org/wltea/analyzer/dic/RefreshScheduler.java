@@ -0,0 +1,193 @@
+package org.wltea.analyzer.dic;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 词库刷新调度
+ * 每个来源（远程词库地址、数据库词库表）是一个独立任务，在工作线程中执行，互不阻塞；
+ * 任务结束后才计算下一次执行时间，同一来源不会并发刷新。
+ * 每次间隔带±20%的随机抖动，首次执行在一个间隔内随机延迟，避免所有节点同时请求词库服务器和数据库；
+ * 失败后按指数退避重试，超时的任务会被中断并记为失败。
+ */
+final class RefreshScheduler {
+
+	private static final Logger logger = ESLoggerFactory.getLogger(RefreshScheduler.class.getName());
+
+	// 间隔的随机抖动比例
+	private static final double JITTER = 0.2;
+	// 失败重试的初始间隔及上限
+	private static final long BACKOFF_INITIAL_MILLIS = 10 * 1000L;
+	private static final long BACKOFF_MAX_MILLIS = 30 * 60 * 1000L;
+
+	/**
+	 * 一次刷新，失败时抛出异常
+	 */
+	@FunctionalInterface
+	interface Refresher {
+		void refresh() throws Exception;
+	}
+
+	// 只负责计时，不执行刷新
+	private final ScheduledExecutorService timer;
+	// 执行刷新，每个来源同时最多占用一个线程
+	private final ExecutorService workers;
+
+	private final List<Task> tasks = new CopyOnWriteArrayList<>();
+
+	RefreshScheduler() {
+		this.timer = Executors.newSingleThreadScheduledExecutor(threadFactory("ik-dict-refresh-timer"));
+		this.workers = Executors.newCachedThreadPool(threadFactory("ik-dict-refresh"));
+	}
+
+	private static ThreadFactory threadFactory(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+
+	/**
+	 * 添加一个来源的定时刷新
+	 * @param type 来源类型，如remote_ext_dict、mysql_ext_dict
+	 * @param name 来源名称，如地址或表名
+	 * @param intervalMillis 刷新间隔
+	 * @param timeoutMillis 单次刷新超时时间
+	 * @param refresher 刷新逻辑
+	 */
+	void schedule(String type, String name, long intervalMillis, long timeoutMillis, Refresher refresher) {
+		Task task = new Task(new SourceHealth(type, name), intervalMillis, timeoutMillis, refresher);
+		tasks.add(task);
+		// 首次执行在一个间隔内随机延迟
+		task.scheduleNext((long) (ThreadLocalRandom.current().nextDouble() * intervalMillis));
+	}
+
+	/**
+	 * 在工作线程中执行一次性任务
+	 */
+	void execute(String name, Refresher refresher) {
+		workers.execute(() -> {
+			try {
+				refresher.refresh();
+			} catch (Throwable e) {
+				logger.error("[Dict Refresh] {} failed", name, e);
+			}
+		});
+	}
+
+	List<SourceHealth> health() {
+		List<SourceHealth> health = new ArrayList<>(tasks.size());
+		for (Task task : tasks) {
+			health.add(task.health.copy());
+		}
+		return health;
+	}
+
+	static long jitter(long millis) {
+		double factor = 1 + (ThreadLocalRandom.current().nextDouble() * 2 - 1) * JITTER;
+		return Math.max(1, (long) (millis * factor));
+	}
+
+	static long backoff(long intervalMillis, int consecutiveFailures) {
+		long delay = BACKOFF_INITIAL_MILLIS << Math.min(consecutiveFailures - 1, 20);
+		return Math.min(delay, Math.max(BACKOFF_MAX_MILLIS, intervalMillis));
+	}
+
+	private final class Task {
+
+		private final SourceHealth health;
+		private final long intervalMillis;
+		private final long timeoutMillis;
+		private final Refresher refresher;
+
+		Task(SourceHealth health, long intervalMillis, long timeoutMillis, Refresher refresher) {
+			this.health = health;
+			this.intervalMillis = intervalMillis;
+			this.timeoutMillis = timeoutMillis;
+			this.refresher = refresher;
+		}
+
+		void scheduleNext(long delayMillis) {
+			health.nextRefresh(System.currentTimeMillis() + delayMillis);
+			timer.schedule(() -> {
+				Refresh refresh = new Refresh();
+				FutureTask<Void> future = new FutureTask<Void>(refresh, null) {
+					@Override
+					protected void done() {
+						// 还在队列中就被取消（超时）时run()不会执行，由这里安排下一次
+						if (isCancelled() && refresh.started.compareAndSet(false, true)) {
+							refresh.scheduleAfter();
+						}
+					}
+				};
+				refresh.timeout = timer.schedule(() -> {
+					if (refresh.finished.compareAndSet(false, true)) {
+						health.failed(System.currentTimeMillis() - timeoutMillis, timeoutMillis,
+								"timed out after " + timeoutMillis + "ms");
+						// 中断刷新线程，正在执行时由run()结束时安排下一次，避免同一来源并发刷新
+						future.cancel(true);
+					}
+				}, timeoutMillis, TimeUnit.MILLISECONDS);
+				workers.execute(future);
+			}, delayMillis, TimeUnit.MILLISECONDS);
+		}
+
+		/**
+		 * 一次刷新，无论正常结束、失败、超时中断还是未开始就被取消，都恰好安排一次下一次刷新
+		 */
+		private final class Refresh implements Runnable {
+
+			// 刷新结果和超时只有一方能记录
+			private final AtomicBoolean finished = new AtomicBoolean();
+			// 开始执行和取消只有一方能安排下一次
+			private final AtomicBoolean started = new AtomicBoolean();
+			private volatile ScheduledFuture<?> timeout;
+
+			@Override
+			public void run() {
+				if (!started.compareAndSet(false, true)) {
+					return;
+				}
+				long start = System.currentTimeMillis();
+				try {
+					refresher.refresh();
+					if (finished.compareAndSet(false, true)) {
+						health.succeeded(start, System.currentTimeMillis() - start);
+					}
+				} catch (Throwable e) {
+					if (finished.compareAndSet(false, true)) {
+						health.failed(start, System.currentTimeMillis() - start, e.toString());
+					}
+					logger.error("[Dict Refresh] {} {} failed", health.getType(), health.getName(), e);
+				} finally {
+					ScheduledFuture<?> t = timeout;
+					if (t != null) {
+						t.cancel(false);
+					}
+					scheduleAfter();
+				}
+			}
+
+			void scheduleAfter() {
+				int failures = health.getConsecutiveFailures();
+				scheduleNext(jitter(failures == 0 ? intervalMillis : backoff(intervalMillis, failures)));
+			}
+		}
+	}
+}
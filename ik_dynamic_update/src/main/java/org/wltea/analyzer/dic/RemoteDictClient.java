@@ -0,0 +1,170 @@
+package org.wltea.analyzer.dic;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.SpecialPermission;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 远程词库下载
+ * 所有远程词库共用一个带连接池的HttpClient，请求带Accept-Encoding: gzip并自动解压，
+ * 使用If-Modified-Since/If-None-Match条件请求，未变化时服务端返回304，不传输词表。
+ *
+ * 增量协议（可选）：请求带since=上次响应的X-Dict-Version，服务端可以返回
+ * X-Dict-Delta: true，此时响应体每行为"+词"或"-词"，表示新增或删除；否则视为全量词表。
+ */
+final class RemoteDictClient {
+
+	static final String HEADER_VERSION = "X-Dict-Version";
+	static final String HEADER_DELTA = "X-Dict-Delta";
+	static final String PARAM_SINCE = "since";
+
+	private static final CloseableHttpClient httpclient;
+
+	static {
+		PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
+		cm.setMaxTotal(20);
+		cm.setDefaultMaxPerRoute(4);
+		// HttpClientBuilder默认开启gzip/deflate内容压缩
+		httpclient = HttpClients.custom()
+				.setConnectionManager(cm)
+				.setDefaultRequestConfig(RequestConfig.custom().setConnectionRequestTimeout(10 * 1000)
+						.setConnectTimeout(10 * 1000).setSocketTimeout(30 * 1000).build())
+				.build();
+	}
+
+	private RemoteDictClient() {
+	}
+
+	/**
+	 * 条件请求远程词库
+	 * @param location 词库地址
+	 * @param lastModified 上次响应的Last-Modified，可以为null
+	 * @param eTag 上次响应的ETag，可以为null
+	 * @param since 上次响应的X-Dict-Version，不为null时以增量协议请求
+	 * @return 下载结果
+	 */
+	static FetchResult fetch(String location, String lastModified, String eTag, String since) throws IOException {
+		SpecialPermission.check();
+		try {
+			return AccessController.doPrivileged((PrivilegedExceptionAction<FetchResult>) () ->
+					fetchUnprivileged(location, lastModified, eTag, since));
+		} catch (PrivilegedActionException e) {
+			throw (IOException) e.getException();
+		}
+	}
+
+	private static FetchResult fetchUnprivileged(String location, String lastModified, String eTag, String since) throws IOException {
+		HttpGet get;
+		try {
+			URIBuilder uri = new URIBuilder(location);
+			if (since != null) {
+				uri.setParameter(PARAM_SINCE, since);
+			}
+			get = new HttpGet(uri.build());
+		} catch (URISyntaxException e) {
+			throw new IOException("invalid remote dict location " + location, e);
+		}
+		if (lastModified != null) {
+			get.setHeader("If-Modified-Since", lastModified);
+		}
+		if (eTag != null) {
+			get.setHeader("If-None-Match", eTag);
+		}
+
+		try (CloseableHttpResponse response = httpclient.execute(get)) {
+			int status = response.getStatusLine().getStatusCode();
+			FetchResult result = new FetchResult(status);
+			if (status != 200) {
+				EntityUtils.consumeQuietly(response.getEntity());
+				return result;
+			}
+			result.lastModified = headerValue(response.getLastHeader("Last-Modified"));
+			result.eTag = headerValue(response.getLastHeader("ETag"));
+			result.version = headerValue(response.getLastHeader(HEADER_VERSION));
+			result.delta = since != null && "true".equalsIgnoreCase(headerValue(response.getLastHeader(HEADER_DELTA)));
+
+			HttpEntity entity = response.getEntity();
+			if (entity == null) {
+				return result;
+			}
+			// 获取编码，默认为utf-8
+			Charset charset = StandardCharsets.UTF_8;
+			ContentType contentType = ContentType.get(entity);
+			if (contentType != null && contentType.getCharset() != null) {
+				charset = contentType.getCharset();
+			}
+			try (BufferedReader in = new BufferedReader(new InputStreamReader(entity.getContent(), charset))) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					String word = line.trim();
+					if (word.isEmpty()) {
+						continue;
+					}
+					if (result.delta) {
+						char op = word.charAt(0);
+						String w = word.substring(1).trim();
+						if (w.isEmpty()) {
+							continue;
+						}
+						if (op == '-') {
+							result.removed.add(w);
+						} else if (op == '+') {
+							result.added.add(w);
+						}
+					} else {
+						result.added.add(word);
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+	private static String headerValue(Header header) {
+		return header == null ? null : header.getValue();
+	}
+
+	/**
+	 * 下载结果
+	 */
+	static final class FetchResult {
+
+		final int status;
+		String lastModified;
+		String eTag;
+		String version;
+		// 为true时added/removed为增量，否则added为全量词表
+		boolean delta;
+		final List<String> added = new ArrayList<>();
+		final List<String> removed = new ArrayList<>();
+
+		FetchResult(int status) {
+			this.status = status;
+		}
+
+		boolean isModified() {
+			return status == 200;
+		}
+	}
+}
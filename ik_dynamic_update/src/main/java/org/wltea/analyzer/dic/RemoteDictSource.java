@@ -0,0 +1,95 @@
+package org.wltea.analyzer.dic;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * 远程词库来源，记录条件请求需要的Last-Modified、ETag以及增量协议的版本号
+ */
+final class RemoteDictSource {
+
+	private static final Logger logger = ESLoggerFactory.getLogger(RemoteDictSource.class.getName());
+
+	private final Dictionary dictionary;
+
+	private final String location;
+
+	private final WordSource source;
+
+	// 是否使用since=增量协议
+	private final boolean deltaEnabled;
+
+	private volatile String lastModified;
+
+	private volatile String eTag;
+
+	private volatile String version;
+
+	RemoteDictSource(Dictionary dictionary, String location, boolean stopWords, boolean deltaEnabled) {
+		this.dictionary = dictionary;
+		this.location = location;
+		this.source = new WordSource(location, stopWords);
+		this.deltaEnabled = deltaEnabled;
+	}
+
+	String getLocation() {
+		return location;
+	}
+
+	WordSource getSource() {
+		return source;
+	}
+
+	/**
+	 * 请求远程词库，有变化时把差异应用到词典
+	 * @return 词库是否有变化
+	 */
+	synchronized boolean refresh() throws IOException {
+		String since = deltaEnabled && dictionary.sourceSize(source) > 0 ? version : null;
+		RemoteDictClient.FetchResult result = RemoteDictClient.fetch(location, lastModified, eTag, since);
+		if (result.status == 304) {
+			return false;
+		}
+		if (!result.isModified()) {
+			throw new IOException("remote dict " + location + " return bad code " + result.status);
+		}
+		Dictionary.ApplyResult applied;
+		if (result.delta) {
+			applied = dictionary.applySourceDelta(source, result.added, result.removed);
+		} else {
+			applied = dictionary.replaceSourceWords(source, result.added);
+		}
+		lastModified = result.lastModified;
+		eTag = result.eTag;
+		version = result.version;
+		if (applied.getAdded() > 0 || applied.getRemoved() > 0) {
+			dictionary.publishChange(DictDelta.Change.remote(location, source.isStopWords(),
+					applied.getAddedWords(), applied.getRemovedWords(), lastModified, eTag, version));
+		}
+		logger.info("[Dict Update] {} {}: {} added, {} removed, {} words", result.delta ? "delta" : "full",
+				location, applied.getAdded(), applied.getRemoved(), dictionary.sourceSize(source));
+		return applied.getAdded() > 0 || applied.getRemoved() > 0;
+	}
+
+	/**
+	 * 应用取词节点广播的本地址的变化，并记下其条件请求头，本节点成为取词节点后从这里继续
+	 * 变化加入增量的同一组词典修改中，与增量的其他变化一起生效
+	 */
+	synchronized void applyPublished(Dictionary.DictUpdate update, DictDelta.Change change) {
+		dictionary.applySourceDelta(update, source, change.added, change.removed);
+		lastModified = change.lastModified;
+		eTag = change.eTag;
+		version = change.remoteVersion;
+	}
+
+	/**
+	 * 清除条件请求头，下次刷新重新下载全量词表
+	 */
+	synchronized void resetValidators() {
+		lastModified = null;
+		eTag = null;
+		version = null;
+	}
+}
@@ -0,0 +1,102 @@
+package org.wltea.analyzer.dic;
+
+/**
+ * 词库来源的刷新状态
+ */
+public final class SourceHealth {
+
+	private final String type;
+	private final String name;
+
+	private long successCount;
+	private long failureCount;
+	private int consecutiveFailures;
+	private long lastSuccess = -1;
+	private long lastFailure = -1;
+	private String lastError;
+	private long lastDurationMillis = -1;
+	private long nextRefresh = -1;
+
+	SourceHealth(String type, String name) {
+		this.type = type;
+		this.name = name;
+	}
+
+	synchronized SourceHealth copy() {
+		SourceHealth copy = new SourceHealth(type, name);
+		copy.successCount = successCount;
+		copy.failureCount = failureCount;
+		copy.consecutiveFailures = consecutiveFailures;
+		copy.lastSuccess = lastSuccess;
+		copy.lastFailure = lastFailure;
+		copy.lastError = lastError;
+		copy.lastDurationMillis = lastDurationMillis;
+		copy.nextRefresh = nextRefresh;
+		return copy;
+	}
+
+	synchronized void nextRefresh(long time) {
+		this.nextRefresh = time;
+	}
+
+	synchronized void succeeded(long start, long duration) {
+		this.successCount++;
+		this.consecutiveFailures = 0;
+		this.lastSuccess = start;
+		this.lastDurationMillis = duration;
+	}
+
+	synchronized void failed(long start, long duration, String error) {
+		this.failureCount++;
+		this.consecutiveFailures++;
+		this.lastFailure = start;
+		this.lastDurationMillis = duration;
+		this.lastError = error;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public synchronized long getSuccessCount() {
+		return successCount;
+	}
+
+	public synchronized long getFailureCount() {
+		return failureCount;
+	}
+
+	public synchronized int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	/**
+	 * @return 最近一次成功刷新的开始时间，从未成功时为-1
+	 */
+	public synchronized long getLastSuccess() {
+		return lastSuccess;
+	}
+
+	/**
+	 * @return 最近一次失败的时间，从未失败时为-1
+	 */
+	public synchronized long getLastFailure() {
+		return lastFailure;
+	}
+
+	public synchronized String getLastError() {
+		return lastError;
+	}
+
+	public synchronized long getLastDurationMillis() {
+		return lastDurationMillis;
+	}
+
+	public synchronized long getNextRefresh() {
+		return nextRefresh;
+	}
+}
@@ -0,0 +1,76 @@
+package org.wltea.analyzer.dic;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 一个动态词库来源（远程词库地址、本地扩展词典文件等）当前已应用到词典中的词
+ * 来源更新时只把与上次的差异应用到词典：新增的词fillSegment，消失的词disableSegment。
+ * 只有由本来源加入词典的词（加入前词典中没有）才归本来源所有，删除时不会误屏蔽主词典或其他来源中的同一个词。
+ */
+final class WordSource {
+
+	private final String name;
+
+	// true为停用词来源，false为扩展词来源
+	private final boolean stopWords;
+
+	// 是否为同义词规则词表，其中的词在主词典中带有同义词标记
+	private final boolean synonymTerms;
+
+	// 是否把词转小写：远程词库与数据库一样转小写，本地词典文件与原来一样只trim、保留大小写
+	private final boolean lowercase;
+
+	// 当前已应用的全部词，已按normalizeWord规整；words及owned只在Dictionary的sourceLock内读写
+	final Set<String> words = new HashSet<>();
+
+	// 由本来源加入词典的词，words的子集
+	final Set<String> owned = new HashSet<>();
+
+	WordSource(String name, boolean stopWords) {
+		this(name, stopWords, false, true);
+	}
+
+	WordSource(String name, boolean stopWords, boolean synonymTerms, boolean lowercase) {
+		this.name = name;
+		this.stopWords = stopWords;
+		this.synonymTerms = synonymTerms;
+		this.lowercase = lowercase;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	boolean isStopWords() {
+		return stopWords;
+	}
+
+	boolean isSynonymTerms() {
+		return synonymTerms;
+	}
+
+	/**
+	 * 按本来源的规则规整词
+	 * @return 规整后的词，空词为null
+	 */
+	String normalizeWord(String word) {
+		return normalize(word, lowercase);
+	}
+
+	/**
+	 * trim并转小写
+	 * @return 规整后的词，空词为null
+	 */
+	static String normalize(String word) {
+		return normalize(word, true);
+	}
+
+	private static String normalize(String word, boolean lowercase) {
+		if (word == null) {
+			return null;
+		}
+		String w = lowercase ? word.trim().toLowerCase() : word.trim();
+		return w.isEmpty() ? null : w;
+	}
+}
@@ -0,0 +1,161 @@
+package org.wltea.analyzer.dic.db;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 简单的数据库连接池
+ * 词库同步是低频的后台任务，只需要少量长连接复用，避免每次轮询都重新建立连接，
+ * 因此不引入第三方连接池，只做借出/归还、取出时校验以及最大连接数限制。
+ * 与同义词插件的com.ginobefunny.elasticsearch.plugins.synonym.service.db.ConnectionPool是同一份代码：两个插件分别打包、由各自的类加载器加载，
+ * 不能共用一个类，修改时两份需要同步。
+ **/
+public class ConnectionPool implements Closeable {
+
+    private static final Logger LOGGER = ESLoggerFactory.getLogger(ConnectionPool.class.getName());
+
+    // jdbc.properties配置信息
+    private final static String DRIVER = "driver";
+    private final static String URL = "url";
+    private final static String USER = "user";
+    private final static String PASSWORD = "password";
+    private final static String POOL_MAX_SIZE = "pool.max.size";
+    private final static String POOL_MAX_WAIT = "pool.max.wait.ms";
+    private final static String POOL_VALIDATION_TIMEOUT = "pool.validation.timeout.seconds";
+
+    private final String url;
+
+    private final String user;
+
+    private final String password;
+
+    private final long maxWaitMillis;
+
+    private final int validationTimeout;
+
+    // 空闲连接，后进先出，尽量复用最近使用过的连接
+    private final LinkedBlockingDeque<Connection> idle = new LinkedBlockingDeque<>();
+
+    // 同时借出的连接数上限
+    private final Semaphore permits;
+
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String driver, String url, String user, String password,
+                          int maxSize, long maxWaitMillis, int validationTimeout) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxWaitMillis = maxWaitMillis;
+        this.validationTimeout = validationTimeout;
+        this.permits = new Semaphore(maxSize, true);
+        try {
+            Class.forName(driver);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("jdbc driver [" + driver + "] not found", e);
+        }
+    }
+
+    public static ConnectionPool fromProperties(Properties props) {
+        return new ConnectionPool(
+                props.getProperty(DRIVER, "com.mysql.cj.jdbc.Driver"),
+                props.getProperty(URL),
+                props.getProperty(USER),
+                props.getProperty(PASSWORD),
+                Integer.parseInt(props.getProperty(POOL_MAX_SIZE, "2")),
+                Long.parseLong(props.getProperty(POOL_MAX_WAIT, "30000")),
+                Integer.parseInt(props.getProperty(POOL_VALIDATION_TIMEOUT, "5")));
+    }
+
+    /**
+     * 借出一个可用连接，用完必须调用release归还
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("timeout waiting for a jdbc connection after " + maxWaitMillis + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for a jdbc connection", e);
+        }
+        try {
+            Connection conn;
+            while ((conn = idle.pollFirst()) != null) {
+                if (isUsable(conn)) {
+                    return conn;
+                }
+                closeQuietly(conn);
+            }
+            return DriverManager.getConnection(url, user, password);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 归还连接
+     * @param conn 借出的连接
+     * @param broken 使用过程中出现错误时为true，连接直接关闭不再复用
+     */
+    public void release(Connection conn, boolean broken) {
+        if (conn == null) {
+            return;
+        }
+        try {
+            if (broken || closed) {
+                closeQuietly(conn);
+            } else {
+                idle.offerFirst(conn);
+            }
+        } finally {
+            permits.release();
+        }
+        // close()与归还并发时，保证连接不会遗留在池中
+        if (closed) {
+            drain();
+        }
+    }
+
+    private boolean isUsable(Connection conn) {
+        try {
+            return !conn.isClosed() && conn.isValid(validationTimeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        drain();
+    }
+
+    private void drain() {
+        Connection conn;
+        while ((conn = idle.pollFirst()) != null) {
+            closeQuietly(conn);
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            LOGGER.error("connection close failed, error is ", e);
+        }
+    }
+}
@@ -2,11 +2,8 @@ package org.wltea.analyzer.dic.db;
 
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.common.logging.ESLoggerFactory;
-import org.wltea.analyzer.dic.Monitor;
 
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * @Author: seastliu
@@ -16,63 +13,61 @@ import java.util.List;
  **/
 public class JDBCUtils {
 
-    private static final Logger LOGGER = ESLoggerFactory.getLogger(Monitor.class.getName());
+    private static final Logger LOGGER = ESLoggerFactory.getLogger(JDBCUtils.class.getName());
 
-    public static List<String> queryWordList(QueryDbDto queryDbDto) {
-        List<String> list = new ArrayList<String>();
-        Connection conn = null;
-        Statement stmt = null;
-        ResultSet rs = null;
-        try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            conn = DriverManager.getConnection(queryDbDto.getUrl(),
-                    queryDbDto.getUser(), queryDbDto.getPassword());
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery(queryDbDto.getSql());
-            while (rs.next()) {
-                String rule = rs.getString("word");
-                list.add(rule);
-            }
-        } catch (Exception e) {
-            LOGGER.error("query word list failed, sql is " + queryDbDto.getSql() + ", error is ", e);
-        } finally {
-            closeQuietly(conn, stmt, rs);
-        }
+    /**
+     * MySQL驱动只有在fetchSize为Integer.MIN_VALUE时才逐行流式返回结果，否则会把整个结果集读入内存
+     */
+    public static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
 
-        return list;
+    /**
+     * 设置PreparedStatement参数
+     */
+    @FunctionalInterface
+    public interface StatementSetter {
+        void setValues(PreparedStatement ps) throws SQLException;
     }
 
-    private static void closeQuietly(Connection conn, Statement stmt, ResultSet rs) {
-        if (rs != null) {
-            try {
-                rs.close();
-            } catch (SQLException e) {
-                LOGGER.error("resultSet close failed, error is ", e);
-            }
-        }
-        if (stmt != null) {
-            try {
-                stmt.close();
-            } catch (SQLException e) {
-                LOGGER.error("statement close failed, error is ", e);
+    /**
+     * 逐行处理查询结果
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * 以流式方式执行查询，每读到一行就交给handler处理，不在内存中缓存整个结果集
+     * @param pool 连接池
+     * @param sql 带占位符的查询语句
+     * @param setter 参数设置，可以为null
+     * @param fetchSize 每次从服务端拉取的行数，STREAMING_FETCH_SIZE为逐行流式读取
+     * @param handler 行处理
+     * @return 处理的行数
+     */
+    public static long query(ConnectionPool pool, String sql, StatementSetter setter, int fetchSize,
+                             RowHandler handler) throws SQLException {
+        Connection conn = pool.borrow();
+        boolean broken = true;
+        long rows = 0;
+        try (PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(fetchSize);
+            if (setter != null) {
+                setter.setValues(ps);
             }
-        }
-        if (conn != null) {
-            try {
-                conn.close();
-            } catch (SQLException e) {
-                LOGGER.error("connection close failed, error is ", e);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    handler.handle(rs);
+                    rows++;
+                }
             }
+            broken = false;
+        } catch (SQLException e) {
+            LOGGER.error("query failed, sql is " + sql + ", error is ", e);
+            throw e;
+        } finally {
+            pool.release(conn, broken);
         }
-    }
-
-    public static void main(String[] args) {
-        QueryDbDto queryDbDto = new QueryDbDto();
-        queryDbDto.setUrl("jdbc:mysql://168.63.117.157:3306/zlcft?useUnicode=true&serverTimezone=GMT%2B8&useSSL=false" +
-                "&&characterEncoding=UTF-8&zeroDateTimeBehavior=convertToNull");
-        queryDbDto.setUser("zlcft");
-        queryDbDto.setPassword("zlcft");
-        queryDbDto.setSql("SELECT word FROM ik_ext");
-        System.out.println(queryWordList(queryDbDto));
+        return rows;
     }
 }
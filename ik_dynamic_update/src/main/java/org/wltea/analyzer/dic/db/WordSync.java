@@ -0,0 +1,256 @@
+package org.wltea.analyzer.dic.db;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 基于(updatetime, id)水位的数据库词库同步
+ * 每次只读取水位之后的行，按(updatetime, id)排序分批读取，读完一批就应用一批并推进水位；
+ * 同一秒内更新的多行以id区分先后，不会因为时间精度在边界处漏行。
+ * 配置了删除标记列时，被标记删除的词会从词典中屏蔽，不需要重启即可生效。
+ * 一批中同一个词出现多次时只取最后一行的状态，先删除后恢复（或反之）的结果与行的先后一致。
+ * 全量加载不带水位条件，updatetime为NULL的行同样加载，但这些行之后的修改不会被增量同步读到。
+ **/
+public class WordSync {
+
+    // jdbc.properties配置信息
+    private final static String WORD_FIELD_NAME = "ext.word.field.name";
+    private final static String ID_FIELD_NAME = "ext.id.field.name";
+    private final static String UPDATETIME_FIELD_NAME = "ext.updatetime.field.name";
+    private final static String DELETE_FIELD_NAME = "ext.delete.field.name";
+    private final static String DELETE_VALUE = "ext.delete.value";
+    private final static String BATCH_SIZE = "sync.batch.size";
+    private final static String FETCH_SIZE = "fetch.size";
+    private final static String QUERY_TIMEOUT = "query.timeout.seconds";
+
+    private final ConnectionPool pool;
+
+    private final String sql;
+
+    private final String initialSql;
+
+    private final String deleteField;
+
+    private final String deleteValue;
+
+    private final int batchSize;
+
+    private final int fetchSize;
+
+    private final int queryTimeout;
+
+    /**
+     * 一批变更的应用
+     */
+    @FunctionalInterface
+    public interface BatchApplier {
+        /**
+         * @param added 新增或恢复的词，已trim并转小写
+         * @param disabled 标记删除的词，已trim并转小写
+         */
+        void apply(List<char[]> added, List<char[]> disabled);
+    }
+
+    public WordSync(ConnectionPool pool, Properties props, String table) {
+        this.pool = pool;
+        String wordField = props.getProperty(WORD_FIELD_NAME, "word");
+        String idField = props.getProperty(ID_FIELD_NAME, "id");
+        String updateField = props.getProperty(UPDATETIME_FIELD_NAME, "updatetime");
+        String deleteField = props.getProperty(DELETE_FIELD_NAME);
+        this.deleteField = deleteField == null || deleteField.trim().isEmpty() ? null : deleteField.trim();
+        this.deleteValue = props.getProperty(DELETE_VALUE, "1").trim();
+        this.batchSize = Integer.parseInt(props.getProperty(BATCH_SIZE, "5000").trim());
+        String fetchSize = props.getProperty(FETCH_SIZE);
+        this.queryTimeout = Integer.parseInt(props.getProperty(QUERY_TIMEOUT, "60").trim());
+        this.fetchSize = fetchSize == null || fetchSize.trim().isEmpty() ? JDBCUtils.STREAMING_FETCH_SIZE
+                : Integer.parseInt(fetchSize.trim());
+
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(idField).append(", ")
+                .append(wordField).append(", ")
+                .append(updateField);
+        if (this.deleteField != null) {
+            sql.append(", ").append(this.deleteField);
+        }
+        sql.append(" FROM ").append(table);
+        // 全量加载一次流式读完整张表，NULL的updatetime排在最前
+        this.initialSql = sql + " ORDER BY " + updateField + ", " + idField;
+        sql.append(" WHERE ").append(updateField).append(" > ?")
+                .append(" OR (").append(updateField).append(" = ? AND ").append(idField).append(" > ?)")
+                .append(" ORDER BY ").append(updateField).append(", ").append(idField)
+                .append(" LIMIT ?");
+        this.sql = sql.toString();
+    }
+
+    /**
+     * 从水位from开始同步到表的最新状态
+     * @param from 起始水位，Watermark.INITIAL表示全量加载
+     * @param applier 变更应用
+     * @return 同步结果，包含新水位
+     */
+    public Result sync(Watermark from, BatchApplier applier) throws SQLException {
+        if (from.isInitial()) {
+            return load(applier);
+        }
+        Result result = new Result(from);
+        Batch batch = new Batch();
+        while (true) {
+            final Watermark watermark = result.watermark;
+            final Watermark[] last = {watermark};
+            long rows = JDBCUtils.query(pool, sql, ps -> {
+                ps.setQueryTimeout(queryTimeout);
+                ps.setTimestamp(1, watermark.updateTime);
+                ps.setTimestamp(2, watermark.updateTime);
+                ps.setLong(3, watermark.id);
+                ps.setInt(4, batchSize);
+            }, fetchSize, rs -> {
+                long id = rs.getLong(1);
+                last[0] = new Watermark(rs.getTimestamp(3), id);
+                batch.add(rs.getString(2), deleteField != null && isDeleted(rs.getString(4)));
+            });
+            batch.applyTo(applier, result);
+            result.rows += rows;
+            result.watermark = last[0];
+            if (rows < batchSize) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * 全量加载，不带水位条件流式读取整张表，每batchSize行应用一次
+     * 水位取最后一个updatetime不为NULL的行，没有这样的行时为Watermark.EMPTY
+     */
+    private Result load(BatchApplier applier) throws SQLException {
+        Result result = new Result(Watermark.EMPTY);
+        Batch batch = new Batch();
+        result.rows = JDBCUtils.query(pool, initialSql, ps -> ps.setQueryTimeout(queryTimeout), fetchSize, rs -> {
+            Timestamp updateTime = rs.getTimestamp(3);
+            if (updateTime != null) {
+                result.watermark = new Watermark(updateTime, rs.getLong(1));
+            }
+            batch.add(rs.getString(2), deleteField != null && isDeleted(rs.getString(4)));
+            if (batch.size() >= batchSize) {
+                batch.applyTo(applier, result);
+            }
+        });
+        batch.applyTo(applier, result);
+        return result;
+    }
+
+    private boolean isDeleted(String value) {
+        return deleteValue.equals(String.valueOf(value).trim());
+    }
+
+    /**
+     * 一批变更，按词合并为最后一行的状态
+     * 全量加载时标记删除的词同样屏蔽，同一次加载中先新增后删除的词不会留在词典中
+     */
+    private static final class Batch {
+
+        // 词 -> 是否标记删除，后读到的行覆盖先读到的
+        private final Map<String, Boolean> states = new LinkedHashMap<>();
+
+        void add(String word, boolean deleted) {
+            if (word == null || word.trim().isEmpty()) {
+                return;
+            }
+            states.put(word.trim().toLowerCase(), deleted);
+        }
+
+        int size() {
+            return states.size();
+        }
+
+        void applyTo(BatchApplier applier, Result result) {
+            if (states.isEmpty()) {
+                return;
+            }
+            List<char[]> added = new ArrayList<>();
+            List<char[]> disabled = new ArrayList<>();
+            for (Map.Entry<String, Boolean> state : states.entrySet()) {
+                (state.getValue() ? disabled : added).add(state.getKey().toCharArray());
+            }
+            applier.apply(added, disabled);
+            result.added += added.size();
+            result.disabled += disabled.size();
+            states.clear();
+        }
+    }
+
+    /**
+     * 同步水位，(updatetime, id)
+     */
+    public static final class Watermark {
+
+        public static final Watermark INITIAL = new Watermark(new Timestamp(0), 0);
+
+        // 全量加载完成但表中没有updatetime不为NULL的行，之后从头增量同步
+        static final Watermark EMPTY = new Watermark(new Timestamp(0), Long.MIN_VALUE);
+
+        private final Timestamp updateTime;
+
+        private final long id;
+
+        public Watermark(Timestamp updateTime, long id) {
+            this.updateTime = updateTime;
+            this.id = id;
+        }
+
+        public Timestamp getUpdateTime() {
+            return updateTime;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        boolean isInitial() {
+            return this == INITIAL;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + updateTime + ", " + id + ")";
+        }
+    }
+
+    /**
+     * 一次同步的结果
+     */
+    public static final class Result {
+
+        private Watermark watermark;
+
+        private long rows;
+
+        private long added;
+
+        private long disabled;
+
+        private Result(Watermark watermark) {
+            this.watermark = watermark;
+        }
+
+        public Watermark getWatermark() {
+            return watermark;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getAdded() {
+            return added;
+        }
+
+        public long getDisabled() {
+            return disabled;
+        }
+    }
+}
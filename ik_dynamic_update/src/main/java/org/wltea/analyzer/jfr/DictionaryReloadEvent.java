@@ -0,0 +1,59 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wltea.analyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 主词典及停用词典重新加载事件
+ */
+@Name("org.wltea.analyzer.DictionaryReload")
+@Label("IK Dictionary Reload")
+@Category({"Elasticsearch" , "IK Analyzer"})
+@Description("Main and stopword dictionaries rebuilt")
+@Enabled(false)
+final class DictionaryReloadEvent extends Event {
+
+	private static final EventType TYPE = EventType.getEventType(DictionaryReloadEvent.class);
+
+	@Label("Source")
+	String source;
+
+	@Label("Reload Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long reloadTime;
+
+	static void emit(String source , long nanos){
+		if(!TYPE.isEnabled()){
+			return;
+		}
+		DictionaryReloadEvent event = new DictionaryReloadEvent();
+		event.source = source;
+		event.reloadTime = nanos;
+		event.commit();
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wltea.analyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 数据库词库同步事件
+ */
+@Name("org.wltea.analyzer.DictionarySync")
+@Label("IK Dictionary DB Sync")
+@Category({"Elasticsearch" , "IK Analyzer"})
+@Description("Extension words or stopwords synced from the database")
+@Enabled(false)
+final class DictionarySyncEvent extends Event {
+
+	private static final EventType TYPE = EventType.getEventType(DictionarySyncEvent.class);
+
+	@Label("Dictionary")
+	String dictionary;
+
+	@Label("Table")
+	String table;
+
+	@Label("Rows")
+	long rows;
+
+	@Label("Sync Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long syncTime;
+
+	static void emit(String dictionary , String table , long rows , long nanos){
+		if(!TYPE.isEnabled()){
+			return;
+		}
+		DictionarySyncEvent event = new DictionarySyncEvent();
+		event.dictionary = dictionary;
+		event.table = table;
+		event.rows = rows;
+		event.syncTime = nanos;
+		event.commit();
+	}
+}
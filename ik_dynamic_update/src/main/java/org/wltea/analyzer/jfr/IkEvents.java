@@ -0,0 +1,80 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wltea.analyzer.jfr;
+
+/**
+ * JFR事件入口
+ * jdk.jfr只在JDK 11及以上（或8u262及以上）存在，事件类只在这里按需加载，
+ * 运行在没有JFR的JVM上时所有方法直接返回。
+ * 事件默认关闭（@Enabled(false)），需在JFR配置中显式打开，关闭时只有一次isEnabled判断的开销。
+ */
+public final class IkEvents {
+
+	private static final boolean AVAILABLE = isAvailable();
+
+	private IkEvents(){
+	}
+
+	private static boolean isAvailable(){
+		try{
+			Class.forName("jdk.jfr.Event" , false , IkEvents.class.getClassLoader());
+			return true;
+		}catch(ClassNotFoundException | LinkageError e){
+			return false;
+		}
+	}
+
+	/**
+	 * 一篇文档分词完毕
+	 * @param mode ik_smart / ik_max_word
+	 * @param textLength 文本长度
+	 * @param tokenCount 输出词元数
+	 * @param nanos 分词耗时
+	 */
+	public static void segmentation(String mode , long textLength , long tokenCount , long nanos){
+		if(AVAILABLE){
+			SegmentationEvent.emit(mode , textLength , tokenCount , nanos);
+		}
+	}
+
+	/**
+	 * 词典重新加载完毕
+	 * @param source 触发来源，如远程词库地址
+	 * @param nanos 加载耗时
+	 */
+	public static void dictionaryReload(String source , long nanos){
+		if(AVAILABLE){
+			DictionaryReloadEvent.emit(source , nanos);
+		}
+	}
+
+	/**
+	 * 从数据库同步一次词库
+	 * @param dictionary 词典类型，ext_dict / ext_stopwords
+	 * @param table 表名
+	 * @param rows 读取的行数
+	 * @param nanos 同步耗时
+	 */
+	public static void dictionarySync(String dictionary , String table , long rows , long nanos){
+		if(AVAILABLE){
+			DictionarySyncEvent.emit(dictionary , table , rows , nanos);
+		}
+	}
+}
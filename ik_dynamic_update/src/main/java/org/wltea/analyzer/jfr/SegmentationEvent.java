@@ -0,0 +1,70 @@
+/**
+ * IK 中文分词  版本 5.0
+ * IK Analyzer release 5.0
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wltea.analyzer.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 单篇文档分词事件
+ */
+@Name("org.wltea.analyzer.Segmentation")
+@Label("IK Segmentation")
+@Category({"Elasticsearch" , "IK Analyzer"})
+@Description("One document segmented by IKSegmenter")
+@Enabled(false)
+@StackTrace(false)
+final class SegmentationEvent extends Event {
+
+	//事件类型，用于在创建事件对象前判断是否开启
+	private static final EventType TYPE = EventType.getEventType(SegmentationEvent.class);
+
+	@Label("Mode")
+	String mode;
+
+	@Label("Text Length")
+	long textLength;
+
+	@Label("Token Count")
+	long tokenCount;
+
+	@Label("Analysis Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long analysisTime;
+
+	static void emit(String mode , long textLength , long tokenCount , long nanos){
+		if(!TYPE.isEnabled()){
+			return;
+		}
+		SegmentationEvent event = new SegmentationEvent();
+		event.mode = mode;
+		event.textLength = textLength;
+		event.tokenCount = tokenCount;
+		event.analysisTime = nanos;
+		event.commit();
+	}
+}
@@ -28,6 +28,7 @@ package org.wltea.analyzer.lucene;
 
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.FlagsAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 import org.elasticsearch.common.settings.Settings;
@@ -35,6 +36,7 @@ import org.elasticsearch.env.Environment;
 import org.wltea.analyzer.cfg.Configuration;
 import org.wltea.analyzer.core.IKSegmenter;
 import org.wltea.analyzer.core.Lexeme;
+import org.wltea.analyzer.dic.Dictionary;
 
 import java.io.IOException;
 import java.io.Reader;
@@ -46,6 +48,13 @@ import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
  */
 public final class IKTokenizer extends Tokenizer {
 	
+	//FlagsAttribute中与同义词插件约定的标记位，两个插件的类加载器相互隔离无法共用常量，
+	//同义词插件中的副本为IkFlags，约定见README，两边的IkFlagsTests固定了取值，修改时需同时修改两边
+	//配置了同义词规则词表时，词典匹配出的词（CN_WORD）都带有此标记
+	public static final int SYNONYM_CHECKED_FLAG = 1 << 16;
+	//词典匹配出的词是同义词规则中的词，同义词过滤器只需查找带有此标记的词
+	public static final int SYNONYM_TERM_FLAG = 1 << 17;
+	
 	//IK分词器实现
 	private IKSegmenter _IKImplement;
 	
@@ -62,6 +71,12 @@ public final class IKTokenizer extends Tokenizer {
 
    	private PositionIncrementAttribute posIncrAtt;
 
+   	//词元标记属性，见SYNONYM_CHECKED_FLAG
+   	private final FlagsAttribute flagsAtt;
+
+   	//当前输入开始时词典是否配置了同义词规则词表
+   	private boolean synonymTerms;
+
 
     /**
 	 * Lucene 4.0 Tokenizer适配器类构造函数
@@ -72,6 +87,7 @@ public final class IKTokenizer extends Tokenizer {
 	    termAtt = addAttribute(CharTermAttribute.class);
 	    typeAtt = addAttribute(TypeAttribute.class);
         posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+        flagsAtt = addAttribute(FlagsAttribute.class);
 
         _IKImplement = new IKSegmenter(input,configuration);
 	}
@@ -101,6 +117,9 @@ public final class IKTokenizer extends Tokenizer {
 			endPosition = nextLexeme.getEndPosition();
 			//记录词元分类
 			typeAtt.setType(nextLexeme.getLexemeTypeString());			
+			if(synonymTerms && nextLexeme.getLexemeType() == Lexeme.TYPE_CNWORD){
+				flagsAtt.setFlags(nextLexeme.isSynonymTerm() ? SYNONYM_CHECKED_FLAG | SYNONYM_TERM_FLAG : SYNONYM_CHECKED_FLAG);
+			}
 			//返会true告知还有下个词元
 			return true;
 		}
@@ -117,6 +136,7 @@ public final class IKTokenizer extends Tokenizer {
 		super.reset();
 		_IKImplement.reset(input);
         skippedPositions = 0;
+        synonymTerms = Dictionary.getSingleton().hasSynonymTerms();
 	}	
 	
 	@Override
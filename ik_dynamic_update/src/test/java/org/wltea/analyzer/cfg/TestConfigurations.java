@@ -0,0 +1,66 @@
+package org.wltea.analyzer.cfg;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.plugin.analysis.ik.AnalysisIkPlugin;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 测试用的词典配置：把插件config目录下的词典复制到临时目录，不连数据库、不加载远程词库
+ * 词典是节点级单例，同一个JVM中只初始化一次，各测试共用
+ */
+public final class TestConfigurations {
+
+	private static Configuration configuration;
+
+	private TestConfigurations() {
+	}
+
+	/**
+	 * @return 已初始化词典的配置，ik_max_word
+	 */
+	public static synchronized Configuration get() {
+		if (configuration == null) {
+			try {
+				configuration = create();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return configuration;
+	}
+
+	private static Configuration create() throws IOException {
+		Path home = Files.createTempDirectory("ik-tests");
+		Path config = home.resolve("config");
+		Path ikDir = Files.createDirectories(config.resolve(AnalysisIkPlugin.PLUGIN_NAME));
+		try (DirectoryStream<Path> dics = Files.newDirectoryStream(Paths.get("config"), "*.dic")) {
+			for (Path dic : dics) {
+				Files.copy(dic, ikDir.resolve(dic.getFileName().toString()));
+			}
+		}
+		try (Writer writer = Files.newBufferedWriter(ikDir.resolve("IKAnalyzer.cfg.xml"), StandardCharsets.UTF_8)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+					+ "<!DOCTYPE properties SYSTEM \"http://java.sun.com/dtd/properties.dtd\">\n"
+					+ "<properties>\n"
+					+ "\t<entry key=\"ext_stopwords\">extra_stopword.dic</entry>\n"
+					+ "</properties>\n");
+		}
+		try (Writer writer = Files.newBufferedWriter(ikDir.resolve("jdbc.properties"), StandardCharsets.UTF_8)) {
+			writer.write("enable.ext.dict=false\nenable.stopwords.dict=false\n");
+		}
+		Settings settings = Settings.builder()
+				.put("path.home", home.toString())
+				.put("enable_remote_dict", "false")
+				.build();
+		return new Configuration(new Environment(settings, config), settings);
+	}
+}
@@ -0,0 +1,106 @@
+package org.wltea.analyzer.core;
+
+import org.junit.Test;
+import org.wltea.analyzer.cfg.Configuration;
+import org.wltea.analyzer.cfg.TestConfigurations;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 节点分词统计：每篇文档的计数在读完时汇总到对应模式，explain剖析的分词不计入
+ * 统计是节点级单例，测试只比较前后差值
+ */
+public class AnalysisStatsTests {
+
+	private static final String TEXT = "中华人民共和国的测试";
+
+	@Test
+	public void testTypeIndexMatchesTypeName() {
+		int[] types = {Lexeme.TYPE_UNKNOWN, Lexeme.TYPE_ENGLISH, Lexeme.TYPE_ARABIC, Lexeme.TYPE_LETTER,
+				Lexeme.TYPE_CNWORD, Lexeme.TYPE_CNCHAR, Lexeme.TYPE_OTHER_CJK, Lexeme.TYPE_CNUM,
+				Lexeme.TYPE_COUNT, Lexeme.TYPE_CQUAN};
+		assertEquals(types.length, AnalysisStats.typeCount());
+		for (int type : types) {
+			String name = new Lexeme(0, 0, 0, type).getLexemeTypeString();
+			assertEquals(name, AnalysisStats.typeName(AnalysisStats.typeIndex(type)));
+		}
+	}
+
+	@Test
+	public void testCounterIsFlushedOnceAndCleared() {
+		AnalysisStats.ModeStats stats = AnalysisStats.getInstance().getModeStats(true);
+		long documents = stats.getDocuments();
+		long chars = stats.getCharsProcessed();
+		long words = stats.getTokens(AnalysisStats.typeIndex(Lexeme.TYPE_CNWORD));
+		long stopWords = stats.getStopWordsDropped();
+
+		AnalyzeCounter counter = new AnalyzeCounter();
+		counter.chars = 10;
+		counter.nanos = 1000;
+		counter.stopWords = 2;
+		counter.countToken(new Lexeme(0, 0, 2, Lexeme.TYPE_CNWORD));
+		counter.countToken(new Lexeme(0, 2, 2, Lexeme.TYPE_CNWORD));
+		counter.countToken(new Lexeme(0, 4, 1, Lexeme.TYPE_CNCHAR));
+		assertEquals(3, counter.tokenCount());
+
+		counter.flushTo(stats);
+		assertTrue(counter.isEmpty());
+		assertEquals(0, counter.tokenCount());
+		assertEquals(documents + 1, stats.getDocuments());
+		assertEquals(chars + 10, stats.getCharsProcessed());
+		assertEquals(words + 2, stats.getTokens(AnalysisStats.typeIndex(Lexeme.TYPE_CNWORD)));
+		assertEquals(stopWords + 2, stats.getStopWordsDropped());
+	}
+
+	@Test
+	public void testSegmentationIsCountedPerDocument() throws IOException {
+		Configuration cfg = TestConfigurations.get().withAnalysis(true, true);
+		AnalysisStats.ModeStats stats = AnalysisStats.getInstance().getModeStats(true);
+		long created = stats.getTokenizersCreated();
+		long documents = stats.getDocuments();
+		long chars = stats.getCharsProcessed();
+		long tokens = totalTokens(stats);
+		long stopWords = stats.getStopWordsDropped();
+
+		IKSegmenter segmenter = new IKSegmenter(new StringReader(TEXT), cfg);
+		int count = 0;
+		while (segmenter.next() != null) {
+			count++;
+		}
+		// 读完后再取不会重复汇总
+		segmenter.next();
+
+		assertEquals(created + 1, stats.getTokenizersCreated());
+		assertEquals(documents + 1, stats.getDocuments());
+		assertEquals(chars + TEXT.length(), stats.getCharsProcessed());
+		assertEquals(tokens + count, totalTokens(stats));
+		assertTrue(stats.getStopWordsDropped() > stopWords);
+	}
+
+	@Test
+	public void testProfiledSegmentationIsNotCounted() throws IOException {
+		Configuration cfg = TestConfigurations.get().withAnalysis(true, true);
+		AnalysisStats.ModeStats stats = AnalysisStats.getInstance().getModeStats(true);
+		long documents = stats.getDocuments();
+		long chars = stats.getCharsProcessed();
+
+		IKSegmenter segmenter = new IKSegmenter(new StringReader(TEXT), cfg, true);
+		while (segmenter.next() != null) {
+		}
+
+		assertEquals(documents, stats.getDocuments());
+		assertEquals(chars, stats.getCharsProcessed());
+	}
+
+	private static long totalTokens(AnalysisStats.ModeStats stats) {
+		long total = 0;
+		for (int i = 0; i < AnalysisStats.typeCount(); i++) {
+			total += stats.getTokens(i);
+		}
+		return total;
+	}
+}
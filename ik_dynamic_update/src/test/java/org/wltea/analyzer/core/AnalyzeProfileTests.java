@@ -0,0 +1,88 @@
+package org.wltea.analyzer.core;
+
+import org.junit.Test;
+import org.wltea.analyzer.cfg.Configuration;
+import org.wltea.analyzer.cfg.TestConfigurations;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 分词剖析：开启剖析不改变分词结果，各阶段计数与实际处理的文本一致
+ */
+public class AnalyzeProfileTests {
+
+	private static final String TEXT = "中华人民共和国的测试";
+
+	@Test
+	public void testProfileIsOffByDefault() {
+		IKSegmenter segmenter = new IKSegmenter(new StringReader(TEXT), TestConfigurations.get());
+		assertNull(segmenter.getProfile());
+	}
+
+	@Test
+	public void testProfiledSegmentationMatchesPlainSegmentation() throws IOException {
+		Configuration cfg = TestConfigurations.get();
+		List<String> plain = terms(new IKSegmenter(new StringReader(TEXT), cfg));
+		IKSegmenter profiled = new IKSegmenter(new StringReader(TEXT), cfg, true);
+		assertEquals(plain, terms(profiled));
+
+		AnalyzeProfile profile = profiled.getProfile();
+		assertNotNull(profile);
+		assertEquals(TEXT.length(), profile.getCharsBuffered());
+		assertEquals(3, profile.getSegmenterCount());
+		assertEquals("LetterSegmenter", profile.getSegmenterName(0));
+		assertEquals("CN_QuantifierSegmenter", profile.getSegmenterName(1));
+		assertEquals("CJKSegmenter", profile.getSegmenterName(2));
+		assertTrue(profile.getSegmenterLexemes(2) > 0);
+		assertEquals(profile.getArbitratorCalls(), profile.getOutputCalls());
+		assertTrue(profile.getCrossPaths() > 0);
+		// "的"是停止词，被过滤掉
+		assertTrue(profile.getStopWordDropped() >= 1);
+		assertEquals(plain.size(), profile.getStopWordChecked() - profile.getStopWordDropped());
+		assertFalse(plain.contains("的"));
+	}
+
+	@Test
+	public void testCrossPathDetailsAreRelativeToText() {
+		AnalyzeProfile profile = new AnalyzeProfile(Collections.<ISegmenter>emptyList());
+		LexemePath ambiguous = new LexemePath();
+		ambiguous.addCrossLexeme(new Lexeme(0, 2, 4, Lexeme.TYPE_CNWORD));
+		ambiguous.addCrossLexeme(new Lexeme(0, 4, 2, Lexeme.TYPE_CNWORD));
+		LexemePath single = new LexemePath();
+		single.addCrossLexeme(new Lexeme(0, 8, 2, Lexeme.TYPE_CNWORD));
+
+		profile.recordCrossPath(100, ambiguous, 3);
+		profile.recordCrossPath(100, single, 0);
+		// 空路径不计入
+		profile.recordCrossPath(100, new LexemePath(), 0);
+
+		assertEquals(2, profile.getCrossPaths());
+		assertEquals(1, profile.getAmbiguousPaths());
+		assertEquals(3, profile.getCandidatesEvaluated());
+		assertEquals(2, profile.getPathDetails().size());
+		AnalyzeProfile.PathDetail detail = profile.getPathDetails().get(0);
+		assertEquals(102, detail.getBegin());
+		assertEquals(106, detail.getEnd());
+		assertEquals(2, detail.getLexemes());
+		assertEquals(3, detail.getCandidates());
+	}
+
+	private static List<String> terms(IKSegmenter segmenter) throws IOException {
+		List<String> terms = new ArrayList<String>();
+		Lexeme lexeme;
+		while ((lexeme = segmenter.next()) != null) {
+			terms.add(lexeme.getLexemeText());
+		}
+		return terms;
+	}
+}
@@ -0,0 +1,107 @@
+package org.wltea.analyzer.dic;
+
+import org.junit.Test;
+import org.wltea.analyzer.cfg.TestConfigurations;
+import org.wltea.analyzer.dic.db.WordSync;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 集群分发的词库增量：序列化后各字段不变，接收节点按任期内连续的版本应用，重复的版本忽略
+ */
+public class DictDeltaTests {
+
+	@Test
+	public void testRoundTripKeepsChangesAndSyncPositions() throws IOException {
+		Timestamp updateTime = new Timestamp(1500000000123L);
+		updateTime.setNanos(123456789);
+		DictDelta delta = new DictDelta("term-1", 8, 7, Arrays.asList(
+				DictDelta.Change.remote("http://localhost/ext.dic", false, Arrays.asList("甲", "乙"),
+						Collections.singletonList("丙"), "Thu, 01 Jan 2015 00:00:00 GMT", null, "42"),
+				DictDelta.Change.mysql("ext_stopwords", true, Collections.<String>emptyList(),
+						Collections.singletonList("的"), new WordSync.Watermark(updateTime, 99))));
+
+		DictDelta read = DictDelta.fromBytes(delta.toBytes());
+
+		assertEquals("term-1", read.getTerm());
+		assertEquals(8, read.getVersion());
+		assertEquals(7, read.getBaseVersion());
+		assertEquals(4, read.size());
+		assertEquals(2, read.getChanges().size());
+
+		DictDelta.Change remote = read.getChanges().get(0);
+		assertEquals(DictDelta.Change.REMOTE, remote.type);
+		assertEquals("http://localhost/ext.dic", remote.name);
+		assertFalse(remote.stopWords);
+		assertEquals(Arrays.asList("甲", "乙"), remote.added);
+		assertEquals(Collections.singletonList("丙"), remote.removed);
+		assertEquals("Thu, 01 Jan 2015 00:00:00 GMT", remote.lastModified);
+		assertNull(remote.eTag);
+		assertEquals("42", remote.remoteVersion);
+
+		DictDelta.Change mysql = read.getChanges().get(1);
+		assertEquals(DictDelta.Change.MYSQL, mysql.type);
+		assertEquals("ext_stopwords", mysql.name);
+		assertTrue(mysql.stopWords);
+		assertTrue(mysql.added.isEmpty());
+		assertEquals(Collections.singletonList("的"), mysql.removed);
+		assertEquals(updateTime, mysql.watermark.getUpdateTime());
+		assertEquals(99, mysql.watermark.getId());
+	}
+
+	@Test
+	public void testUnknownFormatIsRejected() throws IOException {
+		byte[] bytes = new DictDelta("term-1", 1, 0, Collections.<DictDelta.Change>emptyList()).toBytes();
+		bytes[0] = 2;
+		try {
+			DictDelta.fromBytes(bytes);
+			fail("read a delta of an unknown format");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("format"));
+		}
+	}
+
+	@Test
+	public void testContiguousVersionsAreAppliedOnce() {
+		TestConfigurations.get();
+		Dictionary dictionary = Dictionary.getSingleton();
+		String term = UUID.randomUUID().toString();
+
+		DictDelta first = delta(term, 1, 0, Collections.singletonList("分发测试词甲"), Collections.<String>emptyList());
+		assertEquals(DictDelta.Status.APPLIED, dictionary.applyDelta(first));
+		assertTrue(matches(dictionary, "分发测试词甲"));
+		assertEquals(term + "/1", dictionary.getAppliedVersion());
+
+		DictDelta second = delta(term, 2, 1, Collections.singletonList("分发测试词乙"),
+				Collections.singletonList("分发测试词甲"));
+		assertEquals(DictDelta.Status.APPLIED, dictionary.applyDelta(second));
+		assertFalse(matches(dictionary, "分发测试词甲"));
+		assertTrue(matches(dictionary, "分发测试词乙"));
+
+		// 重复收到的旧版本不会再次应用
+		assertEquals(DictDelta.Status.DUPLICATE, dictionary.applyDelta(first));
+		assertFalse(matches(dictionary, "分发测试词甲"));
+		assertEquals(term + "/2", dictionary.getAppliedVersion());
+	}
+
+	private static DictDelta delta(String term, long version, long baseVersion, List<String> added,
+								   List<String> removed) {
+		return new DictDelta(term, version, baseVersion, Collections.singletonList(
+				DictDelta.Change.mysql("ext_words", false, added, removed, WordSync.Watermark.INITIAL)));
+	}
+
+	private static boolean matches(Dictionary dictionary, String word) {
+		return dictionary.matchInMainDict(word.toCharArray()).isMatch();
+	}
+}
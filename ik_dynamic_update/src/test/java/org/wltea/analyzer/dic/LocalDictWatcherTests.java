@@ -0,0 +1,124 @@
+package org.wltea.analyzer.dic;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wltea.analyzer.cfg.TestConfigurations;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 本地扩展词典：文件变化时只把差异应用到词典，监听的目录下新增、修改、删除词典文件后自动生效
+ */
+public class LocalDictWatcherTests {
+
+	// 文件系统事件的最长等待时间，部分平台的WatchService是轮询实现
+	private static final long WAIT_MILLIS = 30 * 1000L;
+
+	private Dictionary dictionary;
+
+	private Path dir;
+
+	@Before
+	public void createDir() throws IOException {
+		TestConfigurations.get();
+		dictionary = Dictionary.getSingleton();
+		dir = Files.createTempDirectory("ik-local-dict").toAbsolutePath();
+	}
+
+	@After
+	public void deleteDir() throws IOException {
+		try (Stream<Path> paths = Files.walk(dir)) {
+			paths.sorted(Collections.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	@Test
+	public void testOnlyVisibleDicFilesAreDictionaries() {
+		assertTrue(Dictionary.isDictFile(Paths.get("ext", "my.dic")));
+		assertFalse(Dictionary.isDictFile(Paths.get("ext", "my.dic.bak")));
+		assertFalse(Dictionary.isDictFile(Paths.get("ext", "my.txt")));
+		// 编辑器的临时文件
+		assertFalse(Dictionary.isDictFile(Paths.get("ext", ".my.dic")));
+	}
+
+	@Test
+	public void testRefreshAppliesTheFileDiff() throws IOException {
+		Path file = dir.resolve("diff.dic");
+		// 文件开头的BOM不算在词里
+		write(file, "\uFEFF本地测试词甲", "本地测试词乙", "中华");
+		LocalDictSource source = dictionary.addLocalSource(file, false, false);
+		assertTrue(source.refresh());
+		assertTrue(matches("本地测试词甲"));
+		assertTrue(matches("本地测试词乙"));
+		assertEquals(3, dictionary.sourceSize(source.getSource()));
+
+		// 内容不变时不重新应用
+		assertFalse(source.refresh());
+
+		write(file, "本地测试词乙", "本地测试词丙");
+		assertTrue(source.refresh());
+		assertFalse(matches("本地测试词甲"));
+		assertTrue(matches("本地测试词乙"));
+		assertTrue(matches("本地测试词丙"));
+		// 主词典中原有的词不归本地文件所有，从文件中删掉也不会被屏蔽
+		assertTrue(matches("中华"));
+
+		dictionary.removeLocalSource(source);
+		assertFalse(matches("本地测试词乙"));
+		assertNull(dictionary.findLocalSource(file));
+	}
+
+	@Test
+	public void testWatchedDirectoryFollowsFileChanges() throws IOException, InterruptedException {
+		new LocalDictWatcher(dictionary, Collections.singletonList(dir), Collections.<Path>emptyList(),
+				Collections.<Path>emptyList()).start();
+
+		Path file = dir.resolve("watched.dic");
+		write(file, "监听测试词甲", "监听测试词乙");
+		await(() -> matches("监听测试词甲") && matches("监听测试词乙"));
+		assertNotNull(dictionary.findLocalSource(file));
+
+		write(file, "监听测试词乙");
+		await(() -> !matches("监听测试词甲"));
+		assertTrue(matches("监听测试词乙"));
+
+		// 不是.dic的文件不加载
+		write(dir.resolve("notes.txt"), "监听测试词丙");
+		Files.delete(file);
+		await(() -> !matches("监听测试词乙") && dictionary.findLocalSource(file) == null);
+		assertFalse(matches("监听测试词丙"));
+	}
+
+	private boolean matches(String word) {
+		return dictionary.matchInMainDict(word.toCharArray()).isMatch();
+	}
+
+	private static void write(Path file, String... words) throws IOException {
+		List<String> lines = Arrays.asList(words);
+		Files.write(file, lines, StandardCharsets.UTF_8);
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+		while (!condition.getAsBoolean()) {
+			assertTrue("condition not met in " + WAIT_MILLIS + "ms", System.currentTimeMillis() < deadline);
+			Thread.sleep(50);
+		}
+	}
+}
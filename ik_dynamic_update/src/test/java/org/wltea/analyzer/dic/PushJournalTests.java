@@ -0,0 +1,133 @@
+package org.wltea.analyzer.dic;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wltea.analyzer.cfg.TestConfigurations;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 推送词：立即应用到词典；日志在重启后重放每个词最后一次的操作，写到一半的行被跳过，被覆盖的行多了以后压缩
+ */
+public class PushJournalTests {
+
+	private Path dir;
+
+	private Path file;
+
+	@Before
+	public void createDir() throws IOException {
+		dir = Files.createTempDirectory("push-journal");
+		file = dir.resolve("analysis-ik").resolve("pushed_words.journal");
+	}
+
+	@After
+	public void deleteDir() throws IOException {
+		try (Stream<Path> paths = Files.walk(dir)) {
+			paths.sorted(Collections.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	@Test
+	public void testReloadKeepsTheLastOperationOfEachWord() throws IOException {
+		PushJournal journal = new PushJournal(file);
+		journal.append(Arrays.asList(add(false, "推送词甲"), add(false, "推送词乙"), add(true, "推送词甲")));
+		journal.append(Collections.singletonList(disable(false, "推送词甲")));
+
+		PushJournal reloaded = new PushJournal(file);
+		reloaded.load();
+
+		assertEquals(Arrays.asList("+\tmain\t推送词乙", "+\tstop\t推送词甲", "-\tmain\t推送词甲"),
+				lines(reloaded.entries()));
+		assertFalse(reloaded.get(false, "推送词甲").add);
+		assertTrue(reloaded.get(true, "推送词甲").add);
+		assertNull(reloaded.get(true, "推送词乙"));
+		// 加载时压缩，被覆盖的行不再保留
+		assertEquals(3, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+	}
+
+	@Test
+	public void testBrokenLastLineIsSkipped() throws IOException {
+		PushJournal journal = new PushJournal(file);
+		journal.append(Collections.singletonList(add(false, "推送词丙")));
+		// 写到一半时节点退出
+		Files.write(file, "+\tma".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		PushJournal reloaded = new PushJournal(file);
+		reloaded.load();
+
+		assertEquals(Collections.singletonList("+\tmain\t推送词丙"), lines(reloaded.entries()));
+	}
+
+	@Test
+	public void testMissingFileIsEmpty() throws IOException {
+		PushJournal journal = new PushJournal(file);
+		journal.load();
+		assertTrue(journal.entries().isEmpty());
+		assertFalse(Files.exists(file));
+	}
+
+	@Test
+	public void testOverwrittenLinesAreCompacted() throws IOException {
+		PushJournal journal = new PushJournal(file);
+		for (int i = 0; i < 1100; i++) {
+			journal.append(Collections.singletonList(i % 2 == 0 ? add(false, "推送词丁") : disable(false, "推送词丁")));
+		}
+
+		List<String> written = Files.readAllLines(file, StandardCharsets.UTF_8);
+		assertTrue(String.valueOf(written.size()), written.size() < 1024);
+		// 压缩后的文件与内存中的状态一致
+		PushJournal reloaded = new PushJournal(file);
+		reloaded.load();
+		assertEquals(lines(journal.entries()), lines(reloaded.entries()));
+		assertFalse(reloaded.get(false, "推送词丁").add);
+	}
+
+	@Test
+	public void testPushedWordsApplyImmediately() throws IOException {
+		TestConfigurations.get();
+		Dictionary dictionary = Dictionary.getSingleton();
+
+		Dictionary.ApplyResult added = dictionary.pushWords(false, Arrays.asList(" 推送测试词 ", "中华"),
+				Collections.<String>emptyList());
+		// "中华"已在主词典中，不算新增
+		assertEquals(1, added.getAdded());
+		assertTrue(dictionary.matchInMainDict("推送测试词".toCharArray()).isMatch());
+
+		Dictionary.ApplyResult disabled = dictionary.pushWords(false, Collections.<String>emptyList(),
+				Collections.singletonList("推送测试词"));
+		assertEquals(1, disabled.getRemoved());
+		assertFalse(dictionary.matchInMainDict("推送测试词".toCharArray()).isMatch());
+	}
+
+	private static PushJournal.Entry add(boolean stopWords, String word) {
+		return new PushJournal.Entry(stopWords, true, word);
+	}
+
+	private static PushJournal.Entry disable(boolean stopWords, String word) {
+		return new PushJournal.Entry(stopWords, false, word);
+	}
+
+	private static List<String> lines(List<PushJournal.Entry> entries) {
+		List<String> lines = new ArrayList<>();
+		for (PushJournal.Entry entry : entries) {
+			lines.add(entry.toLine().trim());
+		}
+		return lines;
+	}
+}
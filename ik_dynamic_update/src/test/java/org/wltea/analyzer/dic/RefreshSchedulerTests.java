@@ -0,0 +1,124 @@
+package org.wltea.analyzer.dic;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 词库刷新调度：间隔带抖动，失败后指数退避，超时的刷新被中断，同一来源不会并发刷新
+ */
+public class RefreshSchedulerTests {
+
+	private static final long WAIT_MILLIS = 10 * 1000L;
+
+	@Test
+	public void testJitterStaysWithinTwentyPercent() {
+		for (int i = 0; i < 1000; i++) {
+			long delay = RefreshScheduler.jitter(1000);
+			assertTrue(String.valueOf(delay), delay >= 800 && delay <= 1200);
+		}
+		assertEquals(1, RefreshScheduler.jitter(0));
+	}
+
+	@Test
+	public void testBackoffDoublesUpToTheLimit() {
+		long minute = 60 * 1000L;
+		assertEquals(10 * 1000L, RefreshScheduler.backoff(minute, 1));
+		assertEquals(20 * 1000L, RefreshScheduler.backoff(minute, 2));
+		assertEquals(40 * 1000L, RefreshScheduler.backoff(minute, 3));
+		assertEquals(30 * minute, RefreshScheduler.backoff(minute, 100));
+		// 间隔大于上限时，退避最多到一个间隔
+		assertEquals(60 * minute, RefreshScheduler.backoff(60 * minute, 100));
+	}
+
+	@Test
+	public void testSourceIsRefreshedRepeatedlyButNeverConcurrently() throws InterruptedException {
+		RefreshScheduler scheduler = new RefreshScheduler();
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger overlaps = new AtomicInteger();
+		CountDownLatch refreshed = new CountDownLatch(20);
+		scheduler.schedule("test", "repeated", 1, WAIT_MILLIS, () -> {
+			if (running.incrementAndGet() > 1) {
+				overlaps.incrementAndGet();
+			}
+			Thread.sleep(2);
+			running.decrementAndGet();
+			refreshed.countDown();
+		});
+
+		assertTrue(refreshed.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+		assertEquals(0, overlaps.get());
+		SourceHealth health = health(scheduler, "repeated");
+		assertTrue(health.getSuccessCount() >= 19);
+		assertEquals(0, health.getFailureCount());
+	}
+
+	@Test
+	public void testFailureIsBackedOff() throws InterruptedException {
+		RefreshScheduler scheduler = new RefreshScheduler();
+		CountDownLatch failed = new CountDownLatch(1);
+		scheduler.schedule("test", "failing", 1, WAIT_MILLIS, () -> {
+			failed.countDown();
+			throw new IllegalStateException("source unavailable");
+		});
+
+		assertTrue(failed.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+		SourceHealth health = awaitFailures(scheduler, "failing", 1);
+		assertEquals(1, health.getConsecutiveFailures());
+		assertTrue(health.getLastError(), health.getLastError().contains("source unavailable"));
+		// 第一次失败后约10秒（±20%）才重试，而不是1毫秒的间隔；下一次时间在记录失败之后才安排
+		long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+		while (health.getNextRefresh() <= health.getLastFailure() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+			health = health(scheduler, "failing");
+		}
+		long delay = health.getNextRefresh() - health.getLastFailure();
+		assertTrue(String.valueOf(delay), delay >= 8 * 1000L && delay <= 13 * 1000L);
+	}
+
+	@Test
+	public void testTimedOutRefreshIsInterrupted() throws InterruptedException {
+		RefreshScheduler scheduler = new RefreshScheduler();
+		CountDownLatch interrupted = new CountDownLatch(1);
+		scheduler.schedule("test", "slow", 1, 50, () -> {
+			try {
+				Thread.sleep(WAIT_MILLIS);
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+				throw e;
+			}
+		});
+
+		assertTrue(interrupted.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+		SourceHealth health = awaitFailures(scheduler, "slow", 1);
+		assertTrue(health.getLastError(), health.getLastError().startsWith("timed out"));
+		// 超时与刷新线程的失败只记一次
+		assertEquals(1, health.getFailureCount());
+		assertEquals(0, health.getSuccessCount());
+	}
+
+	private static SourceHealth health(RefreshScheduler scheduler, String name) {
+		for (SourceHealth health : scheduler.health()) {
+			if (health.getName().equals(name)) {
+				return health;
+			}
+		}
+		throw new AssertionError("no source " + name);
+	}
+
+	private static SourceHealth awaitFailures(RefreshScheduler scheduler, String name, int failures)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+		SourceHealth health = health(scheduler, name);
+		while (health.getFailureCount() < failures && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+			health = health(scheduler, name);
+		}
+		return health;
+	}
+}
@@ -0,0 +1,172 @@
+package org.wltea.analyzer.dic;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wltea.analyzer.cfg.TestConfigurations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 远程词库来源：条件请求未变化时不重新应用，全量词表及增量只把差异应用到词典，
+ * 不会屏蔽主词典中原有的词
+ * 远程词库由本地的HTTP服务模拟
+ */
+public class RemoteDictSourceTests {
+
+	private HttpServer server;
+
+	private Dictionary dictionary;
+
+	// 下一次响应
+	private volatile int status = 200;
+	private volatile String body = "";
+	private volatile boolean delta;
+	private volatile String eTag;
+	private volatile String version;
+
+	// 收到的请求
+	private final List<String> queries = new ArrayList<>();
+	private final List<String> ifNoneMatch = new ArrayList<>();
+	private final List<String> acceptEncoding = new ArrayList<>();
+
+	@Before
+	public void startServer() throws IOException {
+		TestConfigurations.get();
+		dictionary = Dictionary.getSingleton();
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/ext.dic", this::handle);
+		server.start();
+	}
+
+	@After
+	public void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testFullListIsAppliedAsDiff() throws IOException {
+		RemoteDictSource source = source(false);
+		respond("远程测试词甲\n远程测试词乙\n", "\"v1\"", null, false);
+		assertTrue(source.refresh());
+		assertTrue(matches("远程测试词甲"));
+		assertTrue(matches("远程测试词乙"));
+
+		respond("远程测试词乙\n远程测试词丙\n", "\"v2\"", null, false);
+		assertTrue(source.refresh());
+		assertFalse(matches("远程测试词甲"));
+		assertTrue(matches("远程测试词乙"));
+		assertTrue(matches("远程测试词丙"));
+		assertEquals(2, dictionary.sourceSize(source.getSource()));
+		assertEquals("\"v1\"", ifNoneMatch.get(1));
+		// 响应按gzip压缩传输
+		assertEquals("gzip", acceptEncoding.get(1).split(",")[0].trim());
+	}
+
+	@Test
+	public void testNotModifiedIsNotReapplied() throws IOException {
+		RemoteDictSource source = source(false);
+		respond("远程测试词丁\n", "\"v1\"", null, false);
+		assertTrue(source.refresh());
+
+		status = 304;
+		assertFalse(source.refresh());
+		assertEquals("\"v1\"", ifNoneMatch.get(1));
+		assertTrue(matches("远程测试词丁"));
+	}
+
+	@Test
+	public void testDeltaIsAppliedWhenEnabled() throws IOException {
+		RemoteDictSource source = source(true);
+		respond("远程测试词戊\n远程测试词己\n", null, "1", false);
+		assertTrue(source.refresh());
+		// 首次请求不带since
+		assertNull(queries.get(0));
+
+		respond("+远程测试词庚\n-远程测试词戊\n", null, "2", true);
+		assertTrue(source.refresh());
+		assertEquals("since=1", queries.get(1));
+		assertFalse(matches("远程测试词戊"));
+		assertTrue(matches("远程测试词己"));
+		assertTrue(matches("远程测试词庚"));
+		assertEquals(2, dictionary.sourceSize(source.getSource()));
+	}
+
+	@Test
+	public void testMainDictWordsAreNotDisabled() throws IOException {
+		RemoteDictSource source = source(false);
+		// "中华"在main.dic中，不归远程词库所有
+		respond("中华\n远程测试词辛\n", null, null, false);
+		assertTrue(source.refresh());
+
+		respond("", null, null, false);
+		assertTrue(source.refresh());
+		assertTrue(matches("中华"));
+		assertFalse(matches("远程测试词辛"));
+		assertEquals(0, dictionary.sourceSize(source.getSource()));
+	}
+
+	private RemoteDictSource source(boolean deltaEnabled) {
+		String location = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/ext.dic";
+		return new RemoteDictSource(dictionary, location, false, deltaEnabled);
+	}
+
+	private void respond(String body, String eTag, String version, boolean delta) {
+		this.status = 200;
+		this.body = body;
+		this.eTag = eTag;
+		this.version = version;
+		this.delta = delta;
+	}
+
+	private boolean matches(String word) {
+		return dictionary.matchInMainDict(word.toCharArray()).isMatch();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		synchronized (queries) {
+			queries.add(exchange.getRequestURI().getRawQuery());
+			ifNoneMatch.add(exchange.getRequestHeaders().getFirst("If-None-Match"));
+			acceptEncoding.add(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+		}
+		if (status != 200) {
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+			return;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (OutputStream gzip = new GZIPOutputStream(bytes)) {
+			gzip.write(body.getBytes(StandardCharsets.UTF_8));
+		}
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		if (eTag != null) {
+			exchange.getResponseHeaders().set("ETag", eTag);
+		}
+		if (version != null) {
+			exchange.getResponseHeaders().set(RemoteDictClient.HEADER_VERSION, version);
+		}
+		if (delta) {
+			exchange.getResponseHeaders().set(RemoteDictClient.HEADER_DELTA, "true");
+		}
+		exchange.sendResponseHeaders(200, bytes.size());
+		try (OutputStream out = exchange.getResponseBody()) {
+			bytes.writeTo(out);
+		}
+	}
+}
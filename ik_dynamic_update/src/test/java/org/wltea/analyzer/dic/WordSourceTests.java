@@ -0,0 +1,33 @@
+package org.wltea.analyzer.dic;
+
+import org.junit.Test;
+
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 各来源的词的规整：本地词典文件与原来一样只trim，远程词库与数据库的词还转小写
+ */
+public class WordSourceTests {
+
+	@Test
+	public void testLocalDictWordsKeepTheirCase() {
+		WordSource source = new LocalDictSource(null, Paths.get("ext.dic"), false).getSource();
+		assertEquals("iPhone", source.normalizeWord(" iPhone\t"));
+		assertNull(source.normalizeWord("  "));
+	}
+
+	@Test
+	public void testRemoteDictWordsAreLowercased() {
+		WordSource source = new RemoteDictSource(null, "http://localhost/ext.dic", false, false).getSource();
+		assertEquals("iphone", source.normalizeWord(" iPhone\t"));
+		assertNull(source.normalizeWord(null));
+	}
+
+	@Test
+	public void testPushedWordsAreLowercased() {
+		assertEquals("iphone", WordSource.normalize(" iPhone "));
+	}
+}
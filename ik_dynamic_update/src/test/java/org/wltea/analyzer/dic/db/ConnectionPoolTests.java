@@ -0,0 +1,202 @@
+package org.wltea.analyzer.dic.db;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 连接池的借出与归还：空闲连接复用，出错或失效的连接关闭后重建，借出数不超过上限
+ * 数据库连接由只记录状态的假驱动提供
+ */
+public class ConnectionPoolTests {
+
+    private ConnectionPool pool;
+
+    @After
+    public void closePool() {
+        if (pool != null) {
+            pool.close();
+        }
+        FakeDriver.OPENED.clear();
+    }
+
+    @Test
+    public void testReleasedConnectionIsReused() throws SQLException {
+        pool = pool(2);
+        Connection first = pool.borrow();
+        pool.release(first, false);
+        Connection second = pool.borrow();
+
+        assertSame(first, second);
+        assertEquals(1, FakeDriver.OPENED.size());
+    }
+
+    @Test
+    public void testBrokenConnectionIsClosedAndReplaced() throws SQLException {
+        pool = pool(2);
+        Connection first = pool.borrow();
+        pool.release(first, true);
+        Connection second = pool.borrow();
+
+        assertTrue(first.isClosed());
+        assertNotSame(first, second);
+        assertEquals(2, FakeDriver.OPENED.size());
+    }
+
+    @Test
+    public void testInvalidIdleConnectionIsDiscarded() throws SQLException {
+        pool = pool(2);
+        Connection first = pool.borrow();
+        pool.release(first, false);
+        // 例如数据库端已断开空闲连接
+        FakeDriver.OPENED.get(0).valid = false;
+        Connection second = pool.borrow();
+
+        assertTrue(first.isClosed());
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void testBorrowWaitsForMaxSize() throws SQLException {
+        pool = pool(1);
+        Connection first = pool.borrow();
+        try {
+            pool.borrow();
+            fail("borrowed more connections than the max size");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().startsWith("timeout waiting"));
+        }
+        pool.release(first, false);
+        assertSame(first, pool.borrow());
+    }
+
+    @Test
+    public void testCloseClosesIdleAndReturnedConnections() throws SQLException {
+        pool = pool(2);
+        Connection idle = pool.borrow();
+        Connection borrowed = pool.borrow();
+        pool.release(idle, false);
+        pool.close();
+
+        assertTrue(idle.isClosed());
+        // 关闭后归还的连接直接关闭
+        pool.release(borrowed, false);
+        assertTrue(borrowed.isClosed());
+        try {
+            pool.borrow();
+            fail("borrowed from a closed pool");
+        } catch (SQLException e) {
+            assertEquals("connection pool is closed", e.getMessage());
+        }
+    }
+
+    private static ConnectionPool pool(int maxSize) {
+        return new ConnectionPool(FakeDriver.class.getName(), FakeDriver.URL, null, null, maxSize, 100, 1);
+    }
+
+    /**
+     * 只记录连接是否关闭、是否有效的驱动
+     */
+    public static final class FakeDriver implements Driver {
+
+        static final String URL = "jdbc:ik-pool-test:";
+
+        static final List<FakeConnection> OPENED = new ArrayList<>();
+
+        static {
+            try {
+                DriverManager.registerDriver(new FakeDriver());
+            } catch (SQLException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        @Override
+        public Connection connect(String url, Properties info) {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            FakeConnection handler = new FakeConnection();
+            OPENED.add(handler);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, handler);
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith(URL);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+    static final class FakeConnection implements InvocationHandler {
+
+        boolean closed;
+
+        boolean valid = true;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "close":
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "isValid":
+                    return !closed && valid;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "FakeConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    }
+}
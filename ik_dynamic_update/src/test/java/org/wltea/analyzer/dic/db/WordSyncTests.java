@@ -0,0 +1,301 @@
+package org.wltea.analyzer.dic.db;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 水位同步的顺序：按(updatetime, id)分批读取不漏行，同一批中同一个词以最后一行为准
+ * 数据库由内存中的表模拟，按WordSync生成的语句的语义过滤、排序和截断
+ */
+public class WordSyncTests {
+
+    // 模拟的词库表，每行为{id, word, updatetime, deleted}
+    private static final List<Object[]> TABLE = new ArrayList<>();
+
+    private ConnectionPool pool;
+
+    @After
+    public void closePool() {
+        TABLE.clear();
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testInitialLoadAppliesRowsInOrder() throws SQLException {
+        row(1, "b", 1000, false);
+        row(2, "a", null, false);
+        row(3, "c", 1000, false);
+        row(4, "b", 2000, true);
+        row(5, "d", 2000, false);
+
+        List<String> batches = new ArrayList<>();
+        WordSync.Result result = sync(2, WordSync.Watermark.INITIAL, batches);
+
+        // updatetime为NULL的行最先加载，但不影响水位
+        assertEquals(Arrays.asList("+a +b", "+c -b", "+d"), batches);
+        assertEquals(5, result.getRows());
+        assertEquals(4, result.getAdded());
+        assertEquals(1, result.getDisabled());
+        assertWatermark(2000, 5, result.getWatermark());
+    }
+
+    @Test
+    public void testInitialLoadOfTableWithoutUpdateTime() throws SQLException {
+        row(1, "a", null, false);
+
+        List<String> batches = new ArrayList<>();
+        WordSync.Result result = sync(2, WordSync.Watermark.INITIAL, batches);
+
+        assertEquals(Arrays.asList("+a"), batches);
+        assertEquals(WordSync.Watermark.EMPTY, result.getWatermark());
+    }
+
+    @Test
+    public void testIncrementalSyncDoesNotSkipRowsWithTheSameUpdateTime() throws SQLException {
+        row(1, "a", 1000, false);
+        row(2, "b", 1000, false);
+        row(3, "c", 1000, false);
+        row(4, "a", 2000, true);
+        row(5, "d", 2000, false);
+
+        List<String> batches = new ArrayList<>();
+        // 每批2行，第一批的边界落在同一秒内的两行之间
+        WordSync.Result result = sync(2, new WordSync.Watermark(new Timestamp(1000), 1), batches);
+
+        assertEquals(Arrays.asList("+b +c", "+d -a"), batches);
+        assertEquals(4, result.getRows());
+        assertWatermark(2000, 5, result.getWatermark());
+
+        // 从新水位继续只读到之后更新的行
+        row(6, "c", 2000, true);
+        row(7, "e", 1500, false);
+        batches.clear();
+        result = sync(2, result.getWatermark(), batches);
+
+        assertEquals(Arrays.asList("-c"), batches);
+        assertEquals(1, result.getRows());
+        assertWatermark(2000, 6, result.getWatermark());
+    }
+
+    @Test
+    public void testLastRowOfAWordWinsWithinABatch() throws SQLException {
+        row(1, "x", 1000, true);
+        row(2, "Y", 1000, false);
+        row(3, " x ", 2000, false);
+        row(4, "y", 2000, true);
+        row(5, "z", 3000, false);
+        row(6, "z", 3000, true);
+        row(7, "z", 3000, false);
+
+        List<String> batches = new ArrayList<>();
+        WordSync.Result result = sync(10, new WordSync.Watermark(new Timestamp(0), 0), batches);
+
+        // 词的先后按第一次出现的行，状态按最后一行，词已trim并转小写
+        assertEquals(Arrays.asList("+x +z -y"), batches);
+        assertEquals(7, result.getRows());
+        assertEquals(2, result.getAdded());
+        assertEquals(1, result.getDisabled());
+        assertWatermark(3000, 7, result.getWatermark());
+    }
+
+    @Test
+    public void testNoChanges() throws SQLException {
+        row(1, "a", 1000, false);
+
+        List<String> batches = new ArrayList<>();
+        WordSync.Watermark from = new WordSync.Watermark(new Timestamp(1000), 1);
+        WordSync.Result result = sync(2, from, batches);
+
+        assertEquals(0, batches.size());
+        assertEquals(0, result.getRows());
+        assertEquals(from, result.getWatermark());
+    }
+
+    private static void row(long id, String word, Integer updateTime, boolean deleted) {
+        TABLE.add(new Object[]{id, word, updateTime == null ? null : new Timestamp(updateTime), deleted ? "1" : "0"});
+    }
+
+    private static void assertWatermark(long updateTime, long id, WordSync.Watermark watermark) {
+        assertEquals(new Timestamp(updateTime), watermark.getUpdateTime());
+        assertEquals(id, watermark.getId());
+    }
+
+    private WordSync.Result sync(int batchSize, WordSync.Watermark from, List<String> batches) throws SQLException {
+        if (pool == null) {
+            pool = new ConnectionPool(TableDriver.class.getName(), TableDriver.URL, null, null, 1, 1000, 1);
+        }
+        Properties props = new Properties();
+        props.setProperty("ext.delete.field.name", "deleted");
+        props.setProperty("sync.batch.size", String.valueOf(batchSize));
+        props.setProperty("fetch.size", "100");
+        WordSync sync = new WordSync(pool, props, "words");
+        return sync.sync(from, (added, disabled) -> {
+            List<String> changes = new ArrayList<>();
+            for (char[] word : added) {
+                changes.add("+" + new String(word));
+            }
+            for (char[] word : disabled) {
+                changes.add("-" + new String(word));
+            }
+            batches.add(String.join(" ", changes));
+        });
+    }
+
+    /**
+     * 在内存表上执行WordSync的两种查询：全量加载按(updatetime, id)排序，NULL在前；
+     * 增量查询取水位之后的行，排序后截断到LIMIT
+     */
+    private static List<Object[]> query(String sql, Object[] params) {
+        Comparator<Object[]> order = Comparator.comparing((Object[] row) -> (Timestamp) row[2],
+                Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(row -> (Long) row[0]);
+        if (!sql.contains(" LIMIT ")) {
+            return TABLE.stream().sorted(order).collect(Collectors.toList());
+        }
+        assertEquals("SELECT id, word, updatetime, deleted FROM words"
+                + " WHERE updatetime > ? OR (updatetime = ? AND id > ?) ORDER BY updatetime, id LIMIT ?", sql);
+        Timestamp after = (Timestamp) params[1];
+        long afterId = (Long) params[3];
+        return TABLE.stream()
+                .filter(row -> row[2] != null)
+                .filter(row -> ((Timestamp) row[2]).after(after)
+                        || ((Timestamp) row[2]).equals(after) && (Long) row[0] > afterId)
+                .sorted(order)
+                .limit((Integer) params[4])
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 返回模拟连接的JDBC驱动，只实现WordSync和ConnectionPool用到的方法
+     */
+    public static final class TableDriver implements Driver {
+
+        static final String URL = "jdbc:wordsync-test:words";
+
+        static {
+            try {
+                DriverManager.registerDriver(new TableDriver());
+            } catch (SQLException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        @Override
+        public Connection connect(String url, Properties info) {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            return proxy(Connection.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "prepareStatement":
+                        return statement((String) args[0]);
+                    case "isValid":
+                        return true;
+                    case "isClosed":
+                        return false;
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private static PreparedStatement statement(String sql) {
+            // 参数下标从1开始
+            Object[] params = new Object[5];
+            return proxy(PreparedStatement.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "setTimestamp":
+                    case "setLong":
+                    case "setInt":
+                        params[(Integer) args[0]] = args[1];
+                        return null;
+                    case "setFetchSize":
+                    case "setQueryTimeout":
+                    case "close":
+                        return null;
+                    case "executeQuery":
+                        return resultSet(query(sql, params).iterator());
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private static ResultSet resultSet(Iterator<Object[]> rows) {
+            Object[][] current = new Object[1][];
+            return proxy(ResultSet.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "next":
+                        current[0] = rows.hasNext() ? rows.next() : null;
+                        return current[0] != null;
+                    case "getLong":
+                    case "getString":
+                    case "getTimestamp":
+                        return current[0][(Integer) args[0] - 1];
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(WordSyncTests.class.getClassLoader(), new Class<?>[]{type}, handler));
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return URL.equals(url);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.wltea.analyzer.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import org.wltea.analyzer.cfg.TestConfigurations;
+import org.wltea.analyzer.core.IKSegmenter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JFR事件：打开后各字段按调用参数提交，默认关闭时不提交
+ */
+public class IkEventsTests {
+
+	private static final String SEGMENTATION = "org.wltea.analyzer.Segmentation";
+	private static final String RELOAD = "org.wltea.analyzer.DictionaryReload";
+	private static final String SYNC = "org.wltea.analyzer.DictionarySync";
+
+	@Test
+	public void testEventsCarryTheirFields() throws IOException {
+		List<RecordedEvent> events = record(new Runnable() {
+			@Override
+			public void run() {
+				IkEvents.segmentation("ik_smart", 12, 5, 3000);
+				IkEvents.dictionaryReload("http://localhost/ext.dic", 4000);
+				IkEvents.dictionarySync("ext_dict", "ext_words", 7, 5000);
+			}
+		}, SEGMENTATION, RELOAD, SYNC);
+
+		RecordedEvent segmentation = only(events, SEGMENTATION);
+		assertEquals("ik_smart", segmentation.getString("mode"));
+		assertEquals(12, segmentation.getLong("textLength"));
+		assertEquals(5, segmentation.getLong("tokenCount"));
+		assertEquals(3000, segmentation.getDuration("analysisTime").toNanos());
+
+		RecordedEvent reload = only(events, RELOAD);
+		assertEquals("http://localhost/ext.dic", reload.getString("source"));
+		assertEquals(4000, reload.getDuration("reloadTime").toNanos());
+
+		RecordedEvent sync = only(events, SYNC);
+		assertEquals("ext_dict", sync.getString("dictionary"));
+		assertEquals("ext_words", sync.getString("table"));
+		assertEquals(7, sync.getLong("rows"));
+		assertEquals(5000, sync.getDuration("syncTime").toNanos());
+	}
+
+	@Test
+	public void testDisabledEventsAreNotCommitted() throws IOException {
+		// 只打开同步事件，分词事件保持默认关闭
+		List<RecordedEvent> events = record(new Runnable() {
+			@Override
+			public void run() {
+				IkEvents.segmentation("ik_smart", 12, 5, 3000);
+				IkEvents.dictionarySync("ext_dict", "ext_words", 7, 5000);
+			}
+		}, SYNC);
+
+		assertEquals(0, count(events, SEGMENTATION));
+		assertEquals(1, count(events, SYNC));
+	}
+
+	@Test
+	public void testSegmentationEmitsOneEventPerDocument() throws IOException {
+		final String text = "中华人民共和国的测试";
+		List<RecordedEvent> events = record(new Runnable() {
+			@Override
+			public void run() {
+				IKSegmenter segmenter = new IKSegmenter(new StringReader(text), TestConfigurations.get());
+				try {
+					while (segmenter.next() != null) {
+					}
+				} catch (IOException e) {
+					throw new AssertionError(e);
+				}
+			}
+		}, SEGMENTATION);
+
+		RecordedEvent segmentation = only(events, SEGMENTATION);
+		assertEquals("ik_max_word", segmentation.getString("mode"));
+		assertEquals(text.length(), segmentation.getLong("textLength"));
+		assertTrue(segmentation.getLong("tokenCount") > 0);
+	}
+
+	private static List<RecordedEvent> record(Runnable action, String... names) throws IOException {
+		Path file = Files.createTempFile("ik-events", ".jfr");
+		try (Recording recording = new Recording()) {
+			for (String name : names) {
+				recording.enable(name);
+			}
+			recording.start();
+			action.run();
+			recording.stop();
+			recording.dump(file);
+			return RecordingFile.readAllEvents(file);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static RecordedEvent only(List<RecordedEvent> events, String name) {
+		List<RecordedEvent> matched = new ArrayList<>();
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals(name)) {
+				matched.add(event);
+			}
+		}
+		assertEquals(name, 1, matched.size());
+		return matched.get(0);
+	}
+
+	private static int count(List<RecordedEvent> events, String name) {
+		int count = 0;
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals(name)) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
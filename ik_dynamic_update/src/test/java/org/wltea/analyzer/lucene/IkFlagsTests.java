@@ -0,0 +1,17 @@
+package org.wltea.analyzer.lucene;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 固定与同义词插件约定的标记位，同义词插件的IkFlagsTests固定了相同的取值
+ */
+public class IkFlagsTests {
+
+	@Test
+	public void testFlagValues() {
+		assertEquals(0x10000, IKTokenizer.SYNONYM_CHECKED_FLAG);
+		assertEquals(0x20000, IKTokenizer.SYNONYM_TERM_FLAG);
+	}
+}
@@ -24,6 +24,12 @@ public class PinyinConfig {
     public boolean fixedPinyinOffset =false;
     //  after 6.0, offset is strictly constrained, overlapped tokens are not allowed, with this parameter, overlapped token will allowed by ignore offset, please note, all position related query or highlight will become incorrect, you should use multi fields and specify different settings for different query purpose. if you need offset, please set it to false. default: true.
     public boolean ignorePinyinOffset =true;
+    //  multiple_pinyin only: max joined full pinyin and first letter combinations kept per term, the most common readings first, <= 0 means unbounded
+    public int     maxPolyphoneCombinations=0;
+    //  multiple_pinyin only: emit the readings of a polyphonic character as stacked tokens at its position, joined terms only keep the most common reading and span all positions
+    public boolean stackPolyphoneReadings=false;
+    //  token filters only: reuse the candidates of recurring terms from a node wide cache
+    public boolean termCache=true;
 
     public PinyinConfig() {}
     public PinyinConfig(Settings settings) {
@@ -43,5 +49,19 @@ public class PinyinConfig {
         this.removeDuplicateTerm =settings.getAsBoolean("remove_duplicated_term", false);
         this.fixedPinyinOffset =settings.getAsBoolean("fixed_pinyin_offset", false);
         this.ignorePinyinOffset =settings.getAsBoolean("ignore_pinyin_offset", true);
+        this.maxPolyphoneCombinations=settings.getAsInt("max_polyphone_combinations", 0);
+        this.stackPolyphoneReadings=settings.getAsBoolean("stack_polyphone_readings", false);
+        this.termCache=settings.getAsBoolean("term_cache", true);
+    }
+
+    /**
+     * @return every setting that changes the generated terms, equal for configs that generate the same terms
+     */
+    public String fingerprint() {
+        return lowercase + "," + trimWhitespace + "," + keepNoneChinese + "," + keepNoneChineseInFirstLetter + ","
+                + keepNoneChineseInJoinedFullPinyin + "," + keepOriginal + "," + keepFirstLetter + ","
+                + keepSeparateFirstLetter + "," + keepNoneChineseTogether + "," + noneChinesePinyinTokenize + ","
+                + LimitFirstLetterLength + "," + keepFullPinyin + "," + keepJoinedFullPinyin + "," + removeDuplicateTerm + ","
+                + fixedPinyinOffset + "," + maxPolyphoneCombinations + "," + stackPolyphoneReadings;
     }
 }
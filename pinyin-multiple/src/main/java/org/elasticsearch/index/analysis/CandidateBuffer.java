@@ -0,0 +1,320 @@
+package org.elasticsearch.index.analysis;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * The candidate terms of one input term, reused by a tokenizer or filter across all its terms.
+ * <p>
+ * Terms are lowercased and trimmed while being copied into a shared char arena, their offsets and
+ * positions live in parallel int arrays, and duplicates (same chars at the same position, or anywhere
+ * with remove_duplicated_term) are rejected by an open addressing table over the arena, so adding a
+ * candidate does not allocate once the arrays have grown to the largest term seen. {@link #sort()}
+ * orders the candidates by position with a stable counting sort, keeping insertion order within a
+ * position; the accessors then take the rank in that order, before it ranks follow the insertion order.
+ */
+final class CandidateBuffer {
+
+    private final boolean lowercase;
+
+    private final boolean trim;
+
+    // remove_duplicated_term: a term is a duplicate regardless of its position
+    private final boolean ignorePosition;
+
+    private char[] chars = new char[64];
+    private int charsUsed = 0;
+
+    private int[] starts = new int[16];
+    private int[] lengths = new int[16];
+    private int[] hashes = new int[16];
+    private int[] startOffsets = new int[16];
+    private int[] endOffsets = new int[16];
+    private int[] positions = new int[16];
+    private int[] positionLengths = new int[16];
+    private int size = 0;
+
+    // candidate index + 1 per slot, 0 for an empty slot, kept at most half full
+    private int[] table = new int[32];
+
+    private int[] order = new int[16];
+    private int[] counts = new int[16];
+
+    CandidateBuffer(boolean lowercase, boolean trim, boolean ignorePosition) {
+        this.lowercase = lowercase;
+        this.trim = trim;
+        this.ignorePosition = ignorePosition;
+    }
+
+    boolean add(CharSequence term, int startOffset, int endOffset, int position) {
+        return add(term, 0, term.length(), startOffset, endOffset, position, 1);
+    }
+
+    boolean add(CharSequence term, int startOffset, int endOffset, int position, int positionLength) {
+        return add(term, 0, term.length(), startOffset, endOffset, position, positionLength);
+    }
+
+    /**
+     * Adds the chars {@code from} to {@code to} of the term.
+     *
+     * @return false if the term is empty after trimming or a duplicate
+     */
+    boolean add(CharSequence term, int from, int to, int startOffset, int endOffset, int position, int positionLength) {
+        if (trim) {
+            while (from < to && term.charAt(from) <= ' ') {
+                from++;
+            }
+            while (to > from && term.charAt(to - 1) <= ' ') {
+                to--;
+            }
+        }
+        int length = to - from;
+        if (length == 0) {
+            return false;
+        }
+        if (chars.length < charsUsed + length) {
+            chars = Arrays.copyOf(chars, Math.max(charsUsed + length, chars.length * 2));
+        }
+        int start = charsUsed;
+        int hash = ignorePosition ? 0 : position;
+        for (int i = 0; i < length; i++) {
+            char c = term.charAt(from + i);
+            if (lowercase) {
+                c = Character.toLowerCase(c);
+            }
+            chars[start + i] = c;
+            hash = 31 * hash + c;
+        }
+
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        while (table[slot] != 0) {
+            int other = table[slot] - 1;
+            if (hashes[other] == hash && sameTerm(other, start, length, position)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == starts.length) {
+            grow();
+        }
+        starts[size] = start;
+        lengths[size] = length;
+        hashes[size] = hash;
+        startOffsets[size] = startOffset;
+        endOffsets[size] = endOffset;
+        positions[size] = position;
+        positionLengths[size] = positionLength;
+        // until sort() the ranks are the insertion order
+        order[size] = size;
+        table[slot] = size + 1;
+        size++;
+        charsUsed += length;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return true;
+    }
+
+    private boolean sameTerm(int other, int start, int length, int position) {
+        if (lengths[other] != length || (!ignorePosition && positions[other] != position)) {
+            return false;
+        }
+        int otherStart = starts[other];
+        for (int i = 0; i < length; i++) {
+            if (chars[otherStart + i] != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private void grow() {
+        int capacity = starts.length * 2;
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        startOffsets = Arrays.copyOf(startOffsets, capacity);
+        endOffsets = Arrays.copyOf(endOffsets, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        positionLengths = Arrays.copyOf(positionLengths, capacity);
+        order = Arrays.copyOf(order, capacity);
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = mix(hashes[i]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Orders the candidates by position, candidates of the same position stay in the order they were added.
+     */
+    void sort() {
+        if (size == 0) {
+            return;
+        }
+        int min = positions[0];
+        int max = positions[0];
+        for (int i = 1; i < size; i++) {
+            min = Math.min(min, positions[i]);
+            max = Math.max(max, positions[i]);
+        }
+        int buckets = max - min + 2;
+        if (counts.length < buckets) {
+            counts = new int[Math.max(buckets, counts.length * 2)];
+        }
+        Arrays.fill(counts, 0, buckets, 0);
+        for (int i = 0; i < size; i++) {
+            counts[positions[i] - min + 1]++;
+        }
+        for (int b = 1; b < buckets; b++) {
+            counts[b] += counts[b - 1];
+        }
+        for (int i = 0; i < size; i++) {
+            order[counts[positions[i] - min]++] = i;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    char[] chars() {
+        return chars;
+    }
+
+    int start(int rank) {
+        return starts[order[rank]];
+    }
+
+    int length(int rank) {
+        return lengths[order[rank]];
+    }
+
+    int startOffset(int rank) {
+        return startOffsets[order[rank]];
+    }
+
+    int endOffset(int rank) {
+        return endOffsets[order[rank]];
+    }
+
+    int position(int rank) {
+        return positions[order[rank]];
+    }
+
+    int positionLength(int rank) {
+        return positionLengths[order[rank]];
+    }
+
+    /**
+     * @return a copy of the sorted candidates that can be shared between streams
+     */
+    Frozen freeze() {
+        Frozen frozen = new Frozen(charsUsed, size);
+        int at = 0;
+        for (int rank = 0; rank < size; rank++) {
+            int i = order[rank];
+            System.arraycopy(chars, starts[i], frozen.chars, at, lengths[i]);
+            frozen.starts[rank] = at;
+            frozen.lengths[rank] = lengths[i];
+            frozen.startOffsets[rank] = startOffsets[i];
+            frozen.endOffsets[rank] = endOffsets[i];
+            frozen.positions[rank] = positions[i];
+            frozen.positionLengths[rank] = positionLengths[i];
+            at += lengths[i];
+        }
+        return frozen;
+    }
+
+    /**
+     * Replaces the candidates with already sorted frozen ones, no {@link #sort()} needed.
+     */
+    void load(Frozen frozen) {
+        clear();
+        int count = frozen.starts.length;
+        while (starts.length < count) {
+            grow();
+        }
+        if (order.length < count) {
+            order = new int[starts.length];
+        }
+        if (chars.length < frozen.chars.length) {
+            chars = new char[Math.max(frozen.chars.length, chars.length * 2)];
+        }
+        System.arraycopy(frozen.chars, 0, chars, 0, frozen.chars.length);
+        System.arraycopy(frozen.starts, 0, starts, 0, count);
+        System.arraycopy(frozen.lengths, 0, lengths, 0, count);
+        System.arraycopy(frozen.startOffsets, 0, startOffsets, 0, count);
+        System.arraycopy(frozen.endOffsets, 0, endOffsets, 0, count);
+        System.arraycopy(frozen.positions, 0, positions, 0, count);
+        System.arraycopy(frozen.positionLengths, 0, positionLengths, 0, count);
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        charsUsed = frozen.chars.length;
+        size = count;
+        // the table is not filled, nothing may be added until the next clear()
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(table, 0);
+        }
+        size = 0;
+        charsUsed = 0;
+    }
+
+    /**
+     * Immutable sorted candidates, see {@link PinyinTermCache}.
+     */
+    static final class Frozen {
+
+        private final char[] chars;
+        private final int[] starts;
+        private final int[] lengths;
+        private final int[] startOffsets;
+        private final int[] endOffsets;
+        private final int[] positions;
+        private final int[] positionLengths;
+
+        private Frozen(int charCount, int size) {
+            this.chars = new char[charCount];
+            this.starts = new int[size];
+            this.lengths = new int[size];
+            this.startOffsets = new int[size];
+            this.endOffsets = new int[size];
+            this.positions = new int[size];
+            this.positionLengths = new int[size];
+        }
+    }
+}
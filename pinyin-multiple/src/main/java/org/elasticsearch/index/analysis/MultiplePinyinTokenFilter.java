@@ -21,6 +21,7 @@ import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.elasticsearch.analysis.PinyinConfig;
 import org.nlpcn.commons.lang.pinyin.Pinyin;
 
@@ -39,16 +40,26 @@ public class MultiplePinyinTokenFilter extends TokenFilter {
     protected int position = 0;
     protected int lastOffset = 0;
     private PinyinConfig config;
-    List<TermItem> candidate;
-    private HashSet<String> termsFilter;
+    CandidateBuffer candidates;
+    // id of this config in the term cache, 0 if the cache is disabled
+    private final int cacheConfigId;
 
     protected int candidateOffset = 0;
-    List<StringBuilder> firstLetters;
-    List<StringBuilder> fullPinyinLetters;
+    PolyphoneCombinations firstLetters;
+    PolyphoneCombinations fullPinyinLetters;
     String source;
     private int lastIncrementPosition = 0;
+    // JFR bookkeeping, only maintained while the candidates event is recorded
+    private boolean recording = false;
+    private long candidateStart = 0;
+    private long generationNanos = 0;
+    private int fullPinyinCombinations = 0;
+    private int firstLetterCombinations = 0;
+    private boolean combinationsTruncated = false;
+    private boolean cachedCandidates = false;
 
     private PositionIncrementAttribute positionAttr = addAttribute(PositionIncrementAttribute.class);
+    private PositionLengthAttribute positionLengthAttr = addAttribute(PositionLengthAttribute.class);
 
     public MultiplePinyinTokenFilter(TokenStream in, PinyinConfig config) {
         super(in);
@@ -57,10 +68,10 @@ public class MultiplePinyinTokenFilter extends TokenFilter {
         if (!(config.keepFirstLetter || config.keepSeparateFirstLetter || config.keepFullPinyin || config.keepJoinedFullPinyin)) {
             throw new ConfigErrorException("pinyin config error, can't disable separate_first_letter, first_letter and full_pinyin at the same time.");
         }
-        candidate = new ArrayList<>();
-        firstLetters = new LinkedList<StringBuilder>();
-        termsFilter = new HashSet<>();
-        fullPinyinLetters = new LinkedList<StringBuilder>();
+        candidates = new CandidateBuffer(config.lowercase, config.trimWhitespace, config.removeDuplicateTerm);
+        cacheConfigId = config.termCache ? PinyinTermCache.configId("multiple_pinyin:" + config.fingerprint()) : 0;
+        firstLetters = new PolyphoneCombinations(true, joinedCombinations(config), config.LimitFirstLetterLength);
+        fullPinyinLetters = new PolyphoneCombinations(false, joinedCombinations(config), 0);
     }
 
     //TODO refactor, merge code
@@ -86,154 +97,30 @@ public class MultiplePinyinTokenFilter extends TokenFilter {
     private boolean readTerm() {
         if (!processedCandidate) {
             processedCandidate = true;
+            if (recording) {
+                candidateStart = System.nanoTime();
+            }
             lastOffset = termAtt.length();
             source = termAtt.toString();
             if (config.trimWhitespace) {
                 source = source.trim();
             }
 
-            List<String> pinyinList = Pinyin.multiplePinyin(source);
-            if (pinyinList.size() == 0) return false;
-
-            StringBuilder buff = new StringBuilder();
-            int buffStartPosition = 0;
-            int buffSize = 0;
-            position = 0;
-
-            for (int i = 0; i < source.length(); i++) {
-                char c = source.charAt(i);
-
-                //keep original alphabet
-                if (c < 128) {
-                    if (buff.length() <= 0) {
-                        buffStartPosition = i;
-                    }
-                    if ((c > 96 && c < 123) || (c > 64 && c < 91) || (c > 47 && c < 58)) {
-                        if (config.keepNoneChinese) {
-                            if (config.keepNoneChinese) {
-                                if (config.keepNoneChineseTogether) {
-                                    buff.append(c);
-                                    buffSize++;
-                                } else {
-                                    addCandidate(new TermItem(String.valueOf(c), i, i + 1, buffStartPosition));
-                                }
-                            }
-                        }
-                        if (config.keepNoneChineseInFirstLetter) {
-                            if (firstLetters.size() == 0) {
-                                firstLetters.add(new StringBuilder(c+""));
-                            } else {
-                                for (int j=0; j<firstLetters.size();j++) {
-                                    firstLetters.get(j).append(c);
-                                }
-                            }
-                        }
-                        if (config.keepNoneChineseInJoinedFullPinyin) {
-                            if (fullPinyinLetters.size() == 0) {
-                                fullPinyinLetters.add(new StringBuilder(c+""));
-                            } else {
-                                for (StringBuilder fullPinyinLetter: fullPinyinLetters) {
-                                    fullPinyinLetter.append(c);
-                                }
-                            }
-                        }
-                    }
-                } else {
-                    //clean previous temp
-                    if (buff.length() > 0) {
-                        buffSize = parseBuff(buff, buffSize, buffStartPosition);
-                    }
-
-                    String pinyin = pinyinList.get(i);
-                    if (pinyin != null && pinyin.length() > 0) {
-                        String[] pingyinList = pinyin.split(" ");
-                        position++;
-                        if (firstLetters.size() == 0) {
-                            if (pingyinList.length > 1) {
-                                for (String py: pingyinList) {
-                                    firstLetters.add(new StringBuilder(py.substring(0, 1)));
-                                }
-                            }
-                            else {
-                                firstLetters.add(new StringBuilder(pinyin.substring(0, 1)));
-                            }
-                        } else {
-                            if (pingyinList.length > 1) {
-                                int lettersSize = firstLetters.size();
-                                for (int j=0; j<lettersSize;j++) {
-                                    String letter = firstLetters.get(j).toString();
-                                    for (String py: pingyinList) {
-                                        firstLetters.add(new StringBuilder(letter + py.substring(0, 1)));
-                                    }
-                                }
-
-                                for (int j =0; j< lettersSize; j++) {
-                                    firstLetters.remove(lettersSize-j-1);
-                                }
-                            } else {
-                                for (int j=0; j<firstLetters.size();j++) {
-                                    firstLetters.get(j).append(pinyin.charAt(0));
-                                }
-                            }
-                        }
-                        if (config.keepSeparateFirstLetter & pinyin.length() > 1) {
-                            addCandidate(new TermItem(String.valueOf(pinyin.charAt(0)), i, i + 1, position));
-                        }
-                        if (config.keepFullPinyin) {
-                            addCandidate(new TermItem(pinyin, i, i + 1, position));
-                        }
-                        if (config.keepJoinedFullPinyin) {
-                            if (fullPinyinLetters.size() == 0) {
-                                if (pingyinList.length > 1) {
-                                    for (String py: pingyinList) {
-                                        fullPinyinLetters.add(new StringBuilder(py));
-                                    }
-                                } else {
-                                    fullPinyinLetters.add(new StringBuilder(pingyinList[0]));
-                                }
-                            } else {
-                                if (pingyinList.length > 1) {
-                                    int fullPinyinSize = fullPinyinLetters.size();
-                                    for (int j=0; j<fullPinyinSize;j++) {
-                                        String letter = fullPinyinLetters.get(j).toString();
-                                        for (String py: pingyinList) {
-                                            fullPinyinLetters.add(new StringBuilder(letter + py));
-                                        }
-                                    }
-
-                                    for (int j =0; j< fullPinyinSize; j++) {
-                                        fullPinyinLetters.remove(fullPinyinSize-j-1);
-                                    }
-                                } else {
-                                    for (int j=0; j<fullPinyinLetters.size();j++) {
-                                        fullPinyinLetters.get(j).append(pingyinList[0]);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-
-                lastOffset = i;
-
-            }
-
-            //clean previous temp
-            if (buff.length() > 0) {
-                buffSize = parseBuff(buff, buffSize, buffStartPosition);
+            if (!loadCachedCandidates() && !generateCandidates()) {
+                return false;
             }
         }
 
 
         if (config.keepOriginal && !processedOriginal) {
             processedOriginal = true;
-            addCandidate(new TermItem(source, 0, source.length(), 1));
+            candidates.add(source, 0, source.length(), 1, joinedPositionLength());
         }
 
         if (config.keepJoinedFullPinyin && !processedFullPinyinLetter && fullPinyinLetters.size() > 0) {
             processedFullPinyinLetter = true;
-            for (StringBuilder fullPinyinLetter: fullPinyinLetters) {
-                addCandidate(new TermItem(fullPinyinLetter.toString(), 0, source.length(), 1));
+            for (int i = 0; i < fullPinyinLetters.size(); i++) {
+                candidates.add(fullPinyinLetters.get(i), 0, source.length(), 1, joinedPositionLength());
             }
             fullPinyinLetters.clear();
         }
@@ -241,104 +128,195 @@ public class MultiplePinyinTokenFilter extends TokenFilter {
 
         if (config.keepFirstLetter && firstLetters.size() > 0 && !processedFirstLetter) {
             processedFirstLetter = true;
-            for (StringBuilder firstLetter: firstLetters) {
-                String fl;
-                if (firstLetter.length() > config.LimitFirstLetterLength && config.LimitFirstLetterLength > 0) {
-                    fl = firstLetter.substring(0, config.LimitFirstLetterLength);
-                } else {
-                    fl = firstLetter.toString();
+            for (int i = 0; i < firstLetters.size(); i++) {
+                StringBuilder firstLetter = firstLetters.get(i);
+                int length = firstLetter.length();
+                if (length > config.LimitFirstLetterLength && config.LimitFirstLetterLength > 0) {
+                    length = config.LimitFirstLetterLength;
                 }
-                if (config.lowercase) {
-                    fl = fl.toLowerCase();
-                }
-                if (!(config.keepSeparateFirstLetter && fl.length() <= 1)) {
-                    addCandidate(new TermItem(fl, 0, fl.length(), 1));
+                if (!(config.keepSeparateFirstLetter && length <= 1)) {
+                    candidates.add(firstLetter, 0, length, 0, length, 1, joinedPositionLength());
                 }
             }
         }
 
+        if (recording && candidateOffset == 0) {
+            generationNanos = System.nanoTime() - candidateStart;
+        }
+
         if (!processedSortCandidate) {
             processedSortCandidate = true;
-            Collections.sort(candidate);
+            candidates.sort();
+            if (cacheConfigId != 0 && PinyinTermCache.cacheable(source)) {
+                PinyinTermCache.INSTANCE.put(cacheConfigId, source, candidates, fullPinyinCombinations, firstLetterCombinations,
+                        combinationsTruncated);
+            }
         }
 
-        if (candidateOffset < candidate.size()) {
-            TermItem item = candidate.get(candidateOffset);
+        if (candidateOffset < candidates.size()) {
+            setTerm(candidateOffset);
             candidateOffset++;
-            setTerm(item.term, item.startOffset, item.endOffset, item.position);
             return true;
         }
 
+        if (recording) {
+            PinyinEvents.candidates(source.length(), fullPinyinCombinations, firstLetterCombinations,
+                    candidates.size(), combinationsTruncated, cachedCandidates, generationNanos);
+        }
         done = true;
         return false;
     }
 
 
-    void addCandidate(TermItem item) {
-
-        String term = item.term;
-        if (config.lowercase) {
-            term = term.toLowerCase();
-        }
-
-        if (config.trimWhitespace) {
-            term = term.trim();
+    /**
+     * Takes the finished candidates of the source term from the term cache.
+     *
+     * @return false if the term is not cached
+     */
+    private boolean loadCachedCandidates() {
+        if (cacheConfigId == 0 || !PinyinTermCache.cacheable(source)) {
+            return false;
         }
-        item.term = term;
-
-        if (term.length() == 0) {
-            return;
+        PinyinTermCache.Entry entry = PinyinTermCache.INSTANCE.get(cacheConfigId, source);
+        if (entry == null) {
+            return false;
         }
-
-        //remove same term with same position
-        String fr=term+item.position;
-
-        //remove same term, regardless position
-        if (config.removeDuplicateTerm) {
-            fr=term;
+        candidates.load(entry.candidates);
+        fullPinyinCombinations = entry.fullPinyinCombinations;
+        firstLetterCombinations = entry.firstLetterCombinations;
+        combinationsTruncated = entry.truncated;
+        if (recording) {
+            cachedCandidates = true;
         }
+        // cached candidates are complete and already sorted
+        processedOriginal = true;
+        processedFullPinyinLetter = true;
+        processedFirstLetter = true;
+        processedSortCandidate = true;
+        return true;
+    }
 
-        if (termsFilter.contains(fr)) {
-            return;
-        }
-        termsFilter.add(fr);
+    /**
+     * Converts the source term and adds the candidates of its characters.
+     *
+     * @return false if the term has no pinyin at all
+     */
+    private boolean generateCandidates() {
+        List<String> pinyinList = Pinyin.multiplePinyin(source);
+        if (pinyinList.size() == 0) return false;
+
+        StringBuilder buff = new StringBuilder();
+        int buffStartPosition = 0;
+        int buffSize = 0;
+        position = 0;
 
-        candidate.add(item);
-    }
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
 
+            //keep original alphabet
+            if (c < 128) {
+                if (buff.length() <= 0) {
+                    buffStartPosition = i;
+                }
+                if ((c > 96 && c < 123) || (c > 64 && c < 91) || (c > 47 && c < 58)) {
+                    if (config.keepNoneChinese) {
+                        if (config.keepNoneChinese) {
+                            if (config.keepNoneChineseTogether) {
+                                buff.append(c);
+                                buffSize++;
+                            } else {
+                                candidates.add(source, i, i + 1, i, i + 1, buffStartPosition, 1);
+                            }
+                        }
+                    }
+                    if (config.keepFirstLetter && config.keepNoneChineseInFirstLetter) {
+                        firstLetters.append(c);
+                    }
+                    if (config.keepJoinedFullPinyin && config.keepNoneChineseInJoinedFullPinyin) {
+                        fullPinyinLetters.append(c);
+                    }
+                }
+            } else {
+                //clean previous temp
+                if (buff.length() > 0) {
+                    buffSize = parseBuff(buff, buffSize, buffStartPosition);
+                }
 
-    void setTerm(String term, int startOffset, int endOffset, int position) {
-        if (config.lowercase) {
-            term = term.toLowerCase();
-        }
+                String pinyin = pinyinList.get(i);
+                if (pinyin != null && pinyin.length() > 0) {
+                    String[] pingyinList = pinyin.split(" ");
+                    position++;
+                    if (config.keepFirstLetter) {
+                        firstLetters.append(pingyinList);
+                    }
+                    if (config.stackPolyphoneReadings) {
+                        addReadings(pingyinList, i, position);
+                    } else {
+                        if (config.keepSeparateFirstLetter & pinyin.length() > 1) {
+                            candidates.add(pinyin, 0, 1, i, i + 1, position, 1);
+                        }
+                        if (config.keepFullPinyin) {
+                            candidates.add(pinyin, i, i + 1, position);
+                        }
+                    }
+                    if (config.keepJoinedFullPinyin) {
+                        fullPinyinLetters.append(pingyinList);
+                    }
+                }
+            }
 
-        if (config.trimWhitespace) {
-            term = term.trim();
-        }
+            lastOffset = i;
 
-        //ignore empty term
-        if(term.length()==0){
-            return;
         }
 
-        termAtt.setEmpty();
-        termAtt.append(term);
-        if (startOffset < 0) {
-            startOffset = 0;
-        }
-        if (endOffset < startOffset) {
-            endOffset = startOffset + term.length();
+        //clean previous temp
+        if (buff.length() > 0) {
+            buffSize = parseBuff(buff, buffSize, buffStartPosition);
         }
+        fullPinyinCombinations = fullPinyinLetters.size();
+        firstLetterCombinations = firstLetters.size();
+        combinationsTruncated = firstLetters.isTruncated() || fullPinyinLetters.isTruncated();
+        return true;
+    }
 
+    void setTerm(int rank) {
+        int length = candidates.length(rank);
+        termAtt.copyBuffer(candidates.chars(), candidates.start(rank), length);
+        int position = candidates.position(rank);
         int offset = position - lastIncrementPosition;
         if (offset < 0) {
             offset = 0;
         }
         positionAttr.setPositionIncrement(offset);
+        positionLengthAttr.setPositionLength(candidates.positionLength(rank));
 
         lastIncrementPosition = position;
     }
 
+    /**
+     * Stacks every reading of a polyphonic character at its position instead of joining them.
+     */
+    private void addReadings(String[] readings, int offset, int position) {
+        for (String reading : readings) {
+            if (config.keepSeparateFirstLetter && reading.length() > 1) {
+                candidates.add(reading, 0, 1, offset, offset + 1, position, 1);
+            }
+            if (config.keepFullPinyin) {
+                candidates.add(reading, offset, offset + 1, position);
+            }
+        }
+    }
+
+    // joined terms span all positions of the term when readings are stacked, so phrase queries can take either path
+    private int joinedPositionLength() {
+        return config.stackPolyphoneReadings ? Math.max(position, 1) : 1;
+    }
+
+    // stacked readings already cover the alternatives, joined terms only keep the most common reading
+    private static int joinedCombinations(PinyinConfig config) {
+        return config.stackPolyphoneReadings ? 1 : config.maxPolyphoneCombinations;
+    }
+
     private int parseBuff(StringBuilder buff, int buffSize, int buffPosition) {
         if (config.keepNoneChinese) {
             if (config.noneChinesePinyinTokenize) {
@@ -352,11 +330,11 @@ public class MultiplePinyinTokenFilter extends TokenFilter {
                     } else {
                         end = start + t.length();
                     }
-                    addCandidate(new TermItem(result.get(i), start, end, ++position));
+                    candidates.add(result.get(i), start, end, ++position);
                     start = end;
                 }
             } else if (config.keepFirstLetter || config.keepSeparateFirstLetter || config.keepFullPinyin || !config.keepNoneChineseInJoinedFullPinyin) {
-                addCandidate(new TermItem(buff.toString(), lastOffset - buffSize, lastOffset, ++position));
+                candidates.add(buff, lastOffset - buffSize, lastOffset, ++position);
             }
         }
 
@@ -373,23 +351,25 @@ public class MultiplePinyinTokenFilter extends TokenFilter {
     void resetVariable() {
         position = 0;
         lastOffset = 0;
-        candidate.clear();
+        candidates.clear();
         this.processedCandidate = false;
         this.processedFirstLetter = false;
         this.processedFullPinyinLetter = false;
         this.processedOriginal = false;
+        this.processedSortCandidate = false;
         firstLetters.clear();
         fullPinyinLetters.clear();
         source = null;
         candidateOffset = 0;
-        termsFilter.clear();
         lastIncrementPosition = 0;
+        cachedCandidates = false;
     }
 
     @Override
     public void reset() throws IOException {
         super.reset();
         this.done = true;
+        this.recording = PinyinEvents.candidatesEnabled();
         resetVariable();
     }
 
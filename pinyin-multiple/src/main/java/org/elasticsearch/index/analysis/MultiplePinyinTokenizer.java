@@ -4,6 +4,7 @@ import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.elasticsearch.analysis.PinyinConfig;
 import org.nlpcn.commons.lang.pinyin.Pinyin;
 
@@ -26,16 +27,23 @@ public class MultiplePinyinTokenizer extends Tokenizer {
     protected int lastOffset = 0;
     private OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
     private PositionIncrementAttribute positionAttr = addAttribute(PositionIncrementAttribute.class);
+    private PositionLengthAttribute positionLengthAttr = addAttribute(PositionLengthAttribute.class);
     private PinyinConfig config;
-    ArrayList<TermItem> candidate;
+    CandidateBuffer candidates;
     protected int candidateOffset = 0; //indicate candidates process offset
-    private HashSet<String> termsFilter;
-    List<StringBuilder> firstLetters;
-    List<StringBuilder> fullPinyinLetters;
+    PolyphoneCombinations firstLetters;
+    PolyphoneCombinations fullPinyinLetters;
 
     private int lastIncrementPosition = 0;
 
     String source;
+    // JFR bookkeeping, only maintained while the candidates event is recorded
+    private boolean recording = false;
+    private long candidateStart = 0;
+    private long generationNanos = 0;
+    private int fullPinyinCombinations = 0;
+    private int firstLetterCombinations = 0;
+    private boolean combinationsTruncated = false;
 
     public MultiplePinyinTokenizer(PinyinConfig config) {
         this(DEFAULT_BUFFER_SIZE);
@@ -45,10 +53,9 @@ public class MultiplePinyinTokenizer extends Tokenizer {
         if (!(config.keepFirstLetter || config.keepSeparateFirstLetter || config.keepFullPinyin || config.keepJoinedFullPinyin)) {
             throw new ConfigErrorException("pinyin config error, can't disable separate_first_letter, first_letter and full_pinyin at the same time.");
         }
-        candidate = new ArrayList<>();
-        termsFilter = new HashSet<>();
-        firstLetters = new LinkedList<StringBuilder>();
-        fullPinyinLetters = new LinkedList<StringBuilder>();
+        candidates = new CandidateBuffer(config.lowercase, config.trimWhitespace, config.removeDuplicateTerm);
+        firstLetters = new PolyphoneCombinations(true, joinedCombinations(config), config.LimitFirstLetterLength);
+        fullPinyinLetters = new PolyphoneCombinations(false, joinedCombinations(config), 0);
     }
 
     public MultiplePinyinTokenizer(int bufferSize) {
@@ -56,71 +63,29 @@ public class MultiplePinyinTokenizer extends Tokenizer {
         termAtt.resizeBuffer(bufferSize);
     }
 
-    void addCandidate(TermItem item) {
-
-        String term = item.term;
-        if (config.lowercase) {
-            term = term.toLowerCase();
-        }
-
-        if (config.trimWhitespace) {
-            term = term.trim();
-        }
-        item.term = term;
-
-        if (term.length() == 0) {
-            return;
-        }
-
-        //remove same term with same position
-        String fr=term+item.position;
-
-        //remove same term, regardless position
-        if (config.removeDuplicateTerm) {
-             fr=term;
-        }
-
-        if (termsFilter.contains(fr)) {
-            return;
-        }
-        termsFilter.add(fr);
-
-        candidate.add(item);
-    }
-
-
-    void setTerm(String term, int startOffset, int endOffset, int position) {
-        if (config.lowercase) {
-            term = term.toLowerCase();
-        }
-
-        if (config.trimWhitespace) {
-            term = term.trim();
-        }
-
-        //ignore empty term
-        if(term.length()==0){
-            return;
-        }
-
-        termAtt.setEmpty();
-        termAtt.append(term);
+    void setTerm(int rank) {
+        int length = candidates.length(rank);
+        termAtt.copyBuffer(candidates.chars(), candidates.start(rank), length);
+        int startOffset = candidates.startOffset(rank);
+        int endOffset = candidates.endOffset(rank);
         if (startOffset < 0) {
             startOffset = 0;
         }
         if (endOffset < startOffset) {
-            endOffset = startOffset + term.length();
+            endOffset = startOffset + length;
         }
 
         if(!config.ignorePinyinOffset){
             offsetAtt.setOffset(correctOffset(startOffset), correctOffset(endOffset));
         }
 
+        int position = candidates.position(rank);
         int offset = position - lastIncrementPosition;
         if (offset < 0) {
             offset = 0;
         }
         positionAttr.setPositionIncrement(offset);
+        positionLengthAttr.setPositionLength(candidates.positionLength(rank));
 
         lastIncrementPosition = position;
     }
@@ -135,6 +100,9 @@ public class MultiplePinyinTokenizer extends Tokenizer {
             //combine text together to get right pinyin
             if (!processedCandidate) {
                 processedCandidate = true;
+                if (recording) {
+                    candidateStart = System.nanoTime();
+                }
                 int upto = 0;
                 char[] buffer = termAtt.buffer();
                 while (true) {
@@ -170,28 +138,15 @@ public class MultiplePinyinTokenizer extends Tokenizer {
                                         buff.append(c);
                                         buffSize++;
                                     } else {
-                                        addCandidate(new TermItem(String.valueOf(c), i, i + 1, buffStartPosition));
+                                        candidates.add(source, i, i + 1, i, i + 1, buffStartPosition, 1);
                                     }
                                 }
                             }
-                            if (config.keepNoneChineseInFirstLetter) {
-                                if (firstLetters.size() == 0) {
-                                    firstLetters.add(new StringBuilder(c+""));
-                                } else {
-                                    for (int j=0; j<firstLetters.size();j++) {
-                                        firstLetters.get(j).append(c);
-                                    }
-                                }
-
+                            if (config.keepFirstLetter && config.keepNoneChineseInFirstLetter) {
+                                firstLetters.append(c);
                             }
-                            if (config.keepNoneChineseInJoinedFullPinyin) {
-                                if (fullPinyinLetters.size() == 0) {
-                                    fullPinyinLetters.add(new StringBuilder(c+""));
-                                } else {
-                                    for (StringBuilder fullPinyinLetter: fullPinyinLetters) {
-                                        fullPinyinLetter.append(c);
-                                    }
-                                }
+                            if (config.keepJoinedFullPinyin && config.keepNoneChineseInJoinedFullPinyin) {
+                                fullPinyinLetters.append(c);
                             }
                         }
                     } else {
@@ -205,68 +160,21 @@ public class MultiplePinyinTokenizer extends Tokenizer {
                         if (pinyin != null && pinyin.length() > 0) {
                             String[] pingyinList = pinyin.split(" ");
                             position++;
-                            if (firstLetters.size() == 0) {
-                                if (pingyinList.length > 1) {
-                                    for (String py: pingyinList) {
-                                        firstLetters.add(new StringBuilder(py.substring(0, 1)));
-                                    }
-                                }
-                                else {
-                                    firstLetters.add(new StringBuilder(pinyin.substring(0, 1)));
-                                }
+                            if (config.keepFirstLetter) {
+                                firstLetters.append(pingyinList);
+                            }
+                            if (config.stackPolyphoneReadings) {
+                                addReadings(pingyinList, i, position);
                             } else {
-                                if (pingyinList.length > 1) {
-                                    int lettersSize = firstLetters.size();
-                                    for (int j=0; j<lettersSize;j++) {
-                                        String letter = firstLetters.get(j).toString();
-                                        for (String py: pingyinList) {
-                                            firstLetters.add(new StringBuilder(letter + py.substring(0, 1)));
-                                        }
-                                    }
-
-                                    for (int j =0; j< lettersSize; j++) {
-                                        firstLetters.remove(lettersSize-j-1);
-                                    }
-                                } else {
-                                    for (int j=0; j<firstLetters.size();j++) {
-                                        firstLetters.get(j).append(pinyin.charAt(0));
-                                    }
+                                if (config.keepSeparateFirstLetter & pinyin.length() > 1) {
+                                    candidates.add(pinyin, 0, 1, i, i + 1, position, 1);
+                                }
+                                if (config.keepFullPinyin) {
+                                    candidates.add(pinyin, i, i + 1, position);
                                 }
-                            }
-                            if (config.keepSeparateFirstLetter & pinyin.length() > 1) {
-                                addCandidate(new TermItem(String.valueOf(pinyin.charAt(0)), i, i + 1, position));
-                            }
-                            if (config.keepFullPinyin) {
-                                addCandidate(new TermItem(pinyin, i, i + 1, position));
                             }
                             if (config.keepJoinedFullPinyin) {
-                                if (fullPinyinLetters.size() == 0) {
-                                    if (pingyinList.length > 1) {
-                                        for (String py: pingyinList) {
-                                            fullPinyinLetters.add(new StringBuilder(py));
-                                        }
-                                    } else {
-                                        fullPinyinLetters.add(new StringBuilder(pingyinList[0]));
-                                    }
-                                } else {
-                                    if (pingyinList.length > 1) {
-                                        int fullPinyinSize = fullPinyinLetters.size();
-                                        for (int j=0; j<fullPinyinSize;j++) {
-                                            String letter = fullPinyinLetters.get(j).toString();
-                                            for (String py: pingyinList) {
-                                                fullPinyinLetters.add(new StringBuilder(letter + py));
-                                            }
-                                        }
-
-                                        for (int j =0; j< fullPinyinSize; j++) {
-                                            fullPinyinLetters.remove(fullPinyinSize-j-1);
-                                        }
-                                    } else {
-                                        for (int j=0; j<fullPinyinLetters.size();j++) {
-                                            fullPinyinLetters.get(j).append(pingyinList[0]);
-                                        }
-                                    }
-                                }
+                                fullPinyinLetters.append(pingyinList);
                             }
                         }
                     }
@@ -279,17 +187,22 @@ public class MultiplePinyinTokenizer extends Tokenizer {
                 if (buff.length() > 0) {
                     buffSize = parseBuff(buff, buffSize, buffStartPosition);
                 }
+                if (recording) {
+                    fullPinyinCombinations = fullPinyinLetters.size();
+                    firstLetterCombinations = firstLetters.size();
+                    combinationsTruncated = firstLetters.isTruncated() || fullPinyinLetters.isTruncated();
+                }
             }
 
             if (config.keepOriginal && !processedOriginal) {
                 processedOriginal = true;
-                addCandidate(new TermItem(source, 0, source.length(), 1));
+                candidates.add(source, 0, source.length(), 1, joinedPositionLength());
             }
 
             if (config.keepJoinedFullPinyin && !processedFullPinyinLetter && fullPinyinLetters.size() > 0) {
                 processedFullPinyinLetter = true;
-                for (StringBuilder fullPinyinLetter: fullPinyinLetters) {
-                    addCandidate(new TermItem(fullPinyinLetter.toString(), 0, source.length(), 1));
+                for (int i = 0; i < fullPinyinLetters.size(); i++) {
+                    candidates.add(fullPinyinLetters.get(i), 0, source.length(), 1, joinedPositionLength());
                 }
                 fullPinyinLetters.clear();
             }
@@ -298,41 +211,66 @@ public class MultiplePinyinTokenizer extends Tokenizer {
             if (config.keepFirstLetter && firstLetters.size() > 0 && !processedFirstLetter) {
                 processedFirstLetter = true;
 
-                for (StringBuilder firstLetter: firstLetters) {
-                    String fl;
-                    if (firstLetter.length() > config.LimitFirstLetterLength && config.LimitFirstLetterLength > 0) {
-                        fl = firstLetter.substring(0, config.LimitFirstLetterLength);
-                    } else {
-                        fl = firstLetter.toString();
-                    }
-                    if (config.lowercase) {
-                        fl = fl.toLowerCase();
+                for (int i = 0; i < firstLetters.size(); i++) {
+                    StringBuilder firstLetter = firstLetters.get(i);
+                    int length = firstLetter.length();
+                    if (length > config.LimitFirstLetterLength && config.LimitFirstLetterLength > 0) {
+                        length = config.LimitFirstLetterLength;
                     }
-                    if (!(config.keepSeparateFirstLetter && fl.length() <= 1)) {
-                        addCandidate(new TermItem(fl, 0, fl.length(), 1));
+                    if (!(config.keepSeparateFirstLetter && length <= 1)) {
+                        candidates.add(firstLetter, 0, length, 0, length, 1, joinedPositionLength());
                     }
                 }
             }
 
             if (!processedSortCandidate) {
                 processedSortCandidate = true;
-                Collections.sort(candidate);
+                candidates.sort();
+                if (recording) {
+                    generationNanos = System.nanoTime() - candidateStart;
+                }
             }
 
-            if (candidateOffset < candidate.size()) {
-                TermItem item = candidate.get(candidateOffset);
+            if (candidateOffset < candidates.size()) {
+                setTerm(candidateOffset);
                 candidateOffset++;
-                setTerm(item.term, item.startOffset, item.endOffset, item.position);
                 return true;
             }
 
-
+            if (recording) {
+                PinyinEvents.candidates(source.length(), fullPinyinCombinations, firstLetterCombinations,
+                        candidates.size(), combinationsTruncated, false, generationNanos);
+            }
             done = true;
             return false;
         }
         return false;
     }
 
+    /**
+     * Stacks every reading of a polyphonic character at its position instead of joining them.
+     */
+    private void addReadings(String[] readings, int offset, int position) {
+        for (String reading : readings) {
+            if (config.keepSeparateFirstLetter && reading.length() > 1) {
+                candidates.add(reading, 0, 1, offset, offset + 1, position, 1);
+            }
+            if (config.keepFullPinyin) {
+                candidates.add(reading, offset, offset + 1, position);
+            }
+        }
+    }
+
+    // joined terms span all positions of the term when readings are stacked, so phrase queries can take either path
+    private int joinedPositionLength() {
+        return config.stackPolyphoneReadings ? Math.max(position, 1) : 1;
+    }
+
+    // stacked readings already cover the alternatives, joined terms only keep the most common reading
+    private static int joinedCombinations(PinyinConfig config) {
+        return config.stackPolyphoneReadings ? 1 : config.maxPolyphoneCombinations;
+    }
+
     private int parseBuff(StringBuilder buff, int buffSize, int buffPosition) {
         if (config.keepNoneChinese) {
             if (config.noneChinesePinyinTokenize) {
@@ -346,11 +284,11 @@ public class MultiplePinyinTokenizer extends Tokenizer {
                     } else {
                         end = start + t.length();
                     }
-                    addCandidate(new TermItem(result.get(i), start, end, ++position));
+                    candidates.add(result.get(i), start, end, ++position);
                     start = end;
                 }
             } else if (config.keepFirstLetter || config.keepSeparateFirstLetter || config.keepFullPinyin || !config.keepNoneChineseInJoinedFullPinyin) {
-                addCandidate(new TermItem(buff.toString(), lastOffset - buffSize, lastOffset, ++position));
+                candidates.add(buff, lastOffset - buffSize, lastOffset, ++position);
             }
         }
 
@@ -374,12 +312,13 @@ public class MultiplePinyinTokenizer extends Tokenizer {
         this.processedFirstLetter = false;
         this.processedFullPinyinLetter = false;
         this.processedOriginal = false;
+        this.processedSortCandidate = false;
         firstLetters.clear();
         fullPinyinLetters.clear();
-        termsFilter.clear();
-        candidate.clear();
+        candidates.clear();
         source = null;
         lastIncrementPosition = 0;
+        this.recording = PinyinEvents.candidatesEnabled();
     }
 
 
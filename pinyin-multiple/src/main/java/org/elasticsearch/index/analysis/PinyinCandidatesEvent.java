@@ -0,0 +1,84 @@
+package org.elasticsearch.index.analysis;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("org.elasticsearch.pinyin.Candidates")
+@Label("Pinyin Candidates")
+@Category({"Elasticsearch", "Pinyin"})
+@Description("Pinyin candidates generated for one input term, including polyphone combinations")
+@Enabled(false)
+@StackTrace(false)
+final class PinyinCandidatesEvent extends Event {
+
+    // checked before allocating an event, one is created per term
+    private static final EventType TYPE = EventType.getEventType(PinyinCandidatesEvent.class);
+
+    @Label("Term Length")
+    int termLength;
+
+    @Label("Full Pinyin Combinations")
+    int fullPinyinCombinations;
+
+    @Label("First Letter Combinations")
+    int firstLetterCombinations;
+
+    @Label("Candidates")
+    int candidates;
+
+    @Label("Combinations Truncated")
+    @Description("Whether polyphone combinations were dropped to stay within max_polyphone_combinations")
+    boolean truncated;
+
+    @Label("Cached")
+    @Description("Whether the candidates were taken from the term cache instead of being generated")
+    boolean cached;
+
+    @Label("Generation Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long generationTime;
+
+    static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+    static void emit(int termLength, int fullPinyinCombinations, int firstLetterCombinations, int candidates, boolean truncated,
+                     boolean cached, long nanos) {
+        if (!TYPE.isEnabled()) {
+            return;
+        }
+        PinyinCandidatesEvent event = new PinyinCandidatesEvent();
+        event.termLength = termLength;
+        event.fullPinyinCombinations = fullPinyinCombinations;
+        event.firstLetterCombinations = firstLetterCombinations;
+        event.candidates = candidates;
+        event.truncated = truncated;
+        event.cached = cached;
+        event.generationTime = nanos;
+        event.commit();
+    }
+}
@@ -0,0 +1,54 @@
+package org.elasticsearch.index.analysis;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Entry point for the pinyin JFR events.
+ * <p>
+ * jdk.jfr only exists on JDK 11+ (and 8u262+), so the event class is only touched behind the
+ * availability check. The event is disabled by default; when off, filters check it once per
+ * token stream and skip all bookkeeping.
+ */
+public final class PinyinEvents {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    private PinyinEvents() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, PinyinEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    public static boolean candidatesEnabled() {
+        return AVAILABLE && PinyinCandidatesEvent.enabled();
+    }
+
+    public static void candidates(int termLength, int fullPinyinCombinations, int firstLetterCombinations,
+                                  int candidates, boolean truncated, boolean cached, long nanos) {
+        if (AVAILABLE) {
+            PinyinCandidatesEvent.emit(termLength, fullPinyinCombinations, firstLetterCombinations, candidates, truncated,
+                    cached, nanos);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package org.elasticsearch.index.analysis;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Node wide cache of the finished candidates of a term, shared by all pinyin token filters.
+ * <p>
+ * Filters behind a word tokenizer see the same terms over and over, a hit skips the pinyin
+ * conversion and the candidate generation. Entries are keyed by the term and the id of the filter
+ * configuration (see {@link #configId(String)}), so filters with different settings never share
+ * candidates.
+ * <p>
+ * The cache is a fixed array of two way buckets updated without locks. Lookups count the term in a
+ * small count-min sketch that is halved periodically, and a new term only replaces a bucket entry if
+ * it has been seen more often than that entry (TinyLFU admission), so a stream of one-off terms cannot
+ * flush the hot ones. Misses are always counted, hits are sampled so that the common case does not
+ * write to memory shared by all threads. Lost updates between threads only cost a miss.
+ */
+final class PinyinTermCache {
+
+    // 2^14 entries
+    private static final int CAPACITY = 1 << 14;
+
+    // long terms rarely repeat and are expensive to keep
+    static final int MAX_TERM_LENGTH = 32;
+
+    // one in this many hits is counted, with this weight
+    private static final int HIT_SAMPLE = 8;
+
+    static final PinyinTermCache INSTANCE = new PinyinTermCache(CAPACITY);
+
+    private static final ConcurrentMap<String, Integer> CONFIG_IDS = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger NEXT_CONFIG_ID = new AtomicInteger();
+
+    private final AtomicReferenceArray<Entry> entries;
+
+    private final int mask;
+
+    private final FrequencySketch sketch;
+
+    PinyinTermCache(int capacity) {
+        this.entries = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    /**
+     * @param fingerprint the filter type and every setting that changes its candidates
+     * @return a small id that is the same for equal fingerprints
+     */
+    static int configId(String fingerprint) {
+        return CONFIG_IDS.computeIfAbsent(fingerprint, f -> NEXT_CONFIG_ID.incrementAndGet());
+    }
+
+    static boolean cacheable(String term) {
+        return term.length() > 0 && term.length() <= MAX_TERM_LENGTH;
+    }
+
+    /**
+     * @return the cached candidates of the term, or null; counts the lookup either way
+     */
+    Entry get(int configId, String term) {
+        int hash = hash(configId, term);
+        int bucket = hash & mask & ~1;
+        Entry entry = entries.get(bucket);
+        if (entry == null || !entry.matches(hash, configId, term)) {
+            entry = entries.get(bucket + 1);
+            if (entry == null || !entry.matches(hash, configId, term)) {
+                sketch.increment(hash, 1);
+                return null;
+            }
+        }
+        // a cached term only needs its count to defend its slot, an estimate is enough
+        if (ThreadLocalRandom.current().nextInt(HIT_SAMPLE) == 0) {
+            sketch.increment(hash, HIT_SAMPLE);
+        }
+        return entry;
+    }
+
+    /**
+     * Caches the sorted candidates of the term unless it is already cached or colder than the entries it
+     * would replace; the candidates are only copied once the term is admitted.
+     */
+    void put(int configId, String term, CandidateBuffer candidates, int fullPinyinCombinations,
+             int firstLetterCombinations, boolean truncated) {
+        int hash = hash(configId, term);
+        int bucket = hash & mask & ~1;
+        Entry first = entries.get(bucket);
+        Entry second = entries.get(bucket + 1);
+        if ((first != null && first.matches(hash, configId, term)) || (second != null && second.matches(hash, configId, term))) {
+            return;
+        }
+        int slot;
+        if (first == null) {
+            slot = bucket;
+        } else if (second == null) {
+            slot = bucket + 1;
+        } else {
+            int firstFrequency = sketch.frequency(first.hash);
+            int secondFrequency = sketch.frequency(second.hash);
+            int victim = firstFrequency <= secondFrequency ? bucket : bucket + 1;
+            if (sketch.frequency(hash) <= Math.min(firstFrequency, secondFrequency)) {
+                return;
+            }
+            slot = victim;
+        }
+        entries.set(slot, new Entry(hash, configId, term, candidates.freeze(), fullPinyinCombinations, firstLetterCombinations,
+                truncated));
+    }
+
+    private static int hash(int configId, String term) {
+        int hash = term.hashCode() * 31 + configId;
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * The candidates of one term under one configuration.
+     */
+    static final class Entry {
+
+        private final int hash;
+
+        private final int configId;
+
+        private final String term;
+
+        final CandidateBuffer.Frozen candidates;
+
+        // kept for the candidates JFR event of multiple_pinyin
+        final int fullPinyinCombinations;
+
+        final int firstLetterCombinations;
+
+        final boolean truncated;
+
+        private Entry(int hash, int configId, String term, CandidateBuffer.Frozen candidates, int fullPinyinCombinations,
+                      int firstLetterCombinations, boolean truncated) {
+            this.hash = hash;
+            this.configId = configId;
+            this.term = term;
+            this.candidates = candidates;
+            this.fullPinyinCombinations = fullPinyinCombinations;
+            this.firstLetterCombinations = firstLetterCombinations;
+            this.truncated = truncated;
+        }
+
+        private boolean matches(int hash, int configId, String term) {
+            return this.hash == hash && this.configId == configId && this.term.equals(term);
+        }
+    }
+
+    /**
+     * Count-min sketch of 4 rows, counters are halved every 10 * capacity increments so old popularity fades.
+     * <p>
+     * Counters are updated with plain read-modify-writes and may lose increments, or an increment may race
+     * with a halving; this is accepted, it only makes the admission slightly less exact. Exactly one thread
+     * halves the counters for every 10 * capacity increments, so the aging is neither lost nor repeated.
+     */
+    private static final class FrequencySketch {
+
+        private static final int[] SEEDS = {0x97CB3127, 0xB1A83721, 0x4F1BBCDD, 0x1B873593};
+
+        private final int[] counters;
+
+        private final int rowMask;
+
+        private final int sampleSize;
+
+        private final AtomicInteger additions = new AtomicInteger();
+
+        FrequencySketch(int capacity) {
+            this.counters = new int[capacity * 4];
+            this.rowMask = capacity - 1;
+            this.sampleSize = capacity * 10;
+        }
+
+        void increment(int hash, int count) {
+            for (int row = 0; row < SEEDS.length; row++) {
+                counters[index(hash, row)] += count;
+            }
+            int after = additions.addAndGet(count);
+            if (after >= sampleSize && after - count < sampleSize) {
+                // only the thread crossing the sample size halves, the increments made meanwhile are kept
+                reset();
+                additions.addAndGet(-sampleSize);
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = Integer.MAX_VALUE;
+            for (int row = 0; row < SEEDS.length; row++) {
+                frequency = Math.min(frequency, counters[index(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * SEEDS[row];
+            return row * (rowMask + 1) + ((h ^ (h >>> 17)) & rowMask);
+        }
+
+        private void reset() {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] >>>= 1;
+            }
+        }
+    }
+}
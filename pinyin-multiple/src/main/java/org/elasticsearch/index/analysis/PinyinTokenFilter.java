@@ -26,9 +26,6 @@ import org.elasticsearch.analysis.PinyinConfig;
 import org.nlpcn.commons.lang.pinyin.Pinyin;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 
 public class PinyinTokenFilter extends TokenFilter {
@@ -43,8 +40,9 @@ public class PinyinTokenFilter extends TokenFilter {
     protected int position = 0;
     protected int lastOffset = 0;
     private PinyinConfig config;
-    List<TermItem> candidate;
-    private HashSet<String> termsFilter;
+    CandidateBuffer candidates;
+    // id of this config in the term cache, 0 if the cache is disabled
+    private final int cacheConfigId;
 
     protected int candidateOffset = 0;
     StringBuilder firstLetters;
@@ -61,9 +59,9 @@ public class PinyinTokenFilter extends TokenFilter {
         if (!(config.keepFirstLetter || config.keepSeparateFirstLetter || config.keepFullPinyin || config.keepJoinedFullPinyin)) {
             throw new ConfigErrorException("pinyin config error, can't disable separate_first_letter, first_letter and full_pinyin at the same time.");
         }
-        candidate = new ArrayList<>();
+        candidates = new CandidateBuffer(config.lowercase, config.trimWhitespace, config.removeDuplicateTerm);
+        cacheConfigId = config.termCache ? PinyinTermCache.configId("pinyin:" + config.fingerprint()) : 0;
         firstLetters = new StringBuilder();
-        termsFilter = new HashSet<>();
         fullPinyinLetters = new StringBuilder();
     }
 
@@ -96,110 +94,46 @@ public class PinyinTokenFilter extends TokenFilter {
                 source = source.trim();
             }
 
-            List<String> pinyinList = Pinyin.pinyin(source);
-            if (pinyinList.size() == 0) return false;
-
-            StringBuilder buff = new StringBuilder();
-            int buffStartPosition = 0;
-            int buffSize = 0;
-            position = 0;
-
-            for (int i = 0; i < source.length(); i++) {
-                char c = source.charAt(i);
-
-                //keep original alphabet
-                if (c < 128) {
-                    if (buff.length() <= 0) {
-                        buffStartPosition = i;
-                    }
-                    if ((c > 96 && c < 123) || (c > 64 && c < 91) || (c > 47 && c < 58)) {
-                        if (config.keepNoneChinese) {
-                            if (config.keepNoneChinese) {
-                                if (config.keepNoneChineseTogether) {
-                                    buff.append(c);
-                                    buffSize++;
-                                } else {
-                                    addCandidate(new TermItem(String.valueOf(c), i, i + 1, buffStartPosition));
-                                }
-                            }
-                        }
-                        if (config.keepNoneChineseInFirstLetter) {
-                            firstLetters.append(c);
-                        }
-                        if (config.keepNoneChineseInJoinedFullPinyin) {
-                            fullPinyinLetters.append(c);
-                        }
-                    }
-                } else {
-                    //clean previous temp
-                    if (buff.length() > 0) {
-                        buffSize = parseBuff(buff, buffSize, buffStartPosition);
-                    }
-
-                    String pinyin = pinyinList.get(i);
-                    if (pinyin != null && pinyin.length() > 0) {
-                        position++;
-                        firstLetters.append(pinyin.charAt(0));
-                        if (config.keepSeparateFirstLetter & pinyin.length() > 1) {
-                            addCandidate(new TermItem(String.valueOf(pinyin.charAt(0)), i, i + 1, position));
-                        }
-                        if (config.keepFullPinyin) {
-                            addCandidate(new TermItem(pinyin, i, i + 1, position));
-                        }
-                        if (config.keepJoinedFullPinyin) {
-                            fullPinyinLetters.append(pinyin);
-                        }
-                    }
-                }
-
-                lastOffset = i;
-
-            }
-
-            //clean previous temp
-            if (buff.length() > 0) {
-                buffSize = parseBuff(buff, buffSize, buffStartPosition);
+            if (!loadCachedCandidates() && !generateCandidates()) {
+                return false;
             }
         }
 
 
         if (config.keepOriginal && !processedOriginal) {
             processedOriginal = true;
-            addCandidate(new TermItem(source, 0, source.length(), 1));
+            candidates.add(source, 0, source.length(), 1);
         }
 
         if (config.keepJoinedFullPinyin && !processedFullPinyinLetter && fullPinyinLetters.length() > 0) {
             processedFullPinyinLetter = true;
-            addCandidate(new TermItem(fullPinyinLetters.toString(), 0, source.length(), 1));
+            candidates.add(fullPinyinLetters, 0, source.length(), 1);
             fullPinyinLetters.setLength(0);
         }
 
 
         if (config.keepFirstLetter && firstLetters.length() > 0 && !processedFirstLetter) {
             processedFirstLetter = true;
-            String fl;
-            if (firstLetters.length() > config.LimitFirstLetterLength && config.LimitFirstLetterLength > 0) {
-                fl = firstLetters.substring(0, config.LimitFirstLetterLength);
-            } else {
-                fl = firstLetters.toString();
-            }
-            if (config.lowercase) {
-                fl = fl.toLowerCase();
+            int length = firstLetters.length();
+            if (length > config.LimitFirstLetterLength && config.LimitFirstLetterLength > 0) {
+                length = config.LimitFirstLetterLength;
             }
-            if (!(config.keepSeparateFirstLetter && fl.length() <= 1)) {
-                addCandidate(new TermItem(fl, 0, fl.length(), 1));
+            if (!(config.keepSeparateFirstLetter && length <= 1)) {
+                candidates.add(firstLetters, 0, length, 0, length, 1, 1);
             }
         }
 
         if (!processedSortCandidate) {
             processedSortCandidate = true;
-            Collections.sort(candidate);
+            candidates.sort();
+            if (cacheConfigId != 0 && PinyinTermCache.cacheable(source)) {
+                PinyinTermCache.INSTANCE.put(cacheConfigId, source, candidates, 0, 0, false);
+            }
         }
 
-        if (candidateOffset < candidate.size()) {
-            TermItem item = candidate.get(candidateOffset);
+        if (candidateOffset < candidates.size()) {
+            setTerm(candidateOffset);
             candidateOffset++;
-            setTerm(item.term, item.startOffset, item.endOffset, item.position);
             return true;
         }
 
@@ -208,62 +142,105 @@ public class PinyinTokenFilter extends TokenFilter {
     }
 
 
-    void addCandidate(TermItem item) {
-
-        String term = item.term;
-        if (config.lowercase) {
-            term = term.toLowerCase();
+    /**
+     * Takes the finished candidates of the source term from the term cache.
+     *
+     * @return false if the term is not cached
+     */
+    private boolean loadCachedCandidates() {
+        if (cacheConfigId == 0 || !PinyinTermCache.cacheable(source)) {
+            return false;
         }
-
-        if (config.trimWhitespace) {
-            term = term.trim();
-        }
-        item.term = term;
-
-        if (term.length() == 0) {
-            return;
-        }
-
-        //remove same term with same position
-        String fr=term+item.position;
-
-        //remove same term, regardless position
-        if (config.removeDuplicateTerm) {
-            fr=term;
+        PinyinTermCache.Entry entry = PinyinTermCache.INSTANCE.get(cacheConfigId, source);
+        if (entry == null) {
+            return false;
         }
+        candidates.load(entry.candidates);
+        // cached candidates are complete and already sorted
+        processedOriginal = true;
+        processedFullPinyinLetter = true;
+        processedFirstLetter = true;
+        processedSortCandidate = true;
+        return true;
+    }
 
-        if (termsFilter.contains(fr)) {
-            return;
-        }
-        termsFilter.add(fr);
+    /**
+     * Converts the source term and adds the candidates of its characters.
+     *
+     * @return false if the term has no pinyin at all
+     */
+    private boolean generateCandidates() {
+        List<String> pinyinList = Pinyin.pinyin(source);
+        if (pinyinList.size() == 0) return false;
+
+        StringBuilder buff = new StringBuilder();
+        int buffStartPosition = 0;
+        int buffSize = 0;
+        position = 0;
 
-        candidate.add(item);
-    }
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
 
+            //keep original alphabet
+            if (c < 128) {
+                if (buff.length() <= 0) {
+                    buffStartPosition = i;
+                }
+                if ((c > 96 && c < 123) || (c > 64 && c < 91) || (c > 47 && c < 58)) {
+                    if (config.keepNoneChinese) {
+                        if (config.keepNoneChinese) {
+                            if (config.keepNoneChineseTogether) {
+                                buff.append(c);
+                                buffSize++;
+                            } else {
+                                candidates.add(source, i, i + 1, i, i + 1, buffStartPosition, 1);
+                            }
+                        }
+                    }
+                    if (config.keepNoneChineseInFirstLetter) {
+                        firstLetters.append(c);
+                    }
+                    if (config.keepNoneChineseInJoinedFullPinyin) {
+                        fullPinyinLetters.append(c);
+                    }
+                }
+            } else {
+                //clean previous temp
+                if (buff.length() > 0) {
+                    buffSize = parseBuff(buff, buffSize, buffStartPosition);
+                }
 
-    void setTerm(String term, int startOffset, int endOffset, int position) {
-        if (config.lowercase) {
-            term = term.toLowerCase();
-        }
+                String pinyin = pinyinList.get(i);
+                if (pinyin != null && pinyin.length() > 0) {
+                    position++;
+                    firstLetters.append(pinyin.charAt(0));
+                    if (config.keepSeparateFirstLetter & pinyin.length() > 1) {
+                        candidates.add(pinyin, 0, 1, i, i + 1, position, 1);
+                    }
+                    if (config.keepFullPinyin) {
+                        candidates.add(pinyin, i, i + 1, position);
+                    }
+                    if (config.keepJoinedFullPinyin) {
+                        fullPinyinLetters.append(pinyin);
+                    }
+                }
+            }
 
-        if (config.trimWhitespace) {
-            term = term.trim();
-        }
+            lastOffset = i;
 
-        //ignore empty term
-        if(term.length()==0){
-            return;
         }
 
-        termAtt.setEmpty();
-        termAtt.append(term);
-        if (startOffset < 0) {
-            startOffset = 0;
-        }
-        if (endOffset < startOffset) {
-            endOffset = startOffset + term.length();
+        //clean previous temp
+        if (buff.length() > 0) {
+            buffSize = parseBuff(buff, buffSize, buffStartPosition);
         }
+        return true;
+    }
 
+    void setTerm(int rank) {
+        int length = candidates.length(rank);
+        termAtt.copyBuffer(candidates.chars(), candidates.start(rank), length);
+        int position = candidates.position(rank);
         int offset = position - lastIncrementPosition;
         if (offset < 0) {
             offset = 0;
@@ -286,11 +263,11 @@ public class PinyinTokenFilter extends TokenFilter {
                     } else {
                         end = start + t.length();
                     }
-                    addCandidate(new TermItem(result.get(i), start, end, ++position));
+                    candidates.add(result.get(i), start, end, ++position);
                     start = end;
                 }
             } else if (config.keepFirstLetter || config.keepSeparateFirstLetter || config.keepFullPinyin || !config.keepNoneChineseInJoinedFullPinyin) {
-                addCandidate(new TermItem(buff.toString(), lastOffset - buffSize, lastOffset, ++position));
+                candidates.add(buff, lastOffset - buffSize, lastOffset, ++position);
             }
         }
 
@@ -307,16 +284,16 @@ public class PinyinTokenFilter extends TokenFilter {
     void resetVariable() {
         position = 0;
         lastOffset = 0;
-        candidate.clear();
+        candidates.clear();
         this.processedCandidate = false;
         this.processedFirstLetter = false;
         this.processedFullPinyinLetter = false;
         this.processedOriginal = false;
+        this.processedSortCandidate = false;
         firstLetters.setLength(0);
         fullPinyinLetters.setLength(0);
         source = null;
         candidateOffset = 0;
-        termsFilter.clear();
         lastIncrementPosition = 0;
     }
 
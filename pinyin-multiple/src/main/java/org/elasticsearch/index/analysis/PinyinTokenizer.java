@@ -8,9 +8,6 @@ import org.elasticsearch.analysis.PinyinConfig;
 import org.nlpcn.commons.lang.pinyin.Pinyin;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 
 
@@ -30,9 +27,8 @@ public class PinyinTokenizer extends Tokenizer {
     private OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
     private PositionIncrementAttribute positionAttr = addAttribute(PositionIncrementAttribute.class);
     private PinyinConfig config;
-    ArrayList<TermItem> candidate;
+    CandidateBuffer candidates;
     protected int candidateOffset = 0; //indicate candidates process offset
-    private HashSet<String> termsFilter;
     StringBuilder firstLetters;
     StringBuilder fullPinyinLetters;
 
@@ -48,8 +44,7 @@ public class PinyinTokenizer extends Tokenizer {
         if (!(config.keepFirstLetter || config.keepSeparateFirstLetter || config.keepFullPinyin || config.keepJoinedFullPinyin)) {
             throw new ConfigErrorException("pinyin config error, can't disable separate_first_letter, first_letter and full_pinyin at the same time.");
         }
-        candidate = new ArrayList<>();
-        termsFilter = new HashSet<>();
+        candidates = new CandidateBuffer(config.lowercase, config.trimWhitespace, config.removeDuplicateTerm);
         firstLetters = new StringBuilder();
         fullPinyinLetters = new StringBuilder();
     }
@@ -59,66 +54,23 @@ public class PinyinTokenizer extends Tokenizer {
         termAtt.resizeBuffer(bufferSize);
     }
 
-    void addCandidate(TermItem item) {
-
-        String term = item.term;
-        if (config.lowercase) {
-            term = term.toLowerCase();
-        }
-
-        if (config.trimWhitespace) {
-            term = term.trim();
-        }
-        item.term = term;
-
-        if (term.length() == 0) {
-            return;
-        }
-
-        //remove same term with same position
-        String fr=term+item.position;
-
-        //remove same term, regardless position
-        if (config.removeDuplicateTerm) {
-            fr=term;
-        }
-
-        if (termsFilter.contains(fr)) {
-            return;
-        }
-        termsFilter.add(fr);
-
-        candidate.add(item);
-    }
-
-
-    void setTerm(String term, int startOffset, int endOffset, int position) {
-        if (config.lowercase) {
-            term = term.toLowerCase();
-        }
-
-        if (config.trimWhitespace) {
-            term = term.trim();
-        }
-
-        //ignore empty term
-        if(term.length()==0){
-            return;
-        }
-
-        termAtt.setEmpty();
-        termAtt.append(term);
+    void setTerm(int rank) {
+        int length = candidates.length(rank);
+        termAtt.copyBuffer(candidates.chars(), candidates.start(rank), length);
+        int startOffset = candidates.startOffset(rank);
+        int endOffset = candidates.endOffset(rank);
         if (startOffset < 0) {
             startOffset = 0;
         }
         if (endOffset < startOffset) {
-            endOffset = startOffset + term.length();
+            endOffset = startOffset + length;
         }
 
         if(!config.ignorePinyinOffset){
             offsetAtt.setOffset(correctOffset(startOffset), correctOffset(endOffset));
         }
 
+        int position = candidates.position(rank);
         int offset = position - lastIncrementPosition;
         if (offset < 0) {
             offset = 0;
@@ -173,7 +125,7 @@ public class PinyinTokenizer extends Tokenizer {
                                         buff.append(c);
                                         buffSize++;
                                     } else {
-                                        addCandidate(new TermItem(String.valueOf(c), i, i + 1, buffStartPosition));
+                                        candidates.add(source, i, i + 1, i, i + 1, buffStartPosition, 1);
                                     }
                                 }
                             }
@@ -196,10 +148,10 @@ public class PinyinTokenizer extends Tokenizer {
                             position++;
                             firstLetters.append(pinyin.charAt(0));
                             if (config.keepSeparateFirstLetter & pinyin.length() > 1) {
-                                addCandidate(new TermItem(String.valueOf(pinyin.charAt(0)), i, i + 1, position));
+                                candidates.add(pinyin, 0, 1, i, i + 1, position, 1);
                             }
                             if (config.keepFullPinyin) {
-                                addCandidate(new TermItem(pinyin, i, i + 1, position));
+                                candidates.add(pinyin, i, i + 1, position);
                             }
                             if (config.keepJoinedFullPinyin) {
                                 fullPinyinLetters.append(pinyin);
@@ -219,41 +171,35 @@ public class PinyinTokenizer extends Tokenizer {
 
             if (config.keepOriginal && !processedOriginal) {
                 processedOriginal = true;
-                addCandidate(new TermItem(source, 0, source.length(), 1));
+                candidates.add(source, 0, source.length(), 1);
             }
 
             if (config.keepJoinedFullPinyin && !processedFullPinyinLetter && fullPinyinLetters.length() > 0) {
                 processedFullPinyinLetter = true;
-                addCandidate(new TermItem(fullPinyinLetters.toString(), 0, source.length(), 1));
+                candidates.add(fullPinyinLetters, 0, source.length(), 1);
                 fullPinyinLetters.setLength(0);
             }
 
 
             if (config.keepFirstLetter && firstLetters.length() > 0 && !processedFirstLetter) {
                 processedFirstLetter = true;
-                String fl;
-                if (firstLetters.length() > config.LimitFirstLetterLength && config.LimitFirstLetterLength > 0) {
-                    fl = firstLetters.substring(0, config.LimitFirstLetterLength);
-                } else {
-                    fl = firstLetters.toString();
-                }
-                if (config.lowercase) {
-                    fl = fl.toLowerCase();
+                int length = firstLetters.length();
+                if (length > config.LimitFirstLetterLength && config.LimitFirstLetterLength > 0) {
+                    length = config.LimitFirstLetterLength;
                 }
-                if (!(config.keepSeparateFirstLetter && fl.length() <= 1)) {
-                    addCandidate(new TermItem(fl, 0, fl.length(), 1));
+                if (!(config.keepSeparateFirstLetter && length <= 1)) {
+                    candidates.add(firstLetters, 0, length, 0, length, 1, 1);
                 }
             }
 
             if (!processedSortCandidate) {
                 processedSortCandidate = true;
-                Collections.sort(candidate);
+                candidates.sort();
             }
 
-            if (candidateOffset < candidate.size()) {
-                TermItem item = candidate.get(candidateOffset);
+            if (candidateOffset < candidates.size()) {
+                setTerm(candidateOffset);
                 candidateOffset++;
-                setTerm(item.term, item.startOffset, item.endOffset, item.position);
                 return true;
             }
 
@@ -277,11 +223,11 @@ public class PinyinTokenizer extends Tokenizer {
                     } else {
                         end = start + t.length();
                     }
-                    addCandidate(new TermItem(result.get(i), start, end, ++position));
+                    candidates.add(result.get(i), start, end, ++position);
                     start = end;
                 }
             } else if (config.keepFirstLetter || config.keepSeparateFirstLetter || config.keepFullPinyin || !config.keepNoneChineseInJoinedFullPinyin) {
-                addCandidate(new TermItem(buff.toString(), lastOffset - buffSize, lastOffset, ++position));
+                candidates.add(buff, lastOffset - buffSize, lastOffset, ++position);
             }
         }
 
@@ -305,10 +251,10 @@ public class PinyinTokenizer extends Tokenizer {
         this.processedFirstLetter = false;
         this.processedFullPinyinLetter = false;
         this.processedOriginal = false;
+        this.processedSortCandidate = false;
         firstLetters.setLength(0);
         fullPinyinLetters.setLength(0);
-        termsFilter.clear();
-        candidate.clear();
+        candidates.clear();
         source = null;
         lastIncrementPosition = 0;
     }
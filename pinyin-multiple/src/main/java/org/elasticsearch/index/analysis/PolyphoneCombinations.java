@@ -0,0 +1,187 @@
+package org.elasticsearch.index.analysis;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Joined full pinyin or first letter combinations of one term, built character by character.
+ * <p>
+ * The readings of a polyphonic character are ranked by their order in pinyin.txt, the most common
+ * reading first, and a combination costs the sum of the ranks of its readings. After every character
+ * only the {@code maxCombinations} cheapest combinations are kept (a beam), so a term with many
+ * polyphonic characters yields its likeliest readings instead of the whole cartesian product, and
+ * {@link #isTruncated()} tells whether any combination was dropped. Readings that extend a combination
+ * by the same text (first letters of "de" and "di") are only expanded once.
+ */
+final class PolyphoneCombinations {
+
+    private final boolean firstLetter;
+
+    // <= 0 means unbounded
+    private final int maxCombinations;
+
+    // first letters are cut to limit_first_letter_length anyway, no need to expand past it, <= 0 means unbounded
+    private final int maxLength;
+
+    private final List<StringBuilder> combinations = new ArrayList<>();
+
+    private int[] costs = new int[8];
+
+    private boolean truncated = false;
+
+    // distinct extensions of the current character and the rank of their first reading
+    private String[] parts = new String[4];
+    private int[] partRanks = new int[4];
+
+    // (cost << 32 | parent * parts + part) of every expanded child, sorted to pick the cheapest
+    private long[] children = new long[16];
+
+    PolyphoneCombinations(boolean firstLetter, int maxCombinations, int maxLength) {
+        this.firstLetter = firstLetter;
+        this.maxCombinations = maxCombinations;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Appends a character that is kept as is (letters and digits of the term).
+     */
+    void append(char c) {
+        if (isFull()) {
+            return;
+        }
+        if (combinations.isEmpty()) {
+            combinations.add(new StringBuilder().append(c));
+            costs[0] = 0;
+            return;
+        }
+        for (int i = 0; i < combinations.size(); i++) {
+            combinations.get(i).append(c);
+        }
+    }
+
+    /**
+     * Appends a Chinese character given its readings, most common first.
+     */
+    void append(String[] readings) {
+        if (isFull()) {
+            return;
+        }
+        int partCount = 0;
+        for (int r = 0; r < readings.length; r++) {
+            if (readings[r].length() == 0) {
+                continue;
+            }
+            String part = firstLetter ? readings[r].substring(0, 1) : readings[r];
+            if (!containsPart(part, partCount)) {
+                if (partCount == parts.length) {
+                    parts = Arrays.copyOf(parts, partCount * 2);
+                    partRanks = Arrays.copyOf(partRanks, partCount * 2);
+                }
+                parts[partCount] = part;
+                partRanks[partCount] = r;
+                partCount++;
+            }
+        }
+        if (partCount == 0) {
+            return;
+        }
+        if (combinations.isEmpty()) {
+            combinations.add(new StringBuilder());
+            costs[0] = 0;
+        }
+        if (partCount == 1) {
+            for (int i = 0; i < combinations.size(); i++) {
+                combinations.get(i).append(parts[0]);
+                costs[i] += partRanks[0];
+            }
+            return;
+        }
+        expand(partCount);
+    }
+
+    private void expand(int partCount) {
+        int parents = combinations.size();
+        int total = parents * partCount;
+        if (children.length < total) {
+            children = new long[Math.max(total, children.length * 2)];
+        }
+        for (int p = 0; p < parents; p++) {
+            for (int part = 0; part < partCount; part++) {
+                int child = p * partCount + part;
+                children[child] = ((long) (costs[p] + partRanks[part]) << 32) | child;
+            }
+        }
+        int keep = total;
+        if (maxCombinations > 0 && total > maxCombinations) {
+            // ties keep the order of the full product, so the result does not depend on the sort
+            Arrays.sort(children, 0, total);
+            keep = maxCombinations;
+            truncated = true;
+        }
+
+        List<StringBuilder> expanded = new ArrayList<>(keep);
+        int[] expandedCosts = new int[Math.max(keep, 8)];
+        for (int i = 0; i < keep; i++) {
+            int child = (int) children[i];
+            int parent = child / partCount;
+            int part = child % partCount;
+            expanded.add(new StringBuilder(combinations.get(parent)).append(parts[part]));
+            expandedCosts[i] = (int) (children[i] >>> 32);
+        }
+        combinations.clear();
+        combinations.addAll(expanded);
+        costs = expandedCosts;
+    }
+
+    private boolean containsPart(String part, int partCount) {
+        for (int i = 0; i < partCount; i++) {
+            if (parts[i].equals(part)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // all first letter combinations have the same length
+    private boolean isFull() {
+        return maxLength > 0 && !combinations.isEmpty() && combinations.get(0).length() >= maxLength;
+    }
+
+    int size() {
+        return combinations.size();
+    }
+
+    StringBuilder get(int index) {
+        return combinations.get(index);
+    }
+
+    /**
+     * @return whether combinations were dropped to stay within max_polyphone_combinations
+     */
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    void clear() {
+        combinations.clear();
+        truncated = false;
+    }
+}
@@ -0,0 +1,100 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Candidates as term@position, in rank order.
+ */
+public class CandidateBufferTest {
+
+    @Test
+    public void duplicatesAreRejectedPerPosition() {
+        CandidateBuffer buffer = new CandidateBuffer(true, true, false);
+        Assert.assertTrue(buffer.add("liu", 0, 1, 1));
+        Assert.assertFalse(buffer.add("liu", 0, 1, 1));
+        Assert.assertFalse(buffer.add(" LIU ", 0, 1, 1));
+        Assert.assertTrue(buffer.add("liu", 1, 2, 2));
+        // the old "term + position" keys made these two the same
+        Assert.assertTrue(buffer.add("a1", 0, 1, 1));
+        Assert.assertTrue(buffer.add("a", 0, 1, 11));
+
+        Assert.assertEquals(Arrays.asList("liu@1", "liu@2", "a1@1", "a@11"), terms(buffer));
+    }
+
+    @Test
+    public void duplicatesIgnoreThePositionWithRemoveDuplicatedTerm() {
+        CandidateBuffer buffer = new CandidateBuffer(true, true, true);
+        Assert.assertTrue(buffer.add("liu", 0, 1, 1));
+        Assert.assertFalse(buffer.add("liu", 1, 2, 2));
+
+        Assert.assertEquals(Arrays.asList("liu@1"), terms(buffer));
+    }
+
+    @Test
+    public void termsAreTrimmedAndLowercased() {
+        CandidateBuffer buffer = new CandidateBuffer(true, true, false);
+        Assert.assertFalse(buffer.add("  ", 0, 1, 1));
+        Assert.assertTrue(buffer.add(" Liu De ", 0, 1, 1));
+        Assert.assertTrue(buffer.add(new StringBuilder("xLDHx"), 1, 4, 0, 3, 1, 1));
+
+        Assert.assertEquals(Arrays.asList("liu de@1", "ldh@1"), terms(buffer));
+
+        CandidateBuffer kept = new CandidateBuffer(false, false, false);
+        Assert.assertTrue(kept.add(" Liu ", 0, 1, 1));
+        Assert.assertEquals(Arrays.asList(" Liu @1"), terms(kept));
+    }
+
+    @Test
+    public void duplicatesAreFoundAfterTheTableGrows() {
+        CandidateBuffer buffer = new CandidateBuffer(true, true, false);
+        for (int i = 0; i < 200; i++) {
+            Assert.assertTrue(buffer.add("t" + i, 0, 1, i % 7));
+        }
+        for (int i = 0; i < 200; i++) {
+            Assert.assertFalse(buffer.add("t" + i, 0, 1, i % 7));
+        }
+        Assert.assertEquals(200, buffer.size());
+    }
+
+    @Test
+    public void sortIsStableByPosition() {
+        CandidateBuffer buffer = new CandidateBuffer(true, true, false);
+        buffer.add("b", 0, 1, 2);
+        buffer.add("a", 0, 1, 1);
+        buffer.add("c", 0, 1, 2);
+        buffer.add("ldh", 0, 3, 1);
+        buffer.add("z", 0, 1, 0);
+
+        // ranks follow the insertion order until sorted
+        Assert.assertEquals(Arrays.asList("b@2", "a@1", "c@2", "ldh@1", "z@0"), terms(buffer));
+        buffer.sort();
+        Assert.assertEquals(Arrays.asList("z@0", "a@1", "ldh@1", "b@2", "c@2"), terms(buffer));
+    }
+
+    @Test
+    public void clearedBufferIsReused() {
+        CandidateBuffer buffer = new CandidateBuffer(true, true, false);
+        buffer.add("liu", 0, 1, 2);
+        buffer.add("de", 1, 2, 1);
+        buffer.sort();
+        buffer.clear();
+
+        Assert.assertEquals(0, buffer.size());
+        Assert.assertTrue(buffer.add("liu", 0, 1, 2));
+        Assert.assertTrue(buffer.add("hua", 2, 3, 3));
+        Assert.assertEquals(Arrays.asList("liu@2", "hua@3"), terms(buffer));
+    }
+
+    private static List<String> terms(CandidateBuffer buffer) {
+        List<String> terms = new ArrayList<>();
+        for (int rank = 0; rank < buffer.size(); rank++) {
+            terms.add(new String(buffer.chars(), buffer.start(rank), buffer.length(rank)) + "@" + buffer.position(rank));
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,121 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.elasticsearch.analysis.PinyinConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tokens of multiple_pinyin as term:position:positionLength.
+ */
+public class MultiplePinyinTokenFilterTest {
+
+    @Test
+    public void stackedReadingsShareTheCharacterPosition() throws IOException {
+        PinyinConfig config = stackedConfig();
+        config.keepFirstLetter = false;
+
+        List<String> tokens = analyze(config, "重庆");
+        assertStacked(tokens, "zhong", "chong");
+        Assert.assertTrue(tokens.contains("qing:2:1"));
+    }
+
+    @Test
+    public void joinedTermsKeepTheMostCommonReadingAndSpanTheTerm() throws IOException {
+        PinyinConfig config = stackedConfig();
+        config.keepOriginal = true;
+
+        List<String> tokens = analyze(config, "重庆");
+        Assert.assertTrue(tokens.toString(), tokens.contains("zhongqing:1:2"));
+        Assert.assertTrue(tokens.toString(), tokens.contains("zq:1:2"));
+        Assert.assertTrue(tokens.toString(), tokens.contains("重庆:1:2"));
+        Assert.assertFalse(tokens.toString(), tokens.contains("chongqing:1:2"));
+        Assert.assertFalse(tokens.toString(), tokens.contains("cq:1:2"));
+    }
+
+    @Test
+    public void separateFirstLettersAreStacked() throws IOException {
+        PinyinConfig config = stackedConfig();
+        config.keepFullPinyin = false;
+        config.keepJoinedFullPinyin = false;
+        config.keepFirstLetter = false;
+        config.keepSeparateFirstLetter = true;
+
+        List<String> tokens = analyze(config, "重庆");
+        assertStacked(tokens, "z", "c");
+        Assert.assertTrue(tokens.toString(), tokens.contains("q:2:1"));
+    }
+
+    @Test
+    public void withoutStackingJoinedTermsEnumerateTheReadings() throws IOException {
+        PinyinConfig config = stackedConfig();
+        config.stackPolyphoneReadings = false;
+
+        List<String> tokens = analyze(config, "重庆");
+        Assert.assertTrue(tokens.toString(), tokens.contains("zhongqing:1:1"));
+        Assert.assertTrue(tokens.toString(), tokens.contains("chongqing:1:1"));
+        Assert.assertFalse(tokens.toString(), tokens.contains("chong:1:1"));
+    }
+
+    @Test
+    public void everyTermOfAStreamIsSortedByPosition() throws IOException {
+        PinyinConfig config = new PinyinConfig();
+        config.keepJoinedFullPinyin = true;
+        config.keepOriginal = true;
+
+        TokenStream input = new WhitespaceAnalyzer().tokenStream("f", new StringReader("刘德华 重庆"));
+        // the terms spanning a whole input term start at its first position, also for the second term
+        Assert.assertEquals(Arrays.asList("liu:1:1", "刘德华:1:1", "liudehua:1:1", "ldh:1:1", "de:2:1", "hua:3:1",
+                "zhong chong:4:1", "重庆:4:1", "zhongqing:4:1", "chongqing:4:1", "zq:4:1", "cq:4:1", "qing:5:1"),
+                analyze(new MultiplePinyinTokenFilter(input, config)));
+    }
+
+    private static PinyinConfig stackedConfig() {
+        PinyinConfig config = new PinyinConfig();
+        config.keepFirstLetter = true;
+        config.keepFullPinyin = true;
+        config.keepJoinedFullPinyin = true;
+        config.keepOriginal = false;
+        config.stackPolyphoneReadings = true;
+        return config;
+    }
+
+    // both readings at the position of the character, the most common one first
+    private static void assertStacked(List<String> tokens, String first, String second) {
+        int firstIndex = tokens.indexOf(first + ":1:1");
+        int secondIndex = tokens.indexOf(second + ":1:1");
+        Assert.assertTrue(tokens.toString(), firstIndex >= 0 && secondIndex > firstIndex);
+    }
+
+    private static List<String> analyze(PinyinConfig config, String text) throws IOException {
+        return analyze(new MultiplePinyinTokenFilter(new KeywordAnalyzer().tokenStream("f", new StringReader(text)), config));
+    }
+
+    // term:position:positionLength of every token
+    static List<String> analyze(TokenStream filter) throws IOException {
+        CharTermAttribute term = filter.addAttribute(CharTermAttribute.class);
+        PositionIncrementAttribute increment = filter.addAttribute(PositionIncrementAttribute.class);
+        PositionLengthAttribute length = filter.addAttribute(PositionLengthAttribute.class);
+        List<String> tokens = new ArrayList<>();
+        int position = 0;
+        filter.reset();
+        while (filter.incrementToken()) {
+            position += increment.getPositionIncrement();
+            tokens.add(term + ":" + position + ":" + length.getPositionLength());
+        }
+        filter.end();
+        filter.close();
+        return tokens;
+    }
+}
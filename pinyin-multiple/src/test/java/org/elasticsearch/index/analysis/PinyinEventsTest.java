@@ -0,0 +1,120 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.elasticsearch.analysis.PinyinConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The candidates JFR event of multiple_pinyin: one per input term, off unless a recording enables it.
+ */
+public class PinyinEventsTest {
+
+    private static final String CANDIDATES = "org.elasticsearch.pinyin.Candidates";
+
+    @Test
+    public void oneEventPerInputTerm() throws IOException {
+        PinyinConfig config = config();
+        List<String> tokens = new ArrayList<>();
+        List<RecordedEvent> events = record(() -> tokens.addAll(analyze(new MultiplePinyinTokenFilter(
+                new WhitespaceAnalyzer().tokenStream("f", new StringReader("重庆 刘德华")), config))));
+
+        Assert.assertEquals(2, events.size());
+        RecordedEvent first = events.get(0);
+        Assert.assertEquals(2, first.getInt("termLength"));
+        // zhongqing / chongqing and zq / cq
+        Assert.assertEquals(2, first.getInt("fullPinyinCombinations"));
+        Assert.assertEquals(2, first.getInt("firstLetterCombinations"));
+        Assert.assertFalse(first.getBoolean("truncated"));
+        Assert.assertFalse(first.getBoolean("cached"));
+        Assert.assertEquals(3, events.get(1).getInt("termLength"));
+        Assert.assertEquals(tokens.size(), first.getInt("candidates") + events.get(1).getInt("candidates"));
+    }
+
+    @Test
+    public void truncatedCombinationsAreReported() throws IOException {
+        PinyinConfig config = config();
+        config.maxPolyphoneCombinations = 1;
+        List<RecordedEvent> events = record(() -> analyze(config, "重庆"));
+
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals(1, events.get(0).getInt("fullPinyinCombinations"));
+        Assert.assertTrue(events.get(0).getBoolean("truncated"));
+    }
+
+    @Test
+    public void cachedTermsAreMarked() throws IOException {
+        PinyinConfig config = config();
+        config.termCache = true;
+        config.keepOriginal = true;
+        List<RecordedEvent> events = record(() -> {
+            analyze(config, "重庆银行");
+            analyze(config, "重庆银行");
+        });
+
+        Assert.assertEquals(2, events.size());
+        Assert.assertFalse(events.get(0).getBoolean("cached"));
+        Assert.assertTrue(events.get(1).getBoolean("cached"));
+        Assert.assertEquals(events.get(0).getInt("candidates"), events.get(1).getInt("candidates"));
+    }
+
+    @Test
+    public void noEventWithoutRecording() {
+        Assert.assertFalse(PinyinEvents.candidatesEnabled());
+    }
+
+    private static PinyinConfig config() {
+        PinyinConfig config = new PinyinConfig();
+        config.keepFirstLetter = true;
+        config.keepFullPinyin = true;
+        config.keepJoinedFullPinyin = true;
+        config.keepOriginal = false;
+        config.termCache = false;
+        return config;
+    }
+
+    private static List<String> analyze(PinyinConfig config, String text) {
+        return analyze(new MultiplePinyinTokenFilter(new KeywordAnalyzer().tokenStream("f", new StringReader(text)), config));
+    }
+
+    // for use inside the recorded action, which cannot throw
+    private static List<String> analyze(MultiplePinyinTokenFilter filter) {
+        try {
+            return MultiplePinyinTokenFilterTest.analyze(filter);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static List<RecordedEvent> record(Runnable action) throws IOException {
+        Path file = Files.createTempFile("pinyin-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(CANDIDATES);
+            recording.start();
+            Assert.assertTrue(PinyinEvents.candidatesEnabled());
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().equals(CANDIDATES)) {
+                    events.add(event);
+                }
+            }
+            return events;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.elasticsearch.analysis.PinyinConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.elasticsearch.index.analysis.MultiplePinyinTokenFilterTest.analyze;
+
+/**
+ * Terms served from the term cache must be the terms the filter generates without it.
+ */
+public class PinyinTermCacheTest {
+
+    @Test
+    public void cachedTermsMatchFreshTerms() throws IOException {
+        PinyinConfig config = config();
+        config.keepJoinedFullPinyin = true;
+        config.maxPolyphoneCombinations = 3;
+        String text = "长乐银行ab12";
+        int configId = PinyinTermCache.configId("multiple_pinyin:" + config.fingerprint());
+
+        List<String> fresh = analyze(multiple(uncached(config), text));
+        Assert.assertTrue(fresh.size() > 1);
+        Assert.assertEquals(fresh, analyze(multiple(config, text)));
+        Assert.assertNotNull(PinyinTermCache.INSTANCE.get(configId, text));
+        // served from the cache from now on
+        Assert.assertEquals(fresh, analyze(multiple(config, text)));
+        Assert.assertEquals(fresh, analyze(multiple(config, text)));
+    }
+
+    @Test
+    public void cachedStackedReadingsKeepTheirPositions() throws IOException {
+        PinyinConfig config = config();
+        config.keepJoinedFullPinyin = true;
+        config.keepOriginal = true;
+        config.stackPolyphoneReadings = true;
+        String text = "重庆银行";
+
+        List<String> fresh = analyze(multiple(uncached(config), text));
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(fresh, analyze(multiple(config, text)));
+        }
+    }
+
+    @Test
+    public void configsDoNotShareTerms() throws IOException {
+        String text = "重庆大厦";
+        PinyinConfig joined = config();
+        joined.keepJoinedFullPinyin = true;
+        PinyinConfig stacked = config();
+        stacked.keepJoinedFullPinyin = true;
+        stacked.stackPolyphoneReadings = true;
+
+        for (int i = 0; i < 3; i++) {
+            analyze(multiple(joined, text));
+            analyze(pinyin(joined, text));
+        }
+        Assert.assertEquals(analyze(multiple(uncached(stacked), text)), analyze(multiple(stacked, text)));
+        Assert.assertEquals(analyze(pinyin(uncached(joined), text)), analyze(pinyin(joined, text)));
+        Assert.assertEquals(analyze(multiple(uncached(joined), text)), analyze(multiple(joined, text)));
+    }
+
+    @Test
+    public void longTermsAreNotCached() throws IOException {
+        PinyinConfig config = config();
+        StringBuilder text = new StringBuilder();
+        while (text.length() <= PinyinTermCache.MAX_TERM_LENGTH) {
+            text.append("银行");
+        }
+        int configId = PinyinTermCache.configId("multiple_pinyin:" + config.fingerprint());
+
+        Assert.assertEquals(analyze(multiple(uncached(config), text.toString())), analyze(multiple(config, text.toString())));
+        Assert.assertNull(PinyinTermCache.INSTANCE.get(configId, text.toString()));
+    }
+
+    @Test
+    public void configIdsFollowTheFingerprint() {
+        PinyinConfig config = config();
+        PinyinConfig same = config();
+        PinyinConfig other = config();
+        other.stackPolyphoneReadings = true;
+
+        Assert.assertEquals(PinyinTermCache.configId(config.fingerprint()), PinyinTermCache.configId(same.fingerprint()));
+        Assert.assertFalse(PinyinTermCache.configId(config.fingerprint()) == PinyinTermCache.configId(other.fingerprint()));
+    }
+
+    private static PinyinConfig config() {
+        PinyinConfig config = new PinyinConfig();
+        config.keepFirstLetter = true;
+        config.keepFullPinyin = true;
+        config.termCache = true;
+        return config;
+    }
+
+    private static PinyinConfig uncached(PinyinConfig config) {
+        PinyinConfig uncached = new PinyinConfig();
+        uncached.keepFirstLetter = config.keepFirstLetter;
+        uncached.keepFullPinyin = config.keepFullPinyin;
+        uncached.keepJoinedFullPinyin = config.keepJoinedFullPinyin;
+        uncached.keepOriginal = config.keepOriginal;
+        uncached.maxPolyphoneCombinations = config.maxPolyphoneCombinations;
+        uncached.stackPolyphoneReadings = config.stackPolyphoneReadings;
+        uncached.termCache = false;
+        Assert.assertEquals(config.fingerprint(), uncached.fingerprint());
+        return uncached;
+    }
+
+    private static TokenStream multiple(PinyinConfig config, String text) {
+        return new MultiplePinyinTokenFilter(new KeywordAnalyzer().tokenStream("f", new StringReader(text)), config);
+    }
+
+    private static TokenStream pinyin(PinyinConfig config, String text) {
+        return new PinyinTokenFilter(new KeywordAnalyzer().tokenStream("f", new StringReader(text)), config);
+    }
+}
@@ -0,0 +1,32 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.elasticsearch.analysis.PinyinConfig;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.elasticsearch.index.analysis.MultiplePinyinTokenFilterTest.analyze;
+
+/**
+ * Tokens of pinyin as term:position:positionLength.
+ */
+public class PinyinTokenFilterTest {
+
+    @Test
+    public void everyTermOfAStreamIsSortedByPosition() throws IOException {
+        PinyinConfig config = new PinyinConfig();
+        config.keepJoinedFullPinyin = true;
+        config.keepOriginal = true;
+
+        TokenStream input = new WhitespaceAnalyzer().tokenStream("f", new StringReader("刘德华 重庆"));
+        // the terms spanning a whole input term start at its first position, also for the second term
+        Assert.assertEquals(Arrays.asList("liu:1:1", "刘德华:1:1", "liudehua:1:1", "ldh:1:1", "de:2:1", "hua:3:1",
+                "chong:4:1", "重庆:4:1", "chongqing:4:1", "cq:4:1", "qing:5:1"),
+                analyze(new PinyinTokenFilter(input, config)));
+    }
+}
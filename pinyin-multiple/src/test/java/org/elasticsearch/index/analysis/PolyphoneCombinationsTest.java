@@ -0,0 +1,93 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Beam of joined polyphone combinations: cheapest readings first, ties in product order.
+ */
+public class PolyphoneCombinationsTest {
+
+    @Test
+    public void unboundedKeepsTheWholeProduct() {
+        PolyphoneCombinations combinations = new PolyphoneCombinations(false, 0, 0);
+        combinations.append(new String[]{"zhang", "chang"});
+        combinations.append(new String[]{"le", "yue"});
+        combinations.append('a');
+
+        Assert.assertEquals(Arrays.asList("zhanglea", "zhangyuea", "changlea", "changyuea"),
+                list(combinations));
+        Assert.assertFalse(combinations.isTruncated());
+    }
+
+    @Test
+    public void beamKeepsTheCheapestCombinations() {
+        PolyphoneCombinations combinations = new PolyphoneCombinations(false, 3, 0);
+        combinations.append(new String[]{"a0", "a1"});
+        combinations.append(new String[]{"b0", "b1", "b2"});
+
+        // costs 0, 1, 1, 2, 2, 3: the two combinations of cost 1 keep their order in the product
+        Assert.assertEquals(Arrays.asList("a0b0", "a0b1", "a1b0"), list(combinations));
+        Assert.assertTrue(combinations.isTruncated());
+
+        combinations.append(new String[]{"c0", "c1"});
+        // a0b0c0 = 0, a0b0c1 = 1, a0b1c0 = 1, a1b0c0 = 1, the last one is dropped
+        Assert.assertEquals(Arrays.asList("a0b0c0", "a0b0c1", "a0b1c0"), list(combinations));
+    }
+
+    @Test
+    public void beamOfOneKeepsTheMostCommonReadings() {
+        PolyphoneCombinations combinations = new PolyphoneCombinations(false, 1, 0);
+        combinations.append(new String[]{"zhong", "chong"});
+        combinations.append(new String[]{"qing"});
+        combinations.append(new String[]{"hang", "xing"});
+
+        Assert.assertEquals(Arrays.asList("zhongqinghang"), list(combinations));
+        Assert.assertTrue(combinations.isTruncated());
+    }
+
+    @Test
+    public void notTruncatedWithinTheLimit() {
+        PolyphoneCombinations combinations = new PolyphoneCombinations(false, 4, 0);
+        combinations.append(new String[]{"a0", "a1"});
+        combinations.append(new String[]{"b0", "b1"});
+
+        Assert.assertEquals(Arrays.asList("a0b0", "a0b1", "a1b0", "a1b1"), list(combinations));
+        Assert.assertFalse(combinations.isTruncated());
+
+        combinations.clear();
+        Assert.assertEquals(0, combinations.size());
+        Assert.assertFalse(combinations.isTruncated());
+    }
+
+    @Test
+    public void sameFirstLetterIsExpandedOnce() {
+        PolyphoneCombinations combinations = new PolyphoneCombinations(true, 0, 0);
+        combinations.append(new String[]{"de", "di"});
+        combinations.append(new String[]{"zhong", "chong"});
+
+        Assert.assertEquals(Arrays.asList("dz", "dc"), list(combinations));
+    }
+
+    @Test
+    public void firstLettersStopAtTheMaxLength() {
+        PolyphoneCombinations combinations = new PolyphoneCombinations(true, 0, 2);
+        combinations.append(new String[]{"liu"});
+        combinations.append('d');
+        combinations.append(new String[]{"hang", "xing"});
+
+        Assert.assertEquals(Arrays.asList("ld"), list(combinations));
+    }
+
+    private static List<String> list(PolyphoneCombinations combinations) {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < combinations.size(); i++) {
+            list.add(combinations.get(i).toString());
+        }
+        return list;
+    }
+}
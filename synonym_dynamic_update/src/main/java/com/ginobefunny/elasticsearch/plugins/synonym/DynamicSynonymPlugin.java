@@ -13,22 +13,49 @@
  */
 package com.ginobefunny.elasticsearch.plugins.synonym;
 
+import com.ginobefunny.elasticsearch.plugins.synonym.action.SynonymStatsAction;
+import com.ginobefunny.elasticsearch.plugins.synonym.action.TransportSynonymStatsAction;
+import com.ginobefunny.elasticsearch.plugins.synonym.rest.RestSynonymStatsAction;
+import com.ginobefunny.elasticsearch.plugins.synonym.service.SynonymRuleManager;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.IndexScopedSettings;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.env.Environment;
+import org.elasticsearch.env.NodeEnvironment;
+import org.elasticsearch.index.IndexModule;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.TokenFilterFactory;
 import org.elasticsearch.indices.analysis.AnalysisModule;
+import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.AnalysisPlugin;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.ResourceWatcherService;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Created by ginozhang on 2017/1/12.
  */
-public class DynamicSynonymPlugin extends Plugin implements AnalysisPlugin {
+public class DynamicSynonymPlugin extends Plugin implements AnalysisPlugin, ActionPlugin {
 
     /** Plugin name **/
     public static final String PLUGIN_NAME = "dynamic-synonym";
@@ -43,6 +70,41 @@ public class DynamicSynonymPlugin extends Plugin implements AnalysisPlugin {
         return tokenFilters;
     }
 
+    @Override
+    public Collection<Object> createComponents(Client client, ClusterService clusterService, ThreadPool threadPool,
+                                               ResourceWatcherService resourceWatcherService, ScriptService scriptService,
+                                               NamedXContentRegistry xContentRegistry, Environment environment,
+                                               NodeEnvironment nodeEnvironment, NamedWriteableRegistry namedWriteableRegistry) {
+        // compiled rules are saved in the node data path so that a restart does not wait for the DB
+        if (nodeEnvironment.hasNodeFile()) {
+            SynonymRuleManager.setSnapshotDir(nodeEnvironment.nodeDataPaths()[0].resolve(PLUGIN_NAME));
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<ActionHandler<? extends ActionRequest, ? extends ActionResponse>> getActions() {
+        return Collections.singletonList(new ActionHandler<>(SynonymStatsAction.INSTANCE, TransportSynonymStatsAction.class));
+    }
+
+    @Override
+    public List<RestHandler> getRestHandlers(Settings settings, RestController restController, ClusterSettings clusterSettings,
+                                             IndexScopedSettings indexScopedSettings, SettingsFilter settingsFilter,
+                                             IndexNameExpressionResolver indexNameExpressionResolver,
+                                             Supplier<DiscoveryNodes> nodesInCluster) {
+        return Collections.singletonList(new RestSynonymStatsAction(settings, restController));
+    }
+
+    @Override
+    public void onIndexModule(IndexModule indexModule) {
+        indexModule.addIndexEventListener(new SynonymRuleManager.IndexListener());
+    }
+
+    @Override
+    public void close() {
+        SynonymRuleManager.shutdown();
+    }
+
     private <T> AnalysisModule.AnalysisProvider<T> requiresAnalysisSettings(AnalysisModule.AnalysisProvider<T> provider) {
         return new AnalysisModule.AnalysisProvider<T>() {
 
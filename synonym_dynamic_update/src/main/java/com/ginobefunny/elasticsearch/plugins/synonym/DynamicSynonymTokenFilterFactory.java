@@ -35,6 +35,10 @@ import java.util.Properties;
 
 public class DynamicSynonymTokenFilterFactory extends AbstractTokenFilterFactory {
 
+    private final SynonymRuleManager synonymRuleManager;
+
+    private final boolean trustIkFlags;
+
     public DynamicSynonymTokenFilterFactory(IndexSettings indexSettings, Environment env,
                                             String name, Settings settings) throws IOException {
         super(indexSettings, name, settings);
@@ -45,24 +49,37 @@ public class DynamicSynonymTokenFilterFactory extends AbstractTokenFilterFactory
 //        final String dbUrl = settings.get("db_url");
 
         final String tokenizerName = settings.get("tokenizer", "whitespace");
+        // optional, default to synonym.table and synonym.field.name in jdbc.properties
+        final String table = settings.get("synonym_table");
+        final String field = settings.get("synonym_field");
+        // match entries that analyze to several tokens as a phrase, see README
+        final boolean multiWord = settings.getAsBoolean("multi_word", false);
+        // behind ik_smart/ik_max_word with the exported terms in ext_synonym_dict, see README
+        this.trustIkFlags = settings.getAsBoolean("trust_ik_flags", false);
 
         Analyzer analyzer;
+        String analyzerName;
         if ("standand".equalsIgnoreCase(tokenizerName)) {
             analyzer = new StandardAnalyzer();
+            analyzerName = "standard";
         } else if ("keyword".equalsIgnoreCase(tokenizerName)) {
             analyzer = new KeywordAnalyzer();
+            analyzerName = "keyword";
         } else if ("simple".equalsIgnoreCase(tokenizerName)) {
             analyzer = new SimpleAnalyzer();
+            analyzerName = "simple";
         } else {
             analyzer = new WhitespaceAnalyzer();
+            analyzerName = "whitespace";
         }
 
-        // NOTE: the manager will only init once
-        SynonymRuleManager.initial(new Configuration(ignoreCase, expand, analyzer));
+        // shared with every filter using the same source and settings, released when the index is removed
+        this.synonymRuleManager = SynonymRuleManager.acquire(indexSettings, table, field,
+                new Configuration(ignoreCase, expand, analyzerName, analyzer, multiWord));
     }
 
     @Override
     public TokenStream create(TokenStream tokenStream) {
-        return new DynamicSynonymTokenFilter(tokenStream);
+        return new DynamicSynonymTokenFilter(tokenStream, synonymRuleManager, trustIkFlags);
     }
 }
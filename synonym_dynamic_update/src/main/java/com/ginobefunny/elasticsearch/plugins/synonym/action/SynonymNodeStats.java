@@ -0,0 +1,258 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.action;
+
+import com.ginobefunny.elasticsearch.plugins.synonym.service.CompiledSynonymMap;
+import com.ginobefunny.elasticsearch.plugins.synonym.service.SynonymRuleManager;
+import com.ginobefunny.elasticsearch.plugins.synonym.service.SynonymStats;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synonym counters of a single node, one {@link ManagerStats} per rule source and configuration
+ * loaded on the node.
+ */
+public class SynonymNodeStats extends BaseNodeResponse implements ToXContentFragment {
+
+    private List<ManagerStats> managers;
+
+    SynonymNodeStats() {
+    }
+
+    public SynonymNodeStats(DiscoveryNode node, List<SynonymRuleManager> managers) {
+        super(node);
+        this.managers = new ArrayList<>(managers.size());
+        for (SynonymRuleManager manager : managers) {
+            this.managers.add(new ManagerStats(manager));
+        }
+    }
+
+    public static SynonymNodeStats readNodeStats(StreamInput in) throws IOException {
+        SynonymNodeStats stats = new SynonymNodeStats();
+        stats.readFrom(in);
+        return stats;
+    }
+
+    public List<ManagerStats> getManagers() {
+        return managers;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        managers = in.readList(ManagerStats::new);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeList(managers);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.field("name", getNode().getName());
+        builder.field("transport_address", getNode().getAddress().toString());
+        builder.startArray("synonym_rules");
+        for (ManagerStats manager : managers) {
+            builder.startObject();
+            manager.toXContent(builder, params);
+            builder.endObject();
+        }
+        builder.endArray();
+        return builder;
+    }
+
+    /**
+     * Point-in-time copy of the rules and {@link SynonymStats} of one manager.
+     */
+    public static class ManagerStats implements Writeable, ToXContentFragment {
+
+        private final String table;
+        private final String field;
+        private final String description;
+        private final int ruleRows;
+        private final int terms;
+        private final int termsWithSynonyms;
+        private final int groups;
+        private final int maxGroupSize;
+        private final long memoryBytes;
+        private final long documents;
+        private final long tokens;
+        private final long lookups;
+        private final long matches;
+        private final long synonyms;
+        private final long syncFailures;
+        private final SyncStats lastFullSync;
+        private final SyncStats lastIncrementalSync;
+
+        ManagerStats(SynonymRuleManager manager) {
+            CompiledSynonymMap map = manager.getSynonymMap();
+            SynonymStats stats = manager.getStats();
+            this.table = manager.getTable();
+            this.field = manager.getField();
+            this.description = manager.getDescription();
+            this.ruleRows = manager.getRuleRows();
+            this.terms = map.termCount();
+            this.termsWithSynonyms = map.ruleCount();
+            this.groups = map.groupCount();
+            this.maxGroupSize = map.maxGroupSize();
+            this.memoryBytes = map.ramBytesUsed();
+            this.documents = stats.getDocuments();
+            this.tokens = stats.getTokens();
+            this.lookups = stats.getLookups();
+            this.matches = stats.getMatches();
+            this.synonyms = stats.getSynonyms();
+            this.syncFailures = stats.getSyncFailures();
+            this.lastFullSync = SyncStats.of(stats.getLastFullSync());
+            this.lastIncrementalSync = SyncStats.of(stats.getLastIncrementalSync());
+        }
+
+        ManagerStats(StreamInput in) throws IOException {
+            this.table = in.readOptionalString();
+            this.field = in.readOptionalString();
+            this.description = in.readString();
+            this.ruleRows = in.readVInt();
+            this.terms = in.readVInt();
+            this.termsWithSynonyms = in.readVInt();
+            this.groups = in.readVInt();
+            this.maxGroupSize = in.readVInt();
+            this.memoryBytes = in.readVLong();
+            this.documents = in.readVLong();
+            this.tokens = in.readVLong();
+            this.lookups = in.readVLong();
+            this.matches = in.readVLong();
+            this.synonyms = in.readVLong();
+            this.syncFailures = in.readVLong();
+            this.lastFullSync = in.readOptionalWriteable(SyncStats::new);
+            this.lastIncrementalSync = in.readOptionalWriteable(SyncStats::new);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeOptionalString(table);
+            out.writeOptionalString(field);
+            out.writeString(description);
+            out.writeVInt(ruleRows);
+            out.writeVInt(terms);
+            out.writeVInt(termsWithSynonyms);
+            out.writeVInt(groups);
+            out.writeVInt(maxGroupSize);
+            out.writeVLong(memoryBytes);
+            out.writeVLong(documents);
+            out.writeVLong(tokens);
+            out.writeVLong(lookups);
+            out.writeVLong(matches);
+            out.writeVLong(synonyms);
+            out.writeVLong(syncFailures);
+            out.writeOptionalWriteable(lastFullSync);
+            out.writeOptionalWriteable(lastIncrementalSync);
+        }
+
+        /**
+         * Tokens out per token in: 1 when nothing is expanded, grows with every synonym emitted.
+         */
+        public double getExpansionFactor() {
+            return tokens == 0 ? 1.0 : (double) (tokens + synonyms) / tokens;
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.field("table", table);
+            builder.field("field", field);
+            builder.field("key", description);
+            builder.startObject("rules");
+            builder.field("rows", ruleRows);
+            builder.field("terms", terms);
+            builder.field("terms_with_synonyms", termsWithSynonyms);
+            builder.field("groups", groups);
+            builder.field("max_group_size", maxGroupSize);
+            builder.field("memory_in_bytes", memoryBytes);
+            builder.endObject();
+            builder.startObject("filter");
+            builder.field("documents", documents);
+            builder.field("tokens", tokens);
+            builder.field("lookups", lookups);
+            builder.field("matches", matches);
+            builder.field("synonyms", synonyms);
+            builder.field("synonyms_per_match", matches == 0 ? 0.0 : (double) synonyms / matches);
+            builder.field("expansion_factor", getExpansionFactor());
+            builder.endObject();
+            builder.startObject("sync");
+            builder.field("failures", syncFailures);
+            if (lastFullSync != null) {
+                builder.startObject("last_full");
+                lastFullSync.toXContent(builder, params);
+                builder.endObject();
+            }
+            if (lastIncrementalSync != null) {
+                builder.startObject("last_incremental");
+                lastIncrementalSync.toXContent(builder, params);
+                builder.endObject();
+            }
+            builder.endObject();
+            return builder;
+        }
+    }
+
+    /**
+     * Point-in-time copy of {@link SynonymStats.Sync}.
+     */
+    public static class SyncStats implements Writeable, ToXContentFragment {
+
+        private final long timestamp;
+        private final long rows;
+        private final long tookMillis;
+
+        private SyncStats(SynonymStats.Sync sync) {
+            this.timestamp = sync.getTimestamp();
+            this.rows = sync.getRows();
+            this.tookMillis = sync.getTookMillis();
+        }
+
+        SyncStats(StreamInput in) throws IOException {
+            this.timestamp = in.readLong();
+            this.rows = in.readVLong();
+            this.tookMillis = in.readVLong();
+        }
+
+        static SyncStats of(SynonymStats.Sync sync) {
+            return sync == null ? null : new SyncStats(sync);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeLong(timestamp);
+            out.writeVLong(rows);
+            out.writeVLong(tookMillis);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.field("timestamp_in_millis", timestamp);
+            builder.field("rows", rows);
+            builder.field("took_in_millis", tookMillis);
+            return builder;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.action;
+
+import com.ginobefunny.elasticsearch.plugins.synonym.service.SynonymRuleManager;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.List;
+
+public class TransportSynonymStatsAction extends TransportNodesAction<SynonymStatsRequest, SynonymStatsResponse,
+        TransportSynonymStatsAction.NodeRequest, SynonymNodeStats> {
+
+    @Inject
+    public TransportSynonymStatsAction(Settings settings, ThreadPool threadPool, ClusterService clusterService,
+                                       TransportService transportService, ActionFilters actionFilters,
+                                       IndexNameExpressionResolver indexNameExpressionResolver) {
+        super(settings, SynonymStatsAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                indexNameExpressionResolver, SynonymStatsRequest::new, NodeRequest::new, ThreadPool.Names.MANAGEMENT,
+                SynonymNodeStats.class);
+    }
+
+    @Override
+    protected SynonymStatsResponse newResponse(SynonymStatsRequest request, List<SynonymNodeStats> responses,
+                                               List<FailedNodeException> failures) {
+        return new SynonymStatsResponse(clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected NodeRequest newNodeRequest(String nodeId, SynonymStatsRequest request) {
+        return new NodeRequest(nodeId);
+    }
+
+    @Override
+    protected SynonymNodeStats newNodeResponse() {
+        return new SynonymNodeStats();
+    }
+
+    @Override
+    protected SynonymNodeStats nodeOperation(NodeRequest request) {
+        return new SynonymNodeStats(clusterService.localNode(), SynonymRuleManager.getManagers());
+    }
+
+    public static class NodeRequest extends BaseNodeRequest {
+
+        public NodeRequest() {
+        }
+
+        NodeRequest(String nodeId) {
+            super(nodeId);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.jfr;
+
+/**
+ * Entry point for the synonym JFR events.
+ * <p>
+ * jdk.jfr only exists on JDK 11+ (and 8u262+), so the event classes are only touched behind
+ * the availability check. The events are disabled by default and must be switched on in the
+ * JFR settings; when off, each call costs a single isEnabled check.
+ */
+public final class SynonymEvents {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    private SynonymEvents() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, SynonymEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Whether the per-document filter event is being recorded, checked once per token stream
+     * so the filter only pays for timing while a recording asks for it.
+     */
+    public static boolean filterEnabled() {
+        return AVAILABLE && SynonymFilterEvent.enabled();
+    }
+
+    public static void filter(long tokens, long synonyms, long lookupNanos) {
+        if (AVAILABLE) {
+            SynonymFilterEvent.emit(tokens, synonyms, lookupNanos);
+        }
+    }
+
+    public static void sync(String table, long rows, long nanos) {
+        if (AVAILABLE) {
+            SynonymSyncEvent.emit(table, rows, nanos);
+        }
+    }
+}
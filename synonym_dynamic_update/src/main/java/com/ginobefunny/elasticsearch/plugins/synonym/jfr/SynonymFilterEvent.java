@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("com.ginobefunny.synonym.Filter")
+@Label("Dynamic Synonym Filter")
+@Category({"Elasticsearch", "Dynamic Synonym"})
+@Description("Synonym lookups done by DynamicSynonymTokenFilter for one token stream")
+@Enabled(false)
+@StackTrace(false)
+final class SynonymFilterEvent extends Event {
+
+    // checked before allocating an event, one is created per token stream
+    private static final EventType TYPE = EventType.getEventType(SynonymFilterEvent.class);
+
+    @Label("Token Count")
+    long tokenCount;
+
+    @Label("Synonyms Emitted")
+    long synonymCount;
+
+    @Label("Lookup Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long lookupTime;
+
+    static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+    static void emit(long tokens, long synonyms, long lookupNanos) {
+        if (!TYPE.isEnabled()) {
+            return;
+        }
+        SynonymFilterEvent event = new SynonymFilterEvent();
+        event.tokenCount = tokens;
+        event.synonymCount = synonyms;
+        event.lookupTime = lookupNanos;
+        event.commit();
+    }
+}
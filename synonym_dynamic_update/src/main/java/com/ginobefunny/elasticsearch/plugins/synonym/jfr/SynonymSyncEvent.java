@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("com.ginobefunny.synonym.Sync")
+@Label("Dynamic Synonym DB Sync")
+@Category({"Elasticsearch", "Dynamic Synonym"})
+@Description("Synonym rules synced from the database")
+@Enabled(false)
+final class SynonymSyncEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(SynonymSyncEvent.class);
+
+    @Label("Table")
+    String table;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Sync Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long syncTime;
+
+    static void emit(String table, long rows, long nanos) {
+        if (!TYPE.isEnabled()) {
+            return;
+        }
+        SynonymSyncEvent event = new SynonymSyncEvent();
+        event.table = table;
+        event.rows = rows;
+        event.syncTime = nanos;
+        event.commit();
+    }
+}
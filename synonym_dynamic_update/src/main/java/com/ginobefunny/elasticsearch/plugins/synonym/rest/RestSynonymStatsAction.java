@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.rest;
+
+import com.ginobefunny.elasticsearch.plugins.synonym.action.SynonymStatsAction;
+import com.ginobefunny.elasticsearch.plugins.synonym.action.SynonymStatsRequest;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestActions;
+
+import java.io.IOException;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+
+/**
+ * Reports, per node and per loaded rule source: rule count and memory, the last full and
+ * incremental sync, tokens looked up versus matched and the expansion factor.
+ *
+ * <pre>
+ * GET /_dynamic_synonym/stats
+ * GET /_dynamic_synonym/stats/{nodeId}
+ * </pre>
+ */
+public class RestSynonymStatsAction extends BaseRestHandler {
+
+    public RestSynonymStatsAction(Settings settings, RestController controller) {
+        super(settings);
+        controller.registerHandler(GET, "/_dynamic_synonym/stats", this);
+        controller.registerHandler(GET, "/_dynamic_synonym/stats/{nodeId}", this);
+    }
+
+    @Override
+    public String getName() {
+        return "dynamic_synonym_stats_action";
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) throws IOException {
+        String[] nodesIds = Strings.splitStringByCommaToArray(request.param("nodeId"));
+        SynonymStatsRequest statsRequest = new SynonymStatsRequest(nodesIds);
+        statsRequest.timeout(request.param("timeout"));
+        return channel -> client.executeLocally(SynonymStatsAction.INSTANCE, statsRequest,
+                new RestActions.NodesResponseRestListener<>(channel));
+    }
+}
@@ -0,0 +1,801 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, compiled form of the synonym rules. Instances are never modified after construction,
+ * so they can be published through a volatile field and read by any number of threads without locks.
+ * <p>
+ * Every distinct term is interned to an int id. The term texts are stored back to back in one
+ * shared {@code char[]}. Terms are found through an open addressing hash table that hashes the
+ * token's char buffer directly, so a lookup neither allocates nor builds a String.
+ * <p>
+ * Rules are kept in the shape they were written in rather than expanded to (input, output) pairs:
+ * an equivalence line with {@code expand=true} is stored once as a group (member term ids), and
+ * each member refers to the group, so a group of N terms costs O(N) instead of N&sup2;. Explicit
+ * {@code =>} rules and the non-expanded form are directed edges from a term to its outputs. The
+ * synonyms of a term are the members of its groups followed by its edges, without duplicates;
+ * {@link Cursor} walks them without allocating. All per-term and per-group lists are stored as
+ * offsets into one shared int array.
+ * <p>
+ * A multi-word term is stored as its words joined by {@link #WORD_SEPARATOR}, so a run of tokens is
+ * looked up like a single token once their texts are joined the same way.
+ */
+public final class CompiledSynonymMap {
+
+    // bits of the negative prefilter per filtered term, about 1% false positives with FILTER_HASHES probes
+    private static final int FILTER_BITS_PER_TERM = 10;
+
+    private static final int FILTER_HASHES = 7;
+
+    /**
+     * Joins the words of a multi-word term, as in Lucene's SynonymMap.
+     */
+    public static final char WORD_SEPARATOR = '\u0000';
+
+    public static final CompiledSynonymMap EMPTY = new Builder().build();
+
+    // texts of all terms, term i is termChars[termOffsets[i] .. termOffsets[i + 1])
+    private final char[] termChars;
+
+    private final int[] termOffsets;
+
+    // groups of term i are termGroups[termGroupOffsets[i] .. termGroupOffsets[i + 1])
+    private final int[] termGroupOffsets;
+
+    private final int[] termGroups;
+
+    // members of group g are groupMembers[groupOffsets[g] .. groupOffsets[g + 1])
+    private final int[] groupOffsets;
+
+    private final int[] groupMembers;
+
+    // directed outputs of term i are edges[edgeOffsets[i] .. edgeOffsets[i + 1])
+    private final int[] edgeOffsets;
+
+    private final int[] edges;
+
+    // term id + 1 per slot, 0 for an empty slot
+    private final int[] table;
+
+    private final int mask;
+
+    private final int ruleCount;
+
+    // the terms that have synonyms
+    private final TermFilter inputFilter;
+
+    // words of the longest term that has synonyms
+    private final int maxInputWords;
+
+    // the first words of the multi-word terms that have synonyms, null if there is none
+    private final TermFilter phraseFilter;
+
+    private CompiledSynonymMap(char[] termChars, int[] termOffsets, int[] termGroupOffsets, int[] termGroups,
+                               int[] groupOffsets, int[] groupMembers, int[] edgeOffsets, int[] edges) {
+        this.termChars = termChars;
+        this.termOffsets = termOffsets;
+        this.termGroupOffsets = termGroupOffsets;
+        this.termGroups = termGroups;
+        this.groupOffsets = groupOffsets;
+        this.groupMembers = groupMembers;
+        this.edgeOffsets = edgeOffsets;
+        this.edges = edges;
+
+        int termCount = termOffsets.length - 1;
+        // keep the load factor at or below 0.5 so probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(2, termCount) * 2 - 1) << 1;
+        this.table = new int[capacity];
+        this.mask = capacity - 1;
+        // the filters are sized from the number of terms they hold
+        int rules = 0;
+        int phraseTerms = 0;
+        for (int id = 0; id < termCount; id++) {
+            if (hasSynonyms(id)) {
+                rules++;
+                if (indexOf(termChars, termOffsets[id], termOffsets[id + 1], WORD_SEPARATOR) >= 0) {
+                    phraseTerms++;
+                }
+            }
+        }
+        this.inputFilter = new TermFilter(rules);
+        TermFilter phrases = phraseTerms == 0 ? null : new TermFilter(phraseTerms);
+        int maxWords = 1;
+        for (int id = 0; id < termCount; id++) {
+            int h = hash(termChars, termOffsets[id], termOffsets[id + 1] - termOffsets[id]);
+            int slot = h & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+            if (hasSynonyms(id)) {
+                inputFilter.add(h);
+                int words = 1;
+                int firstWordEnd = -1;
+                for (int i = termOffsets[id]; i < termOffsets[id + 1]; i++) {
+                    if (termChars[i] == WORD_SEPARATOR) {
+                        if (firstWordEnd < 0) {
+                            firstWordEnd = i;
+                        }
+                        words++;
+                    }
+                }
+                if (firstWordEnd > termOffsets[id]) {
+                    phrases.add(hash(termChars, termOffsets[id], firstWordEnd - termOffsets[id]));
+                }
+                maxWords = Math.max(maxWords, words);
+            }
+        }
+        this.ruleCount = rules;
+        this.maxInputWords = maxWords;
+        this.phraseFilter = phrases;
+    }
+
+    /**
+     * Negative check done before {@link #lookup(char[], int, int)}: a Bloom filter over the whole
+     * terms that have synonyms, so most tokens without synonyms are rejected without probing the
+     * table and comparing chars. A true result may be a false positive (about 1%).
+     */
+    public boolean mightHaveSynonyms(char[] buffer, int offset, int length) {
+        if (ruleCount == 0 || length == 0) {
+            return false;
+        }
+        return inputFilter.mightContain(hash(buffer, offset, length));
+    }
+
+    /**
+     * Like {@link #mightHaveSynonyms(char[], int, int)} for a token that would be the first word of a
+     * multi-word term: only then is it worth reading the following tokens.
+     */
+    public boolean mightStartPhrase(char[] buffer, int offset, int length) {
+        if (phraseFilter == null || length == 0) {
+            return false;
+        }
+        return phraseFilter.mightContain(hash(buffer, offset, length));
+    }
+
+    /**
+     * @return words of the longest term that has synonyms, 1 if no rule has a multi-word input
+     */
+    public int maxInputWords() {
+        return maxInputWords;
+    }
+
+    /**
+     * Finds a term.
+     *
+     * @return the term id, or -1 if the term is unknown
+     */
+    public int lookup(char[] buffer, int offset, int length) {
+        int slot = hash(buffer, offset, length) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int id = entry - 1;
+            int start = termOffsets[id];
+            if (termOffsets[id + 1] - start == length && regionEquals(buffer, offset, start, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int lookup(String term) {
+        char[] chars = term.toCharArray();
+        return lookup(chars, 0, chars.length);
+    }
+
+    public boolean hasSynonyms(int termId) {
+        return termGroupOffsets[termId + 1] > termGroupOffsets[termId] || edgeOffsets[termId + 1] > edgeOffsets[termId];
+    }
+
+    /**
+     * The shared char array holding all term texts, see {@link #termOffset(int)}.
+     */
+    public char[] termChars() {
+        return termChars;
+    }
+
+    public int termOffset(int termId) {
+        return termOffsets[termId];
+    }
+
+    public int termLength(int termId) {
+        return termOffsets[termId + 1] - termOffsets[termId];
+    }
+
+    public String term(int termId) {
+        return new String(termChars, termOffset(termId), termLength(termId));
+    }
+
+    public int termCount() {
+        return termOffsets.length - 1;
+    }
+
+    public int groupCount() {
+        return groupOffsets.length - 1;
+    }
+
+    /**
+     * @return members of the largest group, a term in it expands to one less than that
+     */
+    public int maxGroupSize() {
+        int max = 0;
+        for (int g = 0; g < groupCount(); g++) {
+            max = Math.max(max, groupOffsets[g + 1] - groupOffsets[g]);
+        }
+        return max;
+    }
+
+    /**
+     * @return number of terms that have at least one synonym
+     */
+    public int ruleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * @return the synonyms of a term, or null if it has none; allocates, not meant for the analysis path
+     */
+    public List<String> getSynonymWords(String input) {
+        int id = lookup(input);
+        if (id < 0 || !hasSynonyms(id)) {
+            return null;
+        }
+        List<String> words = new ArrayList<>();
+        Cursor cursor = new Cursor();
+        cursor.start(this, id);
+        for (int output = cursor.next(); output >= 0; output = cursor.next()) {
+            words.add(term(output));
+        }
+        return words;
+    }
+
+    private boolean inGroup(int termId, int group) {
+        for (int i = termGroupOffsets[termId]; i < termGroupOffsets[termId + 1]; i++) {
+            if (termGroups[i] == group) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a new map holding the rules of this map plus those of {@code delta}; neither map is
+     * modified. Terms and groups keep their ids, new terms and all groups of the delta are appended,
+     * and edges of a term present in both maps are the union of its edges.
+     */
+    public CompiledSynonymMap merge(CompiledSynonymMap delta) {
+        if (delta.termCount() == 0) {
+            return this;
+        }
+        int baseCount = termCount();
+        // id in the merged map of every delta term, and the delta term of every merged id
+        int[] remap = new int[delta.termCount()];
+        int mergedCount = baseCount;
+        int newChars = 0;
+        for (int d = 0; d < delta.termCount(); d++) {
+            int id = lookup(delta.termChars, delta.termOffset(d), delta.termLength(d));
+            if (id < 0) {
+                id = mergedCount++;
+                newChars += delta.termLength(d);
+            }
+            remap[d] = id;
+        }
+        int[] fromDelta = new int[mergedCount];
+        Arrays.fill(fromDelta, -1);
+        for (int d = 0; d < remap.length; d++) {
+            fromDelta[remap[d]] = d;
+        }
+
+        char[] mergedChars = Arrays.copyOf(termChars, termChars.length + newChars);
+        int[] mergedTermOffsets = Arrays.copyOf(termOffsets, mergedCount + 1);
+        for (int id = baseCount; id < mergedCount; id++) {
+            int d = fromDelta[id];
+            int start = mergedTermOffsets[id];
+            System.arraycopy(delta.termChars, delta.termOffset(d), mergedChars, start, delta.termLength(d));
+            mergedTermOffsets[id + 1] = start + delta.termLength(d);
+        }
+
+        // delta groups are appended after the groups of this map, their members are remapped
+        int baseGroups = groupCount();
+        int[] groupRemap = new int[delta.groupCount()];
+        for (int g = 0; g < groupRemap.length; g++) {
+            groupRemap[g] = baseGroups + g;
+        }
+        int[] mergedGroupOffsets = Arrays.copyOf(groupOffsets, baseGroups + delta.groupCount() + 1);
+        int[] mergedGroupMembers = Arrays.copyOf(groupMembers, groupMembers.length + delta.groupMembers.length);
+        for (int g = 0; g < delta.groupCount(); g++) {
+            mergedGroupOffsets[baseGroups + g + 1] = groupMembers.length + delta.groupOffsets[g + 1];
+        }
+        for (int i = 0; i < delta.groupMembers.length; i++) {
+            mergedGroupMembers[groupMembers.length + i] = remap[delta.groupMembers[i]];
+        }
+
+        int[][] mergedTermGroups = mergeLists(termGroupOffsets, termGroups, delta.termGroupOffsets, delta.termGroups,
+                groupRemap, fromDelta, baseCount, mergedCount);
+        int[][] mergedEdges = mergeLists(edgeOffsets, edges, delta.edgeOffsets, delta.edges,
+                remap, fromDelta, baseCount, mergedCount);
+        return new CompiledSynonymMap(mergedChars, mergedTermOffsets, mergedTermGroups[0], mergedTermGroups[1],
+                mergedGroupOffsets, mergedGroupMembers, mergedEdges[0], mergedEdges[1]);
+    }
+
+    /**
+     * Merges two per-term lists: the list of a merged term is its list in the base map followed by
+     * the remapped values of its list in the delta that are not in the base list yet.
+     *
+     * @return the merged offsets and values
+     */
+    private static int[][] mergeLists(int[] baseOffsets, int[] baseValues, int[] deltaOffsets, int[] deltaValues,
+                                      int[] valueRemap, int[] fromDelta, int baseCount, int mergedCount) {
+        // first pass counts the values of every merged term, second pass copies them
+        int[] offsets = new int[mergedCount + 1];
+        for (int id = 0; id < mergedCount; id++) {
+            offsets[id + 1] = offsets[id] + mergeList(id, baseOffsets, baseValues, deltaOffsets, deltaValues,
+                    valueRemap, fromDelta, baseCount, null, 0);
+        }
+        int[] values = new int[offsets[mergedCount]];
+        for (int id = 0; id < mergedCount; id++) {
+            mergeList(id, baseOffsets, baseValues, deltaOffsets, deltaValues, valueRemap, fromDelta, baseCount,
+                    values, offsets[id]);
+        }
+        return new int[][]{offsets, values};
+    }
+
+    /**
+     * Writes (if {@code target} is not null) and counts the merged list of one term.
+     */
+    private static int mergeList(int id, int[] baseOffsets, int[] baseValues, int[] deltaOffsets, int[] deltaValues,
+                                 int[] valueRemap, int[] fromDelta, int baseCount, int[] target, int targetOffset) {
+        int count = 0;
+        int baseStart = id < baseCount ? baseOffsets[id] : 0;
+        int baseEnd = id < baseCount ? baseOffsets[id + 1] : 0;
+        for (int i = baseStart; i < baseEnd; i++) {
+            if (target != null) {
+                target[targetOffset + count] = baseValues[i];
+            }
+            count++;
+        }
+        int d = fromDelta[id];
+        if (d < 0) {
+            return count;
+        }
+        outer:
+        for (int i = deltaOffsets[d]; i < deltaOffsets[d + 1]; i++) {
+            int value = valueRemap[deltaValues[i]];
+            for (int j = baseStart; j < baseEnd; j++) {
+                if (baseValues[j] == value) {
+                    continue outer;
+                }
+            }
+            if (target != null) {
+                target[targetOffset + count] = value;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Writes the arrays of this map for {@link SynonymSnapshot}; the lookup table and the prefilter
+     * are derived data and rebuilt by {@link #readFrom(ByteBuffer)}.
+     */
+    void writeTo(SynonymSnapshot.Output out) throws IOException {
+        out.writeChars(termChars);
+        out.writeInts(termOffsets, termOffsets.length);
+        out.writeInts(termGroupOffsets, termGroupOffsets.length);
+        out.writeInts(termGroups, termGroups.length);
+        out.writeInts(groupOffsets, groupOffsets.length);
+        out.writeInts(groupMembers, groupMembers.length);
+        out.writeInts(edgeOffsets, edgeOffsets.length);
+        out.writeInts(edges, edges.length);
+    }
+
+    /**
+     * Reads a map written by {@link #writeTo(SynonymSnapshot.Output)}, copying the arrays out of the buffer.
+     *
+     * @throws IllegalArgumentException if the arrays are not consistent with each other
+     */
+    static CompiledSynonymMap readFrom(ByteBuffer in) {
+        char[] termChars = readChars(in);
+        int[] termOffsets = readInts(in);
+        int[] termGroupOffsets = readInts(in);
+        int[] termGroups = readInts(in);
+        int[] groupOffsets = readInts(in);
+        int[] groupMembers = readInts(in);
+        int[] edgeOffsets = readInts(in);
+        int[] edges = readInts(in);
+
+        int termCount = termOffsets.length - 1;
+        int groupCount = groupOffsets.length - 1;
+        checkOffsets(termOffsets, termChars.length, "term");
+        checkOffsets(termGroupOffsets, termGroups.length, "term group");
+        checkOffsets(groupOffsets, groupMembers.length, "group");
+        checkOffsets(edgeOffsets, edges.length, "edge");
+        if (termGroupOffsets.length != termCount + 1 || edgeOffsets.length != termCount + 1) {
+            throw new IllegalArgumentException("term count mismatch");
+        }
+        checkIds(termGroups, groupCount, "group");
+        checkIds(groupMembers, termCount, "term");
+        checkIds(edges, termCount, "term");
+        return new CompiledSynonymMap(termChars, termOffsets, termGroupOffsets, termGroups,
+                groupOffsets, groupMembers, edgeOffsets, edges);
+    }
+
+    static char[] readChars(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining() / 2) {
+            throw new IllegalArgumentException("bad array length " + length);
+        }
+        char[] values = new char[length];
+        in.asCharBuffer().get(values);
+        in.position(in.position() + 2 * length);
+        return values;
+    }
+
+    private static int[] readInts(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining() / 4) {
+            throw new IllegalArgumentException("bad array length " + length);
+        }
+        int[] values = new int[length];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * length);
+        return values;
+    }
+
+    private static void checkOffsets(int[] offsets, int valueCount, String name) {
+        if (offsets.length == 0 || offsets[0] != 0 || offsets[offsets.length - 1] != valueCount) {
+            throw new IllegalArgumentException("bad " + name + " offsets");
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            if (offsets[i] < offsets[i - 1]) {
+                throw new IllegalArgumentException("bad " + name + " offsets");
+            }
+        }
+    }
+
+    private static void checkIds(int[] ids, int count, String name) {
+        for (int id : ids) {
+            if (id < 0 || id >= count) {
+                throw new IllegalArgumentException("bad " + name + " id " + id);
+            }
+        }
+    }
+
+    /**
+     * @return approximate heap used by the arrays of this map
+     */
+    public long ramBytesUsed() {
+        return 2L * termChars.length + 4L * (termOffsets.length + termGroupOffsets.length + termGroups.length
+                + groupOffsets.length + groupMembers.length + edgeOffsets.length + edges.length + table.length)
+                + inputFilter.ramBytesUsed() + (phraseFilter == null ? 0 : phraseFilter.ramBytesUsed());
+    }
+
+    private boolean regionEquals(char[] buffer, int offset, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            if (buffer[offset + i] != termChars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(char[] chars, int from, int to, char c) {
+        for (int i = from; i < to; i++) {
+            if (chars[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(char[] buffer, int offset, int length) {
+        int h = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = 31 * h + buffer[i];
+        }
+        // spread the high bits, the table is indexed by the low bits only
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Bloom filter over term hashes, sized to about {@link #FILTER_BITS_PER_TERM} bits per term (rounded
+     * up to a power of two). The {@link #FILTER_HASHES} probed bits are derived from the term hash by
+     * double hashing, so a term is hashed once for the filter and once more only if it passes.
+     */
+    private static final class TermFilter {
+
+        private final long[] bits;
+
+        private final int mask;
+
+        TermFilter(int terms) {
+            long wanted = Math.max(64L, (long) terms * FILTER_BITS_PER_TERM);
+            int size = (int) Math.min(1L << 30, Long.highestOneBit(wanted - 1) << 1);
+            this.bits = new long[size >>> 6];
+            this.mask = size - 1;
+        }
+
+        void add(int hash) {
+            int step = step(hash);
+            for (int i = 0; i < FILTER_HASHES; i++) {
+                int bit = (hash + i * step) & mask;
+                bits[bit >>> 6] |= 1L << bit;
+            }
+        }
+
+        boolean mightContain(int hash) {
+            int step = step(hash);
+            for (int i = 0; i < FILTER_HASHES; i++) {
+                int bit = (hash + i * step) & mask;
+                if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // second hash for double hashing, odd so the probes of a term are distinct
+        private static int step(int hash) {
+            int h = hash * 0x9E3779B9;
+            return (h ^ (h >>> 15)) | 1;
+        }
+
+        long ramBytesUsed() {
+            return 8L * bits.length;
+        }
+    }
+
+    /**
+     * Walks the synonyms of one term: the members of each of its groups, then its edges, skipping
+     * terms already returned. Reusable and allocation free; a token filter keeps one instance.
+     */
+    public static final class Cursor {
+
+        private CompiledSynonymMap map;
+
+        // position in the term's group list, and in the members of the current group
+        private int groupIndex;
+
+        private int groupStart;
+
+        private int groupEnd;
+
+        private int memberIndex;
+
+        private int memberEnd;
+
+        private int edgeIndex;
+
+        private int edgeEnd;
+
+        public void start(CompiledSynonymMap map, int termId) {
+            this.map = map;
+            this.groupStart = map.termGroupOffsets[termId];
+            this.groupEnd = map.termGroupOffsets[termId + 1];
+            this.groupIndex = groupStart;
+            this.memberIndex = this.memberEnd = 0;
+            if (groupIndex < groupEnd) {
+                int group = map.termGroups[groupIndex];
+                memberIndex = map.groupOffsets[group];
+                memberEnd = map.groupOffsets[group + 1];
+            }
+            this.edgeIndex = map.edgeOffsets[termId];
+            this.edgeEnd = map.edgeOffsets[termId + 1];
+        }
+
+        /**
+         * Clears the cursor so that {@link #next()} returns -1.
+         */
+        public void clear() {
+            groupIndex = groupEnd = memberIndex = memberEnd = edgeIndex = edgeEnd = 0;
+        }
+
+        /**
+         * @return the term id of the next synonym, or -1 when there is none left
+         */
+        public int next() {
+            while (groupIndex < groupEnd) {
+                while (memberIndex < memberEnd) {
+                    int member = map.groupMembers[memberIndex++];
+                    if (!inGroups(member, groupStart, groupIndex)) {
+                        return member;
+                    }
+                }
+                if (++groupIndex < groupEnd) {
+                    int group = map.termGroups[groupIndex];
+                    memberIndex = map.groupOffsets[group];
+                    memberEnd = map.groupOffsets[group + 1];
+                }
+            }
+            while (edgeIndex < edgeEnd) {
+                int output = map.edges[edgeIndex++];
+                if (!inGroups(output, groupStart, groupEnd)) {
+                    return output;
+                }
+            }
+            return -1;
+        }
+
+        // whether a term is a member of one of the groups termGroups[from .. to)
+        private boolean inGroups(int termId, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (map.inGroup(termId, map.termGroups[i])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Collects groups and directed (input, output) edges and compiles them. Not thread safe.
+     */
+    public static final class Builder {
+
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        private final List<String> terms = new ArrayList<>();
+
+        private final TermLists termGroups = new TermLists();
+
+        private final TermLists edges = new TermLists();
+
+        // sorted member ids of every group, to store a repeated line only once
+        private final Map<String, Integer> groupKeys = new HashMap<>();
+
+        private int[] groupOffsets = new int[17];
+
+        private int[] groupMembers = new int[64];
+
+        private int groupCount = 0;
+
+        /**
+         * Adds a directed edge: {@code output} is a synonym of {@code input}.
+         */
+        public void add(String input, String output) {
+            edges.add(intern(input), intern(output));
+        }
+
+        /**
+         * Adds an equivalence group: every member is a synonym of every member, itself included.
+         */
+        public void addGroup(Collection<String> members) {
+            if (members.isEmpty()) {
+                return;
+            }
+            Set<String> distinct = new LinkedHashSet<>(members);
+            int[] memberIds = new int[distinct.size()];
+            int count = 0;
+            for (String member : distinct) {
+                memberIds[count++] = intern(member);
+            }
+            int[] sorted = Arrays.copyOf(memberIds, count);
+            Arrays.sort(sorted);
+            String key = Arrays.toString(sorted);
+            if (groupKeys.containsKey(key)) {
+                return;
+            }
+            int group = groupCount++;
+            groupKeys.put(key, group);
+            if (groupCount == groupOffsets.length) {
+                groupOffsets = Arrays.copyOf(groupOffsets, groupOffsets.length * 2);
+            }
+            int start = groupOffsets[group];
+            if (start + count > groupMembers.length) {
+                groupMembers = Arrays.copyOf(groupMembers, Math.max(groupMembers.length * 2, start + count));
+            }
+            System.arraycopy(memberIds, 0, groupMembers, start, count);
+            groupOffsets[group + 1] = start + count;
+            for (int i = 0; i < count; i++) {
+                termGroups.add(memberIds[i], group);
+            }
+        }
+
+        private int intern(String term) {
+            Integer id = ids.get(term);
+            if (id == null) {
+                id = terms.size();
+                ids.put(term, id);
+                terms.add(term);
+            }
+            return id;
+        }
+
+        public CompiledSynonymMap build() {
+            int termCount = terms.size();
+            int[] termOffsets = new int[termCount + 1];
+            for (int id = 0; id < termCount; id++) {
+                termOffsets[id + 1] = termOffsets[id] + terms.get(id).length();
+            }
+            char[] termChars = new char[termOffsets[termCount]];
+            for (int id = 0; id < termCount; id++) {
+                String term = terms.get(id);
+                term.getChars(0, term.length(), termChars, termOffsets[id]);
+            }
+            int[][] groupLists = termGroups.compact(termCount);
+            int[][] edgeLists = edges.compact(termCount);
+            return new CompiledSynonymMap(termChars, termOffsets, groupLists[0], groupLists[1],
+                    Arrays.copyOf(groupOffsets, groupCount + 1), Arrays.copyOf(groupMembers, groupOffsets[groupCount]),
+                    edgeLists[0], edgeLists[1]);
+        }
+
+        private static int indexOf(int[] values, int count, int value) {
+            for (int i = 0; i < count; i++) {
+                if (values[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * A growable, duplicate free int list per term id, compacted to offsets and values on build.
+     */
+    private static final class TermLists {
+
+        // only the first counts[id] entries of lists[id] are used
+        private int[][] lists = new int[16][];
+
+        private int[] counts = new int[16];
+
+        void add(int termId, int value) {
+            if (termId >= counts.length) {
+                int size = Math.max(counts.length * 2, termId + 1);
+                lists = Arrays.copyOf(lists, size);
+                counts = Arrays.copyOf(counts, size);
+            }
+            int[] list = lists[termId];
+            int count = counts[termId];
+            if (list == null) {
+                list = lists[termId] = new int[2];
+            }
+            if (Builder.indexOf(list, count, value) >= 0) {
+                return;
+            }
+            if (count == list.length) {
+                list = lists[termId] = Arrays.copyOf(list, count * 2);
+            }
+            list[count] = value;
+            counts[termId] = count + 1;
+        }
+
+        int[][] compact(int termCount) {
+            int[] offsets = new int[termCount + 1];
+            for (int id = 0; id < termCount; id++) {
+                offsets[id + 1] = offsets[id] + (id < counts.length ? counts[id] : 0);
+            }
+            int[] values = new int[offsets[termCount]];
+            for (int id = 0; id < termCount && id < counts.length; id++) {
+                if (counts[id] > 0) {
+                    System.arraycopy(lists[id], 0, values, offsets[id], counts[id]);
+                }
+            }
+            return new int[][]{offsets, values};
+        }
+    }
+}
@@ -24,12 +24,29 @@ public class Configuration {
 
     private final boolean expand;
 
+    // name of the tokenizer setting the analyzer was chosen by, part of the manager key
+    private final String analyzerName;
+
     private final Analyzer analyzer;
 
-    public Configuration(boolean ignoreCase, boolean expand, Analyzer analyzer) {
+    // keep an entry that analyzes to several tokens as one multi-word term instead of one term per token
+    private final boolean multiWord;
+
+    public Configuration(boolean ignoreCase, boolean expand, String analyzerName, Analyzer analyzer) {
+        this(ignoreCase, expand, analyzerName, analyzer, false);
+    }
+
+    public Configuration(boolean ignoreCase, boolean expand, String analyzerName, Analyzer analyzer,
+                         boolean multiWord) {
         this.ignoreCase = ignoreCase;
         this.expand = expand;
+        this.analyzerName = analyzerName;
         this.analyzer = analyzer;
+        this.multiWord = multiWord;
+    }
+
+    public String getAnalyzerName() {
+        return analyzerName;
     }
 
     public Analyzer getAnalyzer() {
@@ -44,4 +61,8 @@ public class Configuration {
         return expand;
     }
 
+    public boolean isMultiWord() {
+        return multiWord;
+    }
+
 }
@@ -13,17 +13,30 @@
  */
 package com.ginobefunny.elasticsearch.plugins.synonym.service;
 
+import com.ginobefunny.elasticsearch.plugins.synonym.jfr.SynonymEvents;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.FlagsAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.ArrayUtil;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Created by ginozhang on 2017/1/12.
+ *
+ * Emits every token followed by its synonyms. A rule input may span several tokens: when a token
+ * might start one, the following tokens are read ahead and the longest run that is a rule input
+ * wins. As in Lucene's SynonymGraphFilter, the matched tokens and each synonym are output as
+ * parallel paths from the position of the first matched token to the position after the last one,
+ * every path with its own intermediate positions and PositionLengthAttribute set on the tokens that
+ * span to the end, so multi-word synonyms keep their word order. The indexer ignores position
+ * lengths: index-time analyzers need flatten_graph after this filter.
  */
 public class DynamicSynonymTokenFilter extends TokenFilter {
 
@@ -35,62 +48,400 @@ public class DynamicSynonymTokenFilter extends TokenFilter {
 
     private final OffsetAttribute offset = addAttribute(OffsetAttribute.class);
 
-    private String currentInput = null;
+    private final FlagsAttribute flagsAtt = addAttribute(FlagsAttribute.class);
+
+    private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+
+    private final PositionLengthAttribute posLenAtt = addAttribute(PositionLengthAttribute.class);
+
+    private final SynonymRuleManager synonymRuleManager;
+
+    // skip the lookup of tokens the IK dictionary checked and found not to be synonym terms
+    private final boolean trustIkFlags;
+
+    // trustIkFlags, while the IK dictionary holds the terms of synonymMap; taken in reset()
+    private boolean ikFlagsCurrent = false;
+
+    // rules snapshot taken in reset()
+    private CompiledSynonymMap synonymMap = CompiledSynonymMap.EMPTY;
+
+    private final CompiledSynonymMap.Cursor cursor = new CompiledSynonymMap.Cursor();
+
+    // tokens read ahead of the current one while matching a multi-word input, oldest first
+    private State[] aheadStates = new State[0];
+
+    private char[][] aheadTerms = new char[0][];
+
+    private int[] aheadLengths = new int[0];
+
+    private int[] aheadPosIncs = new int[0];
+
+    private int[] aheadEndOffsets = new int[0];
+
+    private int aheadCount = 0;
+
+    private boolean inputDone = false;
+
+    // the current token and the tokens read ahead joined by CompiledSynonymMap.WORD_SEPARATOR,
+    // phraseEnds[i] is the length of the first i + 1 words
+    private char[] phrase = new char[16];
+
+    private int[] phraseEnds = new int[1];
+
+    // synonyms of the current match and their number of words
+    private int[] synonymIds = new int[8];
+
+    private int[] synonymWords = new int[8];
+
+    // outputs of the current match still to emit after the first matched token: the index of a
+    // matched token in matchStates, or -1 for the synonym word termChars[outStart .. outStart + outLength)
+    private int[] outOriginal = new int[8];
+
+    private int[] outStart = new int[8];
+
+    private int[] outLength = new int[8];
 
-    private int startOffset = 0;
+    private int[] outPosInc = new int[8];
 
-    private int endOffset = 0;
+    private int[] outPosLen = new int[8];
 
-    private List<String> currentWords = null;
+    private int outCount = 0;
 
-    private int currentIndex = 0;
+    private int outIndex = 0;
 
-    public DynamicSynonymTokenFilter(TokenStream input) {
+    private State[] matchStates = new State[0];
+
+    private int matchStartOffset = 0;
+
+    private int matchEndOffset = 0;
+
+    // totals of the current stream, added to the manager's stats in end()
+    private long tokenCount = 0;
+
+    private long lookupCount = 0;
+
+    private long matchCount = 0;
+
+    private long synonymCount = 0;
+
+    // JFR bookkeeping, only maintained while the filter event is recorded
+    private boolean recording = false;
+
+    private long lookupNanos = 0;
+
+    public DynamicSynonymTokenFilter(TokenStream input, SynonymRuleManager synonymRuleManager) {
+        this(input, synonymRuleManager, false);
+    }
+
+    public DynamicSynonymTokenFilter(TokenStream input, SynonymRuleManager synonymRuleManager, boolean trustIkFlags) {
         super(input);
+        this.synonymRuleManager = synonymRuleManager;
+        this.trustIkFlags = trustIkFlags;
     }
 
     @Override
     public boolean incrementToken() throws IOException {
-        if (currentInput == null) {
-            if (!input.incrementToken()) {
-                return false;
+        if (outIndex < outCount) {
+            // emit the next output of the current match
+            emitOutput(outIndex++);
+            return true;
+        }
+
+        if (!nextToken()) {
+            return false;
+        }
+
+        long start = recording ? System.nanoTime() : 0;
+        char[] buffer = termAtt.buffer();
+        int length = termAtt.length();
+        // the IK trie walk that produced the token may already have found it is no synonym term
+        boolean ikChecked = ikFlagsCurrent
+                && (flagsAtt.getFlags() & (IkFlags.SYNONYM_CHECKED | IkFlags.SYNONYM_TERM)) == IkFlags.SYNONYM_CHECKED;
+        int termId = -1;
+        int words = 1;
+        if (synonymMap.mightStartPhrase(buffer, 0, length)) {
+            State current = captureState();
+            int ahead = readAhead(synonymMap.maxInputWords() - 1);
+            restoreState(current);
+            buildPhrase(termAtt.buffer(), termAtt.length(), ahead);
+            // longest match first
+            for (int n = ahead + 1; n > 1 && termId < 0; n--) {
+                termId = lookup(phrase, phraseEnds[n - 1]);
+                words = n;
             }
+        }
+        // most tokens have no synonyms and stop at the prefilter
+        if (termId < 0 && !ikChecked) {
+            termId = lookup(termAtt.buffer(), termAtt.length());
+            words = 1;
+        }
+        tokenCount++;
+        if (termId >= 0 && planOutput(termId, words)) {
+            matchCount++;
+        }
+        if (recording) {
+            lookupNanos += System.nanoTime() - start;
+        }
+        // return the current token, its synonyms follow on the next calls
+        return true;
+    }
 
-            currentInput = new String(termAtt.buffer(), 0, termAtt.length());
-            startOffset = offset.startOffset();
-            endOffset = offset.endOffset();
-            currentWords = SynonymRuleManager.getSingleton().getSynonymWords(currentInput);
-            if (currentWords == null || currentWords.isEmpty()) {
-                currentInput = null;
+    /**
+     * @return the id of the term if it has synonyms, otherwise -1
+     */
+    private int lookup(char[] buffer, int length) {
+        if (!synonymMap.mightHaveSynonyms(buffer, 0, length)) {
+            return -1;
+        }
+        lookupCount++;
+        int termId = synonymMap.lookup(buffer, 0, length);
+        return termId >= 0 && synonymMap.hasSynonyms(termId) ? termId : -1;
+    }
+
+    /**
+     * Makes the next token current: the oldest token read ahead, or the next input token.
+     */
+    private boolean nextToken() throws IOException {
+        if (aheadCount > 0) {
+            restoreState(aheadStates[0]);
+            shiftAhead(1);
+            return true;
+        }
+        if (inputDone || !input.incrementToken()) {
+            inputDone = true;
+            return false;
+        }
+        return true;
+    }
 
-                // 返回当前的token
-                return true;
+    /**
+     * Reads ahead until there are max tokens directly following the current one, or a token with a
+     * position gap, or the end of the input. Changes the attributes, the caller restores them.
+     *
+     * @return number of tokens read ahead that can continue a phrase started by the current token
+     */
+    private int readAhead(int max) throws IOException {
+        int available = 0;
+        while (available < max) {
+            if (available == aheadCount) {
+                if (inputDone || !input.incrementToken()) {
+                    inputDone = true;
+                    break;
+                }
+                addAhead();
             }
-            currentIndex = 0;
+            if (aheadPosIncs[available] != 1) {
+                break;
+            }
+            available++;
+        }
+        return available;
+    }
+
+    private void addAhead() {
+        if (aheadCount == aheadStates.length) {
+            int size = aheadCount + 4;
+            aheadStates = Arrays.copyOf(aheadStates, size);
+            aheadTerms = Arrays.copyOf(aheadTerms, size);
+            aheadLengths = Arrays.copyOf(aheadLengths, size);
+            aheadPosIncs = Arrays.copyOf(aheadPosIncs, size);
+            aheadEndOffsets = Arrays.copyOf(aheadEndOffsets, size);
+        }
+        int length = termAtt.length();
+        char[] term = aheadTerms[aheadCount];
+        if (term == null || term.length < length) {
+            term = aheadTerms[aheadCount] = new char[ArrayUtil.oversize(length, Character.BYTES)];
         }
+        System.arraycopy(termAtt.buffer(), 0, term, 0, length);
+        aheadStates[aheadCount] = captureState();
+        aheadLengths[aheadCount] = length;
+        aheadPosIncs[aheadCount] = posIncAtt.getPositionIncrement();
+        aheadEndOffsets[aheadCount] = offset.endOffset();
+        aheadCount++;
+    }
+
+    // drops the oldest count tokens read ahead, keeping their term buffers for reuse
+    private void shiftAhead(int count) {
+        for (int i = 0; i < aheadCount - count; i++) {
+            char[] term = aheadTerms[i];
+            aheadTerms[i] = aheadTerms[i + count];
+            aheadTerms[i + count] = term;
+            aheadStates[i] = aheadStates[i + count];
+            aheadLengths[i] = aheadLengths[i + count];
+            aheadPosIncs[i] = aheadPosIncs[i + count];
+            aheadEndOffsets[i] = aheadEndOffsets[i + count];
+        }
+        for (int i = Math.max(0, aheadCount - count); i < aheadCount; i++) {
+            aheadStates[i] = null;
+        }
+        aheadCount = Math.max(0, aheadCount - count);
+    }
 
-        if (currentIndex >= currentWords.size()) {
-            currentInput = null;
-            return incrementToken();
+    private void buildPhrase(char[] first, int firstLength, int ahead) {
+        int length = firstLength;
+        for (int i = 0; i < ahead; i++) {
+            length += 1 + aheadLengths[i];
+        }
+        phrase = ArrayUtil.grow(phrase, length);
+        phraseEnds = ArrayUtil.grow(phraseEnds, ahead + 1);
+        System.arraycopy(first, 0, phrase, 0, firstLength);
+        int end = phraseEnds[0] = firstLength;
+        for (int i = 0; i < ahead; i++) {
+            phrase[end++] = CompiledSynonymMap.WORD_SEPARATOR;
+            System.arraycopy(aheadTerms[i], 0, phrase, end, aheadLengths[i]);
+            end += aheadLengths[i];
+            phraseEnds[i + 1] = end;
+        }
+    }
+
+    /**
+     * Lays out the graph of a match of the current token and the next words - 1 tokens read ahead.
+     * Positions are numbered from the current token's: the matched tokens keep 0 .. words - 1, each
+     * multi-word synonym gets its own intermediate positions after them, and all paths end at the
+     * same position. The current token is output by this call, the rest is queued in start order.
+     *
+     * @return false if the term has no synonyms other than itself
+     */
+    private boolean planOutput(int termId, int words) {
+        int count = 0;
+        int end = words;
+        cursor.start(synonymMap, termId);
+        for (int id = cursor.next(); id >= 0; id = cursor.next()) {
+            if (id == termId) {
+                // the matched tokens are kept
+                continue;
+            }
+            synonymIds = ArrayUtil.grow(synonymIds, count + 1);
+            synonymWords = ArrayUtil.grow(synonymWords, count + 1);
+            synonymIds[count] = id;
+            synonymWords[count] = wordCount(id);
+            end += synonymWords[count] - 1;
+            count++;
+        }
+        if (count == 0) {
+            return false;
         }
 
-        String newWords = currentWords.get(currentIndex);
-        currentIndex++;
-        clearAttributes();
-        char[] output = newWords.toCharArray();
-        termAtt.copyBuffer(output, 0, output.length);
-        typeAtt.setType(TYPE_SYNONYM);
-        offset.setOffset(startOffset, endOffset);
+        matchStartOffset = offset.startOffset();
+        matchEndOffset = words == 1 ? offset.endOffset() : aheadEndOffsets[words - 2];
+        posLenAtt.setPositionLength(words == 1 ? end : 1);
+        outCount = outIndex = 0;
+        char[] chars = synonymMap.termChars();
+        // first word of every synonym, from position 0
+        int base = words;
+        for (int i = 0; i < count; i++) {
+            int start = synonymMap.termOffset(synonymIds[i]);
+            int w = synonymWords[i];
+            addOutput(-1, start, wordLength(chars, start, start + synonymMap.termLength(synonymIds[i])), 0,
+                    w == 1 ? end : base);
+            base += w - 1;
+        }
+        // the other matched tokens
+        matchStates = words - 1 > matchStates.length ? new State[words - 1] : matchStates;
+        int last = 0;
+        for (int j = 1; j < words; j++) {
+            matchStates[j - 1] = aheadStates[j - 1];
+            addOutput(j - 1, 0, 0, 1, j == words - 1 ? end - j : 1);
+            last = j;
+        }
+        shiftAhead(words - 1);
+        // the other words of every multi-word synonym
+        base = words;
+        for (int i = 0; i < count; i++) {
+            int w = synonymWords[i];
+            int start = synonymMap.termOffset(synonymIds[i]);
+            int termEnd = start + synonymMap.termLength(synonymIds[i]);
+            for (int k = 1; k < w; k++) {
+                start += wordLength(chars, start, termEnd) + 1;
+                int from = base + k - 1;
+                addOutput(-1, start, wordLength(chars, start, termEnd), from - last, k == w - 1 ? end - from : 1);
+                last = from;
+            }
+            base += w - 1;
+        }
         return true;
     }
 
+    private void addOutput(int original, int start, int length, int posInc, int posLen) {
+        if (outCount == outOriginal.length) {
+            int size = ArrayUtil.oversize(outCount + 1, Integer.BYTES);
+            outOriginal = Arrays.copyOf(outOriginal, size);
+            outStart = Arrays.copyOf(outStart, size);
+            outLength = Arrays.copyOf(outLength, size);
+            outPosInc = Arrays.copyOf(outPosInc, size);
+            outPosLen = Arrays.copyOf(outPosLen, size);
+        }
+        outOriginal[outCount] = original;
+        outStart[outCount] = start;
+        outLength[outCount] = length;
+        outPosInc[outCount] = posInc;
+        outPosLen[outCount] = posLen;
+        outCount++;
+    }
+
+    private void emitOutput(int i) {
+        if (outOriginal[i] >= 0) {
+            restoreState(matchStates[outOriginal[i]]);
+            matchStates[outOriginal[i]] = null;
+        } else {
+            clearAttributes();
+            termAtt.copyBuffer(synonymMap.termChars(), outStart[i], outLength[i]);
+            typeAtt.setType(TYPE_SYNONYM);
+            offset.setOffset(matchStartOffset, matchEndOffset);
+            synonymCount++;
+        }
+        posIncAtt.setPositionIncrement(outPosInc[i]);
+        posLenAtt.setPositionLength(outPosLen[i]);
+    }
+
+    private int wordCount(int termId) {
+        char[] chars = synonymMap.termChars();
+        int start = synonymMap.termOffset(termId);
+        int end = start + synonymMap.termLength(termId);
+        int words = 1;
+        for (int i = start; i < end; i++) {
+            if (chars[i] == CompiledSynonymMap.WORD_SEPARATOR) {
+                words++;
+            }
+        }
+        return words;
+    }
+
+    // length of the word starting at start, up to the next separator or the end of the term
+    private static int wordLength(char[] chars, int start, int termEnd) {
+        int i = start;
+        while (i < termEnd && chars[i] != CompiledSynonymMap.WORD_SEPARATOR) {
+            i++;
+        }
+        return i - start;
+    }
+
     @Override
     public void reset() throws IOException {
         super.reset();
-        currentInput = null;
-        startOffset = 0;
-        endOffset = 0;
-        currentWords = null;
-        currentIndex = 0;
+        // one snapshot for the whole token stream, reloads only affect streams reset afterwards
+        synonymMap = synonymRuleManager.getSynonymMap();
+        ikFlagsCurrent = trustIkFlags && synonymRuleManager.isExportedToIk(synonymMap);
+        cursor.clear();
+        shiftAhead(aheadCount);
+        inputDone = false;
+        Arrays.fill(matchStates, null);
+        outCount = outIndex = 0;
+        tokenCount = 0;
+        lookupCount = 0;
+        matchCount = 0;
+        synonymCount = 0;
+        recording = SynonymEvents.filterEnabled();
+        lookupNanos = 0;
+    }
+
+    @Override
+    public void end() throws IOException {
+        super.end();
+        synonymRuleManager.getStats().addFilter(tokenCount, lookupCount, matchCount, synonymCount);
+        if (recording) {
+            SynonymEvents.filter(tokenCount, synonymCount, lookupNanos);
+            recording = false;
+        }
     }
 }
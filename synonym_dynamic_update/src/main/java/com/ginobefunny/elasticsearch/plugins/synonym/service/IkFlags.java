@@ -0,0 +1,38 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.service;
+
+/**
+ * Bits the IK tokenizer sets in the FlagsAttribute of CN_WORD tokens when its dictionary includes the
+ * exported synonym terms (ext_synonym_dict), see the README of the IK analyzer.
+ * <p>
+ * The two plugins are loaded by separate class loaders and cannot share a class, so the values are
+ * written down twice: here and as the SYNONYM_*_FLAG constants of IKTokenizer. The IkFlagsTests of
+ * both plugins pin the same values; a change must be made on both sides.
+ */
+public final class IkFlags {
+
+    /**
+     * The IK dictionary was checked for this word.
+     */
+    public static final int SYNONYM_CHECKED = 1 << 16;
+
+    /**
+     * The word is a term of the synonym rules; only set together with {@link #SYNONYM_CHECKED}.
+     */
+    public static final int SYNONYM_TERM = 1 << 17;
+
+    private IkFlags() {
+    }
+}
@@ -13,7 +13,6 @@
  */
 package com.ginobefunny.elasticsearch.plugins.synonym.service;
 
-import com.ginobefunny.elasticsearch.plugins.synonym.service.db.Monitor;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
@@ -27,28 +26,45 @@ import java.util.*;
 /**
  * Created by ginozhang on 2017/1/12.
  * SEE: org.apache.lucene.analysis.synonym.SolrSynonymParser
+ *
+ * Parses synonym rules into a {@link CompiledSynonymMap}. Only lives for the duration of a load
+ * and is only used by the loading thread; readers never see it.
  */
 public class SimpleSynonymMap {
 
-    private static final Logger LOGGER = ESLoggerFactory.getLogger(Monitor.class.getName());
+    private static final Logger LOGGER = ESLoggerFactory.getLogger(SimpleSynonymMap.class.getName());
 
-    private Map<String, List<String>> ruleMap = new HashMap<String, List<String>>();
+    private final CompiledSynonymMap.Builder builder;
 
     private final Configuration configuration;
 
     public SimpleSynonymMap(Configuration cfg) {
         this.configuration = cfg;
+        this.builder = new CompiledSynonymMap.Builder();
     }
 
     public void addRule(String rule) {
+        SynonymRule parsed = parse(rule);
+        if (parsed != null) {
+            parsed.addTo(builder);
+        }
+    }
+
+    /**
+     * Parses and analyzes one rule line without adding it.
+     *
+     * @return the rule, or null if it is invalid
+     */
+    SynonymRule parse(String rule) {
         try {
-            addInternal(rule);
+            return parseInternal(rule);
         } catch (Throwable t) {
             LOGGER.error("Add synonym rule failed. rule: " + rule, t);
+            return null;
         }
     }
 
-    private void addInternal(String line) throws IOException {
+    private SynonymRule parseInternal(String line) throws IOException {
         String sides[] = split(line, "=>");
         if (sides.length > 1) { // explicit mapping
             if (sides.length != 2) {
@@ -58,49 +74,76 @@ public class SimpleSynonymMap {
             List<String> inputList = new ArrayList<>();
             String inputStrings[] = split(sides[0], ",");
             for (int i = 0; i < inputStrings.length; i++) {
-                inputList.addAll(analyze(process(inputStrings[i])));
+                addAnalyzed(inputList, inputStrings[i]);
             }
 
             List<String> outputList = new ArrayList<>();
             String outputStrings[] = split(sides[1], ",");
             for (int i = 0; i < outputStrings.length; i++) {
-                outputList.addAll(analyze(process(outputStrings[i])));
+                addAnalyzed(outputList, outputStrings[i]);
             }
 
-            // these mappings are explicit and never preserve original
+            // these mappings are explicit and never preserve original, kept as directed edges
+            String[] edges = new String[2 * inputList.size() * outputList.size()];
+            int i = 0;
             for (String input : inputList) {
                 for (String output : outputList) {
-                    addToRuleMap(input, output);
+                    edges[i++] = input;
+                    edges[i++] = output;
                 }
             }
+            return new SynonymRule(SynonymRule.NO_GROUPS, edges);
         } else {
             List<String> inputList = new ArrayList<>();
             String inputStrings[] = split(line, ",");
             for (int i = 0; i < inputStrings.length; i++) {
-                inputList.addAll(analyze(process(inputStrings[i])));
+                addAnalyzed(inputList, inputStrings[i]);
             }
 
             if (configuration.isExpand()) {
-                // all pairs
-                for (String input : inputList) {
-                    for (String output : inputList) {
-                        addToRuleMap(input, output);
-                    }
-                }
+                // every input is a synonym of every input: stored once as a group instead of all pairs
+                return new SynonymRule(new String[][]{inputList.toArray(new String[0])}, SynonymRule.NO_EDGES);
             } else {
                 // all subsequent inputs map to first one; we also add inputs[0] here
                 // so that we "effectively" (because we remove the original input and
                 // add back a synonym with the same text) change that token's type to
                 // SYNONYM (matching legacy behavior):
+                String[] edges = new String[2 * inputList.size()];
                 for (int i = 0; i < inputList.size(); i++) {
-                    addToRuleMap(inputList.get(i), inputList.get(0));
+                    edges[2 * i] = inputList.get(i);
+                    edges[2 * i + 1] = inputList.get(0);
                 }
+                return new SynonymRule(SynonymRule.NO_GROUPS, edges);
+            }
+        }
+    }
+
+    /**
+     * Analyzes one comma separated entry of a rule. With multi_word its tokens are joined by
+     * {@link CompiledSynonymMap#WORD_SEPARATOR} into one term, otherwise every distinct token is a
+     * term of its own, as in the rules before multi-word matching.
+     */
+    private void addAnalyzed(List<String> terms, String text) throws IOException {
+        List<String> tokens = analyze(process(text));
+        if (tokens.isEmpty()) {
+            return;
+        }
+        if (!configuration.isMultiWord()) {
+            terms.addAll(new LinkedHashSet<>(tokens));
+            return;
+        }
+        StringBuilder term = new StringBuilder();
+        for (String token : tokens) {
+            if (term.length() > 0) {
+                term.append(CompiledSynonymMap.WORD_SEPARATOR);
             }
+            term.append(token);
         }
+        terms.add(term.toString());
     }
 
-    private Set<String> analyze(String text) throws IOException {
-        Set<String> result = new HashSet<String>();
+    private List<String> analyze(String text) throws IOException {
+        List<String> result = new ArrayList<>();
         Analyzer analyzer = configuration.getAnalyzer();
         try (TokenStream ts = analyzer.tokenStream("", text)) {
             CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
@@ -115,7 +158,7 @@ public class SimpleSynonymMap {
                     throw new IllegalArgumentException("term: " + text + " analyzed to a token with posinc != 1");
                 }
 
-                result.add(new String(termAtt.buffer(), 0, termAtt.length()));
+                result.add(new String(termAtt.buffer(), 0, length));
             }
 
             ts.end();
@@ -123,27 +166,15 @@ public class SimpleSynonymMap {
         }
     }
 
-    private void addToRuleMap(String inputString, String outputString) {
-        List<String> outputs = ruleMap.get(inputString);
-        if (outputs == null) {
-            outputs = new ArrayList<String>();
-            ruleMap.put(inputString, outputs);
-        }
-
-        if (!outputs.contains(outputString)) {
-            outputs.add(outputString);
-        }
-    }
-
     private static String[] split(String s, String separator) {
         List<String> list = new ArrayList<String>(2);
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = new StringBuilder(s.length());
         int pos = 0, end = s.length();
         while (pos < end) {
             if (s.startsWith(separator, pos)) {
                 if (sb.length() > 0) {
                     list.add(sb.toString());
-                    sb = new StringBuilder();
+                    sb.setLength(0);
                 }
                 pos += separator.length();
                 continue;
@@ -184,12 +215,8 @@ public class SimpleSynonymMap {
         return inputStr;
     }
 
-    public List<String> getSynonymWords(String input) {
-        if (!ruleMap.containsKey(input)) {
-            return null;
-        }
-
-        return ruleMap.get(input);
+    public CompiledSynonymMap compile() {
+        return builder.build();
     }
 
 }
@@ -0,0 +1,56 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.service;
+
+import java.util.Arrays;
+
+/**
+ * What one parsed rule line contributes to the synonym map: its groups and its directed edges,
+ * as analyzed terms. Managers keep one per DB row so that an edited or deleted row can be taken
+ * out of the map again without parsing the other rows.
+ */
+final class SynonymRule {
+
+    static final String[][] NO_GROUPS = new String[0][];
+
+    static final String[] NO_EDGES = new String[0];
+
+    // members of each equivalence group
+    private final String[][] groups;
+
+    // (input, output) pairs, flattened
+    private final String[] edges;
+
+    SynonymRule(String[][] groups, String[] edges) {
+        this.groups = groups;
+        this.edges = edges;
+    }
+
+    String[][] getGroups() {
+        return groups;
+    }
+
+    String[] getEdges() {
+        return edges;
+    }
+
+    void addTo(CompiledSynonymMap.Builder builder) {
+        for (String[] group : groups) {
+            builder.addGroup(Arrays.asList(group));
+        }
+        for (int i = 0; i < edges.length; i += 2) {
+            builder.add(edges[i], edges[i + 1]);
+        }
+    }
+}
@@ -14,44 +14,133 @@
 package com.ginobefunny.elasticsearch.plugins.synonym.service;
 
 import com.ginobefunny.elasticsearch.plugins.synonym.DynamicSynonymPlugin;
-import com.ginobefunny.elasticsearch.plugins.synonym.service.db.JDBCUtils;
-import com.ginobefunny.elasticsearch.plugins.synonym.service.db.Monitor;
-import com.ginobefunny.elasticsearch.plugins.synonym.service.db.QueryDbDto;
-import com.mysql.cj.core.util.StringUtils;
+import com.ginobefunny.elasticsearch.plugins.synonym.jfr.SynonymEvents;
+import com.ginobefunny.elasticsearch.plugins.synonym.service.db.ConnectionPool;
+import com.ginobefunny.elasticsearch.plugins.synonym.service.db.RuleSync;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.common.io.PathUtils;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.logging.ESLoggerFactory;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.shard.IndexEventListener;
+import org.elasticsearch.indices.cluster.IndicesClusterStateService.AllocatedIndices.IndexRemovalReason;
 
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.sql.Timestamp;
-import java.util.Date;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * Created by ginozhang on 2017/1/12.
+ *
+ * Loads and polls the rules of one synonym source with one configuration. Managers are keyed by
+ * (table, field, ignore_case, expand, tokenizer, multi_word): filters of indices with identical settings share
+ * one manager, filters with different settings get their own rules. Each index, by UUID, holds one reference
+ * to every manager its filter factories acquired, however often its analysis is built, and releases them
+ * when it is removed from the node; a manager stops polling when its last reference is gone. Filters built outside an index, e.g.
+ * by the _analyze API, use the manager of an index with the same settings if there is one, and a
+ * temporary manager that loads the rules once and never polls otherwise.
  */
 public class SynonymRuleManager {
 
-    private static final Logger LOGGER = ESLoggerFactory.getLogger(Monitor.class.getName());
+    private static final Logger LOGGER = ESLoggerFactory.getLogger(SynonymRuleManager.class.getName());
+
+    private static final ScheduledExecutorService pool = Executors.newScheduledThreadPool(1);
+
+    // rules below this count are parsed on the loading thread
+    static final int PARALLEL_PARSE_MIN_RULES = 10000;
+
+    private static final int PARSE_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    // shared by all managers, parses the chunks of large loads
+    private static final ExecutorService parsePool = Executors.newFixedThreadPool(PARSE_THREADS, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "dynamic-synonym-parser-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static final Map<Key, SynonymRuleManager> managers = new HashMap<>();
+
+    // managers acquired for each index, by index UUID: the analysis of an index may be built more than once,
+    // e.g. to verify its metadata, and those copies are never removed on their own
+    private static final Map<String, Set<SynonymRuleManager>> owners = new HashMap<>();
+
+    private static Properties jdbcProps;
+
+    // shared by all managers, created on the first sync
+    private static ConnectionPool connectionPool;
 
-    private static ScheduledExecutorService pool = Executors.newScheduledThreadPool(1);
+    // where compiled rules are saved for the next start, null if the node has no data path
+    private static volatile Path snapshotDir;
 
-    private static SynonymRuleManager singleton;
+    private final Key key;
 
-    private Configuration configuration;
+    private final Configuration configuration;
 
-    private SimpleSynonymMap synonymMap;
+    // the published rules: immutable, built off to the side by a load and replaced with a single write
+    private volatile CompiledSynonymMap synonymMap = CompiledSynonymMap.EMPTY;
 
-    private Properties jdbcProps;
+    // rules of every DB row by id, guarded by this; only touched by loads
+    private Map<Long, SynonymRule> rules = new HashMap<>();
 
-    private Date synonymUpdateDate = null;
+    // position in the table the rules are synced up to, guarded by this
+    private RuleSync.Watermark watermark = RuleSync.Watermark.INITIAL;
+
+    // size of rules, for the stats
+    private volatile int ruleRows = 0;
+
+    private final SynonymStats stats = new SynonymStats();
+
+    private RuleSync ruleSync;
+
+    // guarded by SynonymRuleManager.class
+    private int refCount = 0;
+
+    // built for a filter outside an index: not shared, loads once, never polls, writes no files
+    private final boolean temporary;
+
+    // guarded by this
+    private boolean loaded = false;
+
+    private boolean closed = false;
+
+    private ScheduledFuture<?> incrementTask;
+
+    // the map whose terms were last exported for the IK analyzer and when, written under this
+    private volatile CompiledSynonymMap exportedMap;
+
+    private volatile long exportedAt;
 
     private final static String JDBC_FILE_NAME = "jdbc.properties";
     // jdbc.properties配置信息
@@ -59,99 +148,598 @@ public class SynonymRuleManager {
     private final static String SYNONYM_TABLE = "synonym.table";
     private final static String SYNONYM_FIELD_NAME = "synonym.field.name";
     private final static String REFRESH_TIME_INTERVAL = "refresh.time.interval";
+    private final static String SNAPSHOT_MAX_AGE = "snapshot.max.age";
+    private final static String IK_TERMS_EXPORT = "ik.terms.export";
 
-    public static synchronized SynonymRuleManager initial(Configuration cfg) {
-        if (singleton == null) {
-            synchronized (SynonymRuleManager.class) {
-                if (singleton == null) {
-                    singleton = new SynonymRuleManager();
-                    //时间戳初始化
-                    singleton.synonymUpdateDate = new Date();
-                    singleton.configuration = cfg;
-                    singleton.jdbcProps = new Properties();
-                    singleton.loadJDBCProperties();
-                    singleton.synonymMap = new SimpleSynonymMap(cfg);
-
-                    if (Boolean.valueOf(singleton.jdbcProps.getProperty(ENABLE_SYNONYM))) {
-                        int timeInterval = Integer.valueOf(singleton.jdbcProps.getProperty(
-                                REFRESH_TIME_INTERVAL, "1800"));
-                        // 全量加载自定义同义词
-                        singleton.reloadSynonymRule();
-                        pool.scheduleAtFixedRate(() -> singleton.incrementLoadSynonymRule(),
-                                timeInterval, timeInterval, TimeUnit.SECONDS);
-                    }
+    // under the snapshot dir, for ext_synonym_dict of the IK analyzer
+    private final static String IK_TERMS_DIR = "ik_terms";
+
+    // time the IK analyzer is given to read an exported terms file (its watcher waits 500ms for quiet)
+    private static final long IK_RELOAD_MILLIS = 5000;
+
+    private SynonymRuleManager(Key key, Configuration configuration, boolean temporary) {
+        this.key = key;
+        this.configuration = configuration;
+        this.temporary = temporary;
+    }
+
+    /**
+     * Only for tests: a temporary manager serving fixed rules, it never connects to the DB.
+     */
+    static SynonymRuleManager forTests(Configuration cfg, CompiledSynonymMap map) {
+        SynonymRuleManager manager = new SynonymRuleManager(new Key(null, null, cfg.isIgnoreCase(), cfg.isExpand(),
+                cfg.getAnalyzerName(), cfg.isMultiWord()), cfg, true);
+        manager.synonymMap = map;
+        manager.loaded = true;
+        return manager;
+    }
+
+    /**
+     * Only for tests: publishes new rules the way a reload does.
+     */
+    void publishForTests(CompiledSynonymMap map) {
+        this.synonymMap = map;
+    }
+
+    /**
+     * Called by the plugin on node start, before any index is created.
+     */
+    public static void setSnapshotDir(Path dir) {
+        snapshotDir = dir;
+        synchronized (SynonymRuleManager.class) {
+            if (jdbcProps == null) {
+                jdbcProps = loadJDBCProperties();
+            }
+        }
+        if (Boolean.valueOf(jdbcProps.getProperty(IK_TERMS_EXPORT))) {
+            // the IK analyzer only watches directories that exist when its dictionary is loaded
+            Path termsDir = dir.resolve(IK_TERMS_DIR);
+            try {
+                Files.createDirectories(termsDir);
+                LOGGER.info("synonym terms are exported to {}, add it to ext_synonym_dict of the IK analyzer", termsDir);
+            } catch (IOException e) {
+                LOGGER.warn("create " + termsDir + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the manager for a filter, creating and loading it if no index uses the same settings yet.
+     *
+     * @param owner the settings of the index the filter belongs to, released by {@link #release(String)}
+     * @param table the synonym table, null for the one in jdbc.properties
+     * @param field the rule column, null for the one in jdbc.properties
+     */
+    public static SynonymRuleManager acquire(IndexSettings owner, String table, String field, Configuration cfg) {
+        SynonymRuleManager manager;
+        synchronized (SynonymRuleManager.class) {
+            if (jdbcProps == null) {
+                jdbcProps = loadJDBCProperties();
+            }
+            Key key = new Key(table == null ? jdbcProps.getProperty(SYNONYM_TABLE) : table,
+                    field == null ? jdbcProps.getProperty(SYNONYM_FIELD_NAME) : field,
+                    cfg.isIgnoreCase(), cfg.isExpand(), cfg.getAnalyzerName(), cfg.isMultiWord());
+            manager = managers.get(key);
+            if (IndexMetaData.INDEX_UUID_NA_VALUE.equals(owner.getUUID())) {
+                // not bound to an index and never released: borrow the rules of an index, or load them once
+                if (manager == null) {
+                    manager = new SynonymRuleManager(key, cfg, true);
+                }
+            } else {
+                if (manager == null) {
+                    manager = new SynonymRuleManager(key, cfg, false);
+                    managers.put(key, manager);
+                    LOGGER.info("created synonym rule manager {}", key);
+                }
+                if (owners.computeIfAbsent(owner.getUUID(), k -> new HashSet<>()).add(manager)) {
+                    manager.refCount++;
+                }
+            }
+        }
+        // outside of the class lock so that loading one source does not block indices using another
+        manager.ensureLoaded();
+        return manager;
+    }
+
+    /**
+     * Releases the managers acquired for an index; managers nobody uses any more stop polling.
+     * Releasing an index again does nothing.
+     */
+    public static void release(String indexUUID) {
+        List<SynonymRuleManager> released = new ArrayList<>();
+        synchronized (SynonymRuleManager.class) {
+            Set<SynonymRuleManager> acquired = owners.remove(indexUUID);
+            if (acquired == null) {
+                return;
+            }
+            for (SynonymRuleManager manager : acquired) {
+                if (--manager.refCount == 0) {
+                    managers.remove(manager.key);
+                    released.add(manager);
                 }
             }
         }
+        for (SynonymRuleManager manager : released) {
+            manager.close();
+            LOGGER.info("released synonym rule manager {}", manager.key);
+        }
+    }
+
+    private synchronized void ensureLoaded() {
+        if (loaded || closed) {
+            return;
+        }
+        loaded = true;
+        if (Boolean.valueOf(jdbcProps.getProperty(ENABLE_SYNONYM))) {
+            int timeInterval = Integer.valueOf(jdbcProps.getProperty(REFRESH_TIME_INTERVAL, "1800"));
+            SynonymSnapshot snapshot = snapshotFile() == null ? null : SynonymSnapshot.read(snapshotFile(), key.toString());
+            if (snapshot != null) {
+                // start with the rules of the last run and catch up in the background, without waiting for the DB
+                synonymMap = snapshot.getSynonymMap();
+                rules = snapshot.getRules();
+                ruleRows = rules.size();
+                watermark = snapshot.getWatermark();
+                long maxAge = TimeUnit.SECONDS.toMillis(Long.valueOf(jdbcProps.getProperty(SNAPSHOT_MAX_AGE, "86400")));
+                boolean stale = System.currentTimeMillis() - snapshot.getLastModified() > maxAge;
+                LOGGER.info("loaded synonym snapshot of {}: {} terms, {} rules, synced up to {}{}", key,
+                        synonymMap.termCount(), synonymMap.ruleCount(), watermark, stale ? ", stale" : "");
+                if (temporary) {
+                    return;
+                }
+                exportTerms();
+                // incremental loads do not see physically deleted rows, an old snapshot is replaced by a full load
+                pool.execute(stale ? this::reloadSynonymRule : this::incrementLoadSynonymRule);
+            } else {
+                // 全量加载自定义同义词
+                reloadSynonymRule();
+            }
+            if (!temporary) {
+                incrementTask = pool.scheduleAtFixedRate(this::incrementLoadSynonymRule,
+                        timeInterval, timeInterval, TimeUnit.SECONDS);
+            }
+        }
+    }
 
-        return singleton;
+    private synchronized void close() {
+        closed = true;
+        if (incrementTask != null) {
+            incrementTask.cancel(false);
+        }
+        Path file = termsFile();
+        if (file != null && exportedMap != null) {
+            // nobody on this node uses these rules any more, the IK analyzer drops their terms
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOGGER.warn("delete " + file + " failed", e);
+            }
+        }
     }
 
-    public static SynonymRuleManager getSingleton() {
-        if (singleton == null) {
-            throw new IllegalStateException("Please initial first.");
+    /**
+     * Stops the threads and closes the DB connections shared by all managers, called when the node stops.
+     */
+    public static synchronized void shutdown() {
+        pool.shutdownNow();
+        parsePool.shutdownNow();
+        if (connectionPool != null) {
+            connectionPool.close();
+            connectionPool = null;
         }
-        return singleton;
     }
 
-    public List<String> getSynonymWords(String inputToken) {
-        if (this.synonymMap == null) {
-            return null;
+    /**
+     * Releases the managers of an index when it is removed from the node.
+     */
+    public static final class IndexListener implements IndexEventListener {
+
+        @Override
+        public void afterIndexRemoved(Index index, IndexSettings indexSettings, IndexRemovalReason reason) {
+            // the index's filters are gone, stop loading rules nobody else uses
+            release(index.getUUID());
         }
+    }
+
+    /**
+     * @return the managers currently loaded on this node
+     */
+    public static List<SynonymRuleManager> getManagers() {
+        synchronized (SynonymRuleManager.class) {
+            return new ArrayList<>(managers.values());
+        }
+    }
 
+    public String getTable() {
+        return key.table;
+    }
+
+    public String getField() {
+        return key.field;
+    }
+
+    /**
+     * @return the table, field and parse settings the manager is keyed by
+     */
+    public String getDescription() {
+        return key.toString();
+    }
+
+    /**
+     * @return number of rule rows the current map was compiled from
+     */
+    public int getRuleRows() {
+        return ruleRows;
+    }
+
+    public SynonymStats getStats() {
+        return stats;
+    }
+
+    public List<String> getSynonymWords(String inputToken) {
         return this.synonymMap.getSynonymWords(inputToken);
     }
 
+    /**
+     * The current rules. Callers should read this once and keep using the returned snapshot, e.g. for
+     * a whole token stream, so that a concurrent reload never gives them a mix of old and new rules.
+     */
+    public CompiledSynonymMap getSynonymMap() {
+        return synonymMap;
+    }
+
     private void reloadSynonymRule() {
-        LOGGER.info("## begin reload synonym rule 扩展同义词：");
-        loadSynonymRule(null);
+        LOGGER.info("## begin reload synonym rule 扩展同义词：{}", key);
+        loadSynonymRule(true);
     }
 
     private void incrementLoadSynonymRule() {
-        LOGGER.info("## begin increment synonym rule 扩展同义词：");
-        Timestamp startTime = new Timestamp(synonymUpdateDate.getTime());
-        Timestamp endTime = new Timestamp(System.currentTimeMillis());
-        String condition = "where updatetime >= \'" + startTime + "\' and updatetime < \'" + endTime + "\'";
-        loadSynonymRule(condition);
-    }
-
-    public void loadSynonymRule(String condition) {
-        String table = jdbcProps.getProperty(SYNONYM_TABLE);
-        String field = jdbcProps.getProperty(SYNONYM_FIELD_NAME);
-        String sql = String.join(" ", "SELECT", field, "FROM", table);
-        if (!StringUtils.isNullOrEmpty(condition)) {
-            sql = String.join(" ", sql, condition);
-        }
-
-        QueryDbDto queryDbDto = new QueryDbDto();
-        queryDbDto.setUrl(jdbcProps.getProperty("url"));
-        queryDbDto.setUser(jdbcProps.getProperty("user"));
-        queryDbDto.setPassword(jdbcProps.getProperty("password"));
-        queryDbDto.setSql(sql);
-        List<String> wordList = JDBCUtils.queryWordList(queryDbDto);
-        if(Objects.isNull(wordList)|| wordList.size()==0){
-            LOGGER.info("\"数据库里的同义词为空，不用加载到词典中 ");
+        LOGGER.info("## begin increment synonym rule 扩展同义词：{}", key);
+        loadSynonymRule(false);
+    }
+
+    /**
+     * Syncs rules from the DB. Every row is tracked by id: a new row adds its synonyms, an edited row
+     * replaces them and a deleted row removes them. Loads are serialized; readers are never blocked.
+     *
+     * @param full true to read the whole table and replace all rules, false to read the rows changed
+     *             since the watermark
+     */
+    public synchronized void loadSynonymRule(boolean full) {
+        if (closed) {
+            return;
+        }
+        long start = System.nanoTime();
+        // latest text of every row read by this sync, null for deleted rows
+        Map<Long, String> changed = new LinkedHashMap<>();
+        RuleSync.Result result;
+        try {
+            result = getRuleSync().sync(full ? RuleSync.Watermark.INITIAL : watermark, rows -> {
+                for (RuleSync.Row row : rows) {
+                    changed.remove(row.getId());
+                    changed.put(row.getId(), row.getRule());
+                }
+            });
+        } catch (SQLException | RuntimeException e) {
+            stats.syncFailed();
+            LOGGER.error("sync synonym rules of " + key + " failed, keep the current rules", e);
+            return;
+        } finally {
+            SynonymEvents.sync(key.table, changed.size(), System.nanoTime() - start);
+        }
+        if (changed.isEmpty() && !full) {
+            watermark = result.getWatermark();
+            stats.syncSucceeded(false, 0, System.nanoTime() - start);
+            return;
+        }
+
+        long parseStart = System.nanoTime();
+        Map<Long, SynonymRule> parsed = parseRules(changed);
+        if (parsed == null) {
+            stats.syncFailed();
+            return;
+        }
+        CompiledSynonymMap next;
+        if (full) {
+            next = compileRules(new ArrayList<>(parsed.values()));
+            if (next == null) {
+                stats.syncFailed();
+                return;
+            }
+            rules = new HashMap<>(parsed);
+        } else {
+            // new rows only extend the map, edited and deleted rows need it rebuilt from the remaining rules
+            boolean appendOnly = true;
+            for (Map.Entry<Long, String> entry : changed.entrySet()) {
+                Long id = entry.getKey();
+                if (rules.containsKey(id)) {
+                    appendOnly = false;
+                }
+                SynonymRule rule = parsed.get(id);
+                if (rule == null) {
+                    rules.remove(id);
+                } else {
+                    rules.put(id, rule);
+                }
+            }
+            // the rules are already updated: if compiling fails the same rows are read and applied again next time
+            next = appendOnly ? compileRules(new ArrayList<>(parsed.values()))
+                    : compileRules(new ArrayList<>(rules.values()));
+            if (next == null) {
+                stats.syncFailed();
+                return;
+            }
+            if (appendOnly) {
+                next = synonymMap.merge(next);
+            }
+        }
+        this.synonymMap = next;
+        this.ruleRows = rules.size();
+        // 更新完之后推进水位
+        this.watermark = result.getWatermark();
+        stats.syncSucceeded(full, changed.size(), System.nanoTime() - start);
+        LOGGER.info("synonym map {} compiled from {} changed rows in {} ms: {} terms, {} groups, {} rules, {} bytes",
+                key, changed.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - parseStart),
+                synonymMap.termCount(), synonymMap.groupCount(), synonymMap.ruleCount(), synonymMap.ramBytesUsed());
+        if (!temporary) {
+            writeSnapshot();
+            exportTerms();
+        }
+    }
+
+    private RuleSync getRuleSync() {
+        if (ruleSync == null) {
+            synchronized (SynonymRuleManager.class) {
+                if (connectionPool == null) {
+                    connectionPool = ConnectionPool.fromProperties(jdbcProps);
+                }
+                ruleSync = new RuleSync(connectionPool, jdbcProps, key.table, key.field);
+            }
+        }
+        return ruleSync;
+    }
+
+    private Path snapshotFile() {
+        Path dir = snapshotDir;
+        if (dir == null) {
+            return null;
+        }
+        String name = (key.table + "." + key.field).replaceAll("[^A-Za-z0-9_.-]", "_");
+        return dir.resolve(name + "-" + Integer.toHexString(key.hashCode()) + ".snapshot");
+    }
+
+    private Path termsFile() {
+        Path file = snapshotFile();
+        if (file == null || !Boolean.valueOf(jdbcProps.getProperty(IK_TERMS_EXPORT))) {
+            return null;
+        }
+        String name = file.getFileName().toString();
+        return file.resolveSibling(IK_TERMS_DIR).resolve(name.substring(0, name.length() - ".snapshot".length()) + ".dic");
+    }
+
+    /**
+     * Writes every term of the rules, one per line, to a dictionary file for the IK analyzer: listed in
+     * its ext_synonym_dict, the terms are segmented as one word and tokens the IK dictionary did not
+     * mark as synonym terms can skip the lookup (see the trust_ik_flags filter setting).
+     */
+    private void exportTerms() {
+        Path file = termsFile();
+        CompiledSynonymMap map = synonymMap;
+        if (file == null || map == exportedMap) {
+            return;
+        }
+        // written next to the watched directory and moved in, so the IK analyzer never reads a partial file
+        Path tmp = file.getParent().resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (int i = 0; i < map.termCount(); i++) {
+                    // multi-word terms are matched by the filter across tokens, not as one IK word
+                    if (!isPhrase(map, i)) {
+                        writer.write(map.termChars(), map.termOffset(i), map.termLength(i));
+                        writer.write('\n');
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            exportedAt = System.currentTimeMillis();
+            exportedMap = map;
+        } catch (IOException e) {
+            LOGGER.warn("export synonym terms to " + file + " failed", e);
+        }
+    }
+
+    /**
+     * Whether the IK flags on tokens can be trusted for a map of this manager: its terms are the ones
+     * last exported and the IK analyzer has had time to read them. The IK dictionary is shared by the
+     * node and lags behind the exports, so for a newer map, a map that was never exported (export
+     * disabled or failed, temporary managers) or a fresh export the filter looks up every token.
+     */
+    public boolean isExportedToIk(CompiledSynonymMap map) {
+        return map == exportedMap && System.currentTimeMillis() - exportedAt >= IK_RELOAD_MILLIS;
+    }
+
+    private static boolean isPhrase(CompiledSynonymMap map, int termId) {
+        char[] chars = map.termChars();
+        int end = map.termOffset(termId) + map.termLength(termId);
+        for (int i = map.termOffset(termId); i < end; i++) {
+            if (chars[i] == CompiledSynonymMap.WORD_SEPARATOR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeSnapshot() {
+        Path file = snapshotFile();
+        if (file == null) {
             return;
         }
+        try {
+            SynonymSnapshot.write(file, key.toString(), watermark, synonymMap, rules);
+        } catch (IOException e) {
+            LOGGER.warn("write synonym snapshot " + file + " failed", e);
+        }
+    }
+
+    /**
+     * Parses the text of changed rows. Large loads are split into one chunk per parser thread.
+     *
+     * @return the parsed rule of every valid row, or null if parsing was interrupted
+     */
+    Map<Long, SynonymRule> parseRules(Map<Long, String> rows) {
+        List<Map.Entry<Long, String>> texts = new ArrayList<>(rows.size());
+        for (Map.Entry<Long, String> row : rows.entrySet()) {
+            if (row.getValue() != null) {
+                texts.add(row);
+            }
+        }
+        List<SynonymRule[]> chunks = inChunks(texts, chunk -> {
+            // the analyzer keeps its token stream components per thread, so parser threads do not share them
+            SimpleSynonymMap parser = new SimpleSynonymMap(configuration);
+            SynonymRule[] parsed = new SynonymRule[chunk.size()];
+            for (int i = 0; i < parsed.length; i++) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug(chunk.get(i).getValue());
+                }
+                parsed[i] = parser.parse(chunk.get(i).getValue());
+            }
+            return parsed;
+        });
+        if (chunks == null) {
+            return null;
+        }
+        Map<Long, SynonymRule> result = new HashMap<>();
+        int i = 0;
+        for (SynonymRule[] chunk : chunks) {
+            for (SynonymRule rule : chunk) {
+                Long id = texts.get(i++).getKey();
+                if (rule != null) {
+                    result.put(id, rule);
+                }
+            }
+        }
+        return result;
+    }
 
-        for (String theWord : wordList) {
-            if (theWord != null && !"".equals(theWord.trim())) {
-                LOGGER.info(theWord);
-                this.synonymMap.addRule(theWord);
+    /**
+     * Compiles rules. Large sets are split into one chunk per parser thread; each chunk is compiled on
+     * its own and the partial maps are merged in order.
+     *
+     * @return the compiled rules, or null if compiling was interrupted
+     */
+    CompiledSynonymMap compileRules(List<SynonymRule> rules) {
+        List<CompiledSynonymMap> partials = inChunks(rules, chunk -> {
+            CompiledSynonymMap.Builder builder = new CompiledSynonymMap.Builder();
+            for (SynonymRule rule : chunk) {
+                rule.addTo(builder);
+            }
+            return builder.build();
+        });
+        if (partials == null) {
+            return null;
+        }
+        CompiledSynonymMap result = CompiledSynonymMap.EMPTY;
+        for (CompiledSynonymMap partial : partials) {
+            result = result.termCount() == 0 ? partial : result.merge(partial);
+        }
+        return result;
+    }
+
+    /**
+     * Runs a task over chunks of a list, on the parser threads if the list is large.
+     *
+     * @return the result of every chunk in order, or null if a task was interrupted or failed
+     */
+    private <T, R> List<R> inChunks(List<T> items, Function<List<T>, R> task) {
+        if (items.size() < PARALLEL_PARSE_MIN_RULES || PARSE_THREADS == 1) {
+            return Collections.singletonList(task.apply(items));
+        }
+        int chunkSize = (items.size() + PARSE_THREADS - 1) / PARSE_THREADS;
+        List<Future<R>> futures = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += chunkSize) {
+            List<T> chunk = items.subList(from, Math.min(items.size(), from + chunkSize));
+            futures.add(parsePool.submit(() -> task.apply(chunk)));
+        }
+        try {
+            List<R> results = new ArrayList<>(futures.size());
+            for (Future<R> future : futures) {
+                results.add(future.get());
             }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("loading synonym rules of {} interrupted", key);
+        } catch (ExecutionException e) {
+            LOGGER.error("loading synonym rules of " + key + " failed", e.getCause());
+        }
+        for (Future<R> future : futures) {
+            future.cancel(true);
         }
-        // 更新完之后当前的时间 对时间戳进行更新
-        synonymUpdateDate = new Date();
+        return null;
     }
 
-    private void loadJDBCProperties() {
+    private static Properties loadJDBCProperties() {
+        Properties props = new Properties();
         File file = PathUtils.get(new File(DynamicSynonymPlugin.class.getProtectionDomain().getCodeSource().getLocation().getPath())
                         .getParent(), "config").toAbsolutePath().resolve(JDBC_FILE_NAME).toFile();
         LOGGER.info("加载DynamicSynonym sql properties file" + file);
-        try {
-            jdbcProps.load(new FileReader(file));
+        try (FileReader reader = new FileReader(file)) {
+            props.load(reader);
         } catch (IOException e) {
             LOGGER.error("加载数据库属性文件" + JDBC_FILE_NAME + "失败！, error is ", e);
         }
+        return props;
+    }
+
+    /**
+     * Identifies a rule source together with the settings the rules are parsed with.
+     */
+    static final class Key {
+
+        private final String table;
+
+        private final String field;
+
+        private final boolean ignoreCase;
+
+        private final boolean expand;
+
+        private final String analyzerName;
+
+        private final boolean multiWord;
+
+        Key(String table, String field, boolean ignoreCase, boolean expand, String analyzerName, boolean multiWord) {
+            this.table = table;
+            this.field = field;
+            this.ignoreCase = ignoreCase;
+            this.expand = expand;
+            this.analyzerName = analyzerName;
+            this.multiWord = multiWord;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key that = (Key) o;
+            return ignoreCase == that.ignoreCase && expand == that.expand && multiWord == that.multiWord
+                    && Objects.equals(table, that.table) && Objects.equals(field, that.field)
+                    && Objects.equals(analyzerName, that.analyzerName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(table, field, ignoreCase, expand, analyzerName, multiWord);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + table + "." + field + ", ignore_case=" + ignoreCase + ", expand=" + expand
+                    + ", tokenizer=" + analyzerName + ", multi_word=" + multiWord + "]";
+        }
     }
 }
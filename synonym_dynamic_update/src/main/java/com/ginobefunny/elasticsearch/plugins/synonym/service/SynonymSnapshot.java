@@ -0,0 +1,267 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.service;
+
+import com.ginobefunny.elasticsearch.plugins.synonym.service.db.RuleSync;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Local binary copy of a manager's compiled rules, the parsed rule of every DB row and the sync
+ * watermark they were loaded up to, so that a restarting node has its rules without querying the
+ * DB first and can still apply edits and deletes of rows it loaded in an earlier run.
+ * <p>
+ * Layout: magic, format, the manager key, the watermark, the arrays of the map (see
+ * {@link CompiledSynonymMap#writeTo(Output)}), the rows and a CRC32 of everything before it. Files are
+ * written to a temp file and atomically moved into place, and read through a memory mapping.
+ */
+final class SynonymSnapshot {
+
+    private static final Logger LOGGER = ESLoggerFactory.getLogger(SynonymSnapshot.class.getName());
+
+    private static final int MAGIC = 0x53594E53;
+
+    private static final int FORMAT = 3;
+
+    private final CompiledSynonymMap synonymMap;
+
+    private final Map<Long, SynonymRule> rules;
+
+    private final RuleSync.Watermark watermark;
+
+    private final long lastModified;
+
+    private SynonymSnapshot(CompiledSynonymMap synonymMap, Map<Long, SynonymRule> rules, RuleSync.Watermark watermark,
+                            long lastModified) {
+        this.synonymMap = synonymMap;
+        this.rules = rules;
+        this.watermark = watermark;
+        this.lastModified = lastModified;
+    }
+
+    CompiledSynonymMap getSynonymMap() {
+        return synonymMap;
+    }
+
+    Map<Long, SynonymRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * @return the position in the table the rules were synced up to
+     */
+    RuleSync.Watermark getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * @return epoch millis the snapshot was written at
+     */
+    long getLastModified() {
+        return lastModified;
+    }
+
+    static void write(Path file, String key, RuleSync.Watermark watermark, CompiledSynonymMap synonymMap,
+                      Map<Long, SynonymRule> rules) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeChars(key.toCharArray());
+            out.writeLong(watermark.getUpdateTime().getTime());
+            out.writeInt(watermark.getUpdateTime().getNanos());
+            out.writeLong(watermark.getId());
+            synonymMap.writeTo(out);
+            out.writeInt(rules.size());
+            for (Map.Entry<Long, SynonymRule> entry : rules.entrySet()) {
+                out.writeLong(entry.getKey());
+                SynonymRule rule = entry.getValue();
+                out.writeInt(rule.getGroups().length);
+                for (String[] group : rule.getGroups()) {
+                    writeTerms(out, group);
+                }
+                writeTerms(out, rule.getEdges());
+            }
+            out.finish();
+            channel.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the snapshot, or null if there is none or it is unusable (other key, format or corrupt)
+     */
+    static SynonymSnapshot read(Path file, String key) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 8 || size > Integer.MAX_VALUE) {
+                LOGGER.warn("ignore synonym snapshot {}: bad size {}", file, size);
+                return null;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer body = mapped.duplicate();
+            body.limit((int) size - 8);
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if (crc.getValue() != mapped.getLong((int) size - 8)) {
+                LOGGER.warn("ignore synonym snapshot {}: checksum mismatch", file);
+                return null;
+            }
+            if (body.getInt() != MAGIC || body.getInt() != FORMAT) {
+                LOGGER.warn("ignore synonym snapshot {}: unknown format", file);
+                return null;
+            }
+            char[] fileKey = CompiledSynonymMap.readChars(body);
+            if (!key.equals(new String(fileKey))) {
+                LOGGER.warn("ignore synonym snapshot {}: written for {}", file, new String(fileKey));
+                return null;
+            }
+            Timestamp updateTime = new Timestamp(body.getLong());
+            updateTime.setNanos(body.getInt());
+            RuleSync.Watermark watermark = new RuleSync.Watermark(updateTime, body.getLong());
+            CompiledSynonymMap synonymMap = CompiledSynonymMap.readFrom(body);
+            int ruleCount = checkCount(body.getInt(), body);
+            Map<Long, SynonymRule> rules = new HashMap<>(ruleCount * 4 / 3 + 1);
+            for (int i = 0; i < ruleCount; i++) {
+                long id = body.getLong();
+                String[][] groups = new String[checkCount(body.getInt(), body)][];
+                for (int g = 0; g < groups.length; g++) {
+                    groups[g] = readTerms(body);
+                }
+                String[] edges = readTerms(body);
+                if (edges.length % 2 != 0) {
+                    throw new IllegalArgumentException("bad edges of row " + id);
+                }
+                rules.put(id, new SynonymRule(groups, edges));
+            }
+            return new SynonymSnapshot(synonymMap, rules, watermark, Files.getLastModifiedTime(file).toMillis());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            LOGGER.warn("ignore synonym snapshot " + file, e);
+            return null;
+        }
+    }
+
+    private static void writeTerms(Output out, String[] terms) throws IOException {
+        out.writeInt(terms.length);
+        for (String term : terms) {
+            out.writeChars(term.toCharArray());
+        }
+    }
+
+    private static String[] readTerms(ByteBuffer in) {
+        String[] terms = new String[checkCount(in.getInt(), in)];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = new String(CompiledSynonymMap.readChars(in));
+        }
+        return terms;
+    }
+
+    // every counted entry takes at least 4 bytes, so a larger count can only come from a bad file
+    private static int checkCount(int count, ByteBuffer in) {
+        if (count < 0 || count > in.remaining() / 4) {
+            throw new IllegalArgumentException("bad count " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Buffered channel writer that keeps a CRC32 of the bytes written.
+     */
+    static final class Output {
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+        private final CRC32 crc = new CRC32();
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void writeInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void writeLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        /**
+         * Writes the length followed by the values.
+         */
+        void writeInts(int[] values, int length) throws IOException {
+            writeInt(length);
+            for (int i = 0; i < length; i++) {
+                ensure(4);
+                buffer.putInt(values[i]);
+            }
+        }
+
+        void writeChars(char[] values) throws IOException {
+            writeInt(values.length);
+            for (char value : values) {
+                ensure(2);
+                buffer.putChar(value);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.array(), 0, buffer.limit());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void finish() throws IOException {
+            flush();
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
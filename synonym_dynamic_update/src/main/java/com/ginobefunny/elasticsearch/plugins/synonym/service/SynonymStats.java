@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.service;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime counters of one {@link SynonymRuleManager}. The filter counters are striped
+ * {@link LongAdder}s that every token stream adds its totals to once, in end(); the sync results
+ * are written by the loads, which are serialized per manager.
+ */
+public final class SynonymStats {
+
+    private final LongAdder documents = new LongAdder();
+
+    private final LongAdder tokens = new LongAdder();
+
+    private final LongAdder lookups = new LongAdder();
+
+    private final LongAdder matches = new LongAdder();
+
+    private final LongAdder synonyms = new LongAdder();
+
+    private final LongAdder syncFailures = new LongAdder();
+
+    private volatile Sync lastFullSync;
+
+    private volatile Sync lastIncrementalSync;
+
+    /**
+     * Adds the totals of one token stream.
+     *
+     * @param tokens   tokens read from the input
+     * @param lookups  tokens looked up in the map, the others were rejected by the prefilter or the IK flags
+     * @param matches  tokens that had synonyms
+     * @param synonyms synonym tokens emitted
+     */
+    void addFilter(long tokens, long lookups, long matches, long synonyms) {
+        this.documents.increment();
+        this.tokens.add(tokens);
+        this.lookups.add(lookups);
+        this.matches.add(matches);
+        this.synonyms.add(synonyms);
+    }
+
+    void syncSucceeded(boolean full, long rows, long tookNanos) {
+        Sync sync = new Sync(System.currentTimeMillis(), rows, tookNanos / 1000000);
+        if (full) {
+            lastFullSync = sync;
+        } else {
+            lastIncrementalSync = sync;
+        }
+    }
+
+    void syncFailed() {
+        syncFailures.increment();
+    }
+
+    public long getDocuments() {
+        return documents.sum();
+    }
+
+    public long getTokens() {
+        return tokens.sum();
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    public long getMatches() {
+        return matches.sum();
+    }
+
+    public long getSynonyms() {
+        return synonyms.sum();
+    }
+
+    public long getSyncFailures() {
+        return syncFailures.sum();
+    }
+
+    /**
+     * @return the last successful full sync, null if there was none since the manager was created
+     */
+    public Sync getLastFullSync() {
+        return lastFullSync;
+    }
+
+    /**
+     * @return the last successful incremental sync, null if there was none since the manager was created
+     */
+    public Sync getLastIncrementalSync() {
+        return lastIncrementalSync;
+    }
+
+    /**
+     * Result of one successful sync.
+     */
+    public static final class Sync {
+
+        private final long timestamp;
+
+        private final long rows;
+
+        private final long tookMillis;
+
+        Sync(long timestamp, long rows, long tookMillis) {
+            this.timestamp = timestamp;
+            this.rows = rows;
+            this.tookMillis = tookMillis;
+        }
+
+        /**
+         * @return epoch millis the sync finished at
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return rows read from the DB
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        public long getTookMillis() {
+            return tookMillis;
+        }
+    }
+}
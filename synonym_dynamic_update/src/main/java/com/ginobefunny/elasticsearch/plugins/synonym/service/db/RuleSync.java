@@ -0,0 +1,254 @@
+package com.ginobefunny.elasticsearch.plugins.synonym.service.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * 基于(updatetime, id)水位的同义词规则同步
+ * 每次只读取水位之后的行，按(updatetime, id)排序分批读取，读完一批就交给调用方应用并推进水位；
+ * 每行按id区分，修改过的规则替换该行原来的同义词，标记删除的规则去掉该行的同义词。
+ * 全量加载不带水位条件，按id流式读完整张表，updatetime为NULL的行同样加载，但这些行之后的修改不会被增量同步读到。
+ **/
+public class RuleSync {
+
+    // jdbc.properties配置信息
+    private final static String ID_FIELD_NAME = "synonym.id.field.name";
+    private final static String UPDATETIME_FIELD_NAME = "synonym.updatetime.field.name";
+    private final static String DELETE_FIELD_NAME = "synonym.delete.field.name";
+    private final static String DELETE_VALUE = "synonym.delete.value";
+    private final static String BATCH_SIZE = "sync.batch.size";
+    private final static String FETCH_SIZE = "fetch.size";
+    private final static String QUERY_TIMEOUT = "query.timeout.seconds";
+
+    private final ConnectionPool pool;
+
+    private final String sql;
+
+    private final String initialSql;
+
+    private final String deleteField;
+
+    private final String deleteValue;
+
+    private final int batchSize;
+
+    private final int fetchSize;
+
+    private final int queryTimeout;
+
+    /**
+     * 一批变更的应用
+     */
+    @FunctionalInterface
+    public interface BatchApplier {
+        void apply(List<Row> rows);
+    }
+
+    public RuleSync(ConnectionPool pool, Properties props, String table, String ruleField) {
+        this.pool = pool;
+        String idField = props.getProperty(ID_FIELD_NAME, "id");
+        String updateField = props.getProperty(UPDATETIME_FIELD_NAME, "updatetime");
+        String deleteField = props.getProperty(DELETE_FIELD_NAME);
+        this.deleteField = deleteField == null || deleteField.trim().isEmpty() ? null : deleteField.trim();
+        this.deleteValue = props.getProperty(DELETE_VALUE, "0").trim();
+        this.batchSize = Integer.parseInt(props.getProperty(BATCH_SIZE, "5000").trim());
+        String fetchSize = props.getProperty(FETCH_SIZE);
+        this.queryTimeout = Integer.parseInt(props.getProperty(QUERY_TIMEOUT, "60").trim());
+        this.fetchSize = fetchSize == null || fetchSize.trim().isEmpty() ? JDBCUtils.STREAMING_FETCH_SIZE
+                : Integer.parseInt(fetchSize.trim());
+
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(idField).append(", ")
+                .append(ruleField).append(", ")
+                .append(updateField);
+        if (this.deleteField != null) {
+            sql.append(", ").append(this.deleteField);
+        }
+        sql.append(" FROM ").append(table);
+        // 全量加载一次流式读完整张表
+        this.initialSql = sql + " ORDER BY " + idField;
+        sql.append(" WHERE ").append(updateField).append(" > ?")
+                .append(" OR (").append(updateField).append(" = ? AND ").append(idField).append(" > ?)")
+                .append(" ORDER BY ").append(updateField).append(", ").append(idField)
+                .append(" LIMIT ?");
+        this.sql = sql.toString();
+    }
+
+    /**
+     * 从水位from开始同步到表的最新状态
+     * @param from 起始水位，Watermark.INITIAL表示全量加载
+     * @param applier 变更应用，全量加载时不会收到删除的行
+     * @return 同步结果，包含新水位
+     */
+    public Result sync(Watermark from, BatchApplier applier) throws SQLException {
+        if (from.isInitial()) {
+            return load(applier);
+        }
+        Result result = new Result(from);
+        List<Row> batch = new ArrayList<>();
+        while (true) {
+            final Watermark watermark = result.watermark;
+            final Watermark[] last = {watermark};
+            long rows = JDBCUtils.query(pool, sql, ps -> {
+                ps.setQueryTimeout(queryTimeout);
+                ps.setTimestamp(1, watermark.updateTime);
+                ps.setTimestamp(2, watermark.updateTime);
+                ps.setLong(3, watermark.id);
+                ps.setInt(4, batchSize);
+            }, fetchSize, rs -> {
+                long id = rs.getLong(1);
+                last[0] = new Watermark(rs.getTimestamp(3), id);
+                String rule = rs.getString(2);
+                batch.add(new Row(id, isDeleted(rs, rule) ? null : rule));
+            });
+            apply(applier, batch, result);
+            result.rows += rows;
+            result.watermark = last[0];
+            if (rows < batchSize) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * 全量加载，不带水位条件按id流式读取整张表，每batchSize行应用一次，删除的行不交给调用方
+     * 水位取updatetime不为NULL的行中(updatetime, id)最大的一行，没有这样的行时为Watermark.EMPTY
+     */
+    private Result load(BatchApplier applier) throws SQLException {
+        Result result = new Result(Watermark.EMPTY);
+        List<Row> batch = new ArrayList<>();
+        result.rows = JDBCUtils.query(pool, initialSql, ps -> ps.setQueryTimeout(queryTimeout), fetchSize, rs -> {
+            long id = rs.getLong(1);
+            Timestamp updateTime = rs.getTimestamp(3);
+            if (updateTime != null && result.watermark.compareTo(updateTime, id) < 0) {
+                result.watermark = new Watermark(updateTime, id);
+            }
+            String rule = rs.getString(2);
+            if (isDeleted(rs, rule)) {
+                return;
+            }
+            batch.add(new Row(id, rule));
+            if (batch.size() >= batchSize) {
+                apply(applier, batch, result);
+            }
+        });
+        apply(applier, batch, result);
+        return result;
+    }
+
+    private boolean isDeleted(ResultSet rs, String rule) throws SQLException {
+        return deleteField != null && deleteValue.equals(String.valueOf(rs.getString(4)).trim())
+                || rule == null || rule.trim().isEmpty();
+    }
+
+    private static void apply(BatchApplier applier, List<Row> batch, Result result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        applier.apply(batch);
+        result.changed += batch.size();
+        batch.clear();
+    }
+
+    /**
+     * 一行规则的变化
+     */
+    public static final class Row {
+
+        private final long id;
+
+        // 删除或清空时为null
+        private final String rule;
+
+        Row(long id, String rule) {
+            this.id = id;
+            this.rule = rule;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getRule() {
+            return rule;
+        }
+
+        public boolean isDeleted() {
+            return rule == null;
+        }
+    }
+
+    /**
+     * 同步水位，(updatetime, id)
+     */
+    public static final class Watermark {
+
+        public static final Watermark INITIAL = new Watermark(new Timestamp(0), 0);
+
+        // 全量加载完成但表中没有updatetime不为NULL的行，之后从头增量同步
+        static final Watermark EMPTY = new Watermark(new Timestamp(0), Long.MIN_VALUE);
+
+        private final Timestamp updateTime;
+
+        private final long id;
+
+        public Watermark(Timestamp updateTime, long id) {
+            this.updateTime = updateTime;
+            this.id = id;
+        }
+
+        public Timestamp getUpdateTime() {
+            return updateTime;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        boolean isInitial() {
+            return this == INITIAL;
+        }
+
+        int compareTo(Timestamp updateTime, long id) {
+            int c = this.updateTime.compareTo(updateTime);
+            return c != 0 ? c : Long.compare(this.id, id);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + updateTime + ", " + id + ")";
+        }
+    }
+
+    /**
+     * 一次同步的结果
+     */
+    public static final class Result {
+
+        private Watermark watermark;
+
+        private long rows;
+
+        private long changed;
+
+        private Result(Watermark watermark) {
+            this.watermark = watermark;
+        }
+
+        public Watermark getWatermark() {
+            return watermark;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getChanged() {
+            return changed;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the synonym JFR events carry their fields and stay off unless a recording enables them.
+ */
+public class SynonymEventsTests {
+
+    private static final String FILTER = "com.ginobefunny.synonym.Filter";
+    private static final String SYNC = "com.ginobefunny.synonym.Sync";
+
+    @Test
+    public void testEventsCarryTheirFields() throws IOException {
+        List<RecordedEvent> events = record(() -> {
+            assertTrue(SynonymEvents.filterEnabled());
+            SynonymEvents.filter(10, 3, 2000);
+            SynonymEvents.sync("synonym_rules", 42, 5000);
+        }, FILTER, SYNC);
+
+        RecordedEvent filter = only(events, FILTER);
+        assertEquals(10, filter.getLong("tokenCount"));
+        assertEquals(3, filter.getLong("synonymCount"));
+        assertEquals(2000, filter.getDuration("lookupTime").toNanos());
+
+        RecordedEvent sync = only(events, SYNC);
+        assertEquals("synonym_rules", sync.getString("table"));
+        assertEquals(42, sync.getLong("rows"));
+        assertEquals(5000, sync.getDuration("syncTime").toNanos());
+    }
+
+    @Test
+    public void testFilterEventIsOffByDefault() throws IOException {
+        assertFalse(SynonymEvents.filterEnabled());
+        // only the sync event is enabled, the filter event keeps its default
+        List<RecordedEvent> events = record(() -> {
+            assertFalse(SynonymEvents.filterEnabled());
+            SynonymEvents.filter(10, 3, 2000);
+            SynonymEvents.sync("synonym_rules", 42, 5000);
+        }, SYNC);
+
+        assertEquals(0, count(events, FILTER));
+        assertEquals(1, count(events, SYNC));
+    }
+
+    private static List<RecordedEvent> record(Runnable action, String... names) throws IOException {
+        Path file = Files.createTempFile("synonym-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : names) {
+                recording.enable(name);
+            }
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static RecordedEvent only(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matched = new ArrayList<>();
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                matched.add(event);
+            }
+        }
+        assertEquals(name, 1, matched.size());
+        return matched.get(0);
+    }
+
+    private static int count(List<RecordedEvent> events, String name) {
+        int count = 0;
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
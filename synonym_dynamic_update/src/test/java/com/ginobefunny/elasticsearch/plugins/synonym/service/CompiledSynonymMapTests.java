@@ -0,0 +1,222 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.service;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that terms are found from a slice of a token buffer without being rejected by the prefilter,
+ * and that expanded lines are stored as groups and expand like the pairs they replace.
+ */
+public class CompiledSynonymMapTests {
+
+    @Test
+    public void testLookupReadsASliceOfTheBuffer() {
+        CompiledSynonymMap.Builder builder = new CompiledSynonymMap.Builder();
+        builder.addGroup(Arrays.asList("foo", "bar"));
+        builder.add("foobar", "baz");
+        CompiledSynonymMap map = builder.build();
+
+        char[] buffer = "xxfooyy".toCharArray();
+        int id = map.lookup(buffer, 2, 3);
+        assertEquals(id, map.lookup("foo"));
+        assertEquals("foo", map.term(id));
+        assertEquals(3, map.termLength(id));
+        assertEquals("foo", new String(map.termChars(), map.termOffset(id), map.termLength(id)));
+        assertTrue(map.hasSynonyms(id));
+        // a prefix or a longer slice is another term
+        assertEquals(-1, map.lookup(buffer, 2, 2));
+        assertEquals(-1, map.lookup(buffer, 1, 4));
+        assertEquals(-1, map.lookup("qux"));
+        // outputs of edges are terms without synonyms of their own
+        assertFalse(map.hasSynonyms(map.lookup("baz")));
+        assertEquals(4, map.termCount());
+    }
+
+    @Test
+    public void testCursorWalksTheSynonymsOfATerm() {
+        CompiledSynonymMap.Builder builder = new CompiledSynonymMap.Builder();
+        builder.addGroup(Arrays.asList("a", "b", "c"));
+        builder.add("a", "x");
+        CompiledSynonymMap map = builder.build();
+
+        CompiledSynonymMap.Cursor cursor = new CompiledSynonymMap.Cursor();
+        cursor.start(map, map.lookup("a"));
+        List<String> synonyms = new ArrayList<>();
+        for (int id = cursor.next(); id >= 0; id = cursor.next()) {
+            synonyms.add(map.term(id));
+        }
+        assertEquals(map.getSynonymWords("a"), synonyms);
+        assertEquals(-1, cursor.next());
+
+        cursor.start(map, map.lookup("b"));
+        cursor.clear();
+        assertEquals(-1, cursor.next());
+    }
+
+    @Test
+    public void testPrefilterNeverRejectsATermWithSynonyms() {
+        CompiledSynonymMap.Builder builder = new CompiledSynonymMap.Builder();
+        for (int i = 0; i < 2000; i++) {
+            builder.add("in" + i, "out" + i);
+        }
+        CompiledSynonymMap map = builder.build();
+
+        for (int i = 0; i < 2000; i++) {
+            char[] term = ("in" + i).toCharArray();
+            assertTrue(map.mightHaveSynonyms(term, 0, term.length));
+        }
+        // terms without synonyms are mostly rejected, about 1% false positives
+        int passed = 0;
+        for (int i = 0; i < 2000; i++) {
+            char[] term = ("other" + i).toCharArray();
+            if (map.mightHaveSynonyms(term, 0, term.length)) {
+                passed++;
+            }
+        }
+        assertTrue(String.valueOf(passed), passed < 100);
+        assertFalse(map.mightHaveSynonyms(new char[0], 0, 0));
+    }
+
+    @Test
+    public void testPhraseStartsAreTheFirstWordsOfMultiWordInputs() {
+        String separator = String.valueOf(CompiledSynonymMap.WORD_SEPARATOR);
+        CompiledSynonymMap.Builder builder = new CompiledSynonymMap.Builder();
+        builder.add("new" + separator + "york" + separator + "city", "nyc");
+        builder.add("york", "yk");
+        CompiledSynonymMap map = builder.build();
+
+        char[] buffer = "xnewyork".toCharArray();
+        assertTrue(map.mightStartPhrase(buffer, 1, 3));
+        assertEquals(3, map.maxInputWords());
+        // "nyc" is only an output
+        assertEquals(-1, lookupWithSynonyms(map, "nyc"));
+        assertTrue(lookupWithSynonyms(map, "new" + separator + "york" + separator + "city") >= 0);
+
+        CompiledSynonymMap singleWords = new CompiledSynonymMap.Builder().build();
+        assertFalse(singleWords.mightStartPhrase(buffer, 1, 3));
+        assertEquals(1, singleWords.maxInputWords());
+    }
+
+    @Test
+    public void testEmptyMapHasNoTerms() {
+        CompiledSynonymMap map = CompiledSynonymMap.EMPTY;
+
+        assertEquals(0, map.termCount());
+        assertEquals(0, map.ruleCount());
+        assertEquals(0, map.groupCount());
+        assertEquals(-1, map.lookup("a"));
+        assertNull(map.getSynonymWords("a"));
+    }
+
+    @Test
+    public void testGroupExpandsToEveryMember() {
+        CompiledSynonymMap.Builder builder = new CompiledSynonymMap.Builder();
+        builder.addGroup(Arrays.asList("a", "b", "c"));
+        CompiledSynonymMap map = builder.build();
+
+        assertEquals(1, map.groupCount());
+        assertEquals(3, map.ruleCount());
+        assertEquals(Arrays.asList("a", "b", "c"), map.getSynonymWords("a"));
+        assertEquals(Arrays.asList("a", "b", "c"), map.getSynonymWords("c"));
+        assertNull(map.getSynonymWords("d"));
+    }
+
+    @Test
+    public void testRepeatedLineIsStoredOnce() {
+        CompiledSynonymMap.Builder builder = new CompiledSynonymMap.Builder();
+        builder.addGroup(Arrays.asList("a", "b"));
+        builder.addGroup(Arrays.asList("b", "a"));
+        builder.addGroup(Arrays.asList("a", "b", "a"));
+        CompiledSynonymMap map = builder.build();
+
+        assertEquals(1, map.groupCount());
+        assertEquals(Arrays.asList("a", "b"), map.getSynonymWords("a"));
+    }
+
+    @Test
+    public void testOverlappingGroupsDoNotRepeatSynonyms() {
+        CompiledSynonymMap.Builder builder = new CompiledSynonymMap.Builder();
+        builder.addGroup(Arrays.asList("a", "b"));
+        builder.addGroup(Arrays.asList("a", "b", "c"));
+        CompiledSynonymMap map = builder.build();
+
+        assertEquals(2, map.groupCount());
+        assertEquals(Arrays.asList("a", "b", "c"), map.getSynonymWords("a"));
+        assertEquals(Arrays.asList("a", "b", "c"), map.getSynonymWords("c"));
+    }
+
+    @Test
+    public void testEdgesAlreadyInAGroupAreSkipped() {
+        CompiledSynonymMap.Builder builder = new CompiledSynonymMap.Builder();
+        builder.addGroup(Arrays.asList("a", "b"));
+        builder.add("a", "b");
+        builder.add("a", "x");
+        CompiledSynonymMap map = builder.build();
+
+        assertEquals(Arrays.asList("a", "b", "x"), map.getSynonymWords("a"));
+        // edges are directed
+        assertNull(map.getSynonymWords("x"));
+    }
+
+    @Test
+    public void testMergeAppendsGroupsOfTheDelta() {
+        CompiledSynonymMap.Builder base = new CompiledSynonymMap.Builder();
+        base.addGroup(Arrays.asList("a", "b"));
+        base.add("c", "d");
+        CompiledSynonymMap.Builder delta = new CompiledSynonymMap.Builder();
+        delta.addGroup(Arrays.asList("b", "e"));
+        delta.add("c", "f");
+        CompiledSynonymMap baseMap = base.build();
+        CompiledSynonymMap merged = baseMap.merge(delta.build());
+
+        assertEquals(2, merged.groupCount());
+        assertEquals(Arrays.asList("a", "b"), merged.getSynonymWords("a"));
+        assertEquals(Arrays.asList("a", "b", "e"), merged.getSynonymWords("b"));
+        assertEquals(Arrays.asList("b", "e"), merged.getSynonymWords("e"));
+        assertEquals(Arrays.asList("d", "f"), merged.getSynonymWords("c"));
+        // the base map is not modified
+        assertEquals(Arrays.asList("a", "b"), baseMap.getSynonymWords("b"));
+        assertNull(baseMap.getSynonymWords("e"));
+    }
+
+    @Test
+    public void testExpandedRulesMatchAllPairs() {
+        Configuration cfg = new Configuration(false, true, "whitespace", new WhitespaceAnalyzer());
+        SimpleSynonymMap rules = new SimpleSynonymMap(cfg);
+        rules.addRule("a, b, c");
+        rules.addRule("c, b, a");
+        rules.addRule("x => y");
+        CompiledSynonymMap map = rules.compile();
+
+        assertEquals(1, map.groupCount());
+        assertEquals(Arrays.asList("a", "b", "c"), map.getSynonymWords("b"));
+        assertEquals(Arrays.asList("y"), map.getSynonymWords("x"));
+    }
+
+    private static int lookupWithSynonyms(CompiledSynonymMap map, String term) {
+        int id = map.lookup(term);
+        return id >= 0 && map.hasSynonyms(id) ? id : -1;
+    }
+}
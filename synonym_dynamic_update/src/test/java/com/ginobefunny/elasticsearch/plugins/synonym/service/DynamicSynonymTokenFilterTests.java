@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.service;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the token graph of multi-word synonyms: terms with their position increments and lengths,
+ * that a token stream keeps the rules it was reset with while a reload publishes new ones, and the
+ * counters a stream adds to the manager's stats.
+ */
+public class DynamicSynonymTokenFilterTests {
+
+    @Test
+    public void testMultiWordInputSpansItsTokens() throws IOException {
+        SynonymRuleManager manager = manager(true, "ny, new york");
+        // ny runs parallel to both matched tokens
+        assertEquals(Arrays.asList("new/1/1", "ny/0/2", "york/1/1", "city/1/1"), analyze(manager, "new york city"));
+    }
+
+    @Test
+    public void testMultiWordSynonymGetsIntermediatePositions() throws IOException {
+        SynonymRuleManager manager = manager(true, "ny, new york");
+        // new york takes its own intermediate position and ends where ny ends
+        assertEquals(Arrays.asList("ny/1/2", "new/0/1", "york/1/1", "city/1/1"), analyze(manager, "ny city"));
+    }
+
+    @Test
+    public void testLongestInputWins() throws IOException {
+        SynonymRuleManager manager = manager(true, "york, yk\nnew york, ny");
+        assertEquals(Arrays.asList("new/1/1", "ny/0/2", "york/1/1"), analyze(manager, "new york"));
+        assertEquals(Arrays.asList("york/1/1", "yk/0/1"), analyze(manager, "york"));
+    }
+
+    @Test
+    public void testPositionGapEndsPhrase() throws IOException {
+        SynonymRuleManager manager = manager(true, "ny, new york");
+        assertEquals(Arrays.asList("new/1/1", "york/2/1"), analyze(manager, "new york", 1, 2));
+    }
+
+    @Test
+    public void testSingleWordTermsWithoutMultiWord() throws IOException {
+        SynonymRuleManager manager = manager(false, "ny, new york");
+        // every token is a term of its own and a synonym of the others, all on the token's position
+        assertEquals(Arrays.asList("new/1/1", "ny/0/1", "york/0/1", "york/1/1", "ny/0/1", "new/0/1"),
+                analyze(manager, "new york"));
+    }
+
+    @Test
+    public void testStreamKeepsTheRulesItWasResetWith() throws IOException {
+        SynonymRuleManager manager = manager(false, "a, x");
+        WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(new StringReader("a b"));
+        List<String> tokens = new ArrayList<>();
+        try (TokenStream ts = new DynamicSynonymTokenFilter(tokenizer, manager)) {
+            CharTermAttribute term = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            assertTrue(ts.incrementToken());
+            tokens.add(term.toString());
+            // a reload in the middle of the stream
+            manager.publishForTests(compile(false, "b, y"));
+            while (ts.incrementToken()) {
+                tokens.add(term.toString());
+            }
+            ts.end();
+        }
+        assertEquals(Arrays.asList("a", "x", "b"), tokens);
+
+        // the next stream sees the new rules
+        assertEquals(Arrays.asList("a/1/1", "b/1/1", "y/0/1"), analyze(manager, "a b"));
+    }
+
+    @Test
+    public void testStreamAddsItsCountsToTheStats() throws IOException {
+        SynonymRuleManager manager = manager(false, "a, x, y");
+        analyze(manager, "a b a");
+        analyze(manager, "c");
+
+        SynonymStats stats = manager.getStats();
+        assertEquals(2, stats.getDocuments());
+        assertEquals(4, stats.getTokens());
+        assertEquals(2, stats.getMatches());
+        assertEquals(4, stats.getSynonyms());
+        // the prefilter may let a token without synonyms through, never reject one with synonyms
+        assertTrue(String.valueOf(stats.getLookups()), stats.getLookups() >= 2 && stats.getLookups() <= 4);
+    }
+
+    private static SynonymRuleManager manager(boolean multiWord, String rules) {
+        Configuration cfg = new Configuration(false, true, "whitespace", new WhitespaceAnalyzer(), multiWord);
+        return SynonymRuleManager.forTests(cfg, compile(multiWord, rules));
+    }
+
+    private static CompiledSynonymMap compile(boolean multiWord, String rules) {
+        Configuration cfg = new Configuration(false, true, "whitespace", new WhitespaceAnalyzer(), multiWord);
+        SimpleSynonymMap map = new SimpleSynonymMap(cfg);
+        for (String rule : rules.split("\n")) {
+            map.addRule(rule);
+        }
+        return map.compile();
+    }
+
+    private static List<String> analyze(SynonymRuleManager manager, String text, int... posIncs) throws IOException {
+        WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(new StringReader(text));
+        TokenStream input = tokenizer;
+        if (posIncs.length > 0) {
+            input = new PositionIncrements(tokenizer, posIncs);
+        }
+        List<String> tokens = new ArrayList<>();
+        try (TokenStream ts = new DynamicSynonymTokenFilter(input, manager)) {
+            CharTermAttribute term = ts.addAttribute(CharTermAttribute.class);
+            PositionIncrementAttribute posInc = ts.addAttribute(PositionIncrementAttribute.class);
+            PositionLengthAttribute posLen = ts.addAttribute(PositionLengthAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                tokens.add(term + "/" + posInc.getPositionIncrement() + "/" + posLen.getPositionLength());
+            }
+            ts.end();
+        }
+        return tokens;
+    }
+
+    /**
+     * Overrides the position increments of the input tokens, e.g. to leave a gap for a removed stop word.
+     */
+    private static final class PositionIncrements extends TokenFilter {
+
+        private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+
+        private final int[] posIncs;
+
+        private int index;
+
+        PositionIncrements(TokenStream input, int[] posIncs) {
+            super(input);
+            this.posIncs = posIncs;
+        }
+
+        @Override
+        public boolean incrementToken() throws IOException {
+            if (!input.incrementToken()) {
+                return false;
+            }
+            posIncAtt.setPositionIncrement(posIncs[index++]);
+            return true;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            super.reset();
+            index = 0;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Pins the flag bits shared with the IK tokenizer; its IkFlagsTests pins the same values.
+ */
+public class IkFlagsTests {
+
+    @Test
+    public void testFlagValues() {
+        assertEquals(0x10000, IkFlags.SYNONYM_CHECKED);
+        assertEquals(0x20000, IkFlags.SYNONYM_TERM);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.service;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.shard.IndexEventListener;
+import org.elasticsearch.indices.cluster.IndicesClusterStateService.AllocatedIndices.IndexRemovalReason;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that indices share a manager and that it is released through the index listener once the
+ * last index using it is removed, and that a large load parsed in chunks gives the same rules as a
+ * sequential one. No jdbc.properties is found here, so the managers never poll.
+ */
+public class SynonymRuleManagerTests {
+
+    private static final String TABLE = "rule_manager_tests";
+
+    private final IndexEventListener listener = new SynonymRuleManager.IndexListener();
+
+    @After
+    public void releaseIndices() {
+        SynonymRuleManager.release("uuid-a");
+        SynonymRuleManager.release("uuid-b");
+    }
+
+    @Test
+    public void testManagerIsReleasedWithTheLastIndex() {
+        IndexSettings a = indexSettings("a", "uuid-a");
+        IndexSettings b = indexSettings("b", "uuid-b");
+        SynonymRuleManager manager = acquire(a);
+        assertSame(manager, acquire(b));
+        assertTrue(SynonymRuleManager.getManagers().contains(manager));
+
+        remove(a);
+        assertTrue(SynonymRuleManager.getManagers().contains(manager));
+
+        // removing an index again does not drop the reference of the other one
+        remove(a);
+        assertTrue(SynonymRuleManager.getManagers().contains(manager));
+
+        remove(b);
+        assertFalse(SynonymRuleManager.getManagers().contains(manager));
+    }
+
+    @Test
+    public void testAnalysisBuiltTwiceForAnIndexIsReleasedOnce() {
+        // e.g. a copy of the index built to verify its metadata, which is closed without being removed
+        SynonymRuleManager manager = acquire(indexSettings("a", "uuid-a"));
+        assertSame(manager, acquire(indexSettings("a", "uuid-a")));
+
+        remove(indexSettings("a", "uuid-a"));
+        assertFalse(SynonymRuleManager.getManagers().contains(manager));
+    }
+
+    @Test
+    public void testFilterOutsideAnIndexIsNotTracked() {
+        SynonymRuleManager manager = acquire(indexSettings("_na_", IndexMetaData.INDEX_UUID_NA_VALUE));
+        assertFalse(SynonymRuleManager.getManagers().contains(manager));
+    }
+
+    @Test
+    public void testLargeLoadIsParsedLikeASequentialOne() {
+        Configuration cfg = new Configuration(false, true, "whitespace", new WhitespaceAnalyzer());
+        SynonymRuleManager manager = SynonymRuleManager.forTests(cfg, CompiledSynonymMap.EMPTY);
+        int count = SynonymRuleManager.PARALLEL_PARSE_MIN_RULES + 2000;
+        Map<Long, String> rows = new LinkedHashMap<>();
+        SimpleSynonymMap sequential = new SimpleSynonymMap(cfg);
+        for (long id = 0; id < count; id++) {
+            // groups share terms across chunks, deleted rows have no text
+            String rule = id % 1000 == 999 ? null
+                    : id % 3 == 0 ? "x" + id + " => y" + id : "w" + id + ", v" + id + ", u" + id % 100;
+            rows.put(id, rule);
+            if (rule != null) {
+                sequential.addRule(rule);
+            }
+        }
+
+        Map<Long, SynonymRule> parsed = manager.parseRules(rows);
+        assertEquals(count - count / 1000, parsed.size());
+        CompiledSynonymMap parallel = manager.compileRules(new ArrayList<>(new TreeMap<>(parsed).values()));
+        CompiledSynonymMap expected = sequential.compile();
+
+        assertEquals(expected.termCount(), parallel.termCount());
+        assertEquals(expected.ruleCount(), parallel.ruleCount());
+        assertEquals(expected.groupCount(), parallel.groupCount());
+        for (int id = 0; id < expected.termCount(); id++) {
+            String term = expected.term(id);
+            assertEquals(term, expected.getSynonymWords(term), parallel.getSynonymWords(term));
+        }
+    }
+
+    private static SynonymRuleManager acquire(IndexSettings owner) {
+        return SynonymRuleManager.acquire(owner, TABLE, "rule",
+                new Configuration(false, true, "whitespace", new WhitespaceAnalyzer()));
+    }
+
+    private void remove(IndexSettings indexSettings) {
+        listener.afterIndexRemoved(indexSettings.getIndex(), indexSettings, IndexRemovalReason.DELETED);
+    }
+
+    private static IndexSettings indexSettings(String name, String uuid) {
+        Settings settings = Settings.builder()
+                .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+                .put(IndexMetaData.SETTING_INDEX_UUID, uuid)
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+                .build();
+        return new IndexSettings(IndexMetaData.builder(name).settings(settings).build(), Settings.EMPTY);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.service;
+
+import com.ginobefunny.elasticsearch.plugins.synonym.service.db.RuleSync;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a snapshot reads back the rules, rows and watermark it was written with, and that a
+ * snapshot of another manager, another format or with a bad checksum is ignored.
+ */
+public class SynonymSnapshotTests {
+
+    private static final String KEY = "synonym_tests/rule";
+
+    private Path dir;
+
+    private Path file;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("synonym-snapshot");
+        file = dir.resolve("rules.snapshot");
+    }
+
+    @After
+    public void deleteDir() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Collections.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testReadsBackWhatWasWritten() throws IOException {
+        Timestamp updateTime = new Timestamp(1500000000123L);
+        updateTime.setNanos(123456789);
+        write(new RuleSync.Watermark(updateTime, 42));
+
+        SynonymSnapshot snapshot = SynonymSnapshot.read(file, KEY);
+
+        assertNotNull(snapshot);
+        assertEquals(updateTime, snapshot.getWatermark().getUpdateTime());
+        assertEquals(42, snapshot.getWatermark().getId());
+        CompiledSynonymMap map = snapshot.getSynonymMap();
+        assertEquals(Arrays.asList("a", "b", "c"), map.getSynonymWords("b"));
+        assertEquals(Arrays.asList("y"), map.getSynonymWords("x"));
+        assertNull(map.getSynonymWords("y"));
+        // the prefilter is rebuilt on read
+        char[] term = "x".toCharArray();
+        assertTrue(map.mightHaveSynonyms(term, 0, term.length));
+
+        assertEquals(2, snapshot.getRules().size());
+        SynonymRule group = snapshot.getRules().get(1L);
+        assertEquals(1, group.getGroups().length);
+        assertArrayEquals(new String[]{"a", "b", "c"}, group.getGroups()[0]);
+        assertArrayEquals(new String[]{"x", "y"}, snapshot.getRules().get(2L).getEdges());
+    }
+
+    @Test
+    public void testMissingFileIsIgnored() {
+        assertNull(SynonymSnapshot.read(file, KEY));
+    }
+
+    @Test
+    public void testSnapshotOfAnotherManagerIsIgnored() throws IOException {
+        write(RuleSync.Watermark.INITIAL);
+        assertNull(SynonymSnapshot.read(file, "synonym_tests/other"));
+    }
+
+    @Test
+    public void testCorruptSnapshotIsIgnored() throws IOException {
+        write(RuleSync.Watermark.INITIAL);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertNull(SynonymSnapshot.read(file, KEY));
+
+        // shorter than the checksum
+        Files.write(file, new byte[4]);
+        assertNull(SynonymSnapshot.read(file, KEY));
+    }
+
+    @Test
+    public void testSnapshotOfAnotherFormatIsIgnored() throws IOException {
+        write(RuleSync.Watermark.INITIAL);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        // the format follows the magic, the checksum is fixed up so only the format is wrong
+        buffer.putInt(4, buffer.getInt(4) + 1);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        buffer.putLong(bytes.length - 8, crc.getValue());
+        Files.write(file, bytes);
+        assertNull(SynonymSnapshot.read(file, KEY));
+    }
+
+    private void write(RuleSync.Watermark watermark) throws IOException {
+        Map<Long, SynonymRule> rules = new HashMap<>();
+        rules.put(1L, new SynonymRule(new String[][]{{"a", "b", "c"}}, SynonymRule.NO_EDGES));
+        rules.put(2L, new SynonymRule(SynonymRule.NO_GROUPS, new String[]{"x", "y"}));
+        CompiledSynonymMap.Builder builder = new CompiledSynonymMap.Builder();
+        for (SynonymRule rule : rules.values()) {
+            rule.addTo(builder);
+        }
+        SynonymSnapshot.write(file, KEY, watermark, builder.build(), rules);
+    }
+}
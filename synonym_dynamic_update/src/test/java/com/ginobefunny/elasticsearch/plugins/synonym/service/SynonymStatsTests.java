@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that the filter counters add up over token streams and that full and incremental syncs
+ * are recorded apart.
+ */
+public class SynonymStatsTests {
+
+    @Test
+    public void testFilterCountersAddUp() {
+        SynonymStats stats = new SynonymStats();
+        stats.addFilter(10, 4, 2, 3);
+        stats.addFilter(5, 1, 1, 1);
+
+        assertEquals(2, stats.getDocuments());
+        assertEquals(15, stats.getTokens());
+        assertEquals(5, stats.getLookups());
+        assertEquals(3, stats.getMatches());
+        assertEquals(4, stats.getSynonyms());
+    }
+
+    @Test
+    public void testSyncsAreRecordedByKind() {
+        SynonymStats stats = new SynonymStats();
+        assertNull(stats.getLastFullSync());
+        assertNull(stats.getLastIncrementalSync());
+
+        stats.syncSucceeded(true, 1000, 2500000000L);
+        SynonymStats.Sync full = stats.getLastFullSync();
+        assertEquals(1000, full.getRows());
+        assertEquals(2500, full.getTookMillis());
+        assertNull(stats.getLastIncrementalSync());
+
+        stats.syncSucceeded(false, 3, 1000000L);
+        stats.syncFailed();
+        assertSame(full, stats.getLastFullSync());
+        assertEquals(3, stats.getLastIncrementalSync().getRows());
+        assertEquals(1, stats.getLastIncrementalSync().getTookMillis());
+        assertEquals(1, stats.getSyncFailures());
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ginobefunny.elasticsearch.plugins.synonym.service.db;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the full load reads every row, including rows without an updatetime, and that the
+ * incremental sync reads the rows after the watermark in (updatetime, id) order.
+ * The DB is an in-memory table queried with the semantics of the statements RuleSync builds.
+ */
+public class RuleSyncTests {
+
+    // the rule table, every row is {id, rule, updatetime, deleted}
+    private static final List<Object[]> TABLE = new ArrayList<>();
+
+    private ConnectionPool pool;
+
+    @After
+    public void closePool() {
+        TABLE.clear();
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testInitialLoadReadsRowsWithoutUpdateTime() throws SQLException {
+        row(3, "c,d", 1000, false);
+        row(1, "a,b", null, false);
+        row(2, "x,y", 2000, true);
+        row(4, "e,f", 1500, false);
+        row(5, " ", 500, false);
+
+        List<String> batches = new ArrayList<>();
+        RuleSync.Result result = sync(2, RuleSync.Watermark.INITIAL, batches);
+
+        // read by id, deleted and empty rows are skipped, the watermark is the latest row with an updatetime
+        assertEquals(Arrays.asList("1=a,b 3=c,d", "4=e,f"), batches);
+        assertEquals(5, result.getRows());
+        assertEquals(3, result.getChanged());
+        assertWatermark(2000, 2, result.getWatermark());
+    }
+
+    @Test
+    public void testInitialLoadOfTableWithoutUpdateTime() throws SQLException {
+        row(1, "a,b", null, false);
+
+        List<String> batches = new ArrayList<>();
+        RuleSync.Result result = sync(2, RuleSync.Watermark.INITIAL, batches);
+
+        assertEquals(Arrays.asList("1=a,b"), batches);
+        assertEquals(RuleSync.Watermark.EMPTY, result.getWatermark());
+
+        // the next sync starts from the beginning instead of loading everything again
+        row(2, "c,d", 1000, false);
+        batches.clear();
+        result = sync(2, result.getWatermark(), batches);
+
+        assertEquals(Arrays.asList("2=c,d"), batches);
+        assertWatermark(1000, 2, result.getWatermark());
+    }
+
+    @Test
+    public void testIncrementalSyncDoesNotSkipRowsWithTheSameUpdateTime() throws SQLException {
+        row(1, "a,b", 1000, false);
+        row(2, "c,d", 1000, false);
+        row(3, "e,f", 1000, false);
+        row(4, "a,b", 2000, true);
+        row(5, "g,h", 2000, false);
+
+        List<String> batches = new ArrayList<>();
+        // two rows per batch, the first batch ends between two rows of the same second
+        RuleSync.Result result = sync(2, new RuleSync.Watermark(new Timestamp(1000), 1), batches);
+
+        assertEquals(Arrays.asList("2=c,d 3=e,f", "4=- 5=g,h"), batches);
+        assertEquals(4, result.getRows());
+        assertEquals(4, result.getChanged());
+        assertWatermark(2000, 5, result.getWatermark());
+
+        row(6, "", 2000, false);
+        row(7, "i,j", 1500, false);
+        batches.clear();
+        result = sync(2, result.getWatermark(), batches);
+
+        // rows updated before the watermark are not read again, emptied rows are deletions
+        assertEquals(Arrays.asList("6=-"), batches);
+        assertWatermark(2000, 6, result.getWatermark());
+    }
+
+    @Test
+    public void testNoChanges() throws SQLException {
+        row(1, "a,b", 1000, false);
+
+        List<String> batches = new ArrayList<>();
+        RuleSync.Watermark from = new RuleSync.Watermark(new Timestamp(1000), 1);
+        RuleSync.Result result = sync(2, from, batches);
+
+        assertEquals(0, batches.size());
+        assertEquals(0, result.getRows());
+        assertEquals(from, result.getWatermark());
+    }
+
+    private static void row(long id, String rule, Integer updateTime, boolean deleted) {
+        TABLE.add(new Object[]{id, rule, updateTime == null ? null : new Timestamp(updateTime), deleted ? "1" : "0"});
+    }
+
+    private static void assertWatermark(long updateTime, long id, RuleSync.Watermark watermark) {
+        assertEquals(new Timestamp(updateTime), watermark.getUpdateTime());
+        assertEquals(id, watermark.getId());
+    }
+
+    private RuleSync.Result sync(int batchSize, RuleSync.Watermark from, List<String> batches) throws SQLException {
+        if (pool == null) {
+            pool = new ConnectionPool(TableDriver.class.getName(), TableDriver.URL, null, null, 1, 1000, 1);
+        }
+        Properties props = new Properties();
+        props.setProperty("synonym.delete.field.name", "deleted");
+        props.setProperty("synonym.delete.value", "1");
+        props.setProperty("sync.batch.size", String.valueOf(batchSize));
+        props.setProperty("fetch.size", "100");
+        RuleSync sync = new RuleSync(pool, props, "rules", "rule");
+        return sync.sync(from, rows -> batches.add(rows.stream()
+                .map(row -> row.getId() + "=" + (row.isDeleted() ? "-" : row.getRule()))
+                .collect(Collectors.joining(" "))));
+    }
+
+    /**
+     * Runs the two queries of RuleSync on the table: the full load reads every row by id,
+     * the incremental query reads the rows after the watermark in (updatetime, id) order up to the LIMIT.
+     */
+    private static List<Object[]> query(String sql, Object[] params) {
+        if (!sql.contains(" LIMIT ")) {
+            assertEquals("SELECT id, rule, updatetime, deleted FROM rules ORDER BY id", sql);
+            return TABLE.stream().sorted(Comparator.comparing(row -> (Long) row[0])).collect(Collectors.toList());
+        }
+        assertEquals("SELECT id, rule, updatetime, deleted FROM rules"
+                + " WHERE updatetime > ? OR (updatetime = ? AND id > ?) ORDER BY updatetime, id LIMIT ?", sql);
+        Timestamp after = (Timestamp) params[1];
+        long afterId = (Long) params[3];
+        return TABLE.stream()
+                .filter(row -> row[2] != null)
+                .filter(row -> ((Timestamp) row[2]).after(after)
+                        || ((Timestamp) row[2]).equals(after) && (Long) row[0] > afterId)
+                .sorted(Comparator.comparing((Object[] row) -> (Timestamp) row[2]).thenComparing(row -> (Long) row[0]))
+                .limit((Integer) params[4])
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * JDBC driver of the in-memory table, only implements what RuleSync and ConnectionPool use.
+     */
+    public static final class TableDriver implements Driver {
+
+        static final String URL = "jdbc:rulesync-test:rules";
+
+        static {
+            try {
+                DriverManager.registerDriver(new TableDriver());
+            } catch (SQLException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        @Override
+        public Connection connect(String url, Properties info) {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            return proxy(Connection.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "prepareStatement":
+                        return statement((String) args[0]);
+                    case "isValid":
+                        return true;
+                    case "isClosed":
+                        return false;
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private static PreparedStatement statement(String sql) {
+            // parameter indexes start at 1
+            Object[] params = new Object[5];
+            return proxy(PreparedStatement.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "setTimestamp":
+                    case "setLong":
+                    case "setInt":
+                        params[(Integer) args[0]] = args[1];
+                        return null;
+                    case "setFetchSize":
+                    case "setQueryTimeout":
+                    case "close":
+                        return null;
+                    case "executeQuery":
+                        return resultSet(query(sql, params).iterator());
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private static ResultSet resultSet(Iterator<Object[]> rows) {
+            Object[][] current = new Object[1][];
+            return proxy(ResultSet.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "next":
+                        current[0] = rows.hasNext() ? rows.next() : null;
+                        return current[0] != null;
+                    case "getLong":
+                    case "getString":
+                    case "getTimestamp":
+                        return current[0][(Integer) args[0] - 1];
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(RuleSyncTests.class.getClassLoader(), new Class<?>[]{type}, handler));
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return URL.equals(url);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+}